@@ -3,10 +3,12 @@ package com.chanseok.emsstudy;
 import com.chanseok.emsstudy.provider.ApplicationContextProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class EmsStudyApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,66 @@
+package com.chanseok.emsstudy.cache;
+
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.utility.LruTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 라우트 단위 응답 캐시.
+ * payload 만으로 응답이 정해지는(멱등) 라우트에서 같은 payload 가 다시 오면 DispatcherServlet 을 타지 않고 저장된 응답을 돌려준다.
+ * 라우트의 {@code cache.enabled} 가 true 인 라우트만 캐싱하며, 성공한 응답만 저장한다.
+ */
+@Component
+public class EmsResponseCache {
+    /** 라우트 이름 -> 라우트 캐시 (캐시를 켠 라우트만) */
+    private final Map<String, RouteCache> caches = new HashMap<>();
+
+    public EmsResponseCache(EmsRouteRegistry routeRegistry, MeterRegistry meterRegistry) {
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            if (route.getCache().isEnabled()) {
+                caches.put(route.getName(), new RouteCache(route, meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * @return 라우트가 캐시를 쓰지 않으면 null
+     */
+    public PayloadKey keyFor(EmsRoute route, String payload) {
+        return caches.containsKey(route.getName()) ? PayloadKey.of(payload) : null;
+    }
+
+    /**
+     * @return 캐시된 응답, 없으면 null
+     */
+    public String get(EmsRoute route, PayloadKey key) {
+        RouteCache cache = caches.get(route.getName());
+        String response = cache.responses.get(key);
+        (response != null ? cache.hits : cache.misses).increment();
+        return response;
+    }
+
+    public void put(EmsRoute route, PayloadKey key, String response) {
+        caches.get(route.getName()).responses.put(key, response);
+    }
+
+    private static class RouteCache {
+        private final LruTtlCache<PayloadKey, String> responses;
+        private final Counter hits;
+        private final Counter misses;
+
+        private RouteCache(EmsRoute route, MeterRegistry meterRegistry) {
+            EmsRoute.ResponseCache settings = route.getCache();
+            this.responses = new LruTtlCache<>(settings.getMaxEntries(), 16, settings.getTtl().toMillis());
+            this.hits = Counter.builder("ems.cache.hits").tag("route", route.getName()).register(meterRegistry);
+            this.misses = Counter.builder("ems.cache.misses").tag("route", route.getName()).register(meterRegistry);
+            Gauge.builder("ems.cache.size", responses, LruTtlCache::size).tag("route", route.getName()).register(meterRegistry);
+        }
+    }
+}
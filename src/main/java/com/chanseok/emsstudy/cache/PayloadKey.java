@@ -0,0 +1,57 @@
+package com.chanseok.emsstudy.cache;
+
+/**
+ * payload 캐시 키. 128비트 해시로 먼저 비교하고, 해시가 같으면 payload 원문까지 비교한다.
+ * 해시는 암호학적 해시가 아니라 충돌을 만들어 낼 수 있으므로, 다른 payload 의 응답이 나가지 않도록 원문을 같이 들고 있는다.
+ */
+public final class PayloadKey {
+    private final long high;
+    private final long low;
+    private final String payload;
+
+    private PayloadKey(long high, long low, String payload) {
+        this.high = high;
+        this.low = low;
+        this.payload = payload;
+    }
+
+    /**
+     * 서로 다른 두 64비트 해시(FNV-1a, 다항식 해시)를 한 번의 순회로 계산한다.
+     */
+    public static PayloadKey of(String payload) {
+        long high = 0xcbf29ce484222325L;
+        long low = 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < payload.length(); i++) {
+            char c = payload.charAt(i);
+            high = (high ^ c) * 0x100000001b3L;
+            low = low * 0x5bd1e9955bd1e995L + c;
+        }
+        return new PayloadKey(mix(high), mix(low), payload);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PayloadKey)) {
+            return false;
+        }
+        PayloadKey that = (PayloadKey) o;
+        return high == that.high && low == that.low && payload.equals(that.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32));
+    }
+}
@@ -0,0 +1,128 @@
+package com.chanseok.emsstudy.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 캡처 파일 (memory-mapped).
+ * <pre>
+ * header : magic(int) | startedAt(long, epoch millis) | count(int) | end(int)
+ * record : length(int) | offsetNanos(long, 캡처 시작부터 수신까지) | body(EmsDeliveryCodec)
+ * </pre>
+ * 헤더의 count/end 는 레코드를 다 쓴 뒤에 갱신하므로, 도중에 죽어도 반쯤 쓴 레코드는 읽히지 않는다.
+ * end 가 int 이고 파일 전체를 MappedByteBuffer 하나로 매핑하므로 크기는 {@link #MAX_CAPACITY} 까지다.
+ */
+class CaptureFile implements Closeable {
+    static final int HEADER_BYTES = 20;
+    static final int RECORD_HEADER_BYTES = 12;
+    static final long MAX_CAPACITY = Integer.MAX_VALUE;
+
+    private static final int MAGIC = 0x454D5343; // "EMSC"
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int count;
+    private int end;
+
+    private CaptureFile(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 새 캡처 파일을 만든다. 같은 경로의 파일은 덮어쓴다.
+     */
+    static CaptureFile create(Path file, long capacity, long startedAt) throws IOException {
+        if (capacity <= HEADER_BYTES || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("EMS capture capacity out of range: " + capacity + " bytes");
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.deleteIfExists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CaptureFile capture = new CaptureFile(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        capture.buffer.putInt(0, MAGIC);
+        capture.buffer.putLong(4, startedAt);
+        capture.end = HEADER_BYTES;
+        capture.writeHeader();
+        return capture;
+    }
+
+    static CaptureFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        CaptureFile capture = new CaptureFile(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        if (capture.buffer.getInt(0) != MAGIC) {
+            capture.close();
+            throw new IllegalArgumentException("Not an EMS capture file: " + file);
+        }
+        capture.count = capture.buffer.getInt(12);
+        capture.end = capture.buffer.getInt(16);
+        return capture;
+    }
+
+    /**
+     * @return 자리가 모자라 쓰지 못했으면 false
+     */
+    synchronized boolean append(long offsetNanos, byte[] body) {
+        if ((long) end + RECORD_HEADER_BYTES + body.length > buffer.capacity()) {
+            return false;
+        }
+        ByteBuffer out = buffer.duplicate();
+        out.position(end);
+        out.putInt(body.length);
+        out.putLong(offsetNanos);
+        out.put(body);
+        end = out.position();
+        count++;
+        writeHeader();
+        return true;
+    }
+
+    long getStartedAt() {
+        return buffer.getLong(4);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * 레코드를 순서대로 넘겨준다.
+     */
+    void forEach(RecordConsumer consumer) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(HEADER_BYTES);
+        for (int i = 0; i < count && in.position() < end; i++) {
+            int length = in.getInt();
+            long offsetNanos = in.getLong();
+            byte[] body = new byte[length];
+            in.get(body);
+            consumer.accept(offsetNanos, body);
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(12, count);
+        buffer.putInt(16, end);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen() && !buffer.isReadOnly()) {
+            buffer.force();
+        }
+        channel.close();
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(long offsetNanos, byte[] body);
+    }
+}
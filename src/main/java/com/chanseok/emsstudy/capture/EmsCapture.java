@@ -0,0 +1,61 @@
+package com.chanseok.emsstudy.capture;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDeliveryCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * 수신한 메시지(payload, JMS 헤더, 프로퍼티)와 도착 시각을 캡처 파일에 기록한다.
+ * {@link EmsReplayEngine} 으로 같은 트래픽 모양을 다시 흘려 성능 문제를 재현하는 데 쓴다.
+ */
+@Slf4j
+@Component
+public class EmsCapture implements DisposableBean {
+    private final EmsCaptureProperties properties;
+    private final CaptureFile file;
+    private final long startedAt;
+    private final Counter captured;
+    private volatile boolean full = false;
+
+    public EmsCapture(EmsCaptureProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.properties = properties;
+        this.startedAt = System.nanoTime();
+        this.file = properties.isEnabled()
+                ? CaptureFile.create(Paths.get(properties.getFile()), properties.getCapacity().toBytes(), System.currentTimeMillis())
+                : null;
+        this.captured = Counter.builder("ems.capture.records").register(meterRegistry);
+        if (file != null) {
+            log.info("EMS capture started: file={}", properties.getFile());
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null && !full;
+    }
+
+    public void record(EmsDelivery delivery) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!file.append(System.nanoTime() - startedAt, EmsDeliveryCodec.encode(delivery))) {
+            full = true;
+            log.warn("EMS capture file is full, capture stopped: file={}, records={}", properties.getFile(), file.getCount());
+            return;
+        }
+        captured.increment();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
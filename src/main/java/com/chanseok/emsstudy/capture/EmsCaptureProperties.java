@@ -0,0 +1,42 @@
+package com.chanseok.emsstudy.capture;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * 수신 메시지 캡처와 재생 설정.
+ * application.yml 의 {@code ems.capture.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.capture")
+public class EmsCaptureProperties {
+
+    /** 수신 메시지 캡처 사용 여부 */
+    private boolean enabled = false;
+
+    /** 캡처 파일 경로 */
+    private String file = "./data/ems-capture.bin";
+
+    /** 캡처 파일 크기 (2GB 미만). 다 차면 캡처를 멈춘다 */
+    private DataSize capacity = DataSize.ofMegabytes(256);
+
+    /** 재생 설정 */
+    private Replay replay = new Replay();
+
+    @Getter
+    @Setter
+    public static class Replay {
+
+        /** 기동 후 재생할 캡처 파일. 비어 있으면 재생하지 않는다 */
+        private String file;
+
+        /** 재생 속도 배수 (1 = 원래 간격, 10 = 10배 빠르게, 0 = 간격 없이 최대 속도) */
+        private double speed = 1.0;
+
+        /** 동시에 디스패치할 스레드 수 */
+        private int concurrency = 4;
+    }
+}
@@ -0,0 +1,127 @@
+package com.chanseok.emsstudy.capture;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDeliveryCodec;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.servlet.DispatchResult;
+import com.chanseok.emsstudy.servlet.EmsDispatcherServletAdapter;
+import com.chanseok.emsstudy.utility.BeanUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 캡처 파일을 {@link EmsDispatcherServletAdapter} 로 다시 흘려보낸다.
+ * 브로커/응답 전송 없이 DispatcherServlet 까지만 타므로 컨트롤러 쪽 성능만 따로 잴 수 있다.
+ * {@code ems.capture.replay.file} 을 지정하면 기동 직후 별도 스레드에서 한 번 재생하고 결과를 로그로 남긴다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsReplayEngine implements DisposableBean {
+    private final EmsCaptureProperties properties;
+    private final EmsRouteRegistry routeRegistry;
+
+    /** 기동 시 재생을 돌리는 스레드. ApplicationReadyEvent 를 보내는 main 스레드를 붙잡지 않는다 */
+    private final ExecutorService startupExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ems-replay-startup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayOnStartup() {
+        EmsCaptureProperties.Replay replay = properties.getReplay();
+        if (replay.getFile() == null || replay.getFile().isEmpty()) {
+            startupExecutor.shutdown();
+            return;
+        }
+        startupExecutor.execute(() -> {
+            try {
+                ReplayReport report = replay(Paths.get(replay.getFile()), replay.getSpeed(), replay.getConcurrency());
+                log.info("EMS replay finished: file={}, speed={}, {}", replay.getFile(), replay.getSpeed(), report);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("EMS replay interrupted: file={}", replay.getFile());
+            } catch (IOException | RuntimeException e) {
+                log.error("EMS replay failed: file={}", replay.getFile(), e);
+            }
+        });
+        startupExecutor.shutdown();
+    }
+
+    @Override
+    public void destroy() {
+        startupExecutor.shutdownNow();
+    }
+
+    /**
+     * @param speed       재생 속도 배수. 0 이면 간격 없이 최대 속도
+     * @param concurrency 동시에 디스패치할 스레드 수
+     */
+    public ReplayReport replay(Path file, double speed, int concurrency) throws IOException, InterruptedException {
+        return replay(file, speed, concurrency, (EmsDispatcherServletAdapter) BeanUtils.getBean(EmsDispatcherServletAdapter.class));
+    }
+
+    ReplayReport replay(Path file, double speed, int concurrency, EmsDispatcherServletAdapter dispatcherServletAdapter)
+            throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+            Thread thread = new Thread(r, "ems-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (CaptureFile capture = CaptureFile.open(file)) {
+            long[] latencies = new long[capture.getCount()];
+            AtomicInteger completed = new AtomicInteger();
+            AtomicInteger failures = new AtomicInteger();
+            long startedAt = System.nanoTime();
+
+            capture.forEach((offsetNanos, body) -> {
+                EmsDelivery delivery = EmsDeliveryCodec.decode(body, routeRegistry, () -> {
+                });
+                long intendedAt = speed > 0 ? startedAt + (long) (offsetNanos / speed) : System.nanoTime();
+                long wait;
+                while ((wait = intendedAt - System.nanoTime()) > 0L) {
+                    LockSupport.parkNanos(wait);
+                }
+                executor.execute(() -> {
+                    boolean success = false;
+                    try {
+                        if (delivery != null) {
+                            DispatchResult result = dispatcherServletAdapter.dispatch(delivery.getRoute().getUri(), delivery.getPayloadBytes(),
+                                    delivery.getContentType(), delivery.getContentEncoding());
+                            success = result.isSuccess();
+                        }
+                    } catch (RuntimeException e) {
+                        log.debug("EMS replay dispatch failed: messageId={}", delivery.getMessageId(), e);
+                    } finally {
+                        // 예외가 나도 지연 시간 슬롯을 채워야 0 으로 남은 슬롯이 분포를 끌어내리지 않는다
+                        if (!success) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - intendedAt;
+                    }
+                });
+            });
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            return new ReplayReport(failures.get(), System.nanoTime() - startedAt, latencies);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
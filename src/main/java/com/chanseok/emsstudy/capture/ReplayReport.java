@@ -0,0 +1,56 @@
+package com.chanseok.emsstudy.capture;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 재생 결과. 지연 시간은 캡처된 도착 간격으로 계산한 "보냈어야 할 시각"부터 잰다
+ * (디스패치가 밀리면 그만큼 지연에 포함된다).
+ */
+@Getter
+public class ReplayReport {
+    private final int count;
+    private final int failures;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+
+    ReplayReport(int failures, long elapsedNanos, long[] latencies) {
+        this.count = latencies.length;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencies = latencies.clone();
+        Arrays.sort(sortedLatencies);
+    }
+
+    /**
+     * 초당 처리 건수
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    /**
+     * @param percentile 0 ~ 100
+     * @return 지연 시간(nanos)
+     */
+    public long latency(double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0L;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, failures=%d, elapsed=%dms, throughput=%.1f/s, p50=%.2fms, p90=%.2fms, p99=%.2fms, p99.9=%.2fms, max=%.2fms",
+                count, failures, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getThroughput(),
+                millis(latency(50)), millis(latency(90)), millis(latency(99)), millis(latency(99.9)), millis(latency(100)));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,151 @@
+package com.chanseok.emsstudy.circuit;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.route.EmsRoute;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 라우트 하나의 서킷 브레이커.
+ * 최근 windowSize 건의 결과(실패/느린 호출)를 링으로 들고 있다가 비율이 임계치를 넘으면 연다(OPEN).
+ * OPEN 동안 들어온 메시지는 ack 하지 않은 채 보류 큐에 쌓아 두고,
+ * openDuration 이 지나면 HALF_OPEN 으로 바꿔 halfOpenCalls 건만 시험 삼아 보낸다.
+ * 시험 호출이 모두 성공하면 닫고(CLOSED), 하나라도 실패하면 다시 연다.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final EmsRoute.CircuitBreaker config;
+    private final boolean[] failures;
+    private final boolean[] slows;
+    private final Deque<EmsDelivery> held = new ArrayDeque<>();
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failureCount;
+    private int slowCount;
+    private long openedAt;
+    private int trialsRemaining;
+    private int trialSuccesses;
+    private int trialsReleased;
+    private long openCount;
+
+    public CircuitBreaker(EmsRoute.CircuitBreaker config) {
+        this.config = config;
+        this.failures = new boolean[Math.max(1, config.getWindowSize())];
+        this.slows = new boolean[failures.length];
+    }
+
+    /**
+     * 지금 호출해도 되는지 확인한다. HALF_OPEN 이면 시험 호출 한 건을 차지한다.
+     */
+    public synchronized boolean tryAcquire(long now) {
+        advance(now);
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && trialsRemaining > 0) {
+            trialsRemaining--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@link #tryAcquire} 로 허락받은 호출의 결과를 기록한다.
+     */
+    public synchronized void onResult(boolean success, long durationNanos, long now) {
+        boolean slow = durationNanos >= config.getSlowCallThreshold().toNanos();
+        if (state == State.HALF_OPEN) {
+            if (!success || slow) {
+                open(now);
+            } else if (++trialSuccesses >= config.getHalfOpenCalls()) {
+                close();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (recorded == failures.length) {
+            failureCount -= failures[next] ? 1 : 0;
+            slowCount -= slows[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failures[next] = !success;
+        slows[next] = slow;
+        failureCount += success ? 0 : 1;
+        slowCount += slow ? 1 : 0;
+        next = (next + 1) % failures.length;
+
+        if (recorded >= config.getMinimumCalls()
+                && (failureCount * 100 >= config.getFailureRateThreshold() * recorded
+                || slowCount * 100 >= config.getSlowCallRateThreshold() * recorded)) {
+            open(now);
+        }
+    }
+
+    public synchronized void hold(EmsDelivery delivery) {
+        held.addLast(delivery);
+    }
+
+    /**
+     * 보류 큐에서 가장 오래된 메시지를 꺼낸다.
+     * 닫혀 있으면 제한 없이, HALF_OPEN 이면 시험 호출 수만큼만 꺼내고, OPEN 이면 꺼내지 않는다.
+     */
+    public synchronized EmsDelivery pollHeld(long now) {
+        advance(now);
+        if (state == State.OPEN || held.isEmpty()) {
+            return null;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsReleased >= config.getHalfOpenCalls()) {
+                return null;
+            }
+            trialsReleased++;
+        }
+        return held.pollFirst();
+    }
+
+    public synchronized int heldCount() {
+        return held.size();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    private void advance(long now) {
+        if (state == State.OPEN && now - openedAt >= config.getOpenDuration().toNanos()) {
+            state = State.HALF_OPEN;
+            trialsRemaining = config.getHalfOpenCalls();
+            trialSuccesses = 0;
+            trialsReleased = 0;
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        openCount++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.chanseok.emsstudy.circuit;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDispatchPipeline;
+import com.chanseok.emsstudy.ratelimit.TokenBucket;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.utility.BeanUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 라우트별 {@link CircuitBreaker} 를 들고, 보류된 메시지를 정해진 속도로 파이프라인에 다시 넣는다.
+ * <ul>
+ *     <li>보류 큐가 maxHeld 에 차면 그 라우트의 리스너 스레드를 멈춰 더 받지 않는다</li>
+ *     <li>HALF_OPEN 이면 시험 호출 수만큼, CLOSED 이면 drainRate 속도로 보류 큐를 비운다</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class EmsCircuitBreakerRegistry implements InitializingBean, DisposableBean {
+    private static final long DRAIN_INTERVAL_MILLIS = 100L;
+    private static final long CAPACITY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final EmsRouteRegistry routeRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+    private final Map<String, TokenBucket> drainBuckets = new HashMap<>();
+
+    private final ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ems-circuit-drain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public EmsCircuitBreakerRegistry(EmsRouteRegistry routeRegistry, MeterRegistry meterRegistry) {
+        this.routeRegistry = routeRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            EmsRoute.CircuitBreaker config = route.getCircuitBreaker();
+            if (!config.isEnabled()) {
+                continue;
+            }
+            validate(route.getName(), config);
+            CircuitBreaker breaker = new CircuitBreaker(config);
+            breakers.put(route.getName(), breaker);
+            // drain 주기 동안 쌓인 토큰은 한 번에 쓸 수 있게 버킷 크기를 잡는다
+            int burst = (int) Math.max(1, Math.ceil(config.getDrainRate() * DRAIN_INTERVAL_MILLIS / 1000.0));
+            drainBuckets.put(route.getName(), new TokenBucket(config.getDrainRate(), burst));
+
+            Gauge.builder("ems.circuit.state", breaker, b -> b.getState().ordinal())
+                    .description("0=closed, 1=open, 2=half-open")
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+            Gauge.builder("ems.circuit.held", breaker, CircuitBreaker::heldCount)
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+            FunctionCounter.builder("ems.circuit.opened", breaker, CircuitBreaker::getOpenCount)
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+        }
+        if (!breakers.isEmpty()) {
+            drainer.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 창보다 minimumCalls 가 크면 실패율을 한 번도 판단하지 못해 열리지 않으므로 기동할 때 막는다.
+     */
+    static void validate(String routeName, EmsRoute.CircuitBreaker config) {
+        if (config.getWindowSize() < 1) {
+            throw new IllegalStateException("ems.routes." + routeName + ".circuit-breaker.window-size must be positive: "
+                    + config.getWindowSize());
+        }
+        if (config.getMinimumCalls() > config.getWindowSize()) {
+            throw new IllegalStateException("ems.routes." + routeName + ".circuit-breaker.minimum-calls (" + config.getMinimumCalls()
+                    + ") must not exceed window-size (" + config.getWindowSize() + ")");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // 보류된 메시지는 ack 되지 않았으므로 세션이 닫히면 브로커가 다시 전달한다
+        drainer.shutdownNow();
+    }
+
+    /**
+     * @return 서킷 브레이커를 쓰지 않는 라우트면 null
+     */
+    public CircuitBreaker get(EmsRoute route) {
+        return breakers.get(route.getName());
+    }
+
+    /**
+     * 라우트의 보류 큐에 자리가 날 때까지 호출한 (리스너) 스레드를 멈춘다.
+     */
+    public void awaitCapacity(EmsRoute route) {
+        CircuitBreaker breaker = breakers.get(route.getName());
+        if (breaker == null) {
+            return;
+        }
+        while (breaker.heldCount() >= route.getCircuitBreaker().getMaxHeld()) {
+            LockSupport.parkNanos(breaker, CAPACITY_WAIT_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("EMS Circuit Breaker Wait Interrupted: " + route.getName());
+            }
+        }
+    }
+
+    private void drain() {
+        EmsDispatchPipeline dispatchPipeline = (EmsDispatchPipeline) BeanUtils.getBean(EmsDispatchPipeline.class);
+        for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+            CircuitBreaker breaker = entry.getValue();
+            TokenBucket bucket = drainBuckets.get(entry.getKey());
+            try {
+                while (breaker.heldCount() > 0 && bucket.tryAcquire() == 0L) {
+                    EmsDelivery delivery = breaker.pollHeld(System.nanoTime());
+                    if (delivery == null) {
+                        break;
+                    }
+                    dispatchPipeline.submit(delivery);
+                }
+            } catch (RuntimeException e) {
+                log.error("EMS circuit breaker drain failed: route={}", entry.getKey(), e);
+            }
+        }
+    }
+}
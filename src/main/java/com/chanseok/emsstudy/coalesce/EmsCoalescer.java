@@ -0,0 +1,134 @@
+package com.chanseok.emsstudy.coalesce;
+
+import com.chanseok.emsstudy.dedup.EmsDedupCache;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 같은 키의 메시지를 window 동안 모아 가장 마지막 것만 디스패치한다(last-write-wins).
+ * 키의 첫 메시지가 들어오면 window 뒤에 내보내도록 타이밍 휠에 예약하고,
+ * 그 사이에 같은 키가 또 들어오면 들고 있던 메시지를 처리한 것으로 기록(중복 제거 키)하고 ack 한 뒤 새 메시지로 바꾼다.
+ * 서킷 브레이커 대기나 속도 제한보다 앞에서 걸러, 버려질 메시지가 토큰이나 대기 시간을 쓰지 않게 한다.
+ */
+@Slf4j
+@Component
+public class EmsCoalescer {
+    private final ObjectMapper objectMapper;
+    private final EmsRetryScheduler scheduler;
+    private final EmsDedupCache dedupCache;
+
+    /** 라우트 이름 + ':' + 키 → window 동안 들고 있는 최신 메시지 */
+    private final Map<String, EmsDelivery> pending = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new HashMap<>();
+
+    public EmsCoalescer(ObjectMapper objectMapper, EmsRetryScheduler scheduler, EmsDedupCache dedupCache,
+                        EmsRouteRegistry routeRegistry, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+        this.dedupCache = dedupCache;
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            if (!route.getCoalesce().isEnabled()) {
+                continue;
+            }
+            Stats routeStats = new Stats();
+            stats.put(route.getName(), routeStats);
+            Gauge.builder("ems.coalesce.ratio", routeStats, Stats::ratio)
+                    .description("Share of received messages that were superseded and never dispatched")
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+            FunctionCounter.builder("ems.coalesce.superseded", routeStats, s -> s.superseded.sum())
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("ems.coalesce.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 병합 대상이면 메시지를 맡아 두고 true 를 반환한다. window 가 끝나면 최신 메시지를 flush 로 넘긴다.
+     * flush 는 타이밍 휠이 아닌 handoff 스레드에서 호출되므로 블로킹해도 된다.
+     *
+     * @return 병합하지 않는 라우트이거나 키가 없으면 false (호출한 쪽이 그대로 처리한다)
+     */
+    public boolean offer(EmsDelivery delivery, Consumer<EmsDelivery> flush) {
+        EmsRoute route = delivery.getRoute();
+        Stats routeStats = stats.get(route.getName());
+        if (routeStats == null) {
+            return false;
+        }
+        String key = keyOf(route.getCoalesce(), delivery);
+        if (key == null) {
+            return false;
+        }
+
+        routeStats.received.increment();
+        String pendingKey = route.getName() + ':' + key;
+        EmsDelivery previous = pending.put(pendingKey, delivery);
+        if (previous == null) {
+            scheduler.scheduleBlocking(() -> {
+                EmsDelivery latest = pending.remove(pendingKey);
+                if (latest != null) {
+                    flush.accept(latest);
+                }
+            }, route.getCoalesce().getWindow().toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        routeStats.superseded.increment();
+        // 같은 메시지가 재전달되어도 다시 병합되지 않도록 처리한 것으로 기록한다
+        if (previous.getDedupKey() != null) {
+            dedupCache.markProcessed(previous.getDedupKey());
+        }
+        try {
+            previous.acknowledge();
+        } catch (JMSException e) {
+            // ack 하지 못한 메시지는 재전달되어 다시 병합된다
+            log.warn("EMS superseded message ack failed: messageId={}", previous.getMessageId(), e);
+        }
+        return true;
+    }
+
+    private String keyOf(EmsRoute.Coalesce coalesce, EmsDelivery delivery) {
+        if (coalesce.getKeyProperty() != null && !coalesce.getKeyProperty().isEmpty()) {
+            Object value = delivery.getProperty(coalesce.getKeyProperty());
+            return value != null ? value.toString() : null;
+        }
+        // 바이너리 body 에서는 키를 꺼내지 않는다
+        if (coalesce.getKeyField() != null && !coalesce.getKeyField().isEmpty() && delivery.getPayload() != null) {
+            try {
+                JsonNode node = objectMapper.readTree(delivery.getPayload()).at(coalesce.getKeyField());
+                return node.isMissingNode() || node.isNull() ? null : node.asText();
+            } catch (JsonProcessingException e) {
+                log.debug("EMS coalesce key not found in payload: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static class Stats {
+        private final LongAdder received = new LongAdder();
+        private final LongAdder superseded = new LongAdder();
+
+        private double ratio() {
+            long total = received.sum();
+            return total == 0 ? 0 : (double) superseded.sum() / total;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.chanseok.emsstudy.codec;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EMS 라우트 URI 요청의 body 를 {@link EmsRouteCodec} 으로 읽고 쓰는 컨버터. 다른 JSON 컨버터보다 앞에 둔다.
+ * 요청을 처리하는 핸들러 메서드의 선언 타입과 같은 타입을 읽고 쓸 때만 나서고,
+ * 라우트 URI 가 아니거나 타입이 다르면(ResponseEntity 등) 다음 컨버터가 처리한다.
+ */
+public class EmsCodecHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private final EmsCodecRegistry codecRegistry;
+
+    public EmsCodecHttpMessageConverter(EmsCodecRegistry codecRegistry) {
+        super(new MediaType("application", "json", StandardCharsets.UTF_8), new MediaType("application", "*+json", StandardCharsets.UTF_8));
+        this.codecRegistry = codecRegistry;
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        EmsRouteCodec codec = currentCodec();
+        return codec != null && codec.canRead(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        EmsRouteCodec codec = currentCodec();
+        return codec != null && codec.canWrite(type) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        EmsRouteCodec codec = currentCodec();
+        try {
+            return codec.read(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        currentCodec().write(value, outputMessage.getBody());
+    }
+
+    /**
+     * 타입만으로는 라우트를 알 수 없으므로 Class 만 받는 경로에서는 쓰지 않는다
+     */
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return false;
+    }
+
+    /**
+     * @return 지금 처리 중인 요청이 EMS 라우트 URI 가 아니면 null
+     */
+    private EmsRouteCodec currentCodec() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (!(pattern instanceof String) || !(handler instanceof HandlerMethod) || !codecRegistry.isRouteUri((String) pattern)) {
+            return null;
+        }
+        return codecRegistry.codec((String) pattern, (HandlerMethod) handler);
+    }
+}
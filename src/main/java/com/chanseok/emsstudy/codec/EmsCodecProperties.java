@@ -0,0 +1,18 @@
+package com.chanseok.emsstudy.codec;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * {@link EmsCodecRegistry} 설정.
+ * application.yml 의 {@code ems.codec.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.codec")
+public class EmsCodecProperties {
+
+    /** 라우트 코덱이 쓰는 ObjectMapper 에 Blackbird 모듈(LambdaMetafactory 로 만든 getter/setter/생성자 호출)을 붙인다 */
+    private boolean blackbird = false;
+}
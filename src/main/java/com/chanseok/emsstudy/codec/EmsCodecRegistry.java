@@ -0,0 +1,104 @@
+package com.chanseok.emsstudy.codec;
+
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 라우트 URI → {@link EmsRouteCodec} 캐시.
+ * 생성된 직접 호출 라우트는 표를 만들 때, DispatcherServlet 으로 가는 라우트는 첫 요청에서 핸들러 메서드의 선언 타입으로 만든다.
+ * 라우트(uri, batch.uri, fan-out uris)에 쓰이는 URI 만 담는다.
+ */
+@Slf4j
+@Component
+public class EmsCodecRegistry {
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /** uri → 그 uri 를 쓰는 (첫 번째) 라우트 이름. 메트릭 태그에 쓴다 */
+    private final Map<String, String> routeNamesByUri = new HashMap<>();
+
+    private final Map<String, EmsRouteCodec> codecs = new ConcurrentHashMap<>();
+
+    public EmsCodecRegistry(ObjectMapper objectMapper, MeterRegistry meterRegistry, EmsRouteRegistry routeRegistry,
+                            EmsCodecProperties properties) {
+        // 애플리케이션 ObjectMapper 설정은 그대로 두고 모듈만 코덱용 사본에 붙인다
+        this.objectMapper = properties.isBlackbird() ? objectMapper.copy().registerModule(new BlackbirdModule()) : objectMapper;
+        this.meterRegistry = meterRegistry;
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            routeNamesByUri.putIfAbsent(route.getUri(), route.getName());
+            if (route.getBatch().getUri() != null) {
+                routeNamesByUri.putIfAbsent(route.getBatch().getUri(), route.getName());
+            }
+            route.getFanOut().getUris().forEach(uri -> routeNamesByUri.putIfAbsent(uri, route.getName()));
+        }
+    }
+
+    public boolean isRouteUri(String uri) {
+        return routeNamesByUri.containsKey(uri);
+    }
+
+    /**
+     * @return 아직 만들지 않았으면 null
+     */
+    public EmsRouteCodec find(String uri) {
+        return codecs.get(uri);
+    }
+
+    /**
+     * @param bodyType   요청 body 타입 (없으면 null)
+     * @param returnType 반환 타입 (void 면 null)
+     */
+    public EmsRouteCodec codec(String uri, Type bodyType, Type returnType) {
+        return codecs.computeIfAbsent(uri, key -> create(key, bodyType, returnType));
+    }
+
+    /**
+     * DispatcherServlet 이 고른 핸들러 메서드의 {@code @RequestBody} 파라미터와 반환 타입으로 만든다.
+     */
+    public EmsRouteCodec codec(String uri, HandlerMethod handlerMethod) {
+        EmsRouteCodec codec = codecs.get(uri);
+        if (codec != null) {
+            return codec;
+        }
+        Type bodyType = null;
+        for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+            if (parameter.hasParameterAnnotation(RequestBody.class)) {
+                bodyType = parameter.getGenericParameterType();
+                break;
+            }
+        }
+        Type returnType = handlerMethod.getReturnType().getGenericParameterType();
+        return codec(uri, bodyType, returnType == void.class ? null : returnType);
+    }
+
+    private EmsRouteCodec create(String uri, Type bodyType, Type returnType) {
+        String route = routeNamesByUri.getOrDefault(uri, "none");
+        Timer readTimer = Timer.builder("ems.codec.read")
+                .description("Time to deserialize a route request body")
+                .tags("route", route, "uri", uri)
+                .register(meterRegistry);
+        Timer writeTimer = Timer.builder("ems.codec.write")
+                .description("Time to serialize a route response body")
+                .tags("route", route, "uri", uri)
+                .register(meterRegistry);
+        log.info("EMS route codec: uri={}, body={}, return={}", uri, bodyType, returnType);
+        return new EmsRouteCodec(uri, bodyType, returnType,
+                bodyType != null ? objectMapper.readerFor(objectMapper.constructType(bodyType)) : null,
+                returnType != null ? objectMapper.writerFor(objectMapper.constructType(returnType)) : null,
+                readTimer, writeTimer);
+    }
+}
@@ -0,0 +1,122 @@
+package com.chanseok.emsstudy.codec;
+
+import lombok.Getter;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 메시지 body 압축 코덱. 압축한 메시지는 BytesMessage 로 보내고 {@value #PROPERTY} JMS 프로퍼티에 코덱 이름을 싣는다.
+ * 받는 쪽은 압축된 바이트를 그대로 들고 다니다가 디스패치할 때 {@link #decompress} 스트림으로 풀면서 읽는다.
+ * <ul>
+ *     <li>DEFLATE : JDK {@link Deflater}. 압축률이 좋다</li>
+ *     <li>LZ4 : lz4-java 블록 스트림. 압축률은 낮지만 압축/해제가 훨씬 빠르다</li>
+ * </ul>
+ */
+public enum EmsContentEncoding {
+    DEFLATE("deflate") {
+        @Override
+        protected OutputStream compressor(OutputStream out, int level) {
+            Deflater deflater = new Deflater(level);
+            return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            // 직접 만든 Inflater 는 close 해도 end 되지 않으므로 닫을 때 같이 정리한다
+            return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                    }
+                }
+            };
+        }
+    },
+    LZ4("lz4") {
+        @Override
+        protected OutputStream compressor(OutputStream out, int level) {
+            return new LZ4BlockOutputStream(out, LZ4_BLOCK_SIZE, LZ4Factory.fastestInstance().fastCompressor());
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            return new LZ4BlockInputStream(in, LZ4Factory.fastestInstance().fastDecompressor());
+        }
+    };
+
+    /** 압축 코덱 이름을 싣는 JMS 프로퍼티 */
+    public static final String PROPERTY = "contentEncoding";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int LZ4_BLOCK_SIZE = 64 * 1024;
+
+    /** {@value #PROPERTY} 프로퍼티 값 */
+    @Getter
+    private final String name;
+
+    EmsContentEncoding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return 이름이 맞는 코덱, 없으면 null
+     */
+    public static EmsContentEncoding of(String name) {
+        for (EmsContentEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param level Deflater 압축 레벨 (LZ4 는 쓰지 않는다)
+     */
+    public byte[] compress(byte[] content, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        try (OutputStream compressor = compressor(out, level)) {
+            compressor.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 압축을 풀면서 읽는 스트림. 닫으면 in 도 닫힌다.
+     */
+    public abstract InputStream decompress(InputStream in);
+
+    /**
+     * 압축을 풀면서 읽되, 푼 크기가 maxInflatedSize 바이트를 넘으면 실패하는 스트림. 닫으면 in 도 닫힌다.
+     */
+    public InflateLimitInputStream decompress(InputStream in, long maxInflatedSize) {
+        return new InflateLimitInputStream(decompress(in), maxInflatedSize);
+    }
+
+    protected abstract OutputStream compressor(OutputStream out, int level);
+}
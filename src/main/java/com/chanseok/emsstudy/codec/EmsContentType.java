@@ -0,0 +1,85 @@
+package com.chanseok.emsstudy.codec;
+
+import org.springframework.http.MediaType;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 메시지 body 의 인코딩. 프로듀서는 {@value #PROPERTY} JMS 프로퍼티에 Content-Type 을 실어 보내고,
+ * 없으면 JSON 텍스트로 본다. 디스패치 요청의 Content-Type/Accept 와 응답 메시지에도 같은 값을 쓴다.
+ * <p>
+ * 바이너리(Smile/CBOR) body 와 압축된 body({@link EmsContentEncoding})는 BytesMessage 로 주고받고,
+ * 파이프라인 안에서도 받은 byte[] 그대로 들고 다닌다 ({@link #bodyOf}).
+ * 문자열 payload 는 압축되지 않은 텍스트(JSON) body 에만 쓴다 ({@link #payloadOf}).
+ */
+public final class EmsContentType {
+    /** Content-Type 을 싣는 JMS 프로퍼티 */
+    public static final String PROPERTY = "contentType";
+
+    public static final String JSON = MediaType.APPLICATION_JSON_VALUE;
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String CBOR = MediaType.APPLICATION_CBOR_VALUE;
+
+    private EmsContentType() {
+    }
+
+    /**
+     * JSON/텍스트가 아닌 Content-Type 인지. null 이면 JSON 으로 본다.
+     */
+    public static boolean isBinary(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String value = contentType.toLowerCase(Locale.ROOT);
+        return !(value.startsWith(JSON) || value.contains("+json") || value.startsWith("text/"));
+    }
+
+    /**
+     * body 를 문자열 대신 byte[] 로 들고 다니는지. 압축됐거나 바이너리 Content-Type 이면 true
+     */
+    public static boolean carriesBytes(String contentType, String contentEncoding) {
+        return contentEncoding != null || isBinary(contentType);
+    }
+
+    /**
+     * 받은 메시지의 텍스트 body 를 payload 문자열로 읽는다. TextMessage 와 BytesMessage 만 받는다.
+     *
+     * @return 바이너리 body 면 null ({@link #bodyOf} 로 읽는다)
+     */
+    public static String payloadOf(Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText();
+        }
+        if (message instanceof BytesMessage) {
+            if (carriesBytes(message.getStringProperty(PROPERTY), message.getStringProperty(EmsContentEncoding.PROPERTY))) {
+                return null;
+            }
+            return new String(readBytes((BytesMessage) message), StandardCharsets.UTF_8);
+        }
+        throw new IllegalArgumentException("Unsupported EMS message type: " + message.getClass().getName());
+    }
+
+    /**
+     * 받은 메시지의 바이너리 body 를 바이트 그대로 읽는다.
+     *
+     * @return 텍스트 body 면 null ({@link #payloadOf} 로 읽는다)
+     */
+    public static byte[] bodyOf(Message message) throws JMSException {
+        if (message instanceof BytesMessage
+                && carriesBytes(message.getStringProperty(PROPERTY), message.getStringProperty(EmsContentEncoding.PROPERTY))) {
+            return readBytes((BytesMessage) message);
+        }
+        return null;
+    }
+
+    private static byte[] readBytes(BytesMessage message) throws JMSException {
+        byte[] body = new byte[(int) message.getBodyLength()];
+        message.readBytes(body);
+        return body;
+    }
+}
@@ -0,0 +1,92 @@
+package com.chanseok.emsstudy.codec;
+
+import com.chanseok.emsstudy.invoke.EmsUnreadableBodyException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 라우트 URI 하나의 요청 body 타입 ObjectReader 와 반환 타입 ObjectWriter.
+ * 타입 해석과 (역)직렬화기 조회는 만들 때 한 번만 하고, 읽고 쓰는 시간은 ems.codec.read/ems.codec.write 타이머에 남긴다.
+ */
+@Getter
+public class EmsRouteCodec {
+    private final String uri;
+
+    /** 선언된 요청 body 타입 (body 를 받지 않으면 null) */
+    private final Type bodyType;
+
+    /** 선언된 반환 타입 (void 면 null) */
+    private final Type returnType;
+
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final Timer readTimer;
+    private final Timer writeTimer;
+
+    EmsRouteCodec(String uri, Type bodyType, Type returnType, ObjectReader reader, ObjectWriter writer, Timer readTimer, Timer writeTimer) {
+        this.uri = uri;
+        this.bodyType = bodyType;
+        this.returnType = returnType;
+        this.reader = reader;
+        this.writer = writer;
+        this.readTimer = readTimer;
+        this.writeTimer = writeTimer;
+    }
+
+    public boolean canRead(Type type) {
+        return bodyType != null && bodyType.equals(type);
+    }
+
+    public boolean canWrite(Type type) {
+        return returnType != null && returnType.equals(type);
+    }
+
+    /**
+     * @throws EmsUnreadableBodyException body 를 선언된 타입으로 읽지 못했다
+     */
+    public <T> T read(byte[] body) {
+        long startedAt = System.nanoTime();
+        try {
+            return reader.readValue(body);
+        } catch (IOException e) {
+            throw new EmsUnreadableBodyException(e);
+        } finally {
+            readTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <T> T read(InputStream body) throws IOException {
+        long startedAt = System.nanoTime();
+        try {
+            return reader.readValue(body);
+        } finally {
+            readTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public byte[] write(Object value) throws IOException {
+        long startedAt = System.nanoTime();
+        try {
+            return writer.writeValueAsBytes(value);
+        } finally {
+            writeTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void write(Object value, OutputStream output) throws IOException {
+        long startedAt = System.nanoTime();
+        try {
+            writer.writeValue(output, value);
+        } finally {
+            writeTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.chanseok.emsstudy.codec;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 압축을 푼 body 의 크기를 제한하는 스트림. 한도를 넘겨 읽으려 하면 IOException 을 던지고 {@link #isExceeded} 가 true 가 된다.
+ * 메시지 컨버터/코덱이 예외를 다른 예외로 감싸도 어댑터가 이 값으로 한도 초과(413)를 가려낸다.
+ * 한도 다음 한 바이트까지만 읽으므로 압축 폭탄이어도 한도 + 1 바이트 이상은 풀지 않는다.
+ */
+public class InflateLimitInputStream extends FilterInputStream {
+    private final long maxSize;
+    private long count;
+    private volatile boolean exceeded;
+
+    public InflateLimitInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkRemaining();
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkRemaining();
+        // 한도를 넘었는지 알 수 있을 만큼만 읽는다
+        int read = super.read(b, off, (int) Math.min(len, maxSize - count + 1));
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkRemaining();
+        long skipped = super.skip(Math.min(n, maxSize - count + 1));
+        if (skipped > 0) {
+            count(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkRemaining() throws IOException {
+        if (exceeded) {
+            throw exceededException();
+        }
+    }
+
+    private void count(long read) throws IOException {
+        count += read;
+        if (count > maxSize) {
+            exceeded = true;
+            throw exceededException();
+        }
+    }
+
+    private IOException exceededException() {
+        return new IOException("Inflated body exceeds " + maxSize + " bytes");
+    }
+}
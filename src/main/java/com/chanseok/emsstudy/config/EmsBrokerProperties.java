@@ -0,0 +1,87 @@
+package com.chanseok.emsstudy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * EMS(ActiveMQ) 브로커 접속 정보.
+ * application.yml 의 {@code ems.broker.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.broker")
+public class EmsBrokerProperties {
+
+    /** 브로커 URL. failover 사용 시 쉼표로 여러 브로커를 지정할 수 있다 */
+    private String url = "tcp://localhost:61616";
+
+    /** 접속 계정 */
+    private String username = "admin";
+
+    /** 접속 비밀번호 */
+    private String password = "admin";
+
+    /** 노드 하나가 브로커에 여는 최대 커넥션 수 (컨슈머/프로듀서 공용) */
+    private int maxConnections = 2;
+
+    /** 커넥션당 풀링할 프로듀서용 세션 수 */
+    private int sessionsPerConnection = 4;
+
+    /** 세션 대여 대기 시간 */
+    private Duration borrowTimeout = Duration.ofSeconds(5);
+
+    /** 끊어진 커넥션을 찾아 교체하는 주기 */
+    private Duration healthCheckInterval = Duration.ofSeconds(30);
+
+    /** 큐 컨슈머 prefetch 크기 */
+    private int prefetch = 1000;
+
+    /** OpenWire tight encoding 사용 여부 (CPU 를 조금 더 쓰고 전송 크기를 줄인다) */
+    private boolean tightEncoding = true;
+
+    /** 브로커 응답을 기다리지 않는 비동기 전송 사용 여부 */
+    private boolean asyncSend = false;
+
+    /** AUTO_ACKNOWLEDGE 컨슈머의 ack 를 모아서 보내는 최적화 사용 여부 */
+    private boolean optimizeAcknowledge = true;
+
+    /** 재연결 설정 */
+    private Reconnect reconnect = new Reconnect();
+
+    /**
+     * 재연결 설정. failover 전송 옵션과 컨슈머 재생성 백오프에 같이 쓰인다.
+     */
+    @Getter
+    @Setter
+    public static class Reconnect {
+
+        /** failover: 전송 사용 여부 */
+        private boolean failover = true;
+
+        /** 첫 재연결 대기 시간 */
+        private Duration initialDelay = Duration.ofMillis(100);
+
+        /** 최대 재연결 대기 시간 */
+        private Duration maxDelay = Duration.ofSeconds(10);
+
+        /** 재연결 대기 시간 증가 배수 */
+        private double multiplier = 2.0;
+
+        /** failover 전송의 최대 재연결 시도 횟수 (-1 이면 무제한) */
+        private int maxAttempts = -1;
+
+        /** 연결이 끊긴 동안 전송을 기다리는 최대 시간. 넘으면 전송이 실패한다 */
+        private Duration sendTimeout = Duration.ofSeconds(5);
+
+        /**
+         * attempt 번째(0부터) 재시도 전 대기 시간
+         */
+        public long delayMillis(int attempt) {
+            double delay = initialDelay.toMillis() * Math.pow(multiplier, attempt);
+            return (long) Math.min(delay, maxDelay.toMillis());
+        }
+    }
+}
@@ -1,38 +1,189 @@
 package com.chanseok.emsstudy.config;
 
+import com.chanseok.emsstudy.connection.EmsConnectionPool;
 import com.chanseok.emsstudy.listener.EmsMessageListener;
-import lombok.RequiredArgsConstructor;
+import com.chanseok.emsstudy.listener.EmsReactiveConsumer;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.transport.EmsTransport;
+import com.chanseok.emsstudy.transport.EmsTransportProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.activemq.ActiveMQConnectionFactory;
-import org.springframework.boot.CommandLineRunner;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
+import org.apache.activemq.ActiveMQSession;
 import org.springframework.stereotype.Component;
 
-import javax.jms.Connection;
-import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 import javax.jms.JMSException;
-import javax.jms.MessageConsumer;
 import javax.jms.Session;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 라우트별 컨슈머를 띄우고, 커넥션이 복구 불가능하게 끊기면 지수 백오프로 모든 컨슈머 세션을 다시 만든다.
+ * 재연결 중에 온 실패 알림은 새 체인을 만들지 않고, 진행 중인 재연결이 끝난 뒤 한 번 더 다시 만든다.
+ * 리스너 인스턴스는 그대로 재사용하므로 재연결 후에도 같은 처리 파이프라인으로 메시지가 흘러간다.
+ * 처리는 워커 스레드에서 끝나므로 세션은 메시지 단위 ack(INDIVIDUAL_ACKNOWLEDGE)로 열고,
+ * 세션마다 {@link EmsMessageListener} 의 수신 스레드가 receive 와 ack 를 같이 맡는다.
+ * reactive 라우트는 리스너 대신 pull 모드 컨슈머를 {@link EmsReactiveConsumer} 에 넘긴다.
+ * ActiveMQ {@link EmsTransport} 구현이며 {@code ems.transport.activemq.enabled} 로 끌 수 있다.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
-public class EmsJmsRunner {
+public class EmsJmsRunner implements EmsTransport {
     private final EmsMessageListener messageListener;
+    private final EmsReactiveConsumer reactiveConsumer;
+    private final EmsConnectionPool connectionPool;
+    private final EmsRouteRegistry routeRegistry;
+    private final EmsBrokerProperties brokerProperties;
+    private final EmsTransportProperties transportProperties;
 
-    @EventListener(ApplicationReadyEvent.class)
-    public void statJmsListener() throws JMSException {
-        ConnectionFactory factory = new ActiveMQConnectionFactory("tcp://localhost:61616");
-        Connection connection = factory.createConnection("admin", "admin");
-        connection.start();
+    /** 현재 열려 있는 컨슈머 세션 */
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
 
-        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-        Destination destination = session.createQueue("ems.queue");
-        MessageConsumer consumer = session.createConsumer(destination);
+    /** 컨슈머 시작/재시작은 이 스레드 하나에서만 한다 */
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ems-consumer-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-        consumer.setMessageListener(messageListener);
+    /** 재연결이 이미 진행 중인지 여부 */
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+
+    /** 재연결 중에 다시 실패 알림이 왔는지. 방금 만든 세션이 끊긴 커넥션에 붙었을 수 있으므로 끝난 뒤 한 번 더 만든다 */
+    private final AtomicBoolean failedWhileReconnecting = new AtomicBoolean(false);
+
+    private final Timer reconnectTimer;
+    private final Counter reconnectAttempts;
+    private volatile boolean stopped = false;
+
+    public EmsJmsRunner(EmsMessageListener messageListener, EmsReactiveConsumer reactiveConsumer, EmsConnectionPool connectionPool,
+                        EmsRouteRegistry routeRegistry, EmsBrokerProperties brokerProperties,
+                        EmsTransportProperties transportProperties, MeterRegistry meterRegistry) {
+        this.messageListener = messageListener;
+        this.reactiveConsumer = reactiveConsumer;
+        this.connectionPool = connectionPool;
+        this.routeRegistry = routeRegistry;
+        this.brokerProperties = brokerProperties;
+        this.transportProperties = transportProperties;
+        this.reconnectTimer = Timer.builder("ems.consumer.reconnect")
+                .description("Time from a connection failure until every consumer is listening again")
+                .register(meterRegistry);
+        this.reconnectAttempts = Counter.builder("ems.consumer.reconnect.attempts")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return "activemq";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return transportProperties.getActivemq().isEnabled();
+    }
+
+    @Override
+    public void start() {
+        connectionPool.addFailureListener(this::onConnectionFailure);
+        // 브로커가 아직 떠 있지 않아도 애플리케이션 기동은 막지 않고 백그라운드에서 재시도한다.
+        // 기동 재시도도 재연결로 표시해 두어 그 사이 실패 알림이 두 번째 재시도 체인을 만들지 않게 한다
+        reconnecting.set(true);
+        reconnector.execute(() -> connect(0, 0L));
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        reconnector.shutdownNow();
+        closeConsumers();
+    }
+
+    private void onConnectionFailure(JMSException exception) {
+        if (stopped) {
+            return;
+        }
+        if (!reconnecting.compareAndSet(false, true)) {
+            // 진행 중인 재연결 체인에 맡기고, 두 번째 체인은 만들지 않는다
+            failedWhileReconnecting.set(true);
+            return;
+        }
+        long failedAt = System.nanoTime();
+        reconnector.execute(() -> connect(0, failedAt));
+    }
+
+    /**
+     * @param attempt  몇 번째 시도인지 (0부터)
+     * @param failedAt 연결이 끊긴 시각(nanoTime). 최초 기동이면 0
+     */
+    private void connect(int attempt, long failedAt) {
+        if (stopped) {
+            return;
+        }
+        try {
+            closeConsumers();
+            startConsumers();
+        } catch (JMSException | RuntimeException e) {
+            closeConsumers();
+            if (failedAt != 0L) {
+                reconnectAttempts.increment();
+            }
+            long delay = brokerProperties.getReconnect().delayMillis(attempt);
+            log.warn("EMS consumer start failed (attempt {}), retrying in {}ms: {}", attempt + 1, delay, e.getMessage());
+            reconnector.schedule(() -> connect(attempt + 1, failedAt), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        if (failedWhileReconnecting.getAndSet(false)) {
+            log.warn("EMS connection failed while consumers were restarting, restarting again");
+            long restartedAt = failedAt != 0L ? failedAt : System.nanoTime();
+            reconnector.execute(() -> connect(0, restartedAt));
+            return;
+        }
+        if (failedAt != 0L) {
+            long elapsed = System.nanoTime() - failedAt;
+            reconnectTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("EMS consumers reconnected after {}ms ({} attempts)", TimeUnit.NANOSECONDS.toMillis(elapsed), attempt + 1);
+        }
+        reconnecting.set(false);
+        // reconnecting 을 내리기 직전에 온 알림도 놓치지 않는다
+        if (failedWhileReconnecting.get() && !stopped && reconnecting.compareAndSet(false, true)) {
+            failedWhileReconnecting.set(false);
+            long failedAgainAt = System.nanoTime();
+            reconnector.execute(() -> connect(0, failedAgainAt));
+        }
+    }
+
+    private void startConsumers() throws JMSException {
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            for (int i = 0; i < route.getConsumers(); i++) {
+                Session session = connectionPool.createConsumerSession(ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
+                sessions.add(session);
+                if (route.getReactive().isEnabled()) {
+                    // 리스너 대신 수요만큼 pull 한다
+                    Destination destination = session.createQueue(EmsReactiveConsumer.pullDestination(route));
+                    reactiveConsumer.subscribe(route, session, session.createConsumer(destination));
+                    continue;
+                }
+                Destination destination = session.createQueue(route.getDestination());
+                messageListener.listen(route, session, session.createConsumer(destination));
+            }
+            log.info("EMS route started: name={}, destination={}, uri={}, consumers={}",
+                    route.getName(), route.getDestination(), route.getUri(), route.getConsumers());
+        }
+    }
+
+    private void closeConsumers() {
+        for (Session session : sessions) {
+            connectionPool.closeConsumerSession(session);
+        }
+        sessions.clear();
     }
 
 }
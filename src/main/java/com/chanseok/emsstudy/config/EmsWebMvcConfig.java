@@ -0,0 +1,164 @@
+package com.chanseok.emsstudy.config;
+
+import com.chanseok.emsstudy.codec.EmsCodecHttpMessageConverter;
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
+import com.chanseok.emsstudy.interceptor.LoggingInterceptor;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.web.EmsExactHandlerMapping;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.support.FormattingConversionService;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.method.annotation.RequestParamMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+import org.springframework.web.servlet.function.support.HandlerFunctionAdapter;
+import org.springframework.web.servlet.function.support.RouterFunctionMapping;
+import org.springframework.web.servlet.handler.BeanNameUrlHandlerMapping;
+import org.springframework.web.servlet.mvc.HttpRequestHandlerAdapter;
+import org.springframework.web.servlet.mvc.SimpleControllerHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.HttpEntityMethodProcessor;
+import org.springframework.web.servlet.mvc.method.annotation.PathVariableMethodArgumentResolver;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+import org.springframework.web.servlet.mvc.method.annotation.ServletRequestMethodArgumentResolver;
+import org.springframework.web.servlet.mvc.method.annotation.ServletResponseMethodArgumentResolver;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * EMS 전용으로 줄인 MVC 설정 (ems.dispatch.trimmed-mvc, 기본 켜짐). 끄면 {@link WebConfig} 의 {@code @EnableWebMvc} 기본 설정을 쓴다.
+ * <ul>
+ *     <li>컨버터 : 라우트 코덱({@link EmsCodecHttpMessageConverter}), String, Jackson(애플리케이션 ObjectMapper), Smile, CBOR 만</li>
+ *     <li>인자/반환값 : @RequestBody/@ResponseBody, HttpEntity, @PathVariable, @RequestParam, 서블릿 요청/응답만</li>
+ *     <li>뷰 : 뷰 리졸버를 등록하지 않는다 (body 를 돌려주지 않는 핸들러는 지원하지 않는다)</li>
+ *     <li>핸들러 매핑 : EMS 라우트 URI 는 {@link EmsExactHandlerMapping} 이 먼저 찾고, 나머지는 @RequestMapping 매핑이 찾는다.
+ *     bean 이름/함수형 라우터 매핑과 그 어댑터는 등록하지 않는다</li>
+ * </ul>
+ * {@code @RequestBody}/{@code @ResponseBody} advice({@code @ControllerAdvice} 의 RequestBodyAdvice/ResponseBodyAdvice)는 적용되지 않는다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "ems.dispatch", name = "trimmed-mvc", havingValue = "true", matchIfMissing = true)
+public class EmsWebMvcConfig extends WebMvcConfigurationSupport {
+    private final ObjectMapper objectMapper;
+    private final EmsCodecRegistry codecRegistry;
+
+    public EmsWebMvcConfig(ObjectMapper objectMapper, EmsCodecRegistry codecRegistry) {
+        this.objectMapper = objectMapper;
+        this.codecRegistry = codecRegistry;
+    }
+
+    @Bean
+    public EmsExactHandlerMapping emsExactHandlerMapping(
+            @Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping requestMappingHandlerMapping,
+            EmsRouteRegistry routeRegistry,
+            @Qualifier("mvcConversionService") FormattingConversionService conversionService,
+            @Qualifier("mvcResourceUrlProvider") ResourceUrlProvider resourceUrlProvider) {
+        Set<String> uris = new LinkedHashSet<>();
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            uris.add(route.getUri());
+            if (route.getBatch().getUri() != null) {
+                uris.add(route.getBatch().getUri());
+            }
+            uris.addAll(route.getFanOut().getUris());
+        }
+
+        EmsExactHandlerMapping mapping = new EmsExactHandlerMapping(requestMappingHandlerMapping, uris);
+        // @RequestMapping 매핑(0)보다 먼저 본다
+        mapping.setOrder(-1);
+        mapping.setInterceptors(getInterceptors(conversionService, resourceUrlProvider));
+        return mapping;
+    }
+
+    @Override
+    protected void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new LoggingInterceptor());
+    }
+
+    @Override
+    protected void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new EmsCodecHttpMessageConverter(codecRegistry));
+        converters.add(new StringHttpMessageConverter(StandardCharsets.UTF_8));
+        converters.add(new MappingJackson2HttpMessageConverter(objectMapper));
+        // Content-Type 프로퍼티로 Smile/CBOR body 를 보낸 메시지용 (EmsContentType)
+        converters.add(new MappingJackson2SmileHttpMessageConverter(
+                Jackson2ObjectMapperBuilder.smile().applicationContext(getApplicationContext()).build()));
+        converters.add(new MappingJackson2CborHttpMessageConverter(
+                Jackson2ObjectMapperBuilder.cbor().applicationContext(getApplicationContext()).build()));
+    }
+
+    @Override
+    protected RequestMappingHandlerAdapter createRequestMappingHandlerAdapter() {
+        return new EmsRequestMappingHandlerAdapter();
+    }
+
+    @Override
+    public BeanNameUrlHandlerMapping beanNameHandlerMapping(FormattingConversionService conversionService, ResourceUrlProvider resourceUrlProvider) {
+        return null;
+    }
+
+    @Override
+    public RouterFunctionMapping routerFunctionMapping(FormattingConversionService conversionService, ResourceUrlProvider resourceUrlProvider) {
+        return null;
+    }
+
+    @Override
+    public HandlerFunctionAdapter handlerFunctionAdapter() {
+        return null;
+    }
+
+    @Override
+    public HttpRequestHandlerAdapter httpRequestHandlerAdapter() {
+        return null;
+    }
+
+    @Override
+    public SimpleControllerHandlerAdapter simpleControllerHandlerAdapter() {
+        return null;
+    }
+
+    /**
+     * 기본 인자 resolver(30여 개)와 반환값 handler(15개) 대신 JSON body 를 주고받는 데 필요한 것만 쓴다.
+     * resolver 는 순서대로 supportsParameter 를 물어보므로(결과는 캐시) 적을수록 첫 요청과 캐시 조회가 가볍다.
+     */
+    private static class EmsRequestMappingHandlerAdapter extends RequestMappingHandlerAdapter {
+        private ContentNegotiationManager contentNegotiationManager;
+
+        @Override
+        public void setContentNegotiationManager(ContentNegotiationManager contentNegotiationManager) {
+            super.setContentNegotiationManager(contentNegotiationManager);
+            this.contentNegotiationManager = contentNegotiationManager;
+        }
+
+        @Override
+        public void afterPropertiesSet() {
+            List<HttpMessageConverter<?>> converters = getMessageConverters();
+            RequestResponseBodyMethodProcessor bodyProcessor = new RequestResponseBodyMethodProcessor(converters, contentNegotiationManager);
+            HttpEntityMethodProcessor entityProcessor = new HttpEntityMethodProcessor(converters, contentNegotiationManager);
+            setArgumentResolvers(List.of(
+                    bodyProcessor,
+                    entityProcessor,
+                    new PathVariableMethodArgumentResolver(),
+                    new RequestParamMethodArgumentResolver(false),
+                    new ServletRequestMethodArgumentResolver(),
+                    new ServletResponseMethodArgumentResolver()));
+            setReturnValueHandlers(List.of(entityProcessor, bodyProcessor));
+            super.afterPropertiesSet();
+        }
+    }
+}
@@ -1,17 +1,38 @@
 package com.chanseok.emsstudy.config;
 
+import com.chanseok.emsstudy.codec.EmsCodecHttpMessageConverter;
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
 import com.chanseok.emsstudy.interceptor.LoggingInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
+/**
+ * {@code @EnableWebMvc} 기본 MVC 설정. ems.dispatch.trimmed-mvc 를 끄면 {@link EmsWebMvcConfig} 대신 쓴다.
+ */
 @EnableWebMvc
 @Configuration
+@ConditionalOnProperty(prefix = "ems.dispatch", name = "trimmed-mvc", havingValue = "false")
 public class WebConfig implements WebMvcConfigurer {
+    private final EmsCodecRegistry codecRegistry;
+
+    public WebConfig(EmsCodecRegistry codecRegistry) {
+        this.codecRegistry = codecRegistry;
+    }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(new LoggingInterceptor());
     }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // EMS 라우트 요청은 기본 JSON 컨버터보다 먼저 라우트 코덱이 처리한다
+        converters.add(0, new EmsCodecHttpMessageConverter(codecRegistry));
+    }
 }
@@ -0,0 +1,419 @@
+package com.chanseok.emsstudy.connection;
+
+import com.chanseok.emsstudy.config.EmsBrokerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQPrefetchPolicy;
+import org.apache.activemq.transport.TransportListener;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 브로커 커넥션 풀.
+ * 컨슈머, 응답(reply) 프로듀서, {@link com.chanseok.emsstudy.publisher.EmsPublisher} 가 모두 이 풀의 커넥션을 공유한다.
+ * <ul>
+ *     <li>커넥션: 최대 maxConnections 개. 처음 필요할 때 만들고, 끊어지면 헬스체크에서 교체한다.</li>
+ *     <li>프로듀서용 세션: 커넥션당 sessionsPerConnection 개까지 만들어 대여/반납한다.</li>
+ *     <li>컨슈머용 세션: 대여하지 않고 라운드로빈으로 고른 커넥션에 계속 붙어 있는다.</li>
+ * </ul>
+ * failover 전송을 쓰면 끊긴 동안(transportInterupted ~ transportResumed)을 ems.broker.outage 로 기록하고,
+ * failover 가 포기하거나 failover 없이 끊기면 등록된 실패 리스너에 알린다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsConnectionPool implements InitializingBean, DisposableBean {
+    private final EmsBrokerProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 커넥션 슬롯 (null 이면 아직 만들지 않았거나 교체 대기 중).
+     * 연결은 락 밖에서 맺고 CAS 로 슬롯에 올린다. 브로커가 내려가 연결이 오래 걸려도 상태 조회나 다른 슬롯은 막히지 않는다.
+     */
+    private AtomicReferenceArray<ActiveMQConnection> connections;
+
+    private final BlockingQueue<EmsPooledSession> idleSessions = new LinkedBlockingQueue<>();
+    private final BlockingQueue<EmsPooledSession> idleTransactedSessions = new LinkedBlockingQueue<>();
+
+    /** 프로듀서용 세션 총 개수 제한 */
+    private Semaphore sessionPermits;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger borrowedSessions = new AtomicInteger();
+    private final AtomicInteger consumerSessions = new AtomicInteger();
+
+    /** 커넥션이 복구 불가능하게 끊겼을 때 알림을 받을 리스너 */
+    private final List<Consumer<JMSException>> failureListeners = new CopyOnWriteArrayList<>();
+
+    private ActiveMQConnectionFactory factory;
+    private ScheduledExecutorService healthChecker;
+    private Timer outageTimer;
+    private Counter interruptionCounter;
+    private volatile boolean closed = false;
+
+    @Override
+    public void afterPropertiesSet() {
+        factory = createConnectionFactory();
+        outageTimer = Timer.builder("ems.broker.outage")
+                .description("Time between a transport interruption and its resumption")
+                .register(meterRegistry);
+        interruptionCounter = Counter.builder("ems.broker.interruptions")
+                .description("Transport interruptions seen by pooled connections")
+                .register(meterRegistry);
+        connections = new AtomicReferenceArray<>(properties.getMaxConnections());
+        sessionPermits = new Semaphore(properties.getMaxConnections() * properties.getSessionsPerConnection());
+
+        long interval = properties.getHealthCheckInterval().toMillis();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ems-connection-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 프로듀서용 세션을 대여한다. 사용 후에는 반드시 {@link #release} 또는 {@link #invalidate} 를 호출해야 한다.
+     */
+    public EmsPooledSession borrowSession(boolean transacted) {
+        BlockingQueue<EmsPooledSession> idle = transacted ? idleTransactedSessions : idleSessions;
+        BlockingQueue<EmsPooledSession> other = transacted ? idleSessions : idleTransactedSessions;
+        long deadline = System.nanoTime() + properties.getBorrowTimeout().toNanos();
+
+        try {
+            while (true) {
+                EmsPooledSession session = idle.poll();
+                if (session != null) {
+                    if (session.isValid()) {
+                        borrowedSessions.incrementAndGet();
+                        return session;
+                    }
+                    destroy(session);
+                    continue;
+                }
+
+                if (sessionPermits.tryAcquire()) {
+                    try {
+                        session = createSession(transacted);
+                    } catch (JMSException | RuntimeException e) {
+                        sessionPermits.release();
+                        throw new RuntimeException("EMS Session Create Failed", e);
+                    }
+                    borrowedSessions.incrementAndGet();
+                    return session;
+                }
+
+                // 반대 종류의 놀고 있는 세션이 있으면 닫고 그 자리를 쓴다
+                EmsPooledSession spare = other.poll();
+                if (spare != null) {
+                    destroy(spare);
+                    continue;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("No EMS session available within " + properties.getBorrowTimeout());
+                }
+                session = idle.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+                if (session != null) {
+                    idle.offer(session);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for EMS session", e);
+        }
+    }
+
+    public void release(EmsPooledSession session) {
+        borrowedSessions.decrementAndGet();
+        if (closed || !session.isValid()) {
+            destroy(session);
+            return;
+        }
+        (session.isTransacted() ? idleTransactedSessions : idleSessions).offer(session);
+    }
+
+    /**
+     * 오류가 난 세션은 풀로 돌려보내지 않고 닫는다.
+     */
+    public void invalidate(EmsPooledSession session) {
+        borrowedSessions.decrementAndGet();
+        destroy(session);
+    }
+
+    /**
+     * 컨슈머용 세션을 만든다. 풀에 반납하지 않으며 커넥션이 닫힐 때 같이 닫힌다.
+     */
+    public Session createConsumerSession(int acknowledgeMode) throws JMSException {
+        Session session = nextConnection().createSession(false, acknowledgeMode);
+        consumerSessions.incrementAndGet();
+        return session;
+    }
+
+    public void closeConsumerSession(Session session) {
+        consumerSessions.decrementAndGet();
+        try {
+            session.close();
+        } catch (JMSException e) {
+            log.debug("EMS consumer session close failed", e);
+        }
+    }
+
+    /**
+     * 커넥션이 복구 불가능하게 끊기면(ExceptionListener) 호출된다.
+     */
+    public void addFailureListener(Consumer<JMSException> listener) {
+        failureListeners.add(listener);
+    }
+
+    public EmsConnectionPoolStatus getStatus() {
+        int open = 0;
+        int failed = 0;
+        for (int i = 0; i < connections.length(); i++) {
+            ActiveMQConnection connection = connections.get(i);
+            if (connection == null) {
+                continue;
+            }
+            if (isHealthy(connection)) {
+                open++;
+            } else {
+                failed++;
+            }
+        }
+        return new EmsConnectionPoolStatus(connections.length(), open, failed,
+                idleSessions.size() + idleTransactedSessions.size(), borrowedSessions.get(), consumerSessions.get());
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        healthChecker.shutdownNow();
+        idleSessions.clear();
+        idleTransactedSessions.clear();
+        for (int i = 0; i < connections.length(); i++) {
+            closeQuietly(connections.getAndSet(i, null));
+        }
+    }
+
+    private EmsPooledSession createSession(boolean transacted) throws JMSException {
+        ActiveMQConnection connection = nextConnection();
+        Session session = connection.createSession(transacted, transacted ? Session.SESSION_TRANSACTED : Session.AUTO_ACKNOWLEDGE);
+        return new EmsPooledSession(connection, session, transacted);
+    }
+
+    /**
+     * 라운드로빈으로 커넥션을 고른다. 슬롯이 비었거나 끊어진 커넥션이면 새로 연다.
+     */
+    private ActiveMQConnection nextConnection() throws JMSException {
+        int index = Math.floorMod(cursor.getAndIncrement(), connections.length());
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("EMS connection pool is already closed");
+            }
+            ActiveMQConnection current = connections.get(index);
+            if (current != null && isHealthy(current)) {
+                return current;
+            }
+            ActiveMQConnection opened = replace(index, current);
+            if (opened != null) {
+                return opened;
+            }
+        }
+    }
+
+    /**
+     * 슬롯의 커넥션이 아직 expected 이면 새 커넥션으로 바꾼다. 연결은 락 없이 맺는다.
+     *
+     * @return 새로 올린 커넥션, 그 사이 다른 스레드가 먼저 바꿨으면 null (연 커넥션은 닫는다)
+     */
+    private ActiveMQConnection replace(int index, ActiveMQConnection expected) throws JMSException {
+        ActiveMQConnection opened = openConnection();
+        if (!connections.compareAndSet(index, expected, opened)) {
+            closeQuietly(opened);
+            return null;
+        }
+        closeQuietly(expected);
+        if (closed) {
+            // destroy 가 슬롯을 비운 뒤에 올렸으면 직접 닫는다
+            connections.compareAndSet(index, opened, null);
+            closeQuietly(opened);
+            throw new IllegalStateException("EMS connection pool is already closed");
+        }
+        log.info("EMS connection opened: slot={}, clientId={}", index, opened.getClientID());
+        return opened;
+    }
+
+    private ActiveMQConnection openConnection() throws JMSException {
+        ActiveMQConnection connection = (ActiveMQConnection) factory.createConnection();
+        try {
+            connection.addTransportListener(new OutageRecorder());
+            connection.setExceptionListener(this::onConnectionFailure);
+            connection.start();
+        } catch (JMSException | RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+        return connection;
+    }
+
+    private void onConnectionFailure(JMSException exception) {
+        if (closed) {
+            return;
+        }
+        log.warn("EMS connection failed: {}", exception.getMessage());
+        for (Consumer<JMSException> listener : failureListeners) {
+            listener.accept(exception);
+        }
+    }
+
+    /**
+     * 끊어진 커넥션을 닫고 다시 연다. 다시 여는 데 실패하면 다음 사용 시점에 재시도한다.
+     */
+    private void checkHealth() {
+        for (int i = 0; i < connections.length(); i++) {
+            ActiveMQConnection connection = connections.get(i);
+            if (connection == null || isHealthy(connection)) {
+                continue;
+            }
+            log.warn("EMS connection unhealthy, replacing: slot={}", i);
+            try {
+                replace(i, connection);
+            } catch (JMSException | RuntimeException e) {
+                log.warn("EMS connection replace failed: slot={}", i, e);
+            }
+        }
+    }
+
+    /**
+     * 설정으로 커넥션 팩토리를 만든다. (테스트에서 브로커 없이 커넥션을 바꿔 끼울 수 있도록 package-private)
+     */
+    ActiveMQConnectionFactory createConnectionFactory() {
+        ActiveMQConnectionFactory connectionFactory =
+                new ActiveMQConnectionFactory(properties.getUsername(), properties.getPassword(), brokerUrl());
+        connectionFactory.setUseAsyncSend(properties.isAsyncSend());
+        connectionFactory.setOptimizeAcknowledge(properties.isOptimizeAcknowledge());
+
+        ActiveMQPrefetchPolicy prefetchPolicy = new ActiveMQPrefetchPolicy();
+        prefetchPolicy.setQueuePrefetch(properties.getPrefetch());
+        connectionFactory.setPrefetchPolicy(prefetchPolicy);
+        return connectionFactory;
+    }
+
+    /**
+     * wire format 옵션은 URL 쿼리로만 지정할 수 있어서 설정값을 각 브로커 URL 뒤에 붙이고,
+     * failover 를 쓰면 failover:(...) 로 감싸 재연결 옵션을 붙인다. 이미 failover: 로 시작하면 그대로 쓴다.
+     */
+    private String brokerUrl() {
+        String url = properties.getUrl();
+        if (url.startsWith("failover:")) {
+            return url;
+        }
+        String transports = Arrays.stream(url.split(","))
+                .map(String::trim)
+                .map(this::withWireFormat)
+                .collect(Collectors.joining(","));
+
+        EmsBrokerProperties.Reconnect reconnect = properties.getReconnect();
+        if (!reconnect.isFailover()) {
+            return transports;
+        }
+        return "failover:(" + transports + ")"
+                + "?initialReconnectDelay=" + reconnect.getInitialDelay().toMillis()
+                + "&maxReconnectDelay=" + reconnect.getMaxDelay().toMillis()
+                + "&useExponentialBackOff=true"
+                + "&reconnectDelayExponent=" + reconnect.getMultiplier()
+                + "&maxReconnectAttempts=" + reconnect.getMaxAttempts()
+                + "&timeout=" + reconnect.getSendTimeout().toMillis();
+    }
+
+    private String withWireFormat(String url) {
+        if (url.contains("wireFormat.tightEncodingEnabled")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "wireFormat.tightEncodingEnabled=" + properties.isTightEncoding();
+    }
+
+    private void destroy(EmsPooledSession session) {
+        try {
+            session.close();
+        } catch (JMSException e) {
+            log.debug("EMS session close failed", e);
+        } finally {
+            sessionPermits.release();
+        }
+    }
+
+    private static boolean isHealthy(ActiveMQConnection connection) {
+        return !connection.isClosed() && !connection.isTransportFailed();
+    }
+
+    private static void closeQuietly(ActiveMQConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (JMSException e) {
+            log.debug("EMS connection close failed", e);
+        }
+    }
+
+    /**
+     * failover 전송이 끊겼다가 다시 붙을 때까지의 시간을 기록한다.
+     * 세션/컨슈머/prefetch 상태는 failover 전송이 다시 붙으면서 그대로 복원한다.
+     */
+    private class OutageRecorder implements TransportListener {
+        private volatile long interruptedAt = 0L;
+
+        @Override
+        public void onCommand(Object command) {
+        }
+
+        @Override
+        public void onException(IOException error) {
+        }
+
+        @Override
+        public void transportInterupted() {
+            interruptedAt = System.nanoTime();
+            interruptionCounter.increment();
+            log.warn("EMS transport interrupted, waiting for failover reconnect");
+        }
+
+        @Override
+        public void transportResumed() {
+            long startedAt = interruptedAt;
+            if (startedAt == 0L) {
+                return;
+            }
+            interruptedAt = 0L;
+            long outage = System.nanoTime() - startedAt;
+            outageTimer.record(outage, TimeUnit.NANOSECONDS);
+            log.info("EMS transport resumed after {}ms", TimeUnit.NANOSECONDS.toMillis(outage));
+        }
+    }
+}
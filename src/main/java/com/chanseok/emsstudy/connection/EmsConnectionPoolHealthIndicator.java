@@ -0,0 +1,39 @@
+package com.chanseok.emsstudy.connection;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * /actuator/health 에 브로커 커넥션 풀 상태를 노출한다.
+ * 아직 커넥션을 하나도 열지 않았으면 UNKNOWN, 끊어진 커넥션이 있으면 DOWN.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmsConnectionPoolHealthIndicator implements HealthIndicator {
+    private final EmsConnectionPool connectionPool;
+
+    @Override
+    public Health health() {
+        EmsConnectionPoolStatus status = connectionPool.getStatus();
+
+        Health.Builder builder;
+        if (status.getOpenConnections() == 0 && status.getFailedConnections() == 0) {
+            builder = Health.unknown();
+        } else if (status.getFailedConnections() > 0) {
+            builder = Health.down();
+        } else {
+            builder = Health.up();
+        }
+
+        return builder
+                .withDetail("maxConnections", status.getMaxConnections())
+                .withDetail("openConnections", status.getOpenConnections())
+                .withDetail("failedConnections", status.getFailedConnections())
+                .withDetail("idleSessions", status.getIdleSessions())
+                .withDetail("borrowedSessions", status.getBorrowedSessions())
+                .withDetail("consumerSessions", status.getConsumerSessions())
+                .build();
+    }
+}
@@ -0,0 +1,29 @@
+package com.chanseok.emsstudy.connection;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@link EmsConnectionPool} 상태 스냅샷.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EmsConnectionPoolStatus {
+    /** 최대 커넥션 수 */
+    private final int maxConnections;
+
+    /** 정상 커넥션 수 */
+    private final int openConnections;
+
+    /** 끊어졌지만 아직 교체되지 않은 커넥션 수 */
+    private final int failedConnections;
+
+    /** 풀에서 놀고 있는 세션 수 */
+    private final int idleSessions;
+
+    /** 대여 중인 세션 수 */
+    private final int borrowedSessions;
+
+    /** 컨슈머 세션 수 */
+    private final int consumerSessions;
+}
@@ -0,0 +1,70 @@
+package com.chanseok.emsstudy.connection;
+
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.ActiveMQMessageProducer;
+
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link EmsConnectionPool} 에서 대여하는 세션.
+ * 세션마다 목적지를 지정하지 않은 프로듀서 하나와 큐 객체를 캐싱한다. 한 번에 한 스레드만 사용한다.
+ */
+public class EmsPooledSession {
+    /** 세션이 속한 커넥션 */
+    private final ActiveMQConnection connection;
+
+    private final Session session;
+
+    private final boolean transacted;
+
+    /** 익명 프로듀서 (최초 사용 시 생성) */
+    private ActiveMQMessageProducer producer;
+
+    /** 큐 이름 -> Queue 캐시 */
+    private final Map<String, Queue> queues = new HashMap<>();
+
+    EmsPooledSession(ActiveMQConnection connection, Session session, boolean transacted) {
+        this.connection = connection;
+        this.session = session;
+        this.transacted = transacted;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public boolean isTransacted() {
+        return transacted;
+    }
+
+    public ActiveMQMessageProducer getProducer() throws JMSException {
+        if (producer == null) {
+            producer = (ActiveMQMessageProducer) session.createProducer(null);
+        }
+        return producer;
+    }
+
+    public Queue getQueue(String name) throws JMSException {
+        Queue queue = queues.get(name);
+        if (queue == null) {
+            queue = session.createQueue(name);
+            queues.put(name, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * 커넥션이 닫히거나 전송 계층이 실패했으면 더 이상 사용할 수 없다.
+     */
+    boolean isValid() {
+        return !connection.isClosed() && !connection.isTransportFailed();
+    }
+
+    void close() throws JMSException {
+        session.close();
+    }
+}
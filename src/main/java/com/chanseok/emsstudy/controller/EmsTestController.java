@@ -1,20 +1,32 @@
 package com.chanseok.emsstudy.controller;
 
+import com.chanseok.emsstudy.invoke.EmsDirectRoute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/ems/test")
 public class EmsTestController {
 
+    @EmsDirectRoute
     @PostMapping
     public Map<String, Object> test(@RequestBody Map<String, Object> message) {
         System.out.println("message = " + message);
         return Map.of("status", "success", "received", message);
     }
 
+    @EmsDirectRoute
+    @PostMapping("/batch")
+    public List<Map<String, Object>> testBatch(@RequestBody List<Map<String, Object>> messages) {
+        return messages.stream()
+                .map(message -> Map.<String, Object>of("status", "success", "received", message))
+                .collect(Collectors.toList());
+    }
+
 }
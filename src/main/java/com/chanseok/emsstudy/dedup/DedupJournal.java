@@ -0,0 +1,101 @@
+package com.chanseok.emsstudy.dedup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+
+/**
+ * 처리 완료 키를 고정 크기 슬롯의 링으로 기록하는 memory-mapped 파일.
+ * <pre>
+ * header : magic(int) | capacity(int) | next(long)
+ * slot   : expiresAt(long) | keyLength(short) | key(UTF-8, 최대 MAX_KEY_BYTES)
+ * </pre>
+ * 쓰기는 OS 페이지 캐시에만 반영되므로 프로세스가 죽어도 남고, 장비가 죽으면 마지막 일부가 사라질 수 있다.
+ * 파일 하나를 MappedByteBuffer 하나로 매핑하므로 전체 크기는 2GB 를 넘을 수 없다({@link #MAX_CAPACITY} 슬롯).
+ */
+class DedupJournal implements Closeable {
+    static final int MAX_KEY_BYTES = 118;
+
+    private static final int MAGIC = 0x454D5344; // "EMSD"
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 8 + 2 + MAX_KEY_BYTES;
+
+    /** MappedByteBuffer 하나(int 인덱스)에 담을 수 있는 최대 슬롯 수 */
+    static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_BYTES) / SLOT_BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private long next;
+
+    DedupJournal(Path file, int capacity) throws IOException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Dedup journal capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != capacity) {
+            // 새 파일이거나 용량이 바뀐 파일은 비우고 다시 시작한다
+            for (int i = 0; i < capacity; i++) {
+                buffer.putLong(slotOffset(i), 0L);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            buffer.putLong(8, 0L);
+        }
+        this.next = buffer.getLong(8);
+    }
+
+    synchronized void append(String key, long expiresAt) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int offset = slotOffset((int) (next % capacity));
+        buffer.putLong(offset, expiresAt);
+        buffer.putShort(offset + 8, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 10 + i, bytes[i]);
+        }
+        buffer.putLong(8, ++next);
+    }
+
+    /**
+     * 아직 만료되지 않은 키를 오래된 순서로 넘겨준다.
+     */
+    synchronized void forEachLive(long now, BiConsumer<String, Long> consumer) {
+        long first = Math.max(0, next - capacity);
+        byte[] bytes = new byte[MAX_KEY_BYTES];
+        for (long sequence = first; sequence < next; sequence++) {
+            int offset = slotOffset((int) (sequence % capacity));
+            long expiresAt = buffer.getLong(offset);
+            if (expiresAt <= now) {
+                continue;
+            }
+            int length = buffer.getShort(offset + 8);
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + 10 + i);
+            }
+            consumer.accept(new String(bytes, 0, length, StandardCharsets.UTF_8), expiresAt);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static int slotOffset(int slot) {
+        // capacity 를 MAX_CAPACITY 로 막아 두었으므로 int 로 줄여도 넘치지 않는다
+        return Math.toIntExact(HEADER_BYTES + (long) slot * SLOT_BYTES);
+    }
+}
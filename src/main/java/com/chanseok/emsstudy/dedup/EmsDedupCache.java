@@ -0,0 +1,166 @@
+package com.chanseok.emsstudy.dedup;
+
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.utility.LruTtlCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * 멱등 컨슈머용 중복 제거 캐시.
+ * 처리에 성공한 메시지의 키(JMSMessageID 또는 payload 의 업무 키)를 ttl 동안 기억하고,
+ * 브로커 failover/rollback 으로 재전달된 같은 키는 DispatcherServlet 을 타기 전에 걸러낸다.
+ * <ul>
+ *     <li>캐시: {@link LruTtlCache} (LRU + TTL), 조회/기록 모두 O(1)</li>
+ *     <li>블룸 필터(옵션): 처음 보는 키는 세그먼트 락 없이 바로 통과</li>
+ *     <li>저널(옵션): memory-mapped 파일에 키를 남겨 재기동 후에도 중복 구간을 유지</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class EmsDedupCache implements DisposableBean {
+    private final EmsDedupProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final LruTtlCache<String, Boolean> processed;
+    private final RotatingBloomFilter bloomFilter;
+    private final DedupJournal journal;
+    private final Counter duplicateCounter;
+
+    public EmsDedupCache(EmsDedupProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) throws IOException {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+
+        this.processed = new LruTtlCache<>(properties.getMaxEntries(), properties.getSegments(), properties.getTtl().toMillis());
+
+        EmsDedupProperties.Bloom bloom = properties.getBloom();
+        this.bloomFilter = properties.isEnabled() && bloom.isEnabled()
+                ? new RotatingBloomFilter(bloom.getExpectedInsertions(), bloom.getFalsePositiveRate(), properties.getTtl().toMillis())
+                : null;
+
+        EmsDedupProperties.Persistence persistence = properties.getPersistence();
+        this.journal = properties.isEnabled() && persistence.isEnabled()
+                ? new DedupJournal(Paths.get(persistence.getFile()), persistence.getCapacity())
+                : null;
+        if (journal != null) {
+            restore();
+        }
+
+        this.duplicateCounter = Counter.builder("ems.dedup.duplicates")
+                .description("Messages skipped because their key was already processed")
+                .register(meterRegistry);
+        Gauge.builder("ems.dedup.size", this, EmsDedupCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 메시지의 중복 판단 키를 만든다. 라우트 이름을 앞에 붙여 라우트끼리 키가 섞이지 않게 한다.
+     *
+     * @return 중복 제거를 쓰지 않거나 키를 찾을 수 없으면 null
+     */
+    public String resolveKey(EmsRoute route, String messageId, String payload) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+
+        String key;
+        if (properties.getKeySource() == EmsDedupProperties.KeySource.PAYLOAD) {
+            key = payloadKey(payload);
+        } else {
+            key = messageId;
+        }
+        if (key == null) {
+            return null;
+        }
+        return normalize(route.getName() + ':' + key);
+    }
+
+    /**
+     * 이미 처리한 키면 true. true 를 반환할 때마다 중복 카운터가 증가한다.
+     */
+    public boolean isDuplicate(String key) {
+        if (bloomFilter != null && !bloomFilter.mightContain(key)) {
+            return false;
+        }
+
+        if (processed.get(key) == null) {
+            return false;
+        }
+        duplicateCounter.increment();
+        return true;
+    }
+
+    /**
+     * 처리에 성공한 키를 기록한다.
+     */
+    public void markProcessed(String key) {
+        long expiresAt = System.currentTimeMillis() + properties.getTtl().toMillis();
+        put(key, expiresAt);
+        if (journal != null) {
+            journal.append(key, expiresAt);
+        }
+    }
+
+    public int size() {
+        return processed.size();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void restore() {
+        int[] restored = {0};
+        journal.forEachLive(System.currentTimeMillis(), (key, expiresAt) -> {
+            put(key, expiresAt);
+            restored[0]++;
+        });
+        log.info("EMS dedup window restored: {} keys from {}", restored[0], properties.getPersistence().getFile());
+    }
+
+    private void put(String key, long expiresAt) {
+        processed.put(key, Boolean.TRUE, expiresAt);
+        if (bloomFilter != null) {
+            bloomFilter.put(key);
+        }
+    }
+
+    private String payloadKey(String payload) {
+        // 바이너리 body 에서는 키를 꺼내지 않는다
+        if (payload == null) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(payload).at(properties.getPayloadKey());
+            return node.isMissingNode() || node.isNull() ? null : node.asText();
+        } catch (JsonProcessingException e) {
+            log.debug("EMS dedup key not found in payload: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 저널 슬롯에 들어가지 않는 긴 키는 MD5 기반 UUID 로 줄인다.
+     */
+    private static String normalize(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= DedupJournal.MAX_KEY_BYTES) {
+            return key;
+        }
+        return "md5:" + UUID.nameUUIDFromBytes(bytes);
+    }
+}
@@ -0,0 +1,76 @@
+package com.chanseok.emsstudy.dedup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * {@link EmsDedupCache} 설정.
+ * application.yml 의 {@code ems.dedup.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.dedup")
+public class EmsDedupProperties {
+
+    /** 중복 제거 사용 여부 */
+    private boolean enabled = false;
+
+    /** 중복 판단 키 */
+    private KeySource keySource = KeySource.MESSAGE_ID;
+
+    /** keySource 가 PAYLOAD 일 때 키를 꺼낼 JSON Pointer (예: /orderId) */
+    private String payloadKey = "/id";
+
+    /** 캐시에 보관할 최대 키 개수 */
+    private int maxEntries = 100_000;
+
+    /** 처리 완료 키를 기억하는 시간 */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /** 동시성을 위해 캐시를 나누는 세그먼트 수 */
+    private int segments = 16;
+
+    /** 블룸 필터 설정 */
+    private Bloom bloom = new Bloom();
+
+    /** 재기동 후에도 중복 구간을 유지하기 위한 파일 설정 */
+    private Persistence persistence = new Persistence();
+
+    public enum KeySource {
+        /** JMSMessageID */
+        MESSAGE_ID,
+        /** payload 의 JSON 필드 */
+        PAYLOAD
+    }
+
+    @Getter
+    @Setter
+    public static class Bloom {
+
+        /** 캐시 앞단에 블룸 필터를 둘지 여부. 처음 보는 키는 캐시 락 없이 통과시킨다 */
+        private boolean enabled = false;
+
+        /** ttl 동안 들어올 것으로 예상되는 키 개수 */
+        private long expectedInsertions = 1_000_000;
+
+        /** 허용 오탐률 */
+        private double falsePositiveRate = 0.01;
+    }
+
+    @Getter
+    @Setter
+    public static class Persistence {
+
+        /** memory-mapped 저널 파일 사용 여부 */
+        private boolean enabled = false;
+
+        /** 저널 파일 경로 */
+        private String file = "./data/ems-dedup.journal";
+
+        /** 저널 슬롯 개수 (가장 오래된 키부터 덮어쓴다) */
+        private int capacity = 100_000;
+    }
+}
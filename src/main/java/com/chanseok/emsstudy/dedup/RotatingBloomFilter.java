@@ -0,0 +1,101 @@
+package com.chanseok.emsstudy.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 두 장을 번갈아 쓰는 블룸 필터.
+ * 블룸 필터는 키를 지울 수 없으므로 window 마다 현재 필터를 이전 필터로 밀어내고 새 필터를 만든다.
+ * 최근 window ~ 2*window 사이에 넣은 키는 항상 mightContain == true 이다.
+ */
+class RotatingBloomFilter {
+    private final int bits;
+    private final int hashes;
+    private final long windowMillis;
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private volatile long rotatedAt;
+
+    RotatingBloomFilter(long expectedInsertions, double falsePositiveRate, long windowMillis) {
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 64));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+        this.windowMillis = windowMillis;
+        this.current = new AtomicLongArray((bits + 63) >>> 6);
+        this.previous = new AtomicLongArray((bits + 63) >>> 6);
+        this.rotatedAt = System.currentTimeMillis();
+    }
+
+    void put(String key) {
+        rotateIfNeeded();
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        AtomicLongArray words = current;
+        for (int i = 1; i <= hashes; i++) {
+            int bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long value;
+            while (((value = words.get(word)) & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                // CAS 재시도
+            }
+        }
+    }
+
+    boolean mightContain(String key) {
+        rotateIfNeeded();
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return contains(current, h1, h2) || contains(previous, h1, h2);
+    }
+
+    private boolean contains(AtomicLongArray words, int h1, int h2) {
+        for (int i = 1; i <= hashes; i++) {
+            int bit = index(h1 + i * h2);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combined) {
+        return (combined & Integer.MAX_VALUE) % bits;
+    }
+
+    private void rotateIfNeeded() {
+        if (System.currentTimeMillis() - rotatedAt < windowMillis) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now - rotatedAt < windowMillis) {
+                return;
+            }
+            previous = current;
+            current = new AtomicLongArray(previous.length());
+            rotatedAt = now;
+        }
+    }
+
+    /**
+     * FNV-1a 64 + murmur3 finalizer
+     */
+    private static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,107 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 메시지를 {@link EmsDispatchPipeline} 에 넣기 전에 마감, 과부하를 확인한다.
+ * <ul>
+ *     <li>마감(JMSExpiration / 라우트의 deadlineProperty)이 지났으면 expired 큐로 옮기고 ack 한다</li>
+ *     <li>레인 대기 시간이 라우트의 maxQueueDelay 를 넘으면 overload 정책에 따라 버리거나(SHED) 미룬다(DEFER)</li>
+ *     <li>배치를 켠 라우트는 {@link EmsBatcher} 가 묶음으로 만든 뒤 레인에 넣는다</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class EmsAdmissionControl {
+    private final EmsDispatchPipeline dispatchPipeline;
+    private final EmsDeadLetterSender deadLetterSender;
+    private final EmsRetryScheduler retryScheduler;
+    private final EmsBatcher batcher;
+    private final MeterRegistry meterRegistry;
+
+    public EmsAdmissionControl(EmsDispatchPipeline dispatchPipeline, EmsDeadLetterSender deadLetterSender,
+                               EmsRetryScheduler retryScheduler, EmsBatcher batcher,
+                               MeterRegistry meterRegistry) {
+        this.dispatchPipeline = dispatchPipeline;
+        this.deadLetterSender = deadLetterSender;
+        this.retryScheduler = retryScheduler;
+        this.batcher = batcher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void admit(EmsDelivery delivery) {
+        admit(delivery, false);
+    }
+
+    /**
+     * @param deferred 미루거나 배치했다가 다시 들어온 메시지인지 여부.
+     *                 이때는 수신 스레드가 아니라 재시도 스케줄러 스레드에서 호출되므로 레인에서 기다리지 않고, 레인이 차 있으면 다시 미룬다
+     */
+    private void admit(EmsDelivery delivery, boolean deferred) {
+        EmsRoute route = delivery.getRoute();
+        if (delivery.isExpired(System.currentTimeMillis())) {
+            meterRegistry.counter("ems.dispatch.expired", "route", route.getName(), "stage", "admission").increment();
+            if (deadLetterSender.sendExpired(delivery)) {
+                acknowledge(delivery);
+            } else {
+                recover(delivery);
+            }
+            return;
+        }
+
+        EmsRoute.Overload overload = route.getOverload();
+        if (overload.getPolicy() != EmsRoute.Overload.Policy.NONE
+                && dispatchPipeline.queueDelayNanos(delivery) > overload.getMaxQueueDelay().toNanos()) {
+            if (overload.getPolicy() == EmsRoute.Overload.Policy.SHED) {
+                meterRegistry.counter("ems.dispatch.shed", "route", route.getName()).increment();
+                log.debug("EMS message shed: route={}, messageId={}", route.getName(), delivery.getMessageId());
+                acknowledge(delivery);
+            } else {
+                defer(delivery);
+            }
+            return;
+        }
+
+        // 배치 라우트는 묶음이 만들어지면 묶음으로 다시 들어온다
+        if (batcher.add(delivery, this::admit)) {
+            return;
+        }
+
+        if (!deferred) {
+            dispatchPipeline.submit(delivery);
+        } else if (!dispatchPipeline.offer(delivery)) {
+            defer(delivery);
+        }
+    }
+
+    private void defer(EmsDelivery delivery) {
+        EmsRoute route = delivery.getRoute();
+        meterRegistry.counter("ems.dispatch.deferred", "route", route.getName()).increment();
+        // 미뤄 둔 메시지는 ack 되지 않았으므로 종료되면 브로커가 다시 전달한다.
+        // 다시 들어올 때 expired 큐 전송(블로킹)을 할 수 있으므로 휠 스레드가 아닌 handoff 스레드에서 받는다
+        retryScheduler.scheduleBlocking(() -> admit(delivery, true), route.getOverload().getDeferDelay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void acknowledge(EmsDelivery delivery) {
+        try {
+            delivery.acknowledge();
+        } catch (JMSException e) {
+            throw new RuntimeException("EMS Acknowledge Failed: " + delivery.getMessageId(), e);
+        }
+    }
+
+    private void recover(EmsDelivery delivery) {
+        try {
+            delivery.recover();
+        } catch (JMSException e) {
+            throw new RuntimeException("EMS Recover Failed: " + delivery.getMessageId(), e);
+        }
+    }
+}
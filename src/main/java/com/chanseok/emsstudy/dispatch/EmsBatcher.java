@@ -0,0 +1,102 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 라우트의 메시지를 maxSize 건 또는 maxDelay 동안 모아 묶음 배치({@link EmsDelivery#batch})로 만든다.
+ * maxSize 가 차면 넣은 스레드에서 바로, 아니면 첫 메시지 기준 maxDelay 뒤에 타이밍 휠 스레드에서 내보낸다.
+ */
+@Component
+public class EmsBatcher {
+    private final EmsRetryScheduler scheduler;
+    private final Map<String, Buffer> buffers = new HashMap<>();
+
+    public EmsBatcher(EmsRetryScheduler scheduler, EmsRouteRegistry routeRegistry, MeterRegistry meterRegistry) {
+        this.scheduler = scheduler;
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            if (route.getBatch().isEnabled()) {
+                buffers.put(route.getName(), new Buffer(route, DistributionSummary.builder("ems.batch.size")
+                        .tag("route", route.getName())
+                        .register(meterRegistry)));
+            }
+        }
+    }
+
+    /**
+     * 배치를 쓰는 라우트면 메시지를 모아 두고 true 를 반환한다.
+     *
+     * @param flush 배치가 만들어지면 호출된다. 두 번째 인자는 타이밍 휠 스레드에서 호출되었는지 여부
+     */
+    public boolean add(EmsDelivery delivery, Flush flush) {
+        Buffer buffer = buffers.get(delivery.getRoute().getName());
+        // 묶음은 JSON 배열로 보내므로 바이너리/압축된 body 는 한 건씩 디스패치한다
+        if (buffer == null || delivery.isBatch() || delivery.isBinary()) {
+            return false;
+        }
+
+        List<EmsDelivery> full = null;
+        synchronized (buffer) {
+            buffer.items.add(delivery);
+            if (buffer.items.size() >= buffer.route.getBatch().getMaxSize()) {
+                full = buffer.take();
+            } else if (buffer.items.size() == 1) {
+                long generation = buffer.generation;
+                scheduler.schedule(() -> flushExpired(buffer, generation, flush),
+                        buffer.route.getBatch().getMaxDelay().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            buffer.size.record(full.size());
+            flush.accept(EmsDelivery.batch(buffer.route, full), false);
+        }
+        return true;
+    }
+
+    private void flushExpired(Buffer buffer, long generation, Flush flush) {
+        List<EmsDelivery> items;
+        synchronized (buffer) {
+            // 그 사이에 maxSize 로 이미 내보낸 묶음이면 무시한다
+            if (buffer.generation != generation || buffer.items.isEmpty()) {
+                return;
+            }
+            items = buffer.take();
+        }
+        buffer.size.record(items.size());
+        flush.accept(EmsDelivery.batch(buffer.route, items), true);
+    }
+
+    @FunctionalInterface
+    public interface Flush {
+        void accept(EmsDelivery batch, boolean fromTimer);
+    }
+
+    private static class Buffer {
+        private final EmsRoute route;
+        private final DistributionSummary size;
+        private List<EmsDelivery> items = new ArrayList<>();
+        private long generation;
+
+        private Buffer(EmsRoute route, DistributionSummary size) {
+            this.route = route;
+            this.size = size;
+        }
+
+        private List<EmsDelivery> take() {
+            List<EmsDelivery> taken = items;
+            items = new ArrayList<>();
+            generation++;
+            return taken;
+        }
+    }
+}
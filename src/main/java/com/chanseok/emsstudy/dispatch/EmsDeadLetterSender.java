@@ -0,0 +1,65 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.publisher.EmsPublisher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 처리에 실패한 메시지는 라우트의 dead letter 큐로, 마감이 지난 메시지는 expired 큐로 옮긴다.
+ * 원본 프로퍼티는 그대로 두고 실패 사유/원본 큐/원본 메시지 ID 를 덧붙인다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsDeadLetterSender {
+    public static final String REASON = "emsDeadLetterReason";
+    public static final String ORIGINAL_DESTINATION = "emsOriginalDestination";
+    public static final String ORIGINAL_MESSAGE_ID = "emsOriginalMessageId";
+
+    private final EmsPublisher publisher;
+
+    /**
+     * @return dead letter 큐 전송에 성공했으면 true
+     */
+    public boolean send(EmsDelivery delivery, String reason) {
+        return forward(delivery, delivery.getRoute().getDeadLetter(), reason);
+    }
+
+    /**
+     * @return expired 큐 전송에 성공했으면 true
+     */
+    public boolean sendExpired(EmsDelivery delivery) {
+        return forward(delivery, delivery.getRoute().getExpiredDestination(), "Deadline exceeded: " + delivery.getDeadline());
+    }
+
+    private boolean forward(EmsDelivery delivery, String destination, String reason) {
+        Map<String, Object> headers = new HashMap<>();
+        for (Map.Entry<String, Object> property : delivery.getProperties().entrySet()) {
+            // 브로커가 관리하는 프로퍼티는 새 메시지에 설정할 수 없다
+            if (!property.getKey().startsWith("JMSX") && !property.getKey().startsWith("JMS_")) {
+                headers.put(property.getKey(), property.getValue());
+            }
+        }
+        headers.put(REASON, reason);
+        headers.put(ORIGINAL_DESTINATION, delivery.getRoute().getDestination());
+        headers.put(ORIGINAL_MESSAGE_ID, delivery.getMessageId());
+
+        try {
+            if (delivery.getPayload() != null) {
+                publisher.send(destination, delivery.getPayload(), headers);
+            } else {
+                publisher.send(destination, delivery.getPayloadBytes(), headers);
+            }
+            log.warn("EMS message forwarded: messageId={}, destination={}, reason={}",
+                    delivery.getMessageId(), destination, reason);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("EMS message forward failed: messageId={}, destination={}", delivery.getMessageId(), destination, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.servlet.DispatchResult;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 수신한 메시지 한 건의 처리 단위.
+ * 리스너 스레드에서 만들어 {@link EmsDispatchPipeline} 으로 넘기고, 워커 스레드가 처리 후 ack 한다.
+ * ack 는 {@link Acknowledgement} 로 추상화되어 있어 브로커 메시지뿐 아니라 스풀에서 읽은 메시지도 같은 방식으로 처리한다.
+ * 브로커를 거치지 않는 transport 는 응답도 {@link Reply} 로 직접 받는다.
+ */
+@Getter
+public class EmsDelivery {
+    private final EmsRoute route;
+    private final String messageId;
+    private final String correlationId;
+    private final Destination replyTo;
+
+    /** 텍스트 payload. 바이너리/압축 body 면 null 이고 {@link #getPayloadBytes} 로 읽는다 */
+    private final String payload;
+
+    /** 바이너리(Smile/CBOR)이거나 압축된 body 의 받은 바이트 그대로. 압축되지 않은 텍스트면 null */
+    @Getter(AccessLevel.NONE)
+    private final byte[] body;
+
+    /** JMS 프로퍼티 스냅샷 */
+    private final Map<String, Object> properties;
+
+    /** JMSPriority (0~9) */
+    private final int priority;
+
+    /** JMSExpiration (epoch millis, 0 이면 만료 없음) */
+    private final long expiration;
+
+    /** JMSExpiration 과 업무 마감 시각 중 이른 쪽 (epoch millis, 0 이면 마감 없음) */
+    private final long deadline;
+
+    /** 중복 제거 키 (중복 제거를 쓰지 않으면 null) */
+    private final String dedupKey;
+
+    /** 묶음 배치면 묶인 메시지들, 아니면 null */
+    private final List<EmsDelivery> members;
+
+    /** 처리가 끝났을 때 호출할 ack */
+    @Getter(AccessLevel.NONE)
+    private final Acknowledgement acknowledgement;
+
+    /** transport 가 직접 받는 응답 채널. null 이면 replyTo 로 브로커에 응답한다 */
+    @Getter(AccessLevel.NONE)
+    private final Reply reply;
+
+    /** 프로세스 안에서 재시도한 횟수 */
+    private int attempts;
+
+    /** 파이프라인에 들어간 시각 (nanoTime) */
+    private long enqueuedAt;
+
+    /** fan-out 에서 이미 성공한 대상 URI 와 그 결과. 재시도할 때는 나머지 대상에만 보낸다 */
+    @Getter(AccessLevel.NONE)
+    private Map<String, DispatchResult> fanOutResults;
+
+    private EmsDelivery(EmsRoute route, String messageId, String correlationId, Destination replyTo, String payload, byte[] body,
+                        Map<String, Object> properties, int priority, long expiration, String dedupKey,
+                        Acknowledgement acknowledgement, Reply reply, List<EmsDelivery> members) {
+        this.route = route;
+        this.messageId = messageId;
+        this.correlationId = correlationId != null ? correlationId : messageId;
+        this.replyTo = replyTo;
+        this.payload = payload;
+        this.body = body;
+        this.properties = Collections.unmodifiableMap(properties);
+        this.priority = priority;
+        this.expiration = expiration;
+        this.deadline = deadlineOf(route, expiration, properties);
+        this.dedupKey = dedupKey;
+        this.acknowledgement = acknowledgement;
+        this.reply = reply;
+        this.members = members;
+    }
+
+    public static EmsDelivery of(EmsRoute route, Message message, String payload, String dedupKey) throws JMSException {
+        return of(route, message, payload, dedupKey, message::acknowledge);
+    }
+
+    /**
+     * @param acknowledgement 워커 스레드에서 호출돼도 세션 스레드에서 ack 하도록 넘기는 ack
+     */
+    public static EmsDelivery of(EmsRoute route, Message message, String payload, String dedupKey,
+                                 Acknowledgement acknowledgement) throws JMSException {
+        return of(route, message, payload, null, dedupKey, acknowledgement);
+    }
+
+    /**
+     * @param payload 텍스트 body ({@link EmsContentType#payloadOf}). 바이너리/압축 body 면 null
+     * @param body    바이너리/압축 body ({@link EmsContentType#bodyOf}). 텍스트면 null
+     */
+    public static EmsDelivery of(EmsRoute route, Message message, String payload, byte[] body, String dedupKey,
+                                 Acknowledgement acknowledgement) throws JMSException {
+        Map<String, Object> properties = new HashMap<>();
+        Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            properties.put(name, message.getObjectProperty(name));
+        }
+        return new EmsDelivery(route, message.getJMSMessageID(), message.getJMSCorrelationID(), message.getJMSReplyTo(), payload, body,
+                properties, message.getJMSPriority(), message.getJMSExpiration(), dedupKey, acknowledgement, null, null);
+    }
+
+    /**
+     * 브로커 메시지 없이 저장해 둔 값으로 다시 만든다 (스풀 재생 등).
+     */
+    public static EmsDelivery of(EmsRoute route, String messageId, String correlationId, Destination replyTo, String payload,
+                                 Map<String, Object> properties, int priority, long expiration, String dedupKey,
+                                 Acknowledgement acknowledgement) {
+        return of(route, messageId, correlationId, replyTo, payload, null, properties, priority, expiration, dedupKey, acknowledgement);
+    }
+
+    /**
+     * 저장해 둔 값으로 다시 만든다. payload/body 는 {@link #of(EmsRoute, Message, String, byte[], String, Acknowledgement)} 와 같다.
+     */
+    public static EmsDelivery of(EmsRoute route, String messageId, String correlationId, Destination replyTo, String payload, byte[] body,
+                                 Map<String, Object> properties, int priority, long expiration, String dedupKey,
+                                 Acknowledgement acknowledgement) {
+        return new EmsDelivery(route, messageId, correlationId, replyTo, payload, body, properties, priority, expiration, dedupKey,
+                acknowledgement, null, null);
+    }
+
+    /**
+     * 브로커를 거치지 않는 transport 에서 받은 메시지. 응답은 replyTo 대신 reply 로 돌려준다.
+     * payload/body 는 {@link #of(EmsRoute, Message, String, byte[], String, Acknowledgement)} 와 같다.
+     */
+    public static EmsDelivery of(EmsRoute route, String messageId, String correlationId, String payload, byte[] body,
+                                 Map<String, Object> properties, int priority, long expiration, String dedupKey,
+                                 Acknowledgement acknowledgement, Reply reply) {
+        return new EmsDelivery(route, messageId, correlationId, null, payload, body, properties, priority, expiration, dedupKey,
+                acknowledgement, reply, null);
+    }
+
+    /**
+     * 같은 라우트의 메시지 여러 건을 한 번에 디스패치할 묶음으로 만든다.
+     * 우선순위는 멤버 중 가장 높은 값을 따르고, ack/recover 하면 멤버 전체를 ack/recover 한다.
+     */
+    public static EmsDelivery batch(EmsRoute route, List<EmsDelivery> members) {
+        int priority = 0;
+        for (EmsDelivery member : members) {
+            priority = Math.max(priority, member.getPriority());
+        }
+        Acknowledgement acknowledgement = new Acknowledgement() {
+            @Override
+            public void acknowledge() throws JMSException {
+                for (EmsDelivery member : members) {
+                    member.acknowledge();
+                }
+            }
+
+            @Override
+            public void recover() throws JMSException {
+                for (EmsDelivery member : members) {
+                    member.recover();
+                }
+            }
+        };
+        return new EmsDelivery(route, "batch:" + members.get(0).getMessageId(), null, null, null, null, new HashMap<>(),
+                priority, 0L, null, acknowledgement, null, Collections.unmodifiableList(members));
+    }
+
+    public boolean isBatch() {
+        return members != null;
+    }
+
+    public Object getProperty(String name) {
+        return properties.get(name);
+    }
+
+    /**
+     * {@link EmsContentType#PROPERTY} 프로퍼티 값. 없으면 JSON
+     */
+    public String getContentType() {
+        Object contentType = properties.get(EmsContentType.PROPERTY);
+        return contentType != null ? contentType.toString() : EmsContentType.JSON;
+    }
+
+    /**
+     * {@link EmsContentEncoding#PROPERTY} 프로퍼티 값. 압축되지 않았으면 null
+     */
+    public String getContentEncoding() {
+        Object contentEncoding = properties.get(EmsContentEncoding.PROPERTY);
+        return contentEncoding != null ? contentEncoding.toString() : null;
+    }
+
+    /**
+     * payload 가 JSON 텍스트가 아닌지 (Smile/CBOR 같은 바이너리 body 이거나 압축됨).
+     * 이때 body 는 {@link #getPayloadBytes} 로만 읽는다
+     */
+    public boolean isBinary() {
+        return getContentEncoding() != null || EmsContentType.isBinary(getContentType());
+    }
+
+    /**
+     * 디스패치할 body (압축됐으면 압축된 그대로).
+     * 바이너리/압축 body 는 받은 배열을 복사 없이 돌려주므로 디스패치, fan-out, 재생이 같은 배열을 쓴다. 읽기만 한다.
+     * 텍스트는 호출할 때마다 UTF-8 로 새로 인코딩한다.
+     */
+    public byte[] getPayloadBytes() {
+        return body != null ? body : payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean isExpired(long now) {
+        return deadline != 0L && deadline <= now;
+    }
+
+    public void incrementAttempts() {
+        attempts++;
+    }
+
+    public void acknowledge() throws JMSException {
+        acknowledgement.acknowledge();
+    }
+
+    /**
+     * 처리하지 못했고 dead letter 로도 옮기지 못한 메시지를 transport 에 돌려준다. 같은 세션의 다른 메시지는 재전달하지 않는다.
+     */
+    public void recover() throws JMSException {
+        acknowledgement.recover();
+    }
+
+    public boolean hasReplyChannel() {
+        return reply != null;
+    }
+
+    /**
+     * @param contentType 응답 body 의 Content-Type ({@link EmsContentType}). 텍스트 응답이다
+     */
+    public void reply(String body, String contentType) {
+        reply.send(correlationId, body, contentType);
+    }
+
+    /**
+     * @param contentType 응답 body 의 Content-Type ({@link EmsContentType}). Smile/CBOR 같은 바이너리 응답이다
+     */
+    public void reply(byte[] body, String contentType) {
+        reply.send(correlationId, body, contentType);
+    }
+
+    void markEnqueued() {
+        this.enqueuedAt = System.nanoTime();
+    }
+
+    /**
+     * @return 이전 시도에서 uri 로 성공한 fan-out 결과, 없으면 null
+     */
+    DispatchResult fanOutResult(String uri) {
+        return fanOutResults != null ? fanOutResults.get(uri) : null;
+    }
+
+    void markFanOutDelivered(String uri, DispatchResult result) {
+        if (fanOutResults == null) {
+            fanOutResults = new HashMap<>(4);
+        }
+        fanOutResults.put(uri, result);
+    }
+
+    @FunctionalInterface
+    public interface Acknowledgement {
+        void acknowledge() throws JMSException;
+
+        /**
+         * 이 메시지만 ack 하지 않고 다시 받을 수 있게 돌려놓는다. 기본은 아무것도 하지 않고 세션이 닫힐 때 재전달되기를 기다린다.
+         */
+        default void recover() throws JMSException {
+        }
+    }
+
+    public interface Reply {
+        /** 텍스트 응답 */
+        void send(String correlationId, String body, String contentType);
+
+        /** 바이너리 응답 */
+        void send(String correlationId, byte[] body, String contentType);
+    }
+
+    private static long deadlineOf(EmsRoute route, long expiration, Map<String, Object> properties) {
+        long businessDeadline = parseDeadline(route.getDeadlineProperty() != null ? properties.get(route.getDeadlineProperty()) : null);
+        if (expiration == 0L) {
+            return businessDeadline;
+        }
+        return businessDeadline == 0L ? expiration : Math.min(expiration, businessDeadline);
+    }
+
+    private static long parseDeadline(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        String text = value.toString().trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return Instant.parse(text).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import org.apache.activemq.command.ActiveMQDestination;
+
+import javax.jms.Destination;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link EmsDelivery} 를 스풀/캡처 파일에 쓰는 바이너리 포맷.
+ * <pre>
+ * version(byte) | route | messageId | correlationId | replyTo | priority(byte) | expiration(long) | dedupKey
+ *               | propertyCount(int) | (name, type(byte), value)* | payload | body
+ * </pre>
+ * 문자열은 길이(int, null 이면 -1) + UTF-8 바이트. replyTo 는 ActiveMQ qualified name("queue://..." 등)으로 쓴다.
+ * body 는 바이너리(Smile/CBOR)이거나 압축된 body 의 길이(int, 텍스트면 -1) + 바이트 그대로다.
+ * 예전 파일(version 1 과, 압축된 body 를 아직 문자열로 쓰던 version 2)의 바이너리/압축 payload 는 ISO-8859-1 로 옮긴 문자열이었으므로 바이트로 되돌린다.
+ */
+public final class EmsDeliveryCodec {
+    private static final byte VERSION = 2;
+    private static final byte VERSION_1 = 1;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_SHORT = 7;
+    private static final byte TYPE_BYTE = 8;
+
+    private EmsDeliveryCodec() {
+    }
+
+    public static byte[] encode(EmsDelivery delivery) {
+        byte[] body = delivery.getPayload() == null ? delivery.getPayloadBytes() : null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + (body != null ? body.length : delivery.getPayload().length() * 2));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeString(out, delivery.getRoute().getName());
+            writeString(out, delivery.getMessageId());
+            writeString(out, delivery.getCorrelationId());
+            writeString(out, delivery.getReplyTo() instanceof ActiveMQDestination
+                    ? ((ActiveMQDestination) delivery.getReplyTo()).getQualifiedName()
+                    : null);
+            out.writeByte(delivery.getPriority());
+            out.writeLong(delivery.getExpiration());
+            writeString(out, delivery.getDedupKey());
+
+            out.writeInt(delivery.getProperties().size());
+            for (Map.Entry<String, Object> property : delivery.getProperties().entrySet()) {
+                writeString(out, property.getKey());
+                writeValue(out, property.getValue());
+            }
+            writeString(out, delivery.getPayload());
+            writeBytes(out, body);
+        } catch (IOException e) {
+            throw new IllegalStateException("EMS delivery encode failed: " + delivery.getMessageId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return 라우트가 더 이상 설정에 없으면 null
+     */
+    public static EmsDelivery decode(byte[] data, EmsRouteRegistry routeRegistry, EmsDelivery.Acknowledgement acknowledgement) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION && version != VERSION_1) {
+                throw new IllegalStateException("Unsupported EMS delivery format: " + version);
+            }
+            EmsRoute route = routeRegistry.findByName(readString(in));
+            String messageId = readString(in);
+            String correlationId = readString(in);
+            String replyTo = readString(in);
+            int priority = in.readByte();
+            long expiration = in.readLong();
+            String dedupKey = readString(in);
+
+            int propertyCount = in.readInt();
+            Map<String, Object> properties = new HashMap<>(propertyCount * 2);
+            for (int i = 0; i < propertyCount; i++) {
+                properties.put(readString(in), readValue(in));
+            }
+            String payload = readString(in);
+            byte[] body = version == VERSION ? readBytes(in) : null;
+
+            if (route == null) {
+                return null;
+            }
+            Destination replyToDestination = replyTo != null
+                    ? ActiveMQDestination.createDestination(replyTo, ActiveMQDestination.QUEUE_TYPE)
+                    : null;
+            if (payload != null && EmsContentType.carriesBytes(
+                    stringProperty(properties, EmsContentType.PROPERTY), stringProperty(properties, EmsContentEncoding.PROPERTY))) {
+                body = payload.getBytes(StandardCharsets.ISO_8859_1);
+                payload = null;
+            }
+            return EmsDelivery.of(route, messageId, correlationId, replyToDestination, payload, body, properties,
+                    priority, expiration, dedupKey, acknowledgement);
+        } catch (IOException e) {
+            throw new IllegalStateException("EMS delivery decode failed", e);
+        }
+    }
+
+    private static String stringProperty(Map<String, Object> properties, String name) {
+        Object value = properties.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, value != null ? value.toString() : null);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_BYTE:
+                return in.readByte();
+            default:
+                return readString(in);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
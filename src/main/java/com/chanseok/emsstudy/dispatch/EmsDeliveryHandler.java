@@ -0,0 +1,400 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.cache.EmsResponseCache;
+import com.chanseok.emsstudy.cache.PayloadKey;
+import com.chanseok.emsstudy.circuit.CircuitBreaker;
+import com.chanseok.emsstudy.circuit.EmsCircuitBreakerRegistry;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.dedup.EmsDedupCache;
+import com.chanseok.emsstudy.publisher.EmsPublisher;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.servlet.DispatchResult;
+import com.chanseok.emsstudy.servlet.EmsDirectDispatchAdapter;
+import com.chanseok.emsstudy.servlet.EmsDispatcherServletAdapter;
+import com.chanseok.emsstudy.servlet.EmsWebFluxAdapter;
+import com.chanseok.emsstudy.utility.BeanUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.jms.JMSException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 워커 스레드에서 메시지 한 건을 처리한다.
+ * 마감 확인 → 응답 캐시 → 서킷 브레이커 → DispatcherServlet(생성된 직접 호출 라우트면 {@link EmsDirectDispatchAdapter}) → 응답 전송 → 중복 제거 키 기록 → ack 순서로 진행하고,
+ * 일시적인 실패(5xx/예외)는 라우트의 재시도 정책대로 {@link EmsRetryScheduler} 에 예약하고,
+ * 재시도를 다 썼거나 4xx(또는 1xx/3xx 같은 예상하지 못한 상태)면 dead letter 큐로 옮긴 뒤 ack 한다.
+ * dead letter 전송까지 실패하면 ack 하지 않고 그 메시지만 recover 해서 transport 가 다시 전달하게 한다.
+ * fan-out 라우트는 여러 컨트롤러에 동시에 보낸 결과를 라우트 정책으로 합쳐 한 건처럼 처리한다.
+ * 묶음 배치는 JSON 배열 요청 한 번으로 보내고 응답 항목을 멤버별로 나눠 같은 방식으로 마무리한다.
+ * Smile/CBOR 같은 바이너리 body({@link EmsContentType})는 같은 Content-Type 으로 디스패치하고 응답도 그 인코딩으로 보낸다.
+ * 압축된 body 는 압축된 채로 들고 있다가 디스패치할 때 풀면서 읽는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsDeliveryHandler {
+    private final EmsPublisher publisher;
+    private final EmsDedupCache dedupCache;
+    private final EmsResponseCache responseCache;
+    private final EmsDeadLetterSender deadLetterSender;
+    private final EmsCircuitBreakerRegistry circuitBreakers;
+    private final EmsRetryScheduler retryScheduler;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    public void handle(EmsDelivery delivery) {
+        if (delivery.isBatch()) {
+            handleBatch(delivery);
+            return;
+        }
+
+        EmsRoute route = delivery.getRoute();
+        // 레인에서 기다리는 동안 마감이 지났으면 servlet 요청을 만들지 않는다
+        if (delivery.isExpired(System.currentTimeMillis())) {
+            expire(delivery);
+            return;
+        }
+
+        try {
+            // 응답 캐시는 JSON 응답만 담는다
+            PayloadKey cacheKey = delivery.isBinary() ? null : responseCache.keyFor(route, delivery.getPayload());
+            String returnBody = cacheKey != null ? responseCache.get(route, cacheKey) : null;
+            if (returnBody == null) {
+                CircuitBreaker circuitBreaker = circuitBreakers.get(route);
+                if (circuitBreaker != null && !circuitBreaker.tryAcquire(System.nanoTime())) {
+                    // 열려 있는 동안은 ack 하지 않고 보류해 두었다가 닫히면 다시 보낸다
+                    circuitBreaker.hold(delivery);
+                    return;
+                }
+                DispatchResult result = route.getFanOut().isEnabled()
+                        ? fanOut(route, delivery, circuitBreaker)
+                        : dispatch(route, route.getUri(), delivery.getPayloadBytes(), delivery.getContentType(),
+                                delivery.getContentEncoding(), circuitBreaker);
+                finish(route, delivery, result, cacheKey);
+                return;
+            }
+            complete(delivery, returnBody, EmsContentType.JSON);
+        } catch (RuntimeException e) {
+            log.warn("EMS delivery failed: route={}, messageId={}", route.getName(), delivery.getMessageId(), e);
+            deadLetter(delivery, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * reactive 라우트용 {@link #handle}. WebFlux 로 디스패치하고 결과가 오면 같은 방식으로 마무리한다.
+     * 응답 전송은 블로킹 JMS 호출이므로 이벤트 루프가 아닌 boundedElastic 스레드에서 한다.
+     * ack 는 delivery 의 {@link EmsDelivery.Acknowledgement} 가 메시지를 받은 수신 스레드로 넘겨 보낸다 (세션은 한 스레드만 쓴다).
+     * 배치와 fan-out 은 지원하지 않는다.
+     */
+    public Mono<Void> handleReactive(EmsDelivery delivery) {
+        EmsRoute route = delivery.getRoute();
+        if (delivery.isExpired(System.currentTimeMillis())) {
+            expire(delivery);
+            return Mono.empty();
+        }
+
+        PayloadKey cacheKey = delivery.isBinary() ? null : responseCache.keyFor(route, delivery.getPayload());
+        String cached = cacheKey != null ? responseCache.get(route, cacheKey) : null;
+        if (cached != null) {
+            complete(delivery, cached, EmsContentType.JSON);
+            return Mono.empty();
+        }
+        CircuitBreaker circuitBreaker = circuitBreakers.get(route);
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire(System.nanoTime())) {
+            circuitBreaker.hold(delivery);
+            return Mono.empty();
+        }
+
+        EmsWebFluxAdapter webFluxAdapter = (EmsWebFluxAdapter) BeanUtils.getBean(EmsWebFluxAdapter.class);
+        return webFluxAdapter.dispatch(route.getUri(), delivery.getPayloadBytes(), delivery.getContentType(), delivery.getContentEncoding())
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(result -> {
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onResult(result.isSuccess(), result.getElapsedNanos(), System.nanoTime());
+                    }
+                    finish(route, delivery, result, cacheKey);
+                })
+                .onErrorResume(e -> {
+                    log.warn("EMS delivery failed: route={}, messageId={}", route.getName(), delivery.getMessageId(), e);
+                    deadLetter(delivery, String.valueOf(e.getMessage()));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * 디스패치 결과로 마무리한다: 실패면 재시도/DLQ, 성공이면 응답 캐시 기록 후 {@link #complete}.
+     */
+    private void finish(EmsRoute route, EmsDelivery delivery, DispatchResult result, PayloadKey cacheKey) {
+        if (!result.isSuccess()) {
+            log.warn("EMS dispatch failed: route={}, messageId={}, attempt={}, result={}",
+                    route.getName(), delivery.getMessageId(), delivery.getAttempts() + 1, result.describe());
+            // 4xx 는 다시 보내도 같으므로 바로 DLQ 로 보낸다
+            if (!result.getErrorKind().isRetryable() || !retryScheduler.retry(delivery)) {
+                deadLetter(delivery, result.describe());
+            }
+            return;
+        }
+        if (delivery.getAttempts() > 0) {
+            meterRegistry.counter("ems.retry.recovered", "route", route.getName()).increment();
+        }
+        if (EmsContentType.isBinary(result.getContentType())) {
+            complete(delivery, result.getBodyBytes(), result.getContentType());
+            return;
+        }
+        String returnBody = result.getBodyAsString();
+        if (cacheKey != null) {
+            responseCache.put(route, cacheKey, returnBody);
+        }
+        complete(delivery, returnBody, result.getContentType());
+    }
+
+    /**
+     * 묶음을 JSON 배열 요청 한 번으로 디스패치하고, 응답 배열의 항목을 순서대로 각 메시지의 결과로 나눈다.
+     * 요청 전체가 실패하거나 응답 배열 크기가 맞지 않으면 멤버를 한 건씩 레인에 다시 넣어 여러 워커가 나눠 처리하게 해서,
+     * 실패한 메시지만 재시도/DLQ 로 가게 한다.
+     */
+    private void handleBatch(EmsDelivery batch) {
+        EmsRoute route = batch.getRoute();
+        List<EmsDelivery> members = new ArrayList<>(batch.getMembers().size());
+        long now = System.currentTimeMillis();
+        for (EmsDelivery member : batch.getMembers()) {
+            if (member.isExpired(now)) {
+                expire(member);
+            } else {
+                members.add(member);
+            }
+        }
+        if (members.isEmpty()) {
+            return;
+        }
+
+        CircuitBreaker circuitBreaker = circuitBreakers.get(route);
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire(System.nanoTime())) {
+            members.forEach(circuitBreaker::hold);
+            return;
+        }
+
+        StringBuilder body = new StringBuilder(members.size() * 64);
+        body.append('[');
+        for (int i = 0; i < members.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(members.get(i).getPayload());
+        }
+        body.append(']');
+
+        DispatchResult result = dispatch(route, route.getBatch().getUri(), body.toString().getBytes(StandardCharsets.UTF_8),
+                EmsContentType.JSON, null, circuitBreaker);
+        JsonNode items = result.isSuccess() ? readTree(result) : null;
+        if (items == null || !items.isArray() || items.size() != members.size()) {
+            log.warn("EMS batch dispatch failed, falling back to single dispatch: route={}, size={}, result={}",
+                    route.getName(), members.size(), result.describe());
+            // 이 워커에서 차례로 처리하지 않고 레인에 다시 넣는다. 레인이 차 있으면 여기서 처리한다
+            EmsDispatchPipeline dispatchPipeline = (EmsDispatchPipeline) BeanUtils.getBean(EmsDispatchPipeline.class);
+            for (EmsDelivery member : members) {
+                if (!dispatchPipeline.offer(member)) {
+                    handle(member);
+                }
+            }
+            return;
+        }
+
+        String errorField = route.getBatch().getErrorField();
+        for (int i = 0; i < members.size(); i++) {
+            EmsDelivery member = members.get(i);
+            JsonNode item = items.get(i);
+            JsonNode error = errorField != null ? item.get(errorField) : null;
+            try {
+                if (error != null && !error.isNull()) {
+                    deadLetter(member, error.asText());
+                } else {
+                    complete(member, objectMapper.writeValueAsString(item), EmsContentType.JSON);
+                }
+            } catch (JsonProcessingException | RuntimeException e) {
+                log.warn("EMS batch item failed: route={}, messageId={}", route.getName(), member.getMessageId(), e);
+                deadLetter(member, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * 처리에 성공한 메시지: 응답 전송 → 중복 제거 키 기록 → ack
+     *
+     * @param contentType 응답 body 의 Content-Type
+     */
+    private void complete(EmsDelivery delivery, String returnBody, String contentType) {
+        if (delivery.hasReplyChannel()) {
+            delivery.reply(returnBody, contentType);
+        } else if (delivery.getReplyTo() != null) {
+            publisher.reply(delivery.getReplyTo(), delivery.getCorrelationId(), returnBody, contentType);
+        }
+        markCompleted(delivery);
+    }
+
+    /**
+     * 바이너리(Smile/CBOR) 응답으로 {@link #complete} 한다. 응답은 BytesMessage 로 보낸다
+     */
+    private void complete(EmsDelivery delivery, byte[] returnBody, String contentType) {
+        if (delivery.hasReplyChannel()) {
+            delivery.reply(returnBody, contentType);
+        } else if (delivery.getReplyTo() != null) {
+            publisher.reply(delivery.getReplyTo(), delivery.getCorrelationId(), returnBody, contentType);
+        }
+        markCompleted(delivery);
+    }
+
+    private void markCompleted(EmsDelivery delivery) {
+        if (delivery.getDedupKey() != null) {
+            dedupCache.markProcessed(delivery.getDedupKey());
+        }
+        acknowledge(delivery);
+    }
+
+    private void expire(EmsDelivery delivery) {
+        meterRegistry.counter("ems.dispatch.expired", "route", delivery.getRoute().getName(), "stage", "worker").increment();
+        if (deadLetterSender.sendExpired(delivery)) {
+            acknowledge(delivery);
+        } else {
+            recover(delivery);
+        }
+    }
+
+    private DispatchResult dispatch(EmsRoute route, String uri, byte[] content, String contentType, String contentEncoding,
+                                    CircuitBreaker circuitBreaker) {
+        DispatchResult result;
+        EmsDirectDispatchAdapter directDispatchAdapter = (EmsDirectDispatchAdapter) BeanUtils.getBean(EmsDirectDispatchAdapter.class);
+        // 생성된 직접 호출 코드는 압축되지 않은 JSON 만 읽으므로 나머지는 메시지 컨버터를 거치게 한다
+        if (contentEncoding == null && !EmsContentType.isBinary(contentType) && directDispatchAdapter.supports(uri)) {
+            result = directDispatchAdapter.dispatch(uri, content);
+        } else {
+            EmsDispatcherServletAdapter dispatcherServletAdapter = (EmsDispatcherServletAdapter) BeanUtils.getBean(EmsDispatcherServletAdapter.class);
+            result = dispatcherServletAdapter.dispatch(uri, content, contentType, contentEncoding);
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.onResult(result.isSuccess(), result.getElapsedNanos(), System.nanoTime());
+        }
+        return result;
+    }
+
+    /**
+     * uri 와 fan-out 대상에 같은 payload 를 동시에 보내고, 라우트 정책에 따라 결과 하나로 합친다.
+     * 성공이면 주 대상(uri)의 결과(ANY 에서 주 대상이 실패했으면 처음 성공한 결과)를, 실패면 첫 번째 실패 결과를 돌려준다.
+     * 성공한 대상은 메시지에 기록해 두고, 재시도할 때는 실패했던 대상에만 다시 보낸다.
+     */
+    private DispatchResult fanOut(EmsRoute route, EmsDelivery delivery, CircuitBreaker circuitBreaker) {
+        List<String> uris = new ArrayList<>(route.getFanOut().getUris().size() + 1);
+        uris.add(route.getUri());
+        uris.addAll(route.getFanOut().getUris());
+
+        List<String> pending = new ArrayList<>(uris.size());
+        for (String uri : uris) {
+            if (delivery.fanOutResult(uri) == null) {
+                pending.add(uri);
+            }
+        }
+        EmsDispatcherServletAdapter dispatcherServletAdapter = (EmsDispatcherServletAdapter) BeanUtils.getBean(EmsDispatcherServletAdapter.class);
+        List<DispatchResult> dispatched = pending.isEmpty() ? List.of()
+                : dispatcherServletAdapter.dispatchAll(pending, delivery.getPayloadBytes(), delivery.getContentType(), delivery.getContentEncoding());
+
+        long slowest = 0L;
+        DispatchResult firstSuccess = null;
+        DispatchResult firstFailure = null;
+        List<DispatchResult> results = new ArrayList<>(uris.size());
+        int next = 0;
+        for (String uri : uris) {
+            DispatchResult branch = delivery.fanOutResult(uri);
+            if (branch == null) {
+                branch = dispatched.get(next++);
+                slowest = Math.max(slowest, branch.getElapsedNanos());
+                if (branch.isSuccess()) {
+                    delivery.markFanOutDelivered(uri, branch);
+                } else {
+                    meterRegistry.counter("ems.fanout.failed", "route", route.getName(), "uri", uri).increment();
+                }
+            }
+            if (branch.isSuccess()) {
+                firstSuccess = firstSuccess != null ? firstSuccess : branch;
+            } else {
+                firstFailure = firstFailure != null ? firstFailure : branch;
+            }
+            results.add(branch);
+        }
+        meterRegistry.timer("ems.fanout.slowest", "route", route.getName()).record(slowest, TimeUnit.NANOSECONDS);
+
+        DispatchResult primary = results.get(0);
+        DispatchResult result;
+        switch (route.getFanOut().getPolicy()) {
+            case ANY:
+                result = primary.isSuccess() || firstSuccess == null ? primary : firstSuccess;
+                break;
+            case PRIMARY:
+                result = primary;
+                break;
+            default:
+                result = firstFailure != null ? firstFailure : primary;
+                break;
+        }
+        if (result.isSuccess() && firstFailure != null) {
+            // 정책상 성공으로 보고 ack 하는 경우에도 실패한 대상은 남겨 둔다
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).isSuccess()) {
+                    log.warn("EMS fan-out branch failed: route={}, messageId={}, uri={}, result={}",
+                            route.getName(), delivery.getMessageId(), uris.get(i), results.get(i).describe());
+                }
+            }
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.onResult(result.isSuccess(), slowest, System.nanoTime());
+        }
+        return result;
+    }
+
+    private JsonNode readTree(DispatchResult result) {
+        try {
+            return objectMapper.readTree(result.getBodyAsString());
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * dead letter 큐로 옮기는 데 성공했을 때만 ack 하고, 실패하면 recover 한다.
+     */
+    private void deadLetter(EmsDelivery delivery, String reason) {
+        if (deadLetterSender.send(delivery, reason)) {
+            acknowledge(delivery);
+        } else {
+            recover(delivery);
+        }
+    }
+
+    private void acknowledge(EmsDelivery delivery) {
+        try {
+            delivery.acknowledge();
+        } catch (JMSException e) {
+            throw new RuntimeException("EMS Acknowledge Failed: " + delivery.getMessageId(), e);
+        }
+    }
+
+    private void recover(EmsDelivery delivery) {
+        try {
+            delivery.recover();
+        } catch (JMSException e) {
+            throw new RuntimeException("EMS Recover Failed: " + delivery.getMessageId(), e);
+        }
+    }
+}
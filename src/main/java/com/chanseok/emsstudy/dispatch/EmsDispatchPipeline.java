@@ -0,0 +1,349 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 우선순위 레인 + 워커 풀.
+ * 리스너 스레드는 메시지를 우선순위(JMSPriority 또는 설정한 프로퍼티)에 맞는 레인에 넣기만 하고,
+ * 실제 처리는 워커 스레드가 {@link EmsDeliveryHandler} 로 한다.
+ * <ul>
+ *     <li>공용 워커 : 비어 있지 않은 레인 중에서 가중치 비율대로(smooth weighted round-robin) 꺼낸다</li>
+ *     <li>전용 워커 : 자기 레인만 처리한다. bulk 가 밀려도 high 레인은 최소 이만큼의 처리량을 보장받는다</li>
+ *     <li>레인이 가득 차면 리스너 스레드가 기다리므로, prefetch 이상은 브로커에 남는다</li>
+ * </ul>
+ * 레인은 미리 할당한 {@link RingBuffer} 라서 넣고 꺼낼 때 락과 할당이 없고,
+ * 빈 레인에서 워커가 기다리는 방식은 {@link WaitStrategy} 로 고른다.
+ * executor.mode 를 PIPELINE 외로 지정한 라우트는 레인 대신 라우트 전용 {@link RouteExecutor} 로 넘긴다.
+ */
+@Slf4j
+@Component
+public class EmsDispatchPipeline implements InitializingBean, DisposableBean {
+    private final EmsDispatchProperties properties;
+    private final EmsDeliveryHandler deliveryHandler;
+    private final EmsRouteRegistry routeRegistry;
+    private final MeterRegistry meterRegistry;
+
+    /** 라우트 이름 → 전용 실행기 (PIPELINE 라우트는 없음) */
+    private final Map<String, RouteExecutor> routeExecutors = new HashMap<>();
+
+    /** minPriority 내림차순 */
+    private final List<Lane> lanes = new ArrayList<>();
+
+    /** 레인이 가득 찼을 때 생산자가 spin 한 뒤 한 번에 쉬는 시간 */
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /** 공용 워커가 기다리는 방법. 어느 레인에 넣든 signal 한다 */
+    private WaitStrategy sharedWait;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean stopped = false;
+
+    public EmsDispatchPipeline(EmsDispatchProperties properties, EmsDeliveryHandler deliveryHandler,
+                               EmsRouteRegistry routeRegistry, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.deliveryHandler = deliveryHandler;
+        this.routeRegistry = routeRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (properties.getLanes().isEmpty()) {
+            throw new IllegalStateException("ems.dispatch.lanes must not be empty");
+        }
+        WaitStrategy.Type waitStrategy = properties.getWaitStrategy();
+        sharedWait = waitStrategy.create();
+        properties.getLanes().stream()
+                .sorted(Comparator.comparingInt(EmsDispatchProperties.Lane::getMinPriority).reversed())
+                .forEach(lane -> lanes.add(new Lane(lane, properties.getLaneCapacity(), waitStrategy, meterRegistry)));
+
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            startWorker("ems-dispatch-" + i, new SharedWorker());
+        }
+        for (Lane lane : lanes) {
+            for (int i = 0; i < lane.reservedWorkers; i++) {
+                startWorker("ems-dispatch-" + lane.name + "-" + i, new ReservedWorker(lane));
+            }
+        }
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            RouteExecutor executor = RouteExecutor.create(route, deliveryHandler, meterRegistry);
+            if (executor != null) {
+                routeExecutors.put(route.getName(), executor);
+                log.info("EMS route executor started: route={}, mode={}, parallelism={}",
+                        route.getName(), route.getExecutor().getMode(), route.getExecutor().getParallelism());
+            }
+        }
+        log.info("EMS dispatch pipeline started: workers={}, lanes={}, waitStrategy={}",
+                properties.getWorkers(), properties.getLanes().size(), waitStrategy);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        stopped = true;
+        routeExecutors.values().forEach(RouteExecutor::shutdown);
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        // 레인에 남은 메시지는 ack 되지 않았으므로 세션이 닫히면 브로커가 다시 전달한다
+    }
+
+    /**
+     * 메시지를 레인에 넣는다. 레인이 가득 차 있으면 자리가 날 때까지 호출한 스레드가 기다린다.
+     */
+    public void submit(EmsDelivery delivery) {
+        RouteExecutor executor = routeExecutors.get(delivery.getRoute().getName());
+        delivery.markEnqueued();
+        if (executor != null) {
+            executor.submit(delivery);
+            return;
+        }
+
+        Lane lane = laneFor(priorityOf(delivery));
+        int spins = 0;
+        while (!lane.ring.offer(delivery)) {
+            if (spins++ < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("EMS Dispatch Interrupted: " + delivery.getMessageId());
+            }
+        }
+        signal(lane);
+    }
+
+    private void signal(Lane lane) {
+        sharedWait.signal();
+        if (lane.reservedWait != null) {
+            lane.reservedWait.signal();
+        }
+    }
+
+    /**
+     * 기다리지 않고 레인에 넣어 본다.
+     *
+     * @return 레인이 가득 차 있으면 false
+     */
+    public boolean offer(EmsDelivery delivery) {
+        RouteExecutor executor = routeExecutors.get(delivery.getRoute().getName());
+        delivery.markEnqueued();
+        // 전용 실행기가 받지 못하면(CALLER_RUNS 이거나 가득 참) 공용 레인에 넣어 본다
+        if (executor != null && executor.offer(delivery)) {
+            return true;
+        }
+
+        Lane lane = laneFor(priorityOf(delivery));
+        if (!lane.ring.offer(delivery)) {
+            return false;
+        }
+        signal(lane);
+        return true;
+    }
+
+    /**
+     * 메시지가 들어갈 레인에서 가장 오래 기다린 메시지의 대기 시간(nanos). 레인이 비어 있으면 0.
+     * 전용 실행기 라우트는 그 실행기에서 아직 시작하지 않은 가장 오래된 메시지의 대기 시간이다.
+     */
+    public long queueDelayNanos(EmsDelivery delivery) {
+        RouteExecutor executor = routeExecutors.get(delivery.getRoute().getName());
+        if (executor != null) {
+            return executor.queueDelayNanos();
+        }
+        EmsDelivery head = laneFor(priorityOf(delivery)).ring.peek();
+        return head != null ? System.nanoTime() - head.getEnqueuedAt() : 0L;
+    }
+
+    private int priorityOf(EmsDelivery delivery) {
+        String priorityProperty = properties.getPriorityProperty();
+        if (priorityProperty != null && !priorityProperty.isEmpty()) {
+            Object value = delivery.getProperty(priorityProperty);
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value.toString().trim());
+                } catch (NumberFormatException e) {
+                    log.debug("EMS priority property is not a number: {}={}", priorityProperty, value);
+                }
+            }
+        }
+        return delivery.getPriority();
+    }
+
+    private Lane laneFor(int priority) {
+        for (Lane lane : lanes) {
+            if (priority >= lane.minPriority) {
+                return lane;
+            }
+        }
+        return lanes.get(lanes.size() - 1);
+    }
+
+    private void startWorker(String name, Runnable worker) {
+        Thread thread = new Thread(worker, name);
+        thread.setDaemon(true);
+        workers.add(thread);
+        thread.start();
+    }
+
+    private void process(Lane lane, EmsDelivery delivery) {
+        lane.queueDelay.record(System.nanoTime() - delivery.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+        try {
+            deliveryHandler.handle(delivery);
+        } catch (RuntimeException e) {
+            log.error("EMS dispatch worker failed: messageId={}", delivery.getMessageId(), e);
+        }
+        lane.dispatched.increment();
+    }
+
+    /**
+     * 모든 레인을 가중치대로 나눠 처리하는 워커. 레인 선택 상태(current)는 워커마다 따로 둬서 락이 필요 없다.
+     */
+    private class SharedWorker implements Runnable {
+        private final int[] current = new int[lanes.size()];
+        private final BooleanSupplier ready = this::hasWork;
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (!stopped) {
+                if (poll()) {
+                    idleCount = 0;
+                    continue;
+                }
+                try {
+                    idleCount = sharedWait.idle(idleCount, ready);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private boolean hasWork() {
+            for (Lane lane : lanes) {
+                if (!lane.ring.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return 하나라도 처리했으면 true
+         */
+        private boolean poll() {
+            while (true) {
+                int total = 0;
+                int best = -1;
+                for (int i = 0; i < lanes.size(); i++) {
+                    Lane lane = lanes.get(i);
+                    if (lane.ring.isEmpty()) {
+                        continue;
+                    }
+                    current[i] += lane.weight;
+                    total += lane.weight;
+                    if (best < 0 || current[i] > current[best]) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    return false;
+                }
+                current[best] -= total;
+
+                // 다른 워커가 먼저 가져갔으면 레인을 다시 고른다
+                Lane lane = lanes.get(best);
+                EmsDelivery delivery = lane.ring.poll();
+                if (delivery != null) {
+                    process(lane, delivery);
+                    return true;
+                }
+            }
+        }
+    }
+
+    private class ReservedWorker implements Runnable {
+        private final Lane lane;
+        private final BooleanSupplier ready;
+
+        private ReservedWorker(Lane lane) {
+            this.lane = lane;
+            this.ready = () -> !lane.ring.isEmpty();
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (!stopped) {
+                EmsDelivery delivery = lane.ring.poll();
+                if (delivery != null) {
+                    process(lane, delivery);
+                    idleCount = 0;
+                    continue;
+                }
+                try {
+                    idleCount = lane.reservedWait.idle(idleCount, ready);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Lane {
+        private final String name;
+        private final int minPriority;
+        private final int weight;
+        private final int reservedWorkers;
+        private final RingBuffer<EmsDelivery> ring;
+
+        /** 전용 워커가 기다리는 방법 (전용 워커가 없으면 null) */
+        private final WaitStrategy reservedWait;
+
+        private final Counter dispatched;
+        private final Timer queueDelay;
+
+        private Lane(EmsDispatchProperties.Lane lane, int capacity, WaitStrategy.Type waitStrategy, MeterRegistry meterRegistry) {
+            this.name = lane.getName();
+            this.minPriority = lane.getMinPriority();
+            this.weight = Math.max(1, lane.getWeight());
+            this.reservedWorkers = Math.max(0, lane.getReservedWorkers());
+            this.ring = new RingBuffer<>(capacity);
+            this.reservedWait = reservedWorkers > 0 ? waitStrategy.create() : null;
+
+            Gauge.builder("ems.dispatch.lane.depth", ring, RingBuffer::size)
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            this.dispatched = Counter.builder("ems.dispatch.dispatched")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            this.queueDelay = Timer.builder("ems.dispatch.queue.delay")
+                    .description("Time a message waited in its lane before a worker picked it up")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.chanseok.emsstudy.dispatch;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link EmsDispatchPipeline} 설정.
+ * application.yml 의 {@code ems.dispatch.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.dispatch")
+public class EmsDispatchProperties {
+
+    /** 모든 레인을 가중치대로 나눠 처리하는 공용 워커 수 */
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /** 레인당 대기열 크기(2의 거듭제곱으로 올림). 가득 차면 리스너 스레드가 기다린다(브로커까지 backpressure) */
+    private int laneCapacity = 1024;
+
+    /** 레인이 비어 있을 때 워커가 기다리는 방법 */
+    private WaitStrategy.Type waitStrategy = WaitStrategy.Type.BLOCKING;
+
+    /** fan-out 라우트에서 추가 대상을 동시에 호출하는 스레드 수 */
+    private int fanOutWorkers = Runtime.getRuntime().availableProcessors();
+
+    /** reactive 라우트의 WebFlux 요청을 처리하는 이벤트 루프 스레드 수 */
+    private int eventLoops = Runtime.getRuntime().availableProcessors();
+
+    /** {@code @EmsDirectRoute} 로 생성된 라우트 표가 있으면 DispatcherServlet 대신 컨트롤러 메서드를 직접 호출한다 (인터셉터를 건너뛰므로 기본 꺼짐) */
+    private boolean directInvoke = false;
+
+    /** 압축된 body 를 풀었을 때 허용하는 최대 크기. 넘으면 413 으로 끝나 재시도 없이 DLQ 로 간다 */
+    private DataSize maxInflatedSize = DataSize.ofMegabytes(16);
+
+    /** EMS 전용으로 줄인 MVC 설정(EmsWebMvcConfig)을 쓴다. 끄면 {@code @EnableWebMvc} 기본 설정(WebConfig) */
+    private boolean trimmedMvc = true;
+
+    /** 우선순위로 쓸 JMS 프로퍼티 이름. 비어 있으면 JMSPriority 를 쓴다 */
+    private String priorityProperty;
+
+    /** 우선순위 레인 목록 */
+    private List<Lane> lanes = new ArrayList<>(List.of(
+            new Lane("high", 7, 8, 1),
+            new Lane("normal", 4, 4, 0),
+            new Lane("bulk", 0, 1, 0)));
+
+    @Getter
+    @Setter
+    public static class Lane {
+
+        /** 레인 이름 */
+        private String name;
+
+        /** 이 값 이상의 우선순위가 이 레인으로 들어온다 */
+        private int minPriority;
+
+        /** 공용 워커가 레인을 고르는 가중치 */
+        private int weight = 1;
+
+        /** 이 레인만 처리하는 전용 워커 수 (최소 처리량 보장) */
+        private int reservedWorkers = 0;
+
+        public Lane() {
+        }
+
+        public Lane(String name, int minPriority, int weight, int reservedWorkers) {
+            this.name = name;
+            this.minPriority = minPriority;
+            this.weight = weight;
+            this.reservedWorkers = reservedWorkers;
+        }
+    }
+}
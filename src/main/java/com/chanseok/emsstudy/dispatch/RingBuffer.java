@@ -0,0 +1,175 @@
+package com.chanseok.emsstudy.dispatch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 미리 할당한 슬롯을 도는 bounded MPMC 링 버퍼 (Vyukov 방식).
+ * 슬롯마다 시퀀스를 두고 생산자/소비자 커서를 CAS 로만 움직이므로 락이 없고, 넣고 꺼낼 때 객체를 만들지 않는다.
+ * <ul>
+ *     <li>슬롯 시퀀스 == 위치 : 비어 있어 생산자가 쓸 수 있다</li>
+ *     <li>슬롯 시퀀스 == 위치 + 1 : 채워져 있어 소비자가 꺼낼 수 있다</li>
+ *     <li>꺼낸 뒤 시퀀스를 위치 + 용량으로 올려 다음 바퀴의 생산자에게 넘긴다</li>
+ * </ul>
+ * 생산자 커서와 소비자 커서는 서로 다른 캐시 라인에 두어 false sharing 을 피한다.
+ */
+public class RingBuffer<E> {
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final int mask;
+    private final long[] sequences;
+    private final Object[] elements;
+
+    /** 다음에 쓸 위치 */
+    private final Cursor tail = new Cursor();
+
+    /** 다음에 꺼낼 위치 */
+    private final Cursor head = new Cursor();
+
+    /**
+     * @param capacity 요청한 크기. 2의 거듭제곱으로 올림한다
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new long[size];
+        this.elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+        VarHandle.releaseFence();
+    }
+
+    /**
+     * @return 가득 차 있으면 false
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long sequence = (long) SEQUENCES.getAcquire(sequences, index);
+            long difference = sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    ELEMENTS.set(elements, index, element);
+                    SEQUENCES.setRelease(sequences, index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                // 다른 생산자가 먼저 가져갔다
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return 비어 있으면 null
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long sequence = (long) SEQUENCES.getAcquire(sequences, index);
+            long difference = sequence - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) ELEMENTS.get(elements, index);
+                    ELEMENTS.set(elements, index, null);
+                    SEQUENCES.setRelease(sequences, index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * 다음에 꺼낼 원소를 꺼내지 않고 본다. 동시에 다른 소비자가 꺼내 갈 수 있으므로 대략적인 값이다.
+     *
+     * @return 비어 있으면 null
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            if ((long) SEQUENCES.getAcquire(sequences, index) != position + 1) {
+                return null;
+            }
+            E element = (E) ELEMENTS.getAcquire(elements, index);
+            // 읽는 사이에 꺼내졌으면 다시 본다
+            if (element != null && head.get() == position) {
+                return element;
+            }
+        }
+    }
+
+    public int size() {
+        while (true) {
+            long before = head.get();
+            long tailPosition = tail.get();
+            if (head.get() == before) {
+                return (int) Math.max(0, Math.min(tailPosition - before, capacity()));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 앞뒤 56바이트 padding 으로 다른 커서와 같은 캐시 라인에 놓이지 않게 한 시퀀스.
+     */
+    @SuppressWarnings("unused")
+    private static class Cursor extends CursorValue {
+        private long p9, p10, p11, p12, p13, p14, p15;
+    }
+
+    @SuppressWarnings("unused")
+    private static class CursorValue extends CursorPadding {
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(CursorValue.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile long value;
+
+        long get() {
+            return value;
+        }
+
+        boolean compareAndSet(long expected, long next) {
+            return VALUE.compareAndSet(this, expected, next);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class CursorPadding {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
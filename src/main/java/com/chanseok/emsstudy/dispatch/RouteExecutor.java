@@ -0,0 +1,303 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.route.EmsRoute;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 공용 레인 대신 라우트 전용으로 메시지를 처리하는 실행기.
+ * FIXED/FORK_JOIN 은 capacity 만큼만 받아 두고, 그 이상이면 레인과 같이 생산자를 기다리게 한다.
+ * 모두 {@code ems.executor.*} 메트릭을 route/mode 태그로 남겨 라우트별로 어떤 방식이 맞는지 비교할 수 있게 한다.
+ */
+@Slf4j
+abstract class RouteExecutor {
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    protected final EmsRoute route;
+    protected final EmsDeliveryHandler deliveryHandler;
+    protected final Tags tags;
+
+    private final Timer queueDelay;
+    private final Counter completed;
+
+    protected RouteExecutor(EmsRoute route, EmsDeliveryHandler deliveryHandler, MeterRegistry meterRegistry) {
+        this.route = route;
+        this.deliveryHandler = deliveryHandler;
+        this.tags = Tags.of("route", route.getName(), "mode", route.getExecutor().getMode().name().toLowerCase());
+        this.queueDelay = Timer.builder("ems.executor.queue.delay")
+                .description("Time a message waited before a route executor thread picked it up")
+                .tags(tags)
+                .register(meterRegistry);
+        this.completed = Counter.builder("ems.executor.completed")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    static RouteExecutor create(EmsRoute route, EmsDeliveryHandler deliveryHandler, MeterRegistry meterRegistry) {
+        switch (route.getExecutor().getMode()) {
+            case FIXED:
+                return new Fixed(route, deliveryHandler, meterRegistry);
+            case FORK_JOIN:
+                return new ForkJoin(route, deliveryHandler, meterRegistry);
+            case CALLER_RUNS:
+                return new CallerRuns(route, deliveryHandler, meterRegistry);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 자리가 날 때까지 기다렸다가 넣는다.
+     */
+    abstract void submit(EmsDelivery delivery);
+
+    /**
+     * 기다리지 않고 넣어 본다. 호출한 스레드에서 처리하는 실행기는 항상 false 를 돌려 레인을 쓰게 한다.
+     *
+     * @return 넣지 못했으면 false
+     */
+    abstract boolean offer(EmsDelivery delivery);
+
+    void shutdown() {
+    }
+
+    /**
+     * 실행기에 들어가 아직 시작하지 않은 메시지 중 가장 오래 기다린 메시지의 대기 시간(nanos). 없으면 0.
+     * 호출한 스레드에서 바로 처리하는 실행기는 기다리는 메시지가 없으므로 0 이다.
+     */
+    long queueDelayNanos() {
+        return 0L;
+    }
+
+    protected void run(EmsDelivery delivery) {
+        queueDelay.record(System.nanoTime() - delivery.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+        try {
+            deliveryHandler.handle(delivery);
+        } catch (RuntimeException e) {
+            log.error("EMS route executor failed: route={}, messageId={}", route.getName(), delivery.getMessageId(), e);
+        }
+        completed.increment();
+    }
+
+    /**
+     * 스레드 풀에 넘기는 실행기. 들어가 있는 메시지 수로 capacity 를 지킨다.
+     * 넣은 순서대로 작업을 따로 들고 있다가 시작한 작업을 앞에서부터 걷어 내어, 가장 오래 기다린 작업의 대기 시간을 구한다.
+     */
+    private abstract static class Pooled extends RouteExecutor {
+        private final int capacity;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Queue<Task> waiting = new ConcurrentLinkedQueue<>();
+
+        protected Pooled(EmsRoute route, EmsDeliveryHandler deliveryHandler, MeterRegistry meterRegistry) {
+            super(route, deliveryHandler, meterRegistry);
+            this.capacity = Math.max(1, route.getExecutor().getCapacity());
+            Gauge.builder("ems.executor.in.flight", inFlight, AtomicInteger::get)
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        protected abstract ExecutorService pool();
+
+        @Override
+        void submit(EmsDelivery delivery) {
+            int spins = 0;
+            while (!reserve()) {
+                if (spins++ < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RuntimeException("EMS Dispatch Interrupted: " + delivery.getMessageId());
+                }
+            }
+            if (!execute(delivery)) {
+                throw new RejectedExecutionException("EMS route executor is shut down: route=" + route.getName()
+                        + ", messageId=" + delivery.getMessageId());
+            }
+        }
+
+        @Override
+        boolean offer(EmsDelivery delivery) {
+            return reserve() && execute(delivery);
+        }
+
+        @Override
+        long queueDelayNanos() {
+            Task head = oldestWaiting();
+            return head != null ? System.nanoTime() - head.delivery.getEnqueuedAt() : 0L;
+        }
+
+        @Override
+        void shutdown() {
+            // 남은 메시지는 ack 되지 않았으므로 세션이 닫히면 브로커가 다시 전달한다
+            pool().shutdownNow();
+        }
+
+        private boolean reserve() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return 풀이 종료되어 받지 않았으면 false (예약한 자리는 돌려놓는다)
+         */
+        private boolean execute(EmsDelivery delivery) {
+            Task task = new Task(delivery);
+            waiting.offer(task);
+            try {
+                pool().execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                task.started = true;
+                inFlight.decrementAndGet();
+                return false;
+            }
+        }
+
+        private Task oldestWaiting() {
+            Task head;
+            while ((head = waiting.peek()) != null && head.started) {
+                waiting.remove(head);
+            }
+            return head;
+        }
+
+        private class Task implements Runnable {
+            private final EmsDelivery delivery;
+            private volatile boolean started;
+
+            private Task(EmsDelivery delivery) {
+                this.delivery = delivery;
+            }
+
+            @Override
+            public void run() {
+                started = true;
+                oldestWaiting();
+                try {
+                    Pooled.this.run(delivery);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static class Fixed extends Pooled {
+        private final ThreadPoolExecutor pool;
+
+        private Fixed(EmsRoute route, EmsDeliveryHandler deliveryHandler, MeterRegistry meterRegistry) {
+            super(route, deliveryHandler, meterRegistry);
+            int parallelism = Math.max(1, route.getExecutor().getParallelism());
+            AtomicInteger sequence = new AtomicInteger();
+            // 큐 길이는 capacity 로 이미 제한하므로 풀 자체 큐는 제한하지 않는다
+            this.pool = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "ems-route-" + route.getName() + "-" + sequence.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            Gauge.builder("ems.executor.queued", pool, p -> p.getQueue().size())
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("ems.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        protected ExecutorService pool() {
+            return pool;
+        }
+    }
+
+    /**
+     * 워커마다 deque 를 가진 ForkJoinPool. 컨트롤러 안에서 fork 한 작업이나 parallel stream 도
+     * 이 풀의 워커에서 돌기 때문에 common pool 을 다른 라우트와 나눠 쓰지 않는다.
+     */
+    private static class ForkJoin extends Pooled {
+        private final ForkJoinPool pool;
+
+        private ForkJoin(EmsRoute route, EmsDeliveryHandler deliveryHandler, MeterRegistry meterRegistry) {
+            super(route, deliveryHandler, meterRegistry);
+            int parallelism = Math.max(1, route.getExecutor().getParallelism());
+            this.pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("ems-fj-" + route.getName() + "-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+
+            Gauge.builder("ems.executor.queued", pool, p -> p.getQueuedSubmissionCount() + p.getQueuedTaskCount())
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("ems.executor.active", pool, ForkJoinPool::getActiveThreadCount)
+                    .tags(tags)
+                    .register(meterRegistry);
+            FunctionCounter.builder("ems.executor.steals", pool, ForkJoinPool::getStealCount)
+                    .description("Tasks a worker took from another worker's queue")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        protected ExecutorService pool() {
+            return pool;
+        }
+    }
+
+    /**
+     * 리스너 스레드가 직접 처리한다. 스레드 전환이 없는 대신 처리하는 동안 그 세션은 다음 메시지를 받지 않는다.
+     */
+    private static class CallerRuns extends RouteExecutor {
+        private final AtomicInteger active = new AtomicInteger();
+
+        private CallerRuns(EmsRoute route, EmsDeliveryHandler deliveryHandler, MeterRegistry meterRegistry) {
+            super(route, deliveryHandler, meterRegistry);
+            Gauge.builder("ems.executor.active", active, AtomicInteger::get)
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        @Override
+        void submit(EmsDelivery delivery) {
+            active.incrementAndGet();
+            try {
+                run(delivery);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        boolean offer(EmsDelivery delivery) {
+            // 재시도 타이머 같은 스레드를 막지 않도록 레인으로 넘긴다
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.chanseok.emsstudy.dispatch;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 링 버퍼가 비어 있을 때 워커가 기다리는 방법.
+ * 지연 시간과 CPU 사용량을 바꾸는 설정이라 {@code ems.dispatch.wait-strategy} 로 고른다.
+ */
+public interface WaitStrategy {
+
+    /**
+     * 꺼낼 것이 없을 때 워커가 호출한다.
+     *
+     * @param idleCount 연속으로 빈손이었던 횟수. 처음엔 0
+     * @param ready     기다리기 직전에 다시 확인할 조건 (signal 을 놓치지 않기 위함)
+     * @return 다음 호출에 넘길 idleCount
+     */
+    int idle(int idleCount, BooleanSupplier ready) throws InterruptedException;
+
+    /**
+     * 생산자가 원소를 넣은 뒤 호출한다.
+     */
+    void signal();
+
+    enum Type {
+        /** 잠들어 있다가 signal 로 깨어난다. CPU 를 가장 적게 쓴다 (기본값) */
+        BLOCKING,
+        /** 잠깐 spin/yield 한 뒤 짧게 park 한다 */
+        SLEEPING,
+        /** spin 한 뒤 yield 를 반복한다. 워커 수만큼 코어가 남을 때 쓴다 */
+        YIELDING,
+        /** 계속 spin 한다. 워커마다 코어 하나를 차지한다 */
+        BUSY_SPIN;
+
+        public WaitStrategy create() {
+            switch (this) {
+                case SLEEPING:
+                    return new Sleeping();
+                case YIELDING:
+                    return new Yielding();
+                case BUSY_SPIN:
+                    return new BusySpin();
+                default:
+                    return new Blocking();
+            }
+        }
+    }
+
+    /**
+     * 기다리는 워커가 있을 때만 허가를 풀어 준다. 모두 바쁘면 생산자는 카운터 하나만 읽고 지나간다.
+     */
+    class Blocking implements WaitStrategy {
+        private final Semaphore permits = new Semaphore(0);
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public int idle(int idleCount, BooleanSupplier ready) throws InterruptedException {
+            waiters.incrementAndGet();
+            try {
+                // waiters 를 올린 뒤 다시 확인하므로, 그 사이에 넣은 생산자는 waiters 를 보고 signal 한다
+                if (!ready.getAsBoolean()) {
+                    permits.acquire();
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+            return 0;
+        }
+
+        @Override
+        public void signal() {
+            if (waiters.get() > 0) {
+                permits.release();
+            }
+        }
+    }
+
+    class Sleeping implements WaitStrategy {
+        private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+        @Override
+        public int idle(int idleCount, BooleanSupplier ready) throws InterruptedException {
+            if (idleCount < 100) {
+                Thread.onSpinWait();
+            } else if (idleCount < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(SLEEP_NANOS);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                return idleCount;
+            }
+            return idleCount + 1;
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    class Yielding implements WaitStrategy {
+
+        @Override
+        public int idle(int idleCount, BooleanSupplier ready) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (idleCount < 100) {
+                Thread.onSpinWait();
+                return idleCount + 1;
+            }
+            Thread.yield();
+            return idleCount;
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    class BusySpin implements WaitStrategy {
+
+        @Override
+        public int idle(int idleCount, BooleanSupplier ready) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.onSpinWait();
+            return idleCount;
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+}
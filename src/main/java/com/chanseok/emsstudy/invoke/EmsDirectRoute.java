@@ -0,0 +1,23 @@
+package com.chanseok.emsstudy.invoke;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * DispatcherServlet 을 거치지 않고 직접 호출할 컨트롤러 메서드에 붙인다.
+ * 컴파일할 때 {@code EmsRouteProcessor} 가 URI 별 switch 와 파라미터/반환 타입의 코덱(ObjectReader/ObjectWriter)을 미리 잡아 둔
+ * {@link EmsRouteTable} 을 생성한다.
+ * 인터셉터와 성공 응답의 상태 지정은 적용되지 않으므로 {@code @RequestBody} 하나를 받아 body 를 돌려주는 메서드에만 붙인다.
+ * 던진 예외는 DispatcherServlet 과 같은 {@code HandlerExceptionResolver} 로 처리한다({@code @ExceptionHandler}, {@code @ResponseStatus}).
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface EmsDirectRoute {
+
+    /** 직접 호출할 URI. 비어 있으면 클래스와 메서드의 {@code @RequestMapping}/{@code @PostMapping} 경로를 이어 붙인다 */
+    String value() default "";
+}
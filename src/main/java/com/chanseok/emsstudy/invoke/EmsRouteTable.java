@@ -0,0 +1,25 @@
+package com.chanseok.emsstudy.invoke;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link EmsDirectRoute} 메서드의 URI → 메서드 호출 표. 구현은 컴파일할 때 {@link #GENERATED_CLASS_NAME} 으로 생성되고,
+ * 생성자로 컨트롤러 빈 조회 함수({@code Function<Class<?>, Object>})와 {@link com.chanseok.emsstudy.codec.EmsCodecRegistry} 를 받는다.
+ */
+public interface EmsRouteTable {
+
+    String GENERATED_CLASS_NAME = "com.chanseok.emsstudy.invoke.EmsGeneratedRouteTable";
+
+    List<String> getUris();
+
+    boolean contains(String uri);
+
+    /**
+     * body 를 파라미터 타입으로 읽어 컨트롤러 메서드를 호출하고, 반환값을 JSON 으로 쓴다.
+     *
+     * @throws EmsUnreadableBodyException body 를 파라미터 타입으로 읽지 못했다 (4xx 로 처리한다)
+     * @throws IOException                반환값을 쓰지 못했다
+     */
+    byte[] invoke(String uri, byte[] body) throws IOException;
+}
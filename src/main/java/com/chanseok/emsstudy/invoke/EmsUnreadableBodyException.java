@@ -0,0 +1,12 @@
+package com.chanseok.emsstudy.invoke;
+
+/**
+ * 직접 호출 라우트가 요청 body 를 파라미터 타입으로 읽지 못했다.
+ * DispatcherServlet 의 HttpMessageNotReadableException 처럼 4xx 로 처리한다.
+ */
+public class EmsUnreadableBodyException extends RuntimeException {
+
+    public EmsUnreadableBodyException(Throwable cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,411 @@
+package com.chanseok.emsstudy.invoke.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code @EmsDirectRoute} 메서드로 라우트 표({@code EmsGeneratedRouteTable})와 컨트롤러별 invoker({@code XxxController_EmsInvoker})를 생성한다.
+ * 디스패치는 URI switch 와 컨트롤러 메서드 직접 호출이고, 파라미터/반환 타입의 코덱(EmsRouteCodec)은 invoker 생성 시 한 번 가져온다.
+ * 이 프로세서는 애플리케이션 소스보다 먼저 컴파일해야 하므로(pom 의 default-compile, -proc:none) Spring/Jackson 클래스를 참조하지 않는다.
+ * META-INF/services 로 등록하지 않고 pom 의 compile-routes 실행에서만 annotationProcessors 로 지정한다.
+ */
+@SupportedAnnotationTypes(EmsRouteProcessor.ANNOTATION)
+public class EmsRouteProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "com.chanseok.emsstudy.invoke.EmsDirectRoute";
+
+    private static final String TABLE_PACKAGE = "com.chanseok.emsstudy.invoke";
+    private static final String TABLE_NAME = "EmsGeneratedRouteTable";
+    private static final String INVOKER_SUFFIX = "_EmsInvoker";
+
+    private static final String REQUEST_MAPPING = "org.springframework.web.bind.annotation.RequestMapping";
+    private static final String POST_MAPPING = "org.springframework.web.bind.annotation.PostMapping";
+    private static final String REQUEST_BODY = "org.springframework.web.bind.annotation.RequestBody";
+    private static final String HTTP_ENTITY = "org.springframework.http.HttpEntity";
+
+    private boolean generated = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // 애노테이션이 붙은 메서드는 모두 첫 라운드의 소스에 있으므로 한 번만 생성한다
+        if (generated || annotations.isEmpty()) {
+            return false;
+        }
+        generated = true;
+
+        Map<TypeElement, List<Route>> routesByController = new LinkedHashMap<>();
+        Map<String, ExecutableElement> methodsByUri = new LinkedHashMap<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                Route route = toRoute((ExecutableElement) element);
+                if (route == null) {
+                    continue;
+                }
+                ExecutableElement existing = methodsByUri.putIfAbsent(route.uri, route.method);
+                if (existing != null) {
+                    error(route.method, "Duplicate EMS direct route " + route.uri + " (also on " + existing.getEnclosingElement() + "." + existing + ")");
+                    continue;
+                }
+                routesByController.computeIfAbsent((TypeElement) element.getEnclosingElement(), controller -> new ArrayList<>()).add(route);
+            }
+        }
+        if (routesByController.isEmpty()) {
+            return false;
+        }
+
+        try {
+            List<String> invokerNames = new ArrayList<>();
+            for (Map.Entry<TypeElement, List<Route>> entry : routesByController.entrySet()) {
+                invokerNames.add(writeInvoker(entry.getKey(), entry.getValue()));
+            }
+            writeTable(routesByController, invokerNames);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate EMS route table: " + e);
+        }
+        return false;
+    }
+
+    /**
+     * @return 직접 호출할 수 없는 메서드면 오류를 남기고 null
+     */
+    private Route toRoute(ExecutableElement method) {
+        TypeElement controller = (TypeElement) method.getEnclosingElement();
+        if (controller.getNestingKind() != NestingKind.TOP_LEVEL || !controller.getModifiers().contains(Modifier.PUBLIC)) {
+            error(method, "EMS direct route must be declared in a public top-level class");
+            return null;
+        }
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+            error(method, "EMS direct route must be a public instance method");
+            return null;
+        }
+        if (!method.getTypeParameters().isEmpty()) {
+            error(method, "EMS direct route must not declare type parameters");
+            return null;
+        }
+
+        List<? extends VariableElement> parameters = method.getParameters();
+        TypeMirror parameterType = null;
+        if (parameters.size() == 1 && findAnnotation(parameters.get(0), REQUEST_BODY) != null) {
+            parameterType = boxed(parameters.get(0).asType());
+        } else if (!parameters.isEmpty()) {
+            error(method, "EMS direct route may only take a single @RequestBody parameter");
+            return null;
+        }
+
+        TypeMirror returnType = method.getReturnType();
+        if (returnType.getKind() != TypeKind.VOID) {
+            returnType = boxed(returnType);
+            if (processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(returnType), erasureOf(HTTP_ENTITY))) {
+                error(method, "EMS direct route must return the response body, not an HttpEntity");
+                return null;
+            }
+        }
+        if (hasTypeVariable(parameterType) || hasTypeVariable(returnType)) {
+            error(method, "EMS direct route types must not contain type variables");
+            return null;
+        }
+
+        String uri = uriOf(controller, method);
+        return uri != null ? new Route(uri, method, parameterType, returnType) : null;
+    }
+
+    private String uriOf(TypeElement controller, ExecutableElement method) {
+        String explicit = (String) findValue(findAnnotation(method, ANNOTATION), "value");
+        if (explicit != null && !explicit.isEmpty()) {
+            return explicit;
+        }
+
+        List<String> classPaths = pathsOf(findAnnotation(controller, REQUEST_MAPPING));
+        AnnotationMirror methodMapping = findAnnotation(method, POST_MAPPING);
+        if (methodMapping == null) {
+            methodMapping = findAnnotation(method, REQUEST_MAPPING);
+        }
+        if (methodMapping == null) {
+            error(method, "EMS direct route needs @PostMapping/@RequestMapping or an explicit URI");
+            return null;
+        }
+        List<String> methodPaths = pathsOf(methodMapping);
+        if (classPaths.size() > 1 || methodPaths.size() > 1) {
+            error(method, "EMS direct route with several mapped paths needs an explicit URI");
+            return null;
+        }
+
+        String classPath = classPaths.isEmpty() ? "" : classPaths.get(0);
+        String methodPath = methodPaths.isEmpty() ? "" : methodPaths.get(0);
+        String uri = trimSlashes(classPath) + (methodPath.isEmpty() ? "" : "/" + trimSlashes(methodPath));
+        return uri.startsWith("/") ? uri : "/" + uri;
+    }
+
+    private String writeInvoker(TypeElement controller, List<Route> routes) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(controller).getQualifiedName().toString();
+        String simpleName = controller.getSimpleName() + INVOKER_SUFFIX;
+        String controllerName = controller.getQualifiedName().toString();
+
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName).append(";\n\n");
+        source.append(generatedAnnotation());
+        source.append("public final class ").append(simpleName).append(" {\n");
+        source.append("    private final ").append(controllerName).append(" target;\n");
+        for (int i = 0; i < routes.size(); i++) {
+            source.append("    private final com.chanseok.emsstudy.codec.EmsRouteCodec codec").append(i).append(";\n");
+        }
+
+        source.append("\n    public ").append(simpleName).append("(").append(controllerName)
+                .append(" target, com.chanseok.emsstudy.codec.EmsCodecRegistry codecs) {\n");
+        source.append("        this.target = target;\n");
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            source.append("        this.codec").append(i).append(" = codecs.codec(").append(literal(route.uri)).append(", ")
+                    .append(route.parameterType != null ? typeToken(route.parameterType) : "null").append(", ")
+                    .append(route.returnType.getKind() != TypeKind.VOID ? typeToken(route.returnType) : "null").append(");\n");
+        }
+        source.append("    }\n");
+
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            source.append("\n    /** ").append(route.uri).append(" → ").append(route.method.getSimpleName()).append(" */\n");
+            source.append("    public byte[] invoke").append(i).append("(byte[] body) throws java.io.IOException {\n");
+            String call = "target." + route.method.getSimpleName() + "(" + (route.parameterType != null ? "argument" : "") + ")";
+            if (route.parameterType != null) {
+                source.append("        ").append(route.parameterType).append(" argument = codec").append(i).append(".read(body);\n");
+            }
+            if (route.returnType.getKind() == TypeKind.VOID) {
+                source.append("        ").append(call).append(";\n");
+                source.append("        return new byte[0];\n");
+            } else {
+                source.append("        return codec").append(i).append(".write(").append(call).append(");\n");
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        write(qualifiedName, source, controller);
+        return qualifiedName;
+    }
+
+    private void writeTable(Map<TypeElement, List<Route>> routesByController, List<String> invokerNames) throws IOException {
+        List<TypeElement> controllers = new ArrayList<>(routesByController.keySet());
+
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(TABLE_PACKAGE).append(";\n\n");
+        source.append(generatedAnnotation());
+        source.append("public final class ").append(TABLE_NAME).append(" implements EmsRouteTable {\n");
+        source.append("    private static final java.util.List<String> URIS = java.util.List.of(");
+        List<String> literals = new ArrayList<>();
+        for (List<Route> routes : routesByController.values()) {
+            for (Route route : routes) {
+                literals.add(literal(route.uri));
+            }
+        }
+        source.append(String.join(", ", literals)).append(");\n\n");
+        for (int c = 0; c < controllers.size(); c++) {
+            source.append("    private final ").append(invokerNames.get(c)).append(" invoker").append(c).append(";\n");
+        }
+
+        source.append("\n    public ").append(TABLE_NAME).append("(java.util.function.Function<Class<?>, Object> beans, ")
+                .append("com.chanseok.emsstudy.codec.EmsCodecRegistry codecs) {\n");
+        for (int c = 0; c < controllers.size(); c++) {
+            String controllerName = controllers.get(c).getQualifiedName().toString();
+            source.append("        this.invoker").append(c).append(" = new ").append(invokerNames.get(c)).append("((")
+                    .append(controllerName).append(") beans.apply(").append(controllerName).append(".class), codecs);\n");
+        }
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public java.util.List<String> getUris() {\n");
+        source.append("        return URIS;\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public boolean contains(String uri) {\n");
+        source.append("        switch (uri) {\n");
+        for (String literal : literals) {
+            source.append("            case ").append(literal).append(":\n");
+        }
+        source.append("                return true;\n");
+        source.append("            default:\n");
+        source.append("                return false;\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public byte[] invoke(String uri, byte[] body) throws java.io.IOException {\n");
+        source.append("        switch (uri) {\n");
+        for (int c = 0; c < controllers.size(); c++) {
+            List<Route> routes = routesByController.get(controllers.get(c));
+            for (int i = 0; i < routes.size(); i++) {
+                source.append("            case ").append(literal(routes.get(i).uri)).append(":\n");
+                source.append("                return invoker").append(c).append(".invoke").append(i).append("(body);\n");
+            }
+        }
+        source.append("            default:\n");
+        source.append("                throw new IllegalArgumentException(\"No EMS direct route: \" + uri);\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        write(TABLE_PACKAGE + "." + TABLE_NAME, source, controllers.toArray(new Element[0]));
+    }
+
+    private void write(String qualifiedName, CharSequence source, Element... originatingElements) throws IOException {
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, originatingElements).openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    private String generatedAnnotation() {
+        return "@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")\n";
+    }
+
+    /**
+     * java.lang.reflect.Type 식. 타입 인자가 없으면 Class 리터럴, 있으면 익명 TypeReference 로 제네릭 정보를 그대로 넘긴다.
+     */
+    private String typeToken(TypeMirror type) {
+        if (type instanceof DeclaredType && ((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return processingEnv.getTypeUtils().erasure(type) + ".class";
+        }
+        if (type.getKind() == TypeKind.ARRAY && !(((ArrayType) type).getComponentType() instanceof DeclaredType)) {
+            return type + ".class";
+        }
+        return "new com.fasterxml.jackson.core.type.TypeReference<" + type + ">() {}.getType()";
+    }
+
+    private TypeMirror boxed(TypeMirror type) {
+        return type.getKind().isPrimitive() ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).asType() : type;
+    }
+
+    private TypeMirror erasureOf(String typeName) {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(typeName);
+        return element != null ? processingEnv.getTypeUtils().erasure(element.asType()) : processingEnv.getTypeUtils().getNoType(TypeKind.NONE);
+    }
+
+    private static boolean hasTypeVariable(TypeMirror type) {
+        if (type == null) {
+            return false;
+        }
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariable(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return hasTypeVariable(wildcard.getExtendsBound()) || hasTypeVariable(wildcard.getSuperBound());
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariable(argument)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static Object findValue(AnnotationMirror mirror, String name) {
+        if (mirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@code value} 와 별칭인 {@code path} 중 지정된 쪽의 경로 목록
+     */
+    private static List<String> pathsOf(AnnotationMirror mapping) {
+        Object values = findValue(mapping, "value");
+        if (values == null) {
+            values = findValue(mapping, "path");
+        }
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        List<String> paths = new ArrayList<>();
+        for (Object value : (List<?>) values) {
+            paths.add((String) ((AnnotationValue) value).getValue());
+        }
+        return paths;
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static class Route {
+        private final String uri;
+        private final ExecutableElement method;
+
+        /** @RequestBody 타입 (파라미터가 없으면 null) */
+        private final TypeMirror parameterType;
+
+        private final TypeMirror returnType;
+
+        private Route(String uri, ExecutableElement method, TypeMirror parameterType, TypeMirror returnType) {
+            this.uri = uri;
+            this.method = method;
+            this.parameterType = parameterType;
+            this.returnType = returnType;
+        }
+    }
+}
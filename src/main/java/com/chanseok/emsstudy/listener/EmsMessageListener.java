@@ -1,26 +1,79 @@
 package com.chanseok.emsstudy.listener;
 
-import com.chanseok.emsstudy.servlet.EmsDispatcherServletAdapter;
-import com.chanseok.emsstudy.utility.BeanUtils;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.transport.EmsInbound;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQDestination;
 import org.springframework.stereotype.Component;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
-import javax.jms.MessageListener;
-import javax.jms.TextMessage;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
 
+/**
+ * 컨슈머 세션마다 수신 스레드 하나를 띄워, 받은 메시지를 라우트에 맞춰 {@link EmsInbound} 로 넘긴다.
+ * ack 는 메시지 단위 ack, 응답은 JMSReplyTo 로 보낸다.
+ * 워커 스레드의 ack/recover 는 {@link EmsSessionAcks} 에 쌓였다가 이 수신 스레드가 receive 사이에 보낸다.
+ * 메시지가 없을 때도 {@value #ACK_POLL_MILLIS}ms 마다 깨어나 쌓인 ack 를 보낸다.
+ */
+@Slf4j
 @Component
-public class EmsMessageListener implements MessageListener {
-    @Override
-    public void onMessage(Message message) {
-        try {
-            String payload = ((TextMessage) message).getText();
+@RequiredArgsConstructor
+public class EmsMessageListener {
+    /** 메시지가 없을 때 쌓인 ack 를 확인하는 주기 */
+    private static final long ACK_POLL_MILLIS = 20L;
+
+    private final EmsRouteRegistry routeRegistry;
+    private final EmsInbound inbound;
 
-            EmsDispatcherServletAdapter dispatcherServletAdapter = (EmsDispatcherServletAdapter) BeanUtils.getBean(EmsDispatcherServletAdapter.class);
-            dispatcherServletAdapter.dispatch("/ems/test", payload);
+    /**
+     * 컨슈머의 수신 스레드를 시작한다. 세션이 닫히면 receive 가 실패하면서 스레드도 끝난다.
+     */
+    public void listen(EmsRoute route, Session session, MessageConsumer consumer) {
+        EmsSessionAcks acks = new EmsSessionAcks(session);
+        Thread thread = new Thread(() -> run(route, consumer, acks), "ems-consumer-" + route.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(EmsRoute route, MessageConsumer consumer, EmsSessionAcks acks) {
+        try {
+            while (true) {
+                acks.drain();
+                Message message = consumer.receive(ACK_POLL_MILLIS);
+                if (message == null) {
+                    continue;
+                }
+                try {
+                    onMessage(message, acks);
+                } catch (JMSException | RuntimeException e) {
+                    // 넘기지 못한 메시지는 ack 하지 않고 세워 두었다가 다시 받는다
+                    log.warn("EMS message receive failed: route={}", route.getName(), e);
+                    acks.forMessage(message).recover();
+                }
+            }
         } catch (JMSException e) {
-            throw new RuntimeException(e);
+            log.info("EMS consumer stopped: route={}, reason={}", route.getName(), e.getMessage());
+        }
+    }
+
+    private void onMessage(Message message, EmsSessionAcks acks) throws JMSException {
+        byte[] body = EmsContentType.bodyOf(message);
+        String payload = body == null ? EmsContentType.payloadOf(message) : null;
+
+        String destination = ((ActiveMQDestination) message.getJMSDestination()).getPhysicalName();
+        EmsRoute route = routeRegistry.findByDestination(destination);
+        if (route == null) {
+            throw new IllegalStateException("No EMS route for destination: " + destination);
         }
 
+        EmsDelivery.Acknowledgement acknowledgement = acks.forMessage(message);
+        inbound.receive(route, message.getJMSMessageID(), payload,
+                dedupKey -> EmsDelivery.of(route, message, payload, body, dedupKey, acknowledgement));
     }
 }
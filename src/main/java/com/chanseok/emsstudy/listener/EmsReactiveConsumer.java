@@ -0,0 +1,204 @@
+package com.chanseok.emsstudy.listener;
+
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDeliveryHandler;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.servlet.EmsWebFluxAdapter;
+import com.chanseok.emsstudy.transport.EmsInbound;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQDestination;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * reactive 라우트의 컨슈머를 Reactive Streams 수요로 돌린다.
+ * 컨슈머는 prefetch 0(pull) 으로 열어서, 구독자의 request(n) 만큼만 receive 해 브로커에 메시지를 요청한다.
+ * 처리(flatMap)는 maxInFlight 개까지만 동시에 진행하므로, 핸들러가 느려지면 수요가 줄고 그만큼 브로커에 남는다.
+ * <ul>
+ *     <li>수신 스레드 : 라우트 컨슈머마다 하나. receive → 중복 검사/속도 제한({@link EmsInbound#accept})</li>
+ *     <li>이벤트 루프 : ems.dispatch.event-loops 개. WebFlux 디스패치를 구독한다</li>
+ * </ul>
+ * 컨트롤러가 블로킹이면 이벤트 루프를 잡고 있으므로 I/O 대기가 많은 논블로킹 컨트롤러 라우트에만 켠다.
+ * 테넌트 속도 제한으로 미룬 메시지는 토큰 시각에 수요와 상관없이 바로 디스패치한다.
+ * <p>
+ * 처리가 끝난 메시지의 ack/recover 는 {@link EmsSessionAcks} 로 수신 스레드에 넘긴다.
+ * 수신 스레드는 receive 사이마다 쌓인 ack 를 보내고, 수요가 없어 쉬고 있을 때는 ack 가 들어오면 바로 깨워 보낸다.
+ */
+@Slf4j
+@Component
+public class EmsReactiveConsumer implements DisposableBean {
+    /** 수요가 있는 동안 한 번에 기다리는 시간. 닫힌 컨슈머를 알아채는 주기이기도 하다 */
+    private static final long RECEIVE_TIMEOUT_MILLIS = 200L;
+
+    private final EmsInbound inbound;
+    private final EmsDeliveryHandler deliveryHandler;
+    private final EmsWebFluxAdapter webFluxAdapter;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler eventLoops;
+
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    /** 라우트 이름 → 처리 중인 메시지 수 (재연결해도 같은 게이지를 쓴다) */
+    private final Map<String, AtomicInteger> inFlightByRoute = new ConcurrentHashMap<>();
+
+    public EmsReactiveConsumer(EmsInbound inbound, EmsDeliveryHandler deliveryHandler, EmsWebFluxAdapter webFluxAdapter,
+                               EmsDispatchProperties dispatchProperties, MeterRegistry meterRegistry) {
+        this.inbound = inbound;
+        this.deliveryHandler = deliveryHandler;
+        this.webFluxAdapter = webFluxAdapter;
+        this.meterRegistry = meterRegistry;
+        this.eventLoops = Schedulers.newParallel("ems-event-loop", Math.max(1, dispatchProperties.getEventLoops()), true);
+    }
+
+    /**
+     * pull 모드 컨슈머를 붙일 destination 이름. prefetch 0 이면 receive 할 때마다 브로커에 한 건씩 요청한다.
+     */
+    public static String pullDestination(EmsRoute route) {
+        return route.getDestination() + "?consumer.prefetchSize=0";
+    }
+
+    /**
+     * 컨슈머를 구독한다. 세션이 닫히면 receive 가 실패하면서 구독도 끝나고, 재연결 때 다시 구독한다.
+     * 세션은 ack/recover 에만 쓰고, 수신 스레드 밖에서는 건드리지 않는다.
+     */
+    public void subscribe(EmsRoute route, Session session, MessageConsumer consumer) {
+        int maxInFlight = Math.max(1, route.getReactive().getMaxInFlight());
+        AtomicInteger inFlight = inFlightByRoute.computeIfAbsent(route.getName(), name -> {
+            AtomicInteger gauge = new AtomicInteger();
+            Gauge.builder("ems.reactive.in.flight", gauge, AtomicInteger::get)
+                    .tag("route", name)
+                    .register(meterRegistry);
+            return gauge;
+        });
+        Counter requested = Counter.builder("ems.reactive.requested")
+                .description("Messages requested from the broker by downstream demand")
+                .tag("route", route.getName())
+                .register(meterRegistry);
+
+        Function<EmsDelivery, Mono<Void>> handle = delivery -> Mono.defer(() -> {
+            inFlight.incrementAndGet();
+            return deliveryHandler.handleReactive(delivery);
+        }).subscribeOn(eventLoops).doFinally(signal -> inFlight.decrementAndGet());
+        Consumer<EmsDelivery> deferred = delivery -> handle.apply(delivery).subscribe();
+
+        Scheduler receiver = Schedulers.newSingle("ems-reactive-" + route.getName(), true);
+        EmsSessionAcks acks = new EmsSessionAcks(session);
+        Runnable drain = () -> {
+            try {
+                acks.drain();
+            } catch (JMSException e) {
+                log.warn("EMS reactive ack failed: route={}, reason={}", route.getName(), e.getMessage());
+            }
+        };
+        Function<Message, EmsDelivery.Acknowledgement> acknowledgements = message -> onReceiver(acks.forMessage(message), receiver, drain);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Disposable[] subscription = new Disposable[1];
+        // generate 는 요청 한 건마다 값 하나를 내야 하므로 메시지가 올 때까지(또는 취소될 때까지) 수신 스레드에서 기다린다
+        subscription[0] = Flux.<EmsDelivery>generate(sink -> {
+                    try {
+                        EmsDelivery delivery = null;
+                        while (delivery == null && !cancelled.get()) {
+                            acks.drain();
+                            delivery = receive(route, consumer, acknowledgements, deferred);
+                        }
+                        if (delivery != null) {
+                            sink.next(delivery);
+                        } else {
+                            sink.complete();
+                        }
+                    } catch (JMSException | RuntimeException e) {
+                        sink.error(e);
+                    }
+                })
+                .doOnRequest(requested::increment)
+                .doOnCancel(() -> cancelled.set(true))
+                .subscribeOn(receiver)
+                .flatMap(handle, maxInFlight)
+                .doFinally(signal -> {
+                    receiver.dispose();
+                    if (subscription[0] != null) {
+                        subscriptions.remove(subscription[0]);
+                    }
+                })
+                .subscribe(null, e -> log.info("EMS reactive consumer stopped: route={}, reason={}", route.getName(), e.getMessage()));
+        subscriptions.add(subscription[0]);
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.dispose();
+        eventLoops.dispose();
+        webFluxAdapter.close();
+    }
+
+    /**
+     * @return 시간 안에 메시지가 없거나, 중복이라 건너뛰었거나, 속도 제한으로 미뤘으면 null
+     */
+    private EmsDelivery receive(EmsRoute route, MessageConsumer consumer, Function<Message, EmsDelivery.Acknowledgement> acknowledgements,
+                                Consumer<EmsDelivery> deferred) throws JMSException {
+        Message message = consumer.receive(RECEIVE_TIMEOUT_MILLIS);
+        if (message == null) {
+            return null;
+        }
+        byte[] body = EmsContentType.bodyOf(message);
+        String payload = body == null ? EmsContentType.payloadOf(message) : null;
+        String destination = ((ActiveMQDestination) message.getJMSDestination()).getPhysicalName();
+        if (!destination.equals(route.getDestination())) {
+            throw new IllegalStateException("EMS reactive consumer received from unexpected destination: " + destination);
+        }
+        EmsDelivery.Acknowledgement acknowledgement = acknowledgements.apply(message);
+        return inbound.accept(route, message.getJMSMessageID(), payload,
+                dedupKey -> EmsDelivery.of(route, message, payload, body, dedupKey, acknowledgement), deferred);
+    }
+
+    /**
+     * ack/recover 를 큐에 넣고 수신 스레드에 drain 을 예약한다. 수신 스레드가 receive 중이면 그 다음에 실행된다.
+     * 구독이 끝나 스케줄러가 닫혔으면 세션도 닫히는 중이므로 ack 는 버리고, 메시지는 브로커가 다시 보낸다.
+     */
+    private static EmsDelivery.Acknowledgement onReceiver(EmsDelivery.Acknowledgement queued, Scheduler receiver, Runnable drain) {
+        return new EmsDelivery.Acknowledgement() {
+            @Override
+            public void acknowledge() throws JMSException {
+                queued.acknowledge();
+                schedule();
+            }
+
+            @Override
+            public void recover() throws JMSException {
+                queued.recover();
+                schedule();
+            }
+
+            private void schedule() {
+                try {
+                    receiver.schedule(drain);
+                } catch (RejectedExecutionException e) {
+                    log.debug("EMS reactive receiver closed, ack dropped");
+                }
+            }
+        };
+    }
+}
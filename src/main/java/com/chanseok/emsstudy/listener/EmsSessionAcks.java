@@ -0,0 +1,83 @@
+package com.chanseok.emsstudy.listener;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 컨슈머 세션 하나의 ack/recover 를 세션 스레드로 넘긴다.
+ * JMS 세션은 한 스레드만 써야 하므로 워커 스레드는 ack 를 큐에 넣기만 하고, 세션의 수신 스레드가 receive 사이사이에 {@link #drain} 으로 실행한다.
+ * <ul>
+ *     <li>ack : 메시지 단위 ack (INDIVIDUAL_ACKNOWLEDGE)</li>
+ *     <li>recover : dead letter 전송에 실패해 ack 하지 못한 메시지를 다시 받는다.
+ *     {@link Session#recover()} 는 세션의 ack 되지 않은 메시지를 모두 재전달하므로 바로 하지 않고, 그 메시지만 ack 하지 않은 채 세워 둔다.
+ *     세션에 처리 중인 다른 메시지가 하나도 없을 때 세션 recover 로 세워 둔 메시지만 다시 받고, 그 전에 세션이 닫히면 브로커가 재전달한다.
+ *     재전달 횟수가 브로커 정책을 넘으면 브로커가 DLQ 로 옮긴다</li>
+ * </ul>
+ * 세워 둔 메시지는 recover 될 때까지 prefetch 자리를 차지한다.
+ */
+@Slf4j
+public class EmsSessionAcks {
+    private final Session session;
+    private final Queue<Message> pendingAcks = new ConcurrentLinkedQueue<>();
+    private final Queue<Message> pendingRecovers = new ConcurrentLinkedQueue<>();
+    /** 받았지만 아직 ack/recover 되지 않은 메시지 */
+    private final Set<Message> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    /** recover 를 요청받아 세션 recover 를 기다리는 메시지. 세션 스레드에서만 쓴다 */
+    private final List<Message> parked = new ArrayList<>();
+
+    public EmsSessionAcks(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * 메시지를 받은 세션 스레드에서 ack/recover 하도록 넘기는 {@link EmsDelivery.Acknowledgement}.
+     * 메시지를 받은 세션 스레드에서 호출하며, 이때부터 ack/recover 될 때까지 처리 중인 메시지로 센다.
+     */
+    public EmsDelivery.Acknowledgement forMessage(Message message) {
+        inFlight.add(message);
+        return new EmsDelivery.Acknowledgement() {
+            @Override
+            public void acknowledge() {
+                pendingAcks.offer(message);
+            }
+
+            @Override
+            public void recover() {
+                pendingRecovers.offer(message);
+            }
+        };
+    }
+
+    /**
+     * 쌓인 ack 를 보내고 recover 요청된 메시지를 세워 둔다.
+     * 처리 중인 메시지가 없으면 세워 둔 메시지를 세션 recover 로 다시 받는다. 세션 스레드에서만 호출한다.
+     */
+    public void drain() throws JMSException {
+        Message message;
+        while ((message = pendingAcks.poll()) != null) {
+            message.acknowledge();
+            inFlight.remove(message);
+        }
+        while ((message = pendingRecovers.poll()) != null) {
+            if (inFlight.remove(message)) {
+                parked.add(message);
+            }
+        }
+        if (!parked.isEmpty() && inFlight.isEmpty()) {
+            log.warn("EMS session recover: {} unacknowledged messages will be redelivered", parked.size());
+            parked.clear();
+            session.recover();
+        }
+    }
+}
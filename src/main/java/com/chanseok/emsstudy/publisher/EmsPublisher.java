@@ -0,0 +1,231 @@
+package com.chanseok.emsstudy.publisher;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.connection.EmsConnectionPool;
+import com.chanseok.emsstudy.connection.EmsPooledSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.AsyncCallback;
+import org.springframework.stereotype.Component;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * EMS 메시지 발행기.
+ * {@link EmsConnectionPool} 의 세션/프로듀서를 빌려 쓰므로 전송할 때마다 커넥션을 새로 만들지 않는다.
+ * <ul>
+ *     <li>{@link #send} : 동기 전송</li>
+ *     <li>{@link #sendAsync} : 브로커 응답을 콜백(CompletableFuture)으로 받는 비동기 전송</li>
+ *     <li>{@link #sendBatch} : 트랜잭션 세션으로 batchSize 건마다 commit 하는 배치 전송</li>
+ *     <li>{@link #reply} : JMSReplyTo 로 응답 전송</li>
+ * </ul>
+ * 문자열 payload 는 TextMessage 로, Smile/CBOR 같은 바이너리 body 와 이미 압축된 body(byte[])는 BytesMessage 로 보낸다.
+ * ems.publisher.compression 을 켜면 threshold 이상인 body 는 압축해서 보낸다({@link EmsContentEncoding}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsPublisher {
+    private final EmsConnectionPool connectionPool;
+    private final EmsPublisherProperties properties;
+
+    public void send(String queue, String payload) {
+        send(queue, payload, Collections.emptyMap());
+    }
+
+    public void send(String queue, String payload, Map<String, ?> headers) {
+        EmsPooledSession session = connectionPool.borrowSession(false);
+        try {
+            send(session, session.getQueue(queue), payload, headers, null, null);
+            connectionPool.release(session);
+        } catch (JMSException e) {
+            connectionPool.invalidate(session);
+            throw new RuntimeException("EMS Publish Failed: " + queue, e);
+        }
+    }
+
+    /**
+     * 바이너리 body 를 BytesMessage 로 보낸다. headers 에 {@link EmsContentType#PROPERTY} 를 함께 넘긴다.
+     */
+    public void send(String queue, byte[] body, Map<String, ?> headers) {
+        EmsPooledSession session = connectionPool.borrowSession(false);
+        try {
+            send(session, session.getQueue(queue), createMessage(session.getSession(), body, headers), headers, null, null);
+            connectionPool.release(session);
+        } catch (JMSException e) {
+            connectionPool.invalidate(session);
+            throw new RuntimeException("EMS Publish Failed: " + queue, e);
+        }
+    }
+
+    public CompletableFuture<Void> sendAsync(String queue, String payload) {
+        return sendAsync(queue, payload, Collections.emptyMap());
+    }
+
+    /**
+     * 브로커가 메시지를 받았다는 응답이 오면 완료되는 CompletableFuture 를 반환한다.
+     * 전송 호출 자체는 응답을 기다리지 않으므로 세션은 즉시 풀로 반납된다.
+     */
+    public CompletableFuture<Void> sendAsync(String queue, String payload, Map<String, ?> headers) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        EmsPooledSession session = connectionPool.borrowSession(false);
+        try {
+            send(session, session.getQueue(queue), payload, headers, null, new AsyncCallback() {
+                @Override
+                public void onSuccess() {
+                    future.complete(null);
+                }
+
+                @Override
+                public void onException(JMSException exception) {
+                    future.completeExceptionally(exception);
+                }
+            });
+            connectionPool.release(session);
+        } catch (JMSException e) {
+            connectionPool.invalidate(session);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 트랜잭션 세션으로 batchSize 건마다 commit 한다.
+     * 중간에 실패하면 아직 commit 되지 않은 묶음만 rollback 되고, 이미 commit 된 묶음은 그대로 남는다.
+     */
+    public void sendBatch(String queue, List<String> payloads) {
+        EmsPooledSession session = connectionPool.borrowSession(true);
+        try {
+            Destination destination = session.getQueue(queue);
+            int pending = 0;
+            for (String payload : payloads) {
+                send(session, destination, payload, Collections.emptyMap(), null, null);
+                if (++pending >= properties.getBatchSize()) {
+                    session.getSession().commit();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                session.getSession().commit();
+            }
+            connectionPool.release(session);
+        } catch (JMSException e) {
+            try {
+                session.getSession().rollback();
+            } catch (JMSException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            connectionPool.invalidate(session);
+            throw new RuntimeException("EMS Batch Publish Failed: " + queue, e);
+        }
+    }
+
+    /**
+     * 요청 메시지의 JMSReplyTo 로 응답을 보낸다.
+     */
+    public void reply(Destination replyTo, String correlationId, String payload) {
+        reply(replyTo, correlationId, payload, null);
+    }
+
+    /**
+     * 요청 메시지의 JMSReplyTo 로 텍스트 응답을 보낸다.
+     */
+    public void reply(Destination replyTo, String correlationId, String payload, String contentType) {
+        EmsPooledSession session = connectionPool.borrowSession(false);
+        try {
+            send(session, replyTo, payload, Collections.emptyMap(), correlationId, null);
+            connectionPool.release(session);
+        } catch (JMSException e) {
+            connectionPool.invalidate(session);
+            throw new RuntimeException("EMS Reply Failed: " + replyTo, e);
+        }
+    }
+
+    /**
+     * 요청 메시지의 JMSReplyTo 로 바이너리 응답을 보낸다. {@link EmsContentType#PROPERTY} 를 붙인 BytesMessage 로 보낸다.
+     */
+    public void reply(Destination replyTo, String correlationId, byte[] body, String contentType) {
+        Map<String, ?> headers = contentType != null
+                ? Collections.singletonMap(EmsContentType.PROPERTY, contentType)
+                : Collections.emptyMap();
+        EmsPooledSession session = connectionPool.borrowSession(false);
+        try {
+            send(session, replyTo, createMessage(session.getSession(), body, headers), headers, correlationId, null);
+            connectionPool.release(session);
+        } catch (JMSException e) {
+            connectionPool.invalidate(session);
+            throw new RuntimeException("EMS Reply Failed: " + replyTo, e);
+        }
+    }
+
+    private void send(EmsPooledSession session, Destination destination, String payload, Map<String, ?> headers,
+                      String correlationId, AsyncCallback callback) throws JMSException {
+        send(session, destination, createMessage(session.getSession(), payload, headers), headers, correlationId, callback);
+    }
+
+    private void send(EmsPooledSession session, Destination destination, Message message, Map<String, ?> headers,
+                      String correlationId, AsyncCallback callback) throws JMSException {
+        for (Map.Entry<String, ?> header : headers.entrySet()) {
+            message.setObjectProperty(header.getKey(), header.getValue());
+        }
+        if (correlationId != null) {
+            message.setJMSCorrelationID(correlationId);
+        }
+
+        session.getProducer().send(destination, message,
+                properties.getDeliveryMode(), properties.getPriority(), properties.getTimeToLive().toMillis(), callback);
+    }
+
+    /**
+     * 텍스트 payload 로 메시지를 만든다. 압축을 켰고 body 가 threshold 이상이면 압축한 BytesMessage 에 코덱 이름 프로퍼티를 붙이고,
+     * 그 밖에는 TextMessage 로 보낸다.
+     */
+    private Message createMessage(Session session, String payload, Map<String, ?> headers) throws JMSException {
+        EmsPublisherProperties.Compression compression = properties.getCompression();
+        if (!compression.isEnabled()) {
+            return session.createTextMessage(payload);
+        }
+        byte[] content = payload.getBytes(StandardCharsets.UTF_8);
+        return content.length >= compression.getThreshold().toBytes()
+                ? compressedMessage(session, content)
+                : session.createTextMessage(payload);
+    }
+
+    /**
+     * 바이너리 body 로 BytesMessage 를 만든다.
+     * 이미 압축된 body (압축된 채로 dead letter 로 옮기는 메시지 등)는 다시 압축하거나 인코딩하지 않고 받은 바이트 그대로 싣고,
+     * 압축을 켰고 threshold 이상이면 압축한다.
+     */
+    private Message createMessage(Session session, byte[] body, Map<String, ?> headers) throws JMSException {
+        EmsPublisherProperties.Compression compression = properties.getCompression();
+        if (headers.get(EmsContentEncoding.PROPERTY) == null
+                && compression.isEnabled() && body.length >= compression.getThreshold().toBytes()) {
+            return compressedMessage(session, body);
+        }
+        return bytesMessage(session, body);
+    }
+
+    private BytesMessage compressedMessage(Session session, byte[] content) throws JMSException {
+        EmsPublisherProperties.Compression compression = properties.getCompression();
+        EmsContentEncoding codec = compression.getCodec();
+        BytesMessage message = bytesMessage(session, codec.compress(content, compression.getDeflateLevel()));
+        message.setStringProperty(EmsContentEncoding.PROPERTY, codec.getName());
+        return message;
+    }
+
+    private static BytesMessage bytesMessage(Session session, byte[] content) throws JMSException {
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(content);
+        return message;
+    }
+}
@@ -0,0 +1,58 @@
+package com.chanseok.emsstudy.publisher;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import javax.jms.DeliveryMode;
+import java.time.Duration;
+import java.util.zip.Deflater;
+
+/**
+ * {@link EmsPublisher} 설정.
+ * application.yml 의 {@code ems.publisher.*} 값을 바인딩한다.
+ * 커넥션/세션 풀 크기는 {@code ems.broker.*} 에서 컨슈머와 함께 설정한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.publisher")
+public class EmsPublisherProperties {
+
+    /** true 이면 PERSISTENT, false 이면 NON_PERSISTENT 로 전송 */
+    private boolean persistent = true;
+
+    /** 메시지 우선순위 (0~9) */
+    private int priority = 4;
+
+    /** 메시지 TTL (0 이면 만료 없음) */
+    private Duration timeToLive = Duration.ZERO;
+
+    /** 배치 전송 시 몇 건마다 commit 할지 */
+    private int batchSize = 100;
+
+    /** 큰 메시지 압축 (JMSReplyTo 응답도 같은 설정을 따른다) */
+    private final Compression compression = new Compression();
+
+    public int getDeliveryMode() {
+        return persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT;
+    }
+
+    @Getter
+    @Setter
+    public static class Compression {
+
+        /** 켜면 threshold 이상인 body 를 압축해 BytesMessage 로 보낸다 */
+        private boolean enabled = false;
+
+        /** 압축 코덱 (deflate, lz4) */
+        private EmsContentEncoding codec = EmsContentEncoding.DEFLATE;
+
+        /** 이 크기(인코딩한 body 바이트) 미만이면 압축하지 않는다. 작은 메시지는 줄어드는 양보다 압축 비용이 크다 */
+        private DataSize threshold = DataSize.ofKilobytes(64);
+
+        /** deflate 압축 레벨 (1~9, -1 이면 JDK 기본값 6) */
+        private int deflateLevel = Deflater.DEFAULT_COMPRESSION;
+    }
+}
@@ -0,0 +1,218 @@
+package com.chanseok.emsstudy.ratelimit;
+
+import com.chanseok.emsstudy.dispatch.EmsDeadLetterSender;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.utility.LruTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 라우트별/테넌트별 토큰 버킷으로 소비 속도를 제한한다. 리스너(세션) 스레드에서 호출한다.
+ * <ul>
+ *     <li>라우트 버킷 : 비어 있으면 다음 토큰까지 세션 스레드를 park 한다.
+ *     라우트마다 세션이 따로 있으므로 제한에 걸린 라우트만 멈추고 다른 라우트는 그대로 소비한다</li>
+ *     <li>테넌트 버킷 : 세션 스레드를 멈추지 않는다. 비어 있으면 다음 토큰을 예약해 두고 그 시각까지 메시지를 미루므로,
+ *     한 테넌트가 몰려도 같은 라우트의 다른 테넌트는 막히지 않는다</li>
+ * </ul>
+ * 미룬 메시지는 ack 되지 않은 채 세션의 prefetch 자리를 차지한다. 한 테넌트가 prefetch 를 다 채우면 브로커가 이 컨슈머에 더 보내지 않아
+ * 다른 테넌트까지 멈추므로, 테넌트마다 미뤄 둘 수 있는 메시지를 tenantMaxDeferred 로 묶고(기다리는 시간도 그만큼으로 묶인다)
+ * 넘치는 메시지는 tenantOverflow 정책대로 dead letter 큐로 옮기거나 버린다.
+ * 테넌트 버킷은 tenantMaxEntries 개까지만 들고 tenantIdleTimeout 동안 쓰지 않으면 버린다. 다시 만들어진 버킷은 burst 만큼 다시 채워져 있다.
+ */
+@Slf4j
+@Component
+public class EmsRateLimiter {
+    private final EmsRetryScheduler scheduler;
+    private final EmsDeadLetterSender deadLetterSender;
+    private final Map<String, Limits> limits = new HashMap<>();
+
+    public EmsRateLimiter(EmsRouteRegistry routeRegistry, EmsRetryScheduler scheduler, EmsDeadLetterSender deadLetterSender,
+                          MeterRegistry meterRegistry) {
+        this.scheduler = scheduler;
+        this.deadLetterSender = deadLetterSender;
+        for (EmsRoute route : routeRegistry.getRoutes()) {
+            EmsRoute.RateLimit rateLimit = route.getRateLimit();
+            if (rateLimit.getPermitsPerSecond() > 0 || hasTenantLimit(rateLimit)) {
+                limits.put(route.getName(), new Limits(route, meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * 라우트 버킷에서 토큰을 얻을 때까지 기다리고, 테넌트 버킷의 토큰은 예약한다.
+     *
+     * @param deferred 테넌트 토큰을 기다려야 해서 미룬 메시지를 토큰 시각에 이어서 처리할 곳. handoff 스레드에서 호출된다
+     * @return 바로 처리해도 되면 true, 미뤘거나 테넌트 한도를 넘어 정리했으면 false (이때 호출한 쪽은 메시지를 더 처리하지 않는다)
+     */
+    public boolean acquire(EmsDelivery delivery, Consumer<EmsDelivery> deferred) {
+        Limits routeLimits = limits.get(delivery.getRoute().getName());
+        if (routeLimits == null) {
+            return true;
+        }
+
+        long startedAt = System.nanoTime();
+        boolean throttled = acquire(routeLimits.route);
+
+        Tenant tenant = routeLimits.tenant(delivery);
+        long tenantWait = 0L;
+        if (tenant != null && tenant.bucket.tryAcquire() > 0L) {
+            if (!tenant.tryDefer(routeLimits.rateLimit.getTenantMaxDeferred())) {
+                routeLimits.overflowed.increment();
+                overflow(delivery, routeLimits.rateLimit);
+                return false;
+            }
+            tenantWait = tenant.bucket.reserve(System.nanoTime());
+            if (tenantWait == 0L) {
+                tenant.deferredCount.decrementAndGet();
+            }
+        }
+
+        if (throttled || tenantWait > 0L) {
+            routeLimits.throttled.increment();
+            routeLimits.waitTimer.record(System.nanoTime() - startedAt + tenantWait, TimeUnit.NANOSECONDS);
+        }
+        if (tenantWait > 0L) {
+            routeLimits.deferred.increment();
+            scheduler.scheduleBlocking(() -> {
+                tenant.deferredCount.decrementAndGet();
+                deferred.accept(delivery);
+            }, tenantWait, TimeUnit.NANOSECONDS);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 미뤄 둔 메시지가 한도에 이른 테넌트의 메시지를 정책대로 정리한다. dead letter 전송에 실패하면 recover 한다.
+     */
+    private void overflow(EmsDelivery delivery, EmsRoute.RateLimit rateLimit) {
+        Object tenant = delivery.getProperty(rateLimit.getTenantProperty());
+        try {
+            if (rateLimit.getTenantOverflow() == EmsRoute.RateLimit.TenantOverflow.SHED) {
+                log.debug("EMS tenant overflow shed: route={}, tenant={}, messageId={}",
+                        delivery.getRoute().getName(), tenant, delivery.getMessageId());
+                delivery.acknowledge();
+            } else if (deadLetterSender.send(delivery, "Tenant rate limit backlog exceeded: " + tenant)) {
+                delivery.acknowledge();
+            } else {
+                delivery.recover();
+            }
+        } catch (JMSException e) {
+            throw new RuntimeException("EMS Tenant Overflow Failed: " + delivery.getMessageId(), e);
+        }
+    }
+
+    /**
+     * @return 한 번이라도 기다렸으면 true
+     */
+    private static boolean acquire(TokenBucket bucket) {
+        if (bucket == null) {
+            return false;
+        }
+        boolean waited = false;
+        long wait;
+        while ((wait = bucket.tryAcquire()) > 0L) {
+            waited = true;
+            LockSupport.parkNanos(bucket, wait);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("EMS Rate Limit Wait Interrupted");
+            }
+        }
+        return waited;
+    }
+
+    private static boolean hasTenantLimit(EmsRoute.RateLimit rateLimit) {
+        return rateLimit.getTenantProperty() != null && rateLimit.getTenantPermitsPerSecond() > 0;
+    }
+
+    private static class Limits {
+        private final EmsRoute.RateLimit rateLimit;
+        private final TokenBucket route;
+        private final LruTtlCache<String, Tenant> tenants;
+        private final Counter throttled;
+        private final Counter deferred;
+        private final Counter overflowed;
+        private final Timer waitTimer;
+
+        private Limits(EmsRoute route, MeterRegistry meterRegistry) {
+            this.rateLimit = route.getRateLimit();
+            this.route = rateLimit.getPermitsPerSecond() > 0
+                    ? new TokenBucket(rateLimit.getPermitsPerSecond(), rateLimit.getBurst())
+                    : null;
+            this.tenants = new LruTtlCache<>(rateLimit.getTenantMaxEntries(), 16, rateLimit.getTenantIdleTimeout().toMillis());
+            this.throttled = Counter.builder("ems.ratelimit.throttled")
+                    .description("Messages that had to wait for a rate limit token")
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+            this.deferred = Counter.builder("ems.ratelimit.deferred")
+                    .description("Messages held back for a tenant token instead of blocking the session thread")
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+            this.overflowed = Counter.builder("ems.ratelimit.overflowed")
+                    .description("Messages dead-lettered or shed because their tenant already had tenantMaxDeferred messages held back")
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+            this.waitTimer = Timer.builder("ems.ratelimit.wait")
+                    .tag("route", route.getName())
+                    .register(meterRegistry);
+        }
+
+        private Tenant tenant(EmsDelivery delivery) {
+            if (!hasTenantLimit(rateLimit)) {
+                return null;
+            }
+            Object tenant = delivery.getProperty(rateLimit.getTenantProperty());
+            if (tenant == null) {
+                return null;
+            }
+            return tenants.getOrCreate(tenant.toString(), name -> {
+                Double permitsPerSecond = rateLimit.getTenants().get(name);
+                return new Tenant(new TokenBucket(permitsPerSecond != null ? permitsPerSecond : rateLimit.getTenantPermitsPerSecond(),
+                        rateLimit.getTenantBurst()));
+            });
+        }
+    }
+
+    private static class Tenant {
+        private final TokenBucket bucket;
+        /** 토큰을 기다리며 미뤄 둔 메시지 수 */
+        private final AtomicInteger deferredCount = new AtomicInteger();
+
+        private Tenant(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        /**
+         * @return 미뤄 둘 자리가 있어 하나 차지했으면 true
+         */
+        private boolean tryDefer(int maxDeferred) {
+            if (maxDeferred <= 0) {
+                deferredCount.incrementAndGet();
+                return true;
+            }
+            while (true) {
+                int current = deferredCount.get();
+                if (current >= maxDeferred) {
+                    return false;
+                }
+                if (deferredCount.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.chanseok.emsstudy.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 락 없는 토큰 버킷.
+ * 남은 토큰 수 대신 "다음 토큰이 생기는 시각" 하나만 AtomicLong 으로 들고 CAS 로 갱신한다(GCRA).
+ * 버킷이 비어 있으면 토큰을 쓰지 않고 기다려야 할 시간만 알려주거나({@link #tryAcquire}), 다음 빈 자리를 미리 예약한다({@link #reserve}).
+ */
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    /** 이론상 다음 토큰이 생기는 시각 (nanoTime) */
+    private final AtomicLong nextFree;
+
+    /**
+     * @param permitsPerSecond 초당 토큰 수
+     * @param burst            한 번에 몰아 쓸 수 있는 토큰 수 (버킷 크기)
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+        this.nextFree = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * 토큰이 있으면 하나 쓰고 0 을 반환한다.
+     *
+     * @return 토큰이 없으면 다음 토큰까지 남은 시간(nanos). 이때 토큰은 쓰지 않는다
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = nextFree.get();
+            long start = Math.max(current, now - burstNanos);
+            if (start > now) {
+                return start - now;
+            }
+            if (nextFree.compareAndSet(current, start + intervalNanos)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * 토큰 하나를 예약한다. 버킷이 비어 있어도 다음 빈 자리를 차지하므로 예약한 순서대로 쓸 수 있게 된다.
+     *
+     * @return 예약한 토큰을 쓸 수 있을 때까지 남은 시간(nanos). 바로 쓸 수 있으면 0
+     */
+    public long reserve(long now) {
+        while (true) {
+            long current = nextFree.get();
+            long start = Math.max(current, now - burstNanos);
+            if (nextFree.compareAndSet(current, start + intervalNanos)) {
+                return Math.max(0L, start - now);
+            }
+        }
+    }
+}
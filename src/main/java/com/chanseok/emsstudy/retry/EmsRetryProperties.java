@@ -0,0 +1,26 @@
+package com.chanseok.emsstudy.retry;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * {@link EmsRetryScheduler} 타이밍 휠 설정.
+ * application.yml 의 {@code ems.retry.*} 값을 바인딩한다. 재시도 횟수/백오프는 라우트별로 정한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.retry")
+public class EmsRetryProperties {
+
+    /** 휠 한 칸의 시간 (재시도 시각의 정밀도) */
+    private Duration tickDuration = Duration.ofMillis(10);
+
+    /** 휠 슬롯 수 (2의 거듭제곱으로 올림) */
+    private int wheelSize = 512;
+
+    /** 휠에서 꺼낸 블로킹 작업(재입장 등)을 실행할 스레드 수 */
+    private int handoffThreads = 2;
+}
@@ -0,0 +1,117 @@
+package com.chanseok.emsstudy.retry;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDispatchPipeline;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.utility.BeanUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 프로세스 안에서 재시도/지연 실행을 예약한다.
+ * 재시도할 메시지는 ack 하지 않은 채 {@link HashedTimingWheel} 에 넣어 두었다가 백오프가 지나면 파이프라인에 다시 넣는다.
+ * 브로커 재전달과 달리 네트워크 왕복이 없고 세션 스레드를 막지 않는다.
+ */
+@Slf4j
+@Component
+public class EmsRetryScheduler implements InitializingBean, DisposableBean {
+    private final MeterRegistry meterRegistry;
+    private final HashedTimingWheel<Runnable> wheel;
+
+    /** 휠 스레드를 막지 않도록 블로킹될 수 있는 예약 작업을 넘겨받아 실행한다 */
+    private final ExecutorService handoff;
+
+    public EmsRetryScheduler(EmsRetryProperties properties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.wheel = new HashedTimingWheel<>("ems-retry-wheel", properties.getTickDuration().toNanos(), TimeUnit.NANOSECONDS,
+                properties.getWheelSize(), Runnable::run);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.handoff = Executors.newFixedThreadPool(Math.max(1, properties.getHandoffThreads()), r -> {
+            Thread thread = new Thread(r, "ems-retry-handoff-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("ems.retry.pending", wheel, HashedTimingWheel::pending)
+                .description("Tasks waiting in the retry timing wheel")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        wheel.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // 휠에 남은 메시지는 ack 되지 않았으므로 세션이 닫히면 브로커가 다시 전달한다
+        wheel.stop();
+        handoff.shutdownNow();
+    }
+
+    /**
+     * delay 뒤에 task 를 실행한다. task 는 휠 스레드에서 돌므로 오래 걸리는 작업은 다른 스레드로 넘긴다.
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        wheel.schedule(task, delay, unit);
+    }
+
+    /**
+     * delay 뒤에 task 를 휠 스레드가 아닌 handoff 스레드에서 실행한다.
+     * 레인이 빌 때까지 기다리거나 dead letter 를 보내는 재입장처럼 블로킹될 수 있는 작업에 쓴다.
+     */
+    public void scheduleBlocking(Runnable task, long delay, TimeUnit unit) {
+        wheel.schedule(() -> handoff.execute(task), delay, unit);
+    }
+
+    /**
+     * 라우트의 재시도 정책에 따라 메시지를 다시 보낼 시각을 예약한다.
+     *
+     * @return 재시도 횟수를 다 써서 예약하지 않았으면 false (호출한 쪽이 DLQ 로 보낸다)
+     */
+    public boolean retry(EmsDelivery delivery) {
+        EmsRoute route = delivery.getRoute();
+        EmsRoute.Retry retry = route.getRetry();
+        int attempt = delivery.getAttempts();
+        if (attempt >= retry.getMaxAttempts()) {
+            meterRegistry.counter("ems.retry.exhausted", "route", route.getName()).increment();
+            return false;
+        }
+
+        delivery.incrementAttempts();
+        long delay = delayMillis(retry, attempt);
+        meterRegistry.counter("ems.retry.scheduled", "route", route.getName()).increment();
+        log.debug("EMS retry scheduled: route={}, messageId={}, attempt={}, delay={}ms",
+                route.getName(), delivery.getMessageId(), attempt + 1, delay);
+        wheel.schedule(() -> resubmit(delivery), delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * initialDelay * multiplier^attempt 를 maxDelay 로 자르고, ±jitter 비율만큼 흔든다.
+     */
+    static long delayMillis(EmsRoute.Retry retry, int attempt) {
+        double base = Math.min(retry.getInitialDelay().toMillis() * Math.pow(retry.getMultiplier(), attempt),
+                retry.getMaxDelay().toMillis());
+        double jitter = retry.getJitter() > 0 ? ThreadLocalRandom.current().nextDouble(-retry.getJitter(), retry.getJitter()) : 0;
+        return Math.max(0L, Math.round(base * (1 + jitter)));
+    }
+
+    private void resubmit(EmsDelivery delivery) {
+        // 휠 스레드가 막히지 않게 기다리지 않고 넣어 보고, 레인이 가득 차 있으면 조금 뒤에 다시 넣는다
+        EmsDispatchPipeline dispatchPipeline = (EmsDispatchPipeline) BeanUtils.getBean(EmsDispatchPipeline.class);
+        if (!dispatchPipeline.offer(delivery)) {
+            meterRegistry.counter("ems.retry.requeued", "route", delivery.getRoute().getName()).increment();
+            wheel.schedule(() -> resubmit(delivery), delayMillis(delivery.getRoute().getRetry(), 0), TimeUnit.MILLISECONDS);
+        }
+    }
+}
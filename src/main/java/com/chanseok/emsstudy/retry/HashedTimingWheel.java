@@ -0,0 +1,146 @@
+package com.chanseok.emsstudy.retry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 해시 타이밍 휠.
+ * 등록은 lock-free 큐에 넣기만 하고(O(1)), 워커 스레드가 tick 마다 그 큐를 슬롯(연결 리스트)으로 옮긴 뒤
+ * 현재 슬롯에서 만료된 항목만 꺼낸다. 슬롯 하나를 도는 비용은 그 슬롯에 든 항목 수에만 비례하므로
+ * 수백만 건이 대기해도 tick 당 비용이 일정하다. 정밀도는 tickDuration 이다.
+ */
+@Slf4j
+public class HashedTimingWheel<T> {
+    /** tick 한 번에 슬롯으로 옮길 최대 등록 건수. 등록이 폭주해도 만료 처리가 밀리지 않게 한다 */
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Node<T>[] wheel;
+    private final int mask;
+    private final Consumer<T> onExpire;
+
+    private final Queue<Node<T>> registrations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final Thread worker;
+
+    private volatile boolean running = false;
+    private long startTime;
+    private long tick;
+
+    /**
+     * @param wheelSize 슬롯 수 (2의 거듭제곱으로 올림)
+     * @param onExpire  만료된 항목을 받을 콜백. 워커 스레드에서 호출되므로 오래 걸리면 안 된다
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Consumer<T> onExpire) {
+        this.tickNanos = Math.max(1L, unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Node[size];
+        this.mask = size - 1;
+        this.onExpire = onExpire;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        startTime = System.nanoTime();
+        running = true;
+        worker.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public void schedule(T item, long delay, TimeUnit unit) {
+        registrations.add(new Node<>(item, System.nanoTime() + unit.toNanos(delay)));
+        pending.incrementAndGet();
+    }
+
+    /**
+     * 아직 만료되지 않은 항목 수
+     */
+    public long pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startTime + tickNanos * (tick + 1);
+            long sleep;
+            while (running && (sleep = deadline - System.nanoTime()) > 0L) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (!running) {
+                return;
+            }
+            transferRegistrations();
+            expire(tick & mask);
+            tick++;
+        }
+    }
+
+    private void transferRegistrations() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Node<T> node = registrations.poll();
+            if (node == null) {
+                return;
+            }
+            long calculated = (node.deadline - startTime) / tickNanos;
+            node.rounds = (calculated - tick) / wheel.length;
+            // 이미 지난 항목은 현재 슬롯에 넣어 이번 tick 에 만료시킨다
+            int index = (int) (Math.max(calculated, tick) & mask);
+            node.next = wheel[index];
+            wheel[index] = node;
+        }
+    }
+
+    private void expire(long index) {
+        int slot = (int) index;
+        Node<T> previous = null;
+        Node<T> node = wheel[slot];
+        while (node != null) {
+            Node<T> next = node.next;
+            if (node.rounds <= 0L) {
+                if (previous == null) {
+                    wheel[slot] = next;
+                } else {
+                    previous.next = next;
+                }
+                pending.decrementAndGet();
+                try {
+                    onExpire.accept(node.item);
+                } catch (RuntimeException e) {
+                    log.error("Timing wheel task failed", e);
+                }
+            } else {
+                node.rounds--;
+                previous = node;
+            }
+            node = next;
+        }
+    }
+
+    private static class Node<T> {
+        private final T item;
+        private final long deadline;
+        private long rounds;
+        private Node<T> next;
+
+        private Node(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.chanseok.emsstudy.route;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EMS 라우트 정의. 큐(destination) 하나를 컨트롤러 URI 하나에 연결한다.
+ */
+@Getter
+@Setter
+public class EmsRoute {
+
+    /** 라우트 이름 (ems.routes 맵의 키) */
+    private String name;
+
+    /** 메시지를 받을 큐 이름 */
+    private String destination;
+
+    /** 메시지를 전달할 컨트롤러 URI */
+    private String uri;
+
+    /** 큐에 붙일 컨슈머(세션) 수 */
+    private int consumers = 1;
+
+    /** 처리에 실패한 메시지를 옮길 큐. 비어 있으면 "DLQ." + destination */
+    private String deadLetter;
+
+    /** 업무 마감 시각(epoch millis 또는 ISO-8601)을 담은 JMS 프로퍼티 이름. 비어 있으면 JMSExpiration 만 본다 */
+    private String deadlineProperty;
+
+    /** 마감이 지난 메시지를 옮길 큐. 비어 있으면 "EXPIRED." + destination */
+    private String expiredDestination;
+
+    /** 이 라우트의 메시지를 처리할 실행기 */
+    private Executor executor = new Executor();
+
+    /** WebFlux 로 디스패치하고 수요(request(n))만큼만 브로커에서 당겨 오는 reactive 모드 */
+    private Reactive reactive = new Reactive();
+
+    /** 과부하 시 처리 정책 */
+    private Overload overload = new Overload();
+
+    /** 소비 속도 제한 */
+    private RateLimit rateLimit = new RateLimit();
+
+    /** 같은 메시지를 uri 외의 컨트롤러에도 동시에 보내는 fan-out 설정 */
+    private FanOut fanOut = new FanOut();
+
+    /** 여러 메시지를 JSON 배열 한 번으로 보내는 배치 설정 */
+    private Batch batch = new Batch();
+
+    /** 같은 키 메시지 병합(last-write-wins) 설정 */
+    private Coalesce coalesce = new Coalesce();
+
+    /** 프로세스 내 재시도 정책 */
+    private Retry retry = new Retry();
+
+    /** 서킷 브레이커 설정 */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /** 응답 캐시 설정 (payload 만으로 응답이 정해지는 라우트에만 켠다) */
+    private ResponseCache cache = new ResponseCache();
+
+    public String getDeadLetter() {
+        return deadLetter != null && !deadLetter.isEmpty() ? deadLetter : "DLQ." + destination;
+    }
+
+    public String getExpiredDestination() {
+        return expiredDestination != null && !expiredDestination.isEmpty() ? expiredDestination : "EXPIRED." + destination;
+    }
+
+    @Getter
+    @Setter
+    public static class Executor {
+
+        /** 처리 방식 */
+        private Mode mode = Mode.PIPELINE;
+
+        /** FIXED/FORK_JOIN 의 스레드 수 */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /** FIXED/FORK_JOIN 에 동시에 들어가 있을 수 있는 메시지 수. 넘으면 리스너 스레드가 기다린다 */
+        private int capacity = 1024;
+
+        public enum Mode {
+            /** 공용 우선순위 레인 워커 (기본값) */
+            PIPELINE,
+            /** 라우트 전용 고정 크기 스레드 풀 */
+            FIXED,
+            /** 라우트 전용 ForkJoinPool. 컨트롤러가 fork 한 하위 작업을 유휴 워커가 훔쳐 간다 */
+            FORK_JOIN,
+            /** 메시지를 받은 리스너 스레드가 직접 처리한다 */
+            CALLER_RUNS
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Reactive {
+
+        /** 켜면 executor/레인을 거치지 않고 WebFlux 로 디스패치한다 */
+        private boolean enabled = false;
+
+        /** 동시에 처리 중일 수 있는 메시지 수. 이만큼만 브로커에 요청(pull)한다 */
+        private int maxInFlight = 256;
+    }
+
+    @Getter
+    @Setter
+    public static class Overload {
+
+        /** 레인 대기 시간이 maxQueueDelay 를 넘었을 때의 처리 방식 */
+        private Policy policy = Policy.NONE;
+
+        /** 과부하로 판단할 레인 대기 시간 (레인에서 가장 오래 기다린 메시지 기준) */
+        private Duration maxQueueDelay = Duration.ofSeconds(1);
+
+        /** DEFER 일 때 다시 넣어 볼 때까지 기다리는 시간 */
+        private Duration deferDelay = Duration.ofMillis(500);
+
+        public enum Policy {
+            /** 과부하와 상관없이 레인에 넣는다 */
+            NONE,
+            /** ack 하고 버린다 */
+            SHED,
+            /** ack 하지 않고 deferDelay 뒤에 다시 넣어 본다 */
+            DEFER
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+
+        /** 라우트 전체의 초당 처리 건수. 0 이면 제한 없음 */
+        private double permitsPerSecond = 0;
+
+        /** 라우트 버킷 크기 (한 번에 몰아 처리할 수 있는 건수) */
+        private int burst = 1;
+
+        /** 테넌트를 구분할 JMS 프로퍼티 이름. 비어 있으면 테넌트별 제한을 하지 않는다 */
+        private String tenantProperty;
+
+        /** 테넌트별 기본 초당 처리 건수. 0 이면 제한 없음 */
+        private double tenantPermitsPerSecond = 0;
+
+        /** 테넌트 버킷 크기 */
+        private int tenantBurst = 1;
+
+        /** 테넌트별 초당 처리 건수 재정의 (테넌트 → 초당 건수) */
+        private Map<String, Double> tenants = new HashMap<>();
+
+        /** 들고 있을 테넌트 버킷 수. 넘으면 가장 오래 쓰지 않은 테넌트부터 버린다 */
+        private int tenantMaxEntries = 10_000;
+
+        /** 이 시간 동안 메시지가 없던 테넌트의 버킷은 버린다 */
+        private Duration tenantIdleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * 테넌트마다 토큰을 기다리며 미뤄 둘 수 있는 메시지 수. 미룬 메시지는 ack 되지 않아 prefetch 자리를 차지하므로 prefetch 보다 충분히 작게 둔다.
+         * 0 이면 제한 없음
+         */
+        private int tenantMaxDeferred = 100;
+
+        /** 미뤄 둔 메시지가 tenantMaxDeferred 에 이른 테넌트의 메시지 처리 방식 */
+        private TenantOverflow tenantOverflow = TenantOverflow.DEAD_LETTER;
+
+        public enum TenantOverflow {
+            /** dead letter 큐로 옮기고 ack 한다 */
+            DEAD_LETTER,
+            /** ack 하고 버린다 */
+            SHED
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class FanOut {
+
+        /** uri 와 함께 호출할 컨트롤러 URI 목록. 비어 있으면 fan-out 하지 않는다 */
+        private List<String> uris = new ArrayList<>();
+
+        /** 일부 대상만 실패했을 때 메시지 전체를 성공으로 볼지 정하는 정책 */
+        private Policy policy = Policy.ALL;
+
+        public boolean isEnabled() {
+            return uris != null && !uris.isEmpty();
+        }
+
+        public enum Policy {
+            /** 모든 대상이 성공해야 ack 한다. 하나라도 실패하면 재시도/DLQ 로 보내고, 재시도는 실패한 대상에만 다시 보낸다 */
+            ALL,
+            /** 하나라도 성공하면 ack 한다 */
+            ANY,
+            /** uri(주 대상)의 결과만 본다. 나머지 대상의 실패는 로그와 메트릭으로만 남긴다 */
+            PRIMARY
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+
+        /** 배치 사용 여부 */
+        private boolean enabled = false;
+
+        /** {@code @RequestBody List<...>} 를 받는 컨트롤러 URI. 응답도 같은 순서의 JSON 배열이어야 한다 */
+        private String uri;
+
+        /** 한 번에 묶을 최대 메시지 수 */
+        private int maxSize = 50;
+
+        /** 첫 메시지가 들어온 뒤 묶음을 내보낼 때까지 기다리는 최대 시간 */
+        private Duration maxDelay = Duration.ofMillis(20);
+
+        /** 응답 배열의 항목에 이 필드가 있으면 그 메시지는 실패로 보고 DLQ 로 보낸다 */
+        private String errorField = "error";
+    }
+
+    @Getter
+    @Setter
+    public static class Coalesce {
+
+        /** 병합 사용 여부 */
+        private boolean enabled = false;
+
+        /** 병합 키를 담은 JMS 프로퍼티 이름 (keyField 보다 우선) */
+        private String keyProperty;
+
+        /** 병합 키로 쓸 payload 필드 (JSON Pointer, 예: /entityId) */
+        private String keyField;
+
+        /** 같은 키를 모으는 시간. 키의 첫 메시지가 들어온 뒤 이 시간이 지나면 최신 메시지만 디스패치한다 */
+        private Duration window = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+
+        /** 최대 재시도 횟수. 0 이면 재시도하지 않고 바로 DLQ 로 보낸다 */
+        private int maxAttempts = 0;
+
+        /** 첫 재시도까지 기다리는 시간 */
+        private Duration initialDelay = Duration.ofMillis(200);
+
+        /** 재시도 간격 상한 */
+        private Duration maxDelay = Duration.ofSeconds(30);
+
+        /** 재시도마다 간격에 곱하는 값 */
+        private double multiplier = 2.0;
+
+        /** 간격을 ± 이 비율만큼 흔들어 재시도가 한꺼번에 몰리지 않게 한다 (0 ~ 1) */
+        private double jitter = 0.2;
+    }
+
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+
+        /** 서킷 브레이커 사용 여부 */
+        private boolean enabled = false;
+
+        /** 실패율을 계산할 최근 호출 수 */
+        private int windowSize = 20;
+
+        /** 실패율을 판단하기 시작할 최소 호출 수 */
+        private int minimumCalls = 10;
+
+        /** 이 비율(%) 이상 실패하면 연다 */
+        private int failureRateThreshold = 50;
+
+        /** 이 시간 이상 걸린 호출은 느린 호출로 센다 */
+        private Duration slowCallThreshold = Duration.ofSeconds(2);
+
+        /** 느린 호출이 이 비율(%) 이상이면 연다 */
+        private int slowCallRateThreshold = 80;
+
+        /** 연 뒤 시험 호출을 시작하기까지 기다리는 시간 */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        /** HALF_OPEN 에서 보낼 시험 호출 수 */
+        private int halfOpenCalls = 3;
+
+        /** 보류 큐 최대 크기. 차면 리스너가 더 받지 않는다 */
+        private int maxHeld = 1000;
+
+        /** 닫힌 뒤 보류 큐를 비우는 초당 건수 */
+        private double drainRate = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class ResponseCache {
+
+        /** 응답 캐시 사용 여부 */
+        private boolean enabled = false;
+
+        /** 캐시에 보관할 최대 응답 개수 */
+        private int maxEntries = 10_000;
+
+        /** 응답을 재사용할 시간 */
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+}
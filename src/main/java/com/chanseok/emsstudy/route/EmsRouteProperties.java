@@ -0,0 +1,20 @@
+package com.chanseok.emsstudy.route;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * application.yml 의 {@code ems.routes.<name>.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems")
+public class EmsRouteProperties {
+
+    /** 라우트 이름 -> 라우트 정의 */
+    private Map<String, EmsRoute> routes = new LinkedHashMap<>();
+}
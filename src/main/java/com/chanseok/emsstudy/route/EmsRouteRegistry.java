@@ -0,0 +1,43 @@
+package com.chanseok.emsstudy.route;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 설정된 라우트를 큐 이름/라우트 이름으로 찾기 위한 레지스트리.
+ */
+@Component
+public class EmsRouteRegistry {
+    private final Map<String, EmsRoute> routes;
+    private final Map<String, EmsRoute> routesByDestination = new HashMap<>();
+
+    public EmsRouteRegistry(EmsRouteProperties properties) {
+        this.routes = properties.getRoutes();
+        routes.forEach((name, route) -> {
+            route.setName(name);
+            routesByDestination.put(route.getDestination(), route);
+        });
+    }
+
+    public Collection<EmsRoute> getRoutes() {
+        return Collections.unmodifiableCollection(routes.values());
+    }
+
+    /**
+     * @return 이름이 같은 라우트, 없으면 null
+     */
+    public EmsRoute findByName(String name) {
+        return routes.get(name);
+    }
+
+    /**
+     * @return 큐에 연결된 라우트, 없으면 null
+     */
+    public EmsRoute findByDestination(String destination) {
+        return routesByDestination.get(destination);
+    }
+}
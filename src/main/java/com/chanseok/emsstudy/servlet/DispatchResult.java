@@ -0,0 +1,128 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.chanseok.emsstudy.codec.EmsContentType;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link EmsDispatcherServletAdapter#dispatch} 결과.
+ * 실패도 예외 대신 이 객체로 돌려주므로, 호출한 쪽이 ack/재시도/DLQ/응답 여부를 예외 없이 정한다.
+ */
+@Getter
+public class DispatchResult {
+
+    public enum ErrorKind {
+        /** 2xx */
+        NONE,
+        /** 4xx : 같은 메시지를 다시 보내도 실패한다 */
+        CLIENT,
+        /** 5xx : 일시적인 실패일 수 있다 */
+        SERVER,
+        /** 1xx/3xx 등 처리 결과로 볼 수 없는 상태. 컨트롤러가 그렇게 응답한 것이므로 다시 보내도 같다 */
+        UNEXPECTED,
+        /** DispatcherServlet 이 예외를 던졌다 */
+        EXCEPTION;
+
+        public boolean isRetryable() {
+            return this == SERVER || this == EXCEPTION;
+        }
+    }
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+
+    /** 응답 바디 (복사하지 않은 읽기 전용 view) */
+    private final ByteBuffer body;
+
+    private final Charset charset;
+    private final long elapsedNanos;
+    private final ErrorKind errorKind;
+
+    /** sendError 메시지 또는 예외 메시지 */
+    private final String errorMessage;
+
+    /** DispatcherServlet 이 던진 예외 (없으면 null) */
+    private final Throwable cause;
+
+    private DispatchResult(int status, Map<String, List<String>> headers, ByteBuffer body, Charset charset,
+                           long elapsedNanos, ErrorKind errorKind, String errorMessage, Throwable cause) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.charset = charset;
+        this.elapsedNanos = elapsedNanos;
+        this.errorKind = errorKind;
+        this.errorMessage = errorMessage;
+        this.cause = cause;
+    }
+
+    static DispatchResult of(int status, Map<String, List<String>> headers, ByteBuffer body, Charset charset,
+                             long elapsedNanos, String errorMessage) {
+        ErrorKind errorKind;
+        if (status >= 200 && status < 300) {
+            errorKind = ErrorKind.NONE;
+        } else if (status >= 400 && status < 500) {
+            errorKind = ErrorKind.CLIENT;
+        } else if (status >= 500 && status < 600) {
+            errorKind = ErrorKind.SERVER;
+        } else {
+            errorKind = ErrorKind.UNEXPECTED;
+        }
+        return new DispatchResult(status, headers, body, charset, elapsedNanos, errorKind, errorMessage, null);
+    }
+
+    /**
+     * 압축을 푼 body 가 한도를 넘었다. 다시 보내도 같으므로 재시도하지 않는 413 이다
+     */
+    static DispatchResult inflatedTooLarge(long maxInflatedSize, long elapsedNanos) {
+        return of(413, Collections.emptyMap(), ByteBuffer.allocate(0), StandardCharsets.UTF_8, elapsedNanos,
+                "Inflated body exceeds " + maxInflatedSize + " bytes");
+    }
+
+    static DispatchResult failed(Throwable cause, long elapsedNanos) {
+        return new DispatchResult(500, Collections.emptyMap(), ByteBuffer.allocate(0), StandardCharsets.UTF_8,
+                elapsedNanos, ErrorKind.EXCEPTION, cause.toString(), cause);
+    }
+
+    public boolean isSuccess() {
+        return errorKind == ErrorKind.NONE;
+    }
+
+    /**
+     * 응답 바디를 문자열로 디코딩한다. 호출할 때마다 새 문자열을 만든다.
+     */
+    public String getBodyAsString() {
+        return charset.decode(body.duplicate()).toString();
+    }
+
+    /**
+     * 응답의 Content-Type. 없으면 null
+     */
+    public String getContentType() {
+        List<String> values = headers.get(HttpHeaders.CONTENT_TYPE);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    /**
+     * 응답 바디 바이트. Smile/CBOR 같은 바이너리 응답({@link EmsContentType#isBinary})을 그대로 옮길 때 쓴다. 호출할 때마다 복사한다.
+     */
+    public byte[] getBodyBytes() {
+        byte[] bytes = new byte[body.remaining()];
+        body.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 로그/DLQ 사유용 한 줄 설명
+     */
+    public String describe() {
+        return errorKind + " " + status + (errorMessage != null ? " - " + errorMessage : "");
+    }
+}
@@ -0,0 +1,160 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.chanseok.emsstudy.invoke.EmsDirectRoute;
+import com.chanseok.emsstudy.invoke.EmsRouteTable;
+import com.chanseok.emsstudy.invoke.EmsUnreadableBodyException;
+import com.chanseok.emsstudy.web.EmsHttpServletRequest;
+import com.chanseok.emsstudy.web.EmsHttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import javax.servlet.ServletContext;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link EmsDirectRoute} 메서드를 컴파일 때 생성된 {@link EmsRouteTable} 로 직접 호출한다.
+ * 핸들러 매핑 조회, 인자 resolver, 메시지 컨버터 선택 없이 URI switch → 라우트 코덱 읽기 → 메서드 호출 → 라우트 코덱 쓰기만 거친다.
+ * 결과는 {@link EmsDispatcherServletAdapter} 와 같은 {@link DispatchResult} 로 돌려준다.
+ * 컨트롤러가 던진 예외는 DispatcherServlet 과 같은 {@link HandlerExceptionResolver} 들로 처리하므로
+ * {@code @ExceptionHandler}/{@code @ResponseStatus}/{@code ResponseStatusException} 이 정한 상태 코드가 그대로 결과가 된다.
+ * 어느 resolver 도 처리하지 않은 예외만 EXCEPTION(재시도 대상)이다.
+ * 표가 생성되지 않았거나 ems.dispatch.direct-invoke 가 꺼져 있으면 아무 URI 도 지원하지 않는다.
+ */
+@Slf4j
+@Component
+public class EmsDirectDispatchAdapter implements SmartInitializingSingleton {
+    private static final Map<String, List<String>> JSON_HEADERS = Map.of(HttpHeaders.CONTENT_TYPE, List.of(MediaType.APPLICATION_JSON_VALUE));
+
+    private final ApplicationContext applicationContext;
+    private final ServletContext servletContext;
+    private final EmsCodecRegistry codecRegistry;
+    private final boolean enabled;
+
+    /** 컨트롤러 빈이 모두 만들어진 뒤에 채운다 (그 전에는 DispatcherServlet 으로 보낸다) */
+    private volatile EmsRouteTable routeTable;
+
+    /** URI → 컨트롤러 메서드. 컨트롤러에 선언된 {@code @ExceptionHandler} 를 찾을 때 쓴다 */
+    private Map<String, HandlerMethod> handlerMethods = Collections.emptyMap();
+
+    /** DispatcherServlet 과 같은 순서의 예외 resolver */
+    private List<HandlerExceptionResolver> exceptionResolvers = Collections.emptyList();
+
+    public EmsDirectDispatchAdapter(ApplicationContext applicationContext, ServletContext servletContext, EmsCodecRegistry codecRegistry,
+                                    EmsDispatchProperties dispatchProperties) {
+        this.applicationContext = applicationContext;
+        this.servletContext = servletContext;
+        this.codecRegistry = codecRegistry;
+        this.enabled = dispatchProperties.isDirectInvoke();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled || !ClassUtils.isPresent(EmsRouteTable.GENERATED_CLASS_NAME, getClass().getClassLoader())) {
+            return;
+        }
+        try {
+            Class<?> tableClass = ClassUtils.forName(EmsRouteTable.GENERATED_CLASS_NAME, getClass().getClassLoader());
+            Function<Class<?>, Object> beans = applicationContext::getBean;
+            EmsRouteTable table = (EmsRouteTable) tableClass.getConstructor(Function.class, EmsCodecRegistry.class).newInstance(beans, codecRegistry);
+            handlerMethods = handlerMethodsOf(table.getUris());
+            exceptionResolvers = exceptionResolvers();
+            routeTable = table;
+            log.info("EMS direct routes: {}", table.getUris());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Failed to create EMS route table", e);
+        }
+    }
+
+    public boolean supports(String url) {
+        EmsRouteTable table = routeTable;
+        return table != null && table.contains(url);
+    }
+
+    /**
+     * 컨트롤러 메서드를 직접 호출한다. 실패해도 예외를 던지지 않고 {@link DispatchResult} 로 돌려준다.
+     * body 를 파라미터 타입으로 읽지 못하면 400, 그 밖의 예외는 {@link #resolve} 가 정한 결과다.
+     */
+    public DispatchResult dispatch(String url, Object body) {
+        return dispatch(url, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param content UTF-8 JSON body (생성된 호출 코드는 JSON 만 읽고 쓴다)
+     */
+    public DispatchResult dispatch(String url, byte[] content) {
+        long startedAt = System.nanoTime();
+        try {
+            byte[] response = routeTable.invoke(url, content);
+            return DispatchResult.of(200, JSON_HEADERS, ByteBuffer.wrap(response).asReadOnlyBuffer(), StandardCharsets.UTF_8,
+                    System.nanoTime() - startedAt, null);
+        } catch (EmsUnreadableBodyException e) {
+            return DispatchResult.of(400, JSON_HEADERS, ByteBuffer.allocate(0), StandardCharsets.UTF_8,
+                    System.nanoTime() - startedAt, e.getMessage());
+        } catch (Exception e) {
+            return resolve(url, e, startedAt);
+        }
+    }
+
+    /**
+     * DispatcherServlet 의 processHandlerException 처럼 resolver 를 순서대로 물어보고, 처음 처리한 resolver 가 쓴 응답을 결과로 만든다.
+     * ({@code @ExceptionHandler} 반환값, {@code @ResponseStatus} 의 sendError 등) resolver 가 다시 던진 예외나 처리되지 않은 예외는 EXCEPTION 이다.
+     */
+    private DispatchResult resolve(String url, Exception exception, long startedAt) {
+        EmsHttpServletRequest request = new EmsHttpServletRequest(servletContext);
+        request.setMethod("POST");
+        request.setRequestURI(url);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+        EmsHttpServletResponse response = new EmsHttpServletResponse();
+        HandlerMethod handler = handlerMethods.get(url);
+        try {
+            for (HandlerExceptionResolver resolver : exceptionResolvers) {
+                if (resolver.resolveException(request, response, handler, exception) != null) {
+                    return DispatchResult.of(response.getStatus(), response.getHeaderMap(), response.getContentView(), StandardCharsets.UTF_8,
+                            System.nanoTime() - startedAt, response.getErrorMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("EMS direct route exception handling failed: uri={}", url, e);
+        }
+        return DispatchResult.failed(exception, System.nanoTime() - startedAt);
+    }
+
+    private Map<String, HandlerMethod> handlerMethodsOf(List<String> uris) {
+        Map<String, HandlerMethod> methods = new HashMap<>();
+        for (RequestMappingHandlerMapping mapping : applicationContext.getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+            mapping.getHandlerMethods().forEach((info, method) -> {
+                for (String pattern : info.getPatternValues()) {
+                    if (uris.contains(pattern)) {
+                        methods.putIfAbsent(pattern, method.createWithResolvedBean());
+                    }
+                }
+            });
+        }
+        return methods;
+    }
+
+    private List<HandlerExceptionResolver> exceptionResolvers() {
+        List<HandlerExceptionResolver> resolvers = new ArrayList<>(applicationContext.getBeansOfType(HandlerExceptionResolver.class).values());
+        AnnotationAwareOrderComparator.sort(resolvers);
+        return resolvers;
+    }
+}
@@ -1,51 +1,156 @@
 package com.chanseok.emsstudy.servlet;
 
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.codec.InflateLimitInputStream;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
 import com.chanseok.emsstudy.web.EmsHttpServletRequest;
 import com.chanseok.emsstudy.web.EmsHttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.DispatcherServlet;
 
 import javax.servlet.ServletContext;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
-public class EmsDispatcherServletAdapter {
+public class EmsDispatcherServletAdapter implements DisposableBean {
     private final DispatcherServlet servlet;
     private final ServletContext servletContext;
+    private final long maxInflatedSize;
+
+    /** fan-out 의 두 번째 이후 대상을 호출하는 스레드 (첫 대상은 호출한 워커가 직접 처리) */
+    private final ExecutorService fanOutExecutor;
+
+    public EmsDispatcherServletAdapter(DispatcherServlet servlet, ServletContext servletContext, EmsDispatchProperties dispatchProperties) {
+        this.servlet = servlet;
+        this.servletContext = servletContext;
+        this.maxInflatedSize = dispatchProperties.getMaxInflatedSize().toBytes();
+        AtomicInteger sequence = new AtomicInteger();
+        this.fanOutExecutor = Executors.newFixedThreadPool(Math.max(1, dispatchProperties.getFanOutWorkers()), r -> {
+            Thread thread = new Thread(r, "ems-fanout-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * DispatcherServlet 을 호출한다. 실패해도 예외를 던지지 않고 {@link DispatchResult} 로 돌려준다.
+     */
+    public DispatchResult dispatch(String url, Object body) {
+        return dispatch(url, body.toString().getBytes(StandardCharsets.UTF_8), EmsContentType.JSON);
+    }
+
+    /**
+     * contentType 으로 인코딩된 body 를 보낸다. 바이너리(Smile/CBOR 등)면 Accept 도 contentType 으로 두어
+     * 컨트롤러의 응답을 같은 인코딩으로 받는다.
+     */
+    public DispatchResult dispatch(String url, byte[] content, String contentType) {
+        return dispatch(url, content, contentType, null);
+    }
+
+    /**
+     * contentEncoding 으로 압축된 body 를 보낸다. 압축을 푼 배열을 따로 만들지 않고,
+     * 컨트롤러가 요청 스트림을 읽는 만큼 압축을 풀어서 넘긴다. 모르는 코덱이면 415,
+     * 푼 크기가 ems.dispatch.max-inflated-size 를 넘으면 컨트롤러가 어떻게 실패했든 413 으로 돌려준다.
+     *
+     * @param contentEncoding {@link EmsContentEncoding} 이름, 압축되지 않았으면 null
+     */
+    public DispatchResult dispatch(String url, byte[] content, String contentType, String contentEncoding) {
+        EmsContentEncoding encoding = contentEncoding != null ? EmsContentEncoding.of(contentEncoding) : null;
+        if (contentEncoding != null && encoding == null) {
+            return DispatchResult.of(415, Collections.emptyMap(), ByteBuffer.allocate(0), StandardCharsets.UTF_8, 0L,
+                    "Unsupported content encoding: " + contentEncoding);
+        }
 
-    public void dispatch(String url, Object body) {
         EmsHttpServletRequest request = new EmsHttpServletRequest(servletContext);
         request.setMethod("POST");
         request.setRequestURI(url);
-        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
-        request.setContent(body.toString().getBytes(StandardCharsets.UTF_8));
+        request.setContentType(contentType);
+        if (EmsContentType.isBinary(contentType)) {
+            request.setHeader(HttpHeaders.ACCEPT, contentType);
+        }
 
         EmsHttpServletResponse response = new EmsHttpServletResponse();
 
-        log.info("url = {}", request.getRequestURL());
-        log.info("uri = {}", request.getRequestURI());
-        log.info("method = {}", request.getMethod());
-        log.info("contentType = {}", request.getContentType());
-        log.info("content = {}", new String(request.getContentAsByteArray(), StandardCharsets.UTF_8));
+        if (log.isDebugEnabled()) {
+            log.debug("EMS dispatch: uri={}, contentType={}, content={}", url, contentType,
+                    encoding != null ? content.length + " bytes " + encoding.getName()
+                            : EmsContentType.isBinary(contentType) ? content.length + " bytes" : new String(content, StandardCharsets.UTF_8));
+        }
 
-        try {
+        long startedAt = System.nanoTime();
+        InflateLimitInputStream decompressed = encoding != null ? encoding.decompress(new ByteArrayInputStream(content), maxInflatedSize) : null;
+        try (InputStream closing = decompressed) {
+            if (decompressed != null) {
+                request.setContent(decompressed);
+            } else {
+                request.setContent(content);
+            }
             servlet.service(request, response);
+        } catch (Exception e) {
+            if (decompressed != null && decompressed.isExceeded()) {
+                return DispatchResult.inflatedTooLarge(maxInflatedSize, System.nanoTime() - startedAt);
+            }
+            return DispatchResult.failed(e, System.nanoTime() - startedAt);
+        }
+        if (decompressed != null && decompressed.isExceeded()) {
+            return DispatchResult.inflatedTooLarge(maxInflatedSize, System.nanoTime() - startedAt);
+        }
+
+        DispatchResult result = DispatchResult.of(response.getStatus(), response.getHeaderMap(), response.getContentView(),
+                charsetOf(response), System.nanoTime() - startedAt, response.getErrorMessage());
+        log.debug("EMS dispatched: uri={}, status={}, elapsed={}us", url, result.getStatus(), result.getElapsedNanos() / 1000);
+        return result;
+    }
 
-            if(response.getStatus() != 200) {
-                throw new RuntimeException("EMS Processing Failed: " + response.getStatus() + " - " + response.getErrorMessage());
+    /**
+     * 같은 body 를 여러 URI 에 동시에 보내고, 모든 결과를 urls 순서대로 돌려준다.
+     * body 는 한 번만 인코딩해서 모든 요청이 같은 byte[] 를 읽기 전용으로 공유한다 (압축됐으면 요청마다 따로 풀면서 읽는다).
+     * 종료 중이라 fan-out 스레드가 받지 못한 대상은 예외 결과(재시도 대상)로 돌려준다.
+     */
+    public List<DispatchResult> dispatchAll(List<String> urls, byte[] content, String contentType, String contentEncoding) {
+        List<CompletableFuture<DispatchResult>> branches = new ArrayList<>(urls.size() - 1);
+        for (int i = 1; i < urls.size(); i++) {
+            String url = urls.get(i);
+            try {
+                branches.add(CompletableFuture.supplyAsync(() -> dispatch(url, content, contentType, contentEncoding), fanOutExecutor));
+            } catch (RejectedExecutionException e) {
+                branches.add(CompletableFuture.completedFuture(DispatchResult.failed(e, 0L)));
             }
+        }
 
-            byte[] contentAsByteArray = response.getContentAsByteArray();
-            String returnBody = new String(contentAsByteArray, StandardCharsets.UTF_8);
-            log.info("returnBody = {}", returnBody);
-        } catch (Exception e) {
-            throw new RuntimeException("Dispatcher Call Failed", e);
+        List<DispatchResult> results = new ArrayList<>(urls.size());
+        results.add(dispatch(urls.get(0), content, contentType, contentEncoding));
+        for (CompletableFuture<DispatchResult> branch : branches) {
+            results.add(branch.join());
         }
+        return results;
+    }
+
+    @Override
+    public void destroy() {
+        fanOutExecutor.shutdownNow();
+    }
+
+    private static Charset charsetOf(EmsHttpServletResponse response) {
+        String characterEncoding = response.getCharacterEncoding();
+        return characterEncoding != null ? Charset.forName(characterEncoding) : StandardCharsets.UTF_8;
 
     }
 
@@ -0,0 +1,160 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.codec.InflateLimitInputStream;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.chanseok.emsstudy.web.EmsServerHttpRequest;
+import com.chanseok.emsstudy.web.EmsServerHttpResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link EmsDispatcherServletAdapter} 의 WebFlux 판. 요청을 WebFlux {@link HttpHandler} 체인에 넣고
+ * 결과를 {@link Mono} 로 돌려주므로, 컨트롤러가 논블로킹이면 처리 중인 메시지가 스레드를 잡고 있지 않는다.
+ * WebFlux 설정은 첫 호출 때 별도 컨텍스트로 만들고, 애플리케이션 컨텍스트의 컨트롤러 인스턴스를 그대로 등록해 쓴다.
+ * (애플리케이션 컨텍스트를 부모로 두면 MVC 와 WebFlux 설정을 함께 쓸 수 없다는 검사에 걸린다)
+ */
+@Slf4j
+@Component
+public class EmsWebFluxAdapter {
+    /** 압축을 풀면서 읽을 때 DataBuffer 하나의 크기 */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final ApplicationContext applicationContext;
+    private final long maxInflatedSize;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private volatile HttpHandler httpHandler;
+    private AnnotationConfigApplicationContext webFluxContext;
+
+    public EmsWebFluxAdapter(ApplicationContext applicationContext, EmsDispatchProperties dispatchProperties) {
+        this.applicationContext = applicationContext;
+        this.maxInflatedSize = dispatchProperties.getMaxInflatedSize().toBytes();
+    }
+
+    /**
+     * WebFlux 로 요청한다. 실패해도 에러 신호 대신 {@link DispatchResult} 로 돌려준다.
+     */
+    public Mono<DispatchResult> dispatch(String url, Object body) {
+        return dispatch(url, body.toString().getBytes(StandardCharsets.UTF_8), EmsContentType.JSON);
+    }
+
+    /**
+     * contentType 으로 인코딩된 body 를 보내고 응답도 같은 인코딩으로 받는다.
+     * WebFlux 는 직접 등록한 코덱(CBOR)을 기본 JSON 코덱보다 먼저 고르므로 JSON 이어도 Accept 를 둔다.
+     */
+    public Mono<DispatchResult> dispatch(String url, byte[] content, String contentType) {
+        return dispatch(url, content, contentType, null);
+    }
+
+    /**
+     * contentEncoding 으로 압축된 body 를 보낸다. 압축은 구독한 뒤 body 를 읽는 만큼 풀고, 모르는 코덱이면 415,
+     * 푼 크기가 ems.dispatch.max-inflated-size 를 넘으면 413 으로 돌려준다.
+     *
+     * @param contentEncoding {@link EmsContentEncoding} 이름, 압축되지 않았으면 null
+     */
+    public Mono<DispatchResult> dispatch(String url, byte[] content, String contentType, String contentEncoding) {
+        return Mono.defer(() -> {
+            EmsContentEncoding encoding = contentEncoding != null ? EmsContentEncoding.of(contentEncoding) : null;
+            if (contentEncoding != null && encoding == null) {
+                return Mono.just(DispatchResult.of(415, Collections.emptyMap(), ByteBuffer.allocate(0), StandardCharsets.UTF_8, 0L,
+                        "Unsupported content encoding: " + contentEncoding));
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(contentType));
+            headers.set(HttpHeaders.ACCEPT, contentType);
+            EmsServerHttpRequest request;
+            AtomicReference<InflateLimitInputStream> decompressed = new AtomicReference<>();
+            if (encoding != null) {
+                request = new EmsServerHttpRequest("POST", url, headers, DataBufferUtils.readInputStream(() -> {
+                    InflateLimitInputStream in = encoding.decompress(new ByteArrayInputStream(content), maxInflatedSize);
+                    decompressed.set(in);
+                    return in;
+                }, bufferFactory, BUFFER_SIZE));
+            } else {
+                headers.setContentLength(content.length);
+                request = new EmsServerHttpRequest("POST", url, headers, content, bufferFactory);
+            }
+            EmsServerHttpResponse response = new EmsServerHttpResponse(bufferFactory);
+
+            long startedAt = System.nanoTime();
+            return httpHandler().handle(request, response)
+                    .then(Mono.fromSupplier(() -> isExceeded(decompressed)
+                            ? DispatchResult.inflatedTooLarge(maxInflatedSize, System.nanoTime() - startedAt)
+                            : DispatchResult.of(statusOf(response), response.getHeaders(), response.getContentView(), charsetOf(response),
+                            System.nanoTime() - startedAt, null)))
+                    .onErrorResume(e -> Mono.just(isExceeded(decompressed)
+                            ? DispatchResult.inflatedTooLarge(maxInflatedSize, System.nanoTime() - startedAt)
+                            : DispatchResult.failed(e, System.nanoTime() - startedAt)));
+        });
+    }
+
+    public synchronized void close() {
+        if (webFluxContext != null) {
+            webFluxContext.close();
+        }
+    }
+
+    private HttpHandler httpHandler() {
+        HttpHandler handler = httpHandler;
+        if (handler == null) {
+            synchronized (this) {
+                if (httpHandler == null) {
+                    webFluxContext = new AnnotationConfigApplicationContext();
+                    ConfigurableListableBeanFactory beanFactory = webFluxContext.getBeanFactory();
+                    for (String beanName : applicationContext.getBeanNamesForAnnotation(Controller.class)) {
+                        Class<?> beanType = applicationContext.getType(beanName);
+                        // BasicErrorController 같은 servlet 전용 컨트롤러는 빼고 애플리케이션 컨트롤러만 가져온다
+                        if (beanType != null && !beanType.getName().startsWith("org.springframework.")) {
+                            beanFactory.registerSingleton(beanName, applicationContext.getBean(beanName));
+                        }
+                    }
+                    beanFactory.registerSingleton("objectMapper", applicationContext.getBean(ObjectMapper.class));
+                    webFluxContext.register(EmsWebFluxConfiguration.class);
+                    webFluxContext.refresh();
+                    httpHandler = WebHttpHandlerBuilder.applicationContext(webFluxContext).build();
+                    log.info("EMS WebFlux handler initialized");
+                }
+                handler = httpHandler;
+            }
+        }
+        return handler;
+    }
+
+    private static boolean isExceeded(AtomicReference<InflateLimitInputStream> decompressed) {
+        InflateLimitInputStream in = decompressed.get();
+        return in != null && in.isExceeded();
+    }
+
+    private static int statusOf(EmsServerHttpResponse response) {
+        Integer status = response.getRawStatusCode();
+        return status != null ? status : 200;
+    }
+
+    private static Charset charsetOf(EmsServerHttpResponse response) {
+        MediaType contentType = response.getHeaders().getContentType();
+        return contentType != null && contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,57 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.reactive.config.DelegatingWebFluxConfiguration;
+import org.springframework.util.MimeType;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+
+/**
+ * {@code @EnableWebFlux} 와 같은 설정. JSON 코덱은 애플리케이션의 ObjectMapper 를 그대로 쓰고, Smile/CBOR 코덱도 둔다.
+ * 애플리케이션 컨텍스트가 컴포넌트 스캔으로 가져가지 않도록 {@code @Configuration} 을 붙이지 않고,
+ * {@link EmsWebFluxAdapter} 의 중첩 클래스로도 두지 않는다(중첩 클래스는 설정 클래스로 함께 처리된다).
+ * (선언된 {@code @Bean} 메서드가 있어야 상속한 WebFlux 설정 빈까지 등록된다)
+ */
+class EmsWebFluxConfiguration extends DelegatingWebFluxConfiguration {
+
+    @Bean(name = WebHttpHandlerBuilder.WEB_HANDLER_BEAN_NAME)
+    public DispatcherHandler webHandler() {
+        return new DispatcherHandler();
+    }
+
+    @Override
+    protected void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        super.configureHttpMessageCodecs(configurer);
+        ObjectMapper objectMapper = getApplicationContext().getBean(ObjectMapper.class);
+        configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+        configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+        // Smile 은 기본 코덱에 들어 있고 CBOR 는 직접 등록한다
+        configurer.customCodecs().register(new EmsCborEncoder());
+        configurer.customCodecs().register(new Jackson2CborDecoder());
+    }
+
+    /**
+     * Jackson2CborEncoder 는 Mono 가 아닌 Publisher(응답 body 는 Flux 로 넘어온다)를 인코딩하지 않으므로 값마다 encodeValue 한다.
+     */
+    static class EmsCborEncoder extends Jackson2CborEncoder {
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                       MimeType mimeType, Map<String, Object> hints) {
+            return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+        }
+    }
+}
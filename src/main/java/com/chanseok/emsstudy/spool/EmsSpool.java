@@ -0,0 +1,434 @@
+package com.chanseok.emsstudy.spool;
+
+import com.chanseok.emsstudy.dispatch.EmsAdmissionControl;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDeliveryCodec;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 리스너와 디스패치 사이의 로컬 write-ahead 스풀.
+ * <ul>
+ *     <li>리스너 스레드가 메시지를 세그먼트 파일에 append 하고, fsync 가 끝나면 브로커에 ack 한다</li>
+ *     <li>commit 스레드가 groupCommitInterval 마다 그동안 쌓인 기록을 fsync 한 번으로 내린다(group commit)</li>
+ *     <li>drain 스레드가 fsync 된 레코드를 순서대로 읽어 {@link EmsAdmissionControl} 로 넘긴다</li>
+ *     <li>모든 레코드가 처리된 세그먼트는 빈 파일로 돌려 다음 세그먼트에 재사용한다</li>
+ *     <li>dead letter 로도 보내지 못한 레코드(recover)는 FAILED 로 표시하고 {@value #FAILED_PREFIX} 파일로 따로 남긴다</li>
+ *     <li>재기동하면 남아 있는 세그먼트에서 처리되지 않은 레코드부터 다시 흘려보낸다</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class EmsSpool implements InitializingBean, DisposableBean {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String FREE_PREFIX = "free-";
+    private static final String FAILED_PREFIX = "failed-";
+    private static final String SUFFIX = ".log";
+
+    private final EmsSpoolProperties properties;
+    private final EmsRouteRegistry routeRegistry;
+    private final EmsAdmissionControl admissionControl;
+    private final MeterRegistry meterRegistry;
+
+    /** 아직 재사용되지 않은 세그먼트 (오래된 순) */
+    private final Deque<SpoolSegment> segments = new ConcurrentLinkedDeque<>();
+
+    /** drain 스레드가 읽을 세그먼트 (오래된 순) */
+    private final Queue<SpoolSegment> unread = new ConcurrentLinkedQueue<>();
+
+    /** 재사용할 빈 세그먼트 파일 (writeLock 으로 보호) */
+    private final Deque<Path> freeFiles = new ArrayDeque<>();
+
+    private final Object writeLock = new Object();
+    private final Object durableLock = new Object();
+
+    private final AtomicLong inFlight = new AtomicLong();
+    private Counter appended;
+    private Counter failed;
+    private Timer commitTimer;
+
+    private Path directory;
+    private int segmentSize;
+    private SpoolSegment active;
+    private long nextSequence;
+
+    /** 마지막으로 append 한 위치와 fsync 가 끝난 위치 (세그먼트 sequence << 32 | position) */
+    private long appendedOffset;
+    private long durableOffset;
+
+    private Thread committer;
+    private Thread drainer;
+    private volatile boolean running = false;
+
+    public EmsSpool(EmsSpoolProperties properties, EmsRouteRegistry routeRegistry, EmsAdmissionControl admissionControl,
+                    MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.routeRegistry = routeRegistry;
+        this.admissionControl = admissionControl;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long bytes = properties.getSegmentSize().toBytes();
+        if (bytes > Integer.MAX_VALUE || bytes <= SpoolSegment.HEADER_BYTES) {
+            throw new IllegalStateException("ems.spool.segment-size out of range: " + properties.getSegmentSize());
+        }
+        this.segmentSize = (int) bytes;
+        this.directory = Paths.get(properties.getDirectory());
+        Files.createDirectories(directory);
+
+        List<SpoolSegment> restored = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(FREE_PREFIX)) {
+                    freeFiles.add(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SUFFIX)) {
+                    SpoolSegment segment = SpoolSegment.open(file);
+                    if (segment != null) {
+                        restored.add(segment);
+                    }
+                }
+            }
+        }
+        restored.sort(Comparator.comparingLong(SpoolSegment::getSequence));
+        for (SpoolSegment segment : restored) {
+            segments.add(segment);
+            unread.add(segment);
+            nextSequence = segment.getSequence() + 1;
+        }
+        synchronized (writeLock) {
+            active = newSegment();
+        }
+
+        this.appended = Counter.builder("ems.spool.appended").register(meterRegistry);
+        this.failed = Counter.builder("ems.spool.failed")
+                .description("Spooled messages that could not be dead-lettered")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("ems.spool.commit")
+                .description("Time spent in one group-commit fsync")
+                .register(meterRegistry);
+        Gauge.builder("ems.spool.segments", segments, Deque::size).register(meterRegistry);
+        Gauge.builder("ems.spool.inflight", inFlight, AtomicLong::get)
+                .description("Spooled messages handed to dispatch but not yet completed")
+                .register(meterRegistry);
+
+        running = true;
+        committer = new Thread(this::commitLoop, "ems-spool-commit");
+        committer.setDaemon(true);
+        committer.start();
+        log.info("EMS spool opened: directory={}, restoredSegments={}", directory, restored.size());
+    }
+
+    /**
+     * drain 은 DispatcherServlet 이 준비된 뒤에 시작한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDrain() {
+        if (!running) {
+            return;
+        }
+        drainer = new Thread(this::drainLoop, "ems-spool-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread thread : new Thread[]{committer, drainer}) {
+            if (thread != null) {
+                thread.interrupt();
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+        synchronized (writeLock) {
+            active.force();
+        }
+        for (SpoolSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /**
+     * 메시지를 스풀에 기록하고 fsync 가 끝날 때까지 기다린다. 반환되면 브로커에 ack 해도 된다.
+     */
+    public void append(EmsDelivery delivery) {
+        byte[] body = EmsDeliveryCodec.encode(delivery);
+        long offset;
+        synchronized (writeLock) {
+            int position = active.append(body);
+            if (position < 0) {
+                roll();
+                position = active.append(body);
+                if (position < 0) {
+                    throw new IllegalArgumentException("EMS message larger than spool segment: " + delivery.getMessageId());
+                }
+            }
+            offset = offsetOf(active, active.getWritePosition());
+            appendedOffset = offset;
+        }
+        appended.increment();
+
+        synchronized (durableLock) {
+            while (durableOffset < offset) {
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("EMS Spool Commit Interrupted: " + delivery.getMessageId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * writeLock 안에서 호출한다. 세그먼트 수가 maxSegments 에 차 있으면 재사용될 때까지 기다린다.
+     */
+    private void roll() {
+        while (segments.size() >= properties.getMaxSegments()) {
+            try {
+                writeLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("EMS Spool Full", e);
+            }
+        }
+        SpoolSegment sealed = active;
+        sealed.force();
+        sealed.setDurablePosition(sealed.getWritePosition());
+        sealed.seal();
+        markDurable(offsetOf(sealed, sealed.getWritePosition()));
+        try {
+            active = newSegment();
+        } catch (IOException e) {
+            throw new RuntimeException("EMS Spool Segment Create Failed", e);
+        }
+    }
+
+    private SpoolSegment newSegment() throws IOException {
+        long sequence = nextSequence++;
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%019d", sequence) + SUFFIX);
+        Path free = freeFiles.pollFirst();
+        if (free != null) {
+            Files.move(free, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        SpoolSegment segment = SpoolSegment.create(sequence, path, segmentSize);
+        segments.add(segment);
+        unread.add(segment);
+        return segment;
+    }
+
+    private void commitLoop() {
+        long interval = properties.getGroupCommitInterval().toNanos();
+        while (running) {
+            LockSupport.parkNanos(this, interval);
+            SpoolSegment segment;
+            int position;
+            long offset;
+            synchronized (writeLock) {
+                segment = active;
+                position = segment.getWritePosition();
+                offset = appendedOffset;
+            }
+            if (offset <= durableOffset()) {
+                continue;
+            }
+            long startedAt = System.nanoTime();
+            segment.force();
+            commitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            segment.setDurablePosition(position);
+            markDurable(offset);
+        }
+    }
+
+    private void markDurable(long offset) {
+        synchronized (durableLock) {
+            durableOffset = Math.max(durableOffset, offset);
+            durableLock.notifyAll();
+        }
+        Thread thread = drainer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private long durableOffset() {
+        synchronized (durableLock) {
+            return durableOffset;
+        }
+    }
+
+    private void drainLoop() {
+        int position = SpoolSegment.HEADER_BYTES;
+        while (running) {
+            SpoolSegment segment = unread.peek();
+            if (segment == null) {
+                LockSupport.parkNanos(this, properties.getGroupCommitInterval().toNanos());
+                continue;
+            }
+            // seal 여부를 먼저 읽어야 seal 직전의 durablePosition 으로 끝을 판단하지 않는다
+            boolean sealed = segment.isSealed();
+            SpoolSegment.Record record = segment.read(position, segment.readLimit());
+            if (record == null) {
+                if (sealed) {
+                    segment.onReaderDone();
+                    recycleIfDone(segment);
+                    unread.poll();
+                    position = SpoolSegment.HEADER_BYTES;
+                } else {
+                    LockSupport.parkNanos(this, properties.getGroupCommitInterval().toNanos());
+                }
+                continue;
+            }
+
+            position = record.next;
+            segment.onRead(record.done);
+            if (!record.done) {
+                dispatch(segment, record);
+            }
+        }
+    }
+
+    private void dispatch(SpoolSegment segment, SpoolSegment.Record record) {
+        inFlight.incrementAndGet();
+        SpoolAcknowledgement acknowledgement = new SpoolAcknowledgement(segment, record);
+        boolean admitted = false;
+        try {
+            EmsDelivery delivery = EmsDeliveryCodec.decode(record.body, routeRegistry, acknowledgement);
+            if (delivery == null) {
+                log.warn("EMS spooled message dropped, route no longer configured: segment={}, position={}", segment.getSequence(), record.position);
+                acknowledgement.acknowledge();
+                return;
+            }
+            admissionControl.admit(delivery);
+            admitted = true;
+        } catch (RuntimeException e) {
+            log.error("EMS spool drain failed: segment={}, position={}", segment.getSequence(), record.position, e);
+        } finally {
+            // 넘기지 못한 레코드도 처리 완료로 세야 inFlight 와 세그먼트 재사용이 막히지 않는다
+            if (!admitted) {
+                acknowledgement.recover();
+            }
+        }
+    }
+
+    private void complete(SpoolSegment segment) {
+        segment.onProcessed();
+        inFlight.decrementAndGet();
+        recycleIfDone(segment);
+    }
+
+    /**
+     * 처리하지 못한 레코드를 FAILED 로 표시하고, 세그먼트가 재사용되어도 남도록 body 를 별도 파일에 쓴다.
+     * 파일 내용은 {@link EmsDeliveryCodec} 포맷 그대로다.
+     */
+    private void fail(SpoolSegment segment, SpoolSegment.Record record) {
+        segment.markFailed(record.position);
+        failed.increment();
+        Path file = directory.resolve(FAILED_PREFIX + segment.getSequence() + "-" + record.position + SUFFIX);
+        try {
+            Files.write(file, record.body);
+            log.error("EMS spooled message failed, kept in {}", file);
+        } catch (IOException e) {
+            log.error("EMS spooled message failed and could not be kept: segment={}, position={}", segment.getSequence(), record.position, e);
+        }
+    }
+
+    private void recycleIfDone(SpoolSegment segment) {
+        if (!segment.tryRecycle()) {
+            return;
+        }
+        segments.remove(segment);
+        synchronized (writeLock) {
+            try {
+                segment.close();
+                if (freeFiles.size() < properties.getFreeSegments()) {
+                    Path free = directory.resolve(FREE_PREFIX + segment.getSequence() + SUFFIX);
+                    Files.move(segment.getPath(), free, StandardCopyOption.REPLACE_EXISTING);
+                    freeFiles.add(free);
+                } else {
+                    Files.deleteIfExists(segment.getPath());
+                }
+            } catch (IOException e) {
+                log.warn("EMS spool segment recycle failed: {}", segment.getPath(), e);
+            }
+            writeLock.notifyAll();
+        }
+    }
+
+    private static long offsetOf(SpoolSegment segment, int position) {
+        return segment.getSequence() << 32 | position;
+    }
+
+    /**
+     * 스풀 레코드 하나의 ack. ack 하면 DONE, recover(dead letter 전송 실패 등)하면 FAILED 로 표시한다.
+     * 어느 쪽이든 처음 한 번만 처리 완료로 센다.
+     */
+    private class SpoolAcknowledgement implements EmsDelivery.Acknowledgement {
+        private final SpoolSegment segment;
+        private final SpoolSegment.Record record;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private SpoolAcknowledgement(SpoolSegment segment, SpoolSegment.Record record) {
+            this.segment = segment;
+            this.record = record;
+        }
+
+        @Override
+        public void acknowledge() {
+            if (settled.compareAndSet(false, true)) {
+                segment.markDone(record.position);
+                complete(segment);
+            }
+        }
+
+        @Override
+        public void recover() {
+            if (settled.compareAndSet(false, true)) {
+                fail(segment, record);
+                complete(segment);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.chanseok.emsstudy.spool;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * {@link EmsSpool} 설정.
+ * application.yml 의 {@code ems.spool.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.spool")
+public class EmsSpoolProperties {
+
+    /** 스풀 사용 여부. 켜면 메시지를 디스크에 기록한 뒤 바로 브로커에 ack 한다 */
+    private boolean enabled = false;
+
+    /** 세그먼트 파일을 둘 디렉터리 */
+    private String directory = "./data/spool";
+
+    /** 세그먼트 파일 하나의 크기 */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /** 동시에 유지할 최대 세그먼트 수. 다 차면 리스너가 기다린다 */
+    private int maxSegments = 16;
+
+    /** 재사용하려고 남겨 둘 빈 세그먼트 파일 수 */
+    private int freeSegments = 2;
+
+    /** group commit 주기. 이 시간 동안 들어온 기록을 fsync 한 번으로 묶는다 */
+    private Duration groupCommitInterval = Duration.ofMillis(2);
+}
@@ -0,0 +1,238 @@
+package com.chanseok.emsstudy.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 스풀 세그먼트 파일 하나 (memory-mapped, append-only).
+ * <pre>
+ * header : magic(int) | sequence(long) | reserved(int)
+ * record : length(int) | sequence(long) | crc32(int) | status(byte) | body
+ * </pre>
+ * 레코드마다 세그먼트 sequence 를 같이 써 두므로, 재사용한 파일에 남아 있는 예전 레코드는 sequence 가 달라 끝으로 본다.
+ * 처리가 끝난 레코드는 status 만 DONE 으로 바꾼다(fsync 하지 않음. 잃어버리면 재기동 때 한 번 더 처리될 뿐이다).
+ * dead letter 로도 보내지 못한 레코드는 FAILED 로 바꾸고, 재기동 때 다시 디스패치하지 않는다.
+ */
+class SpoolSegment implements Closeable {
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 17;
+
+    private static final int MAGIC = 0x454D5353; // "EMSS"
+    private static final byte STATUS_PENDING = 0;
+    private static final byte STATUS_DONE = 1;
+    private static final byte STATUS_FAILED = 2;
+
+    private final long sequence;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    /** 쓰기 위치. 쓰기는 {@link EmsSpool} 의 쓰기 락 안에서만 한다 */
+    private int writePosition = HEADER_BYTES;
+
+    /** fsync 가 끝난 위치. 리더는 여기까지만 읽는다 */
+    private volatile int durablePosition = HEADER_BYTES;
+
+    /** 더 이상 쓰지 않는 세그먼트 */
+    private volatile boolean sealed;
+
+    /** 리더가 끝까지 읽었는지, 읽은 레코드 수, 처리가 끝난 레코드 수 (this 로 동기화) */
+    private boolean readerDone;
+    private int readCount;
+    private int processedCount;
+    private boolean recycled;
+
+    private SpoolSegment(long sequence, Path path, int size) throws IOException {
+        this.sequence = sequence;
+        this.path = path;
+        this.size = size;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * 새 세그먼트를 만든다. 재사용하는 파일이면 예전 내용은 sequence 가 달라 읽히지 않는다.
+     */
+    static SpoolSegment create(long sequence, Path path, int size) throws IOException {
+        SpoolSegment segment = new SpoolSegment(sequence, path, size);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putLong(4, sequence);
+        segment.buffer.putInt(HEADER_BYTES, 0);
+        return segment;
+    }
+
+    /**
+     * 재기동 시 기존 세그먼트를 연다. 끝까지 쓴 것으로 보고 더 쓰지 않는다.
+     *
+     * @return 세그먼트 파일이 아니면 null
+     */
+    static SpoolSegment open(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long fileSize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            channel.read(header, 0);
+        }
+        if (fileSize < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            return null;
+        }
+        SpoolSegment restored = new SpoolSegment(header.getLong(4), path, (int) fileSize);
+        restored.sealed = true;
+        restored.writePosition = restored.size;
+        restored.durablePosition = restored.size;
+        return restored;
+    }
+
+    /**
+     * @return 레코드를 쓴 위치. 자리가 모자라면 -1
+     */
+    int append(byte[] body) {
+        int recordSize = RECORD_HEADER_BYTES + body.length;
+        if (writePosition + recordSize > size) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        int position = writePosition;
+        ByteBuffer out = buffer.duplicate();
+        out.position(position + 4);
+        out.putLong(sequence);
+        out.putInt((int) crc.getValue());
+        out.put(STATUS_PENDING);
+        out.put(body);
+        // 다음 레코드 자리를 끝 표시로 비워 두고, 길이는 마지막에 써서 반쯤 쓴 레코드가 읽히지 않게 한다
+        if (position + recordSize + 4 <= size) {
+            out.putInt(0);
+        }
+        buffer.putInt(position, body.length);
+        writePosition = position + recordSize;
+        return position;
+    }
+
+    /**
+     * position 의 레코드를 읽는다.
+     *
+     * @return 유효한 레코드가 없으면(끝) null
+     */
+    Record read(int position, int limit) {
+        if (position + RECORD_HEADER_BYTES > limit) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER_BYTES + length > limit || buffer.getLong(position + 4) != sequence) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        ByteBuffer in = buffer.duplicate();
+        in.position(position + RECORD_HEADER_BYTES);
+        in.get(body);
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(position + 12)) {
+            return null;
+        }
+        return new Record(position, position + RECORD_HEADER_BYTES + length, body, buffer.get(position + 16) != STATUS_PENDING);
+    }
+
+    void markDone(int position) {
+        buffer.put(position + 16, STATUS_DONE);
+    }
+
+    void markFailed(int position) {
+        buffer.put(position + 16, STATUS_FAILED);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getDurablePosition() {
+        return durablePosition;
+    }
+
+    void setDurablePosition(int durablePosition) {
+        this.durablePosition = durablePosition;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    void seal() {
+        this.sealed = true;
+    }
+
+    /**
+     * 리더가 읽을 수 있는 끝 위치
+     */
+    int readLimit() {
+        return sealed ? writePosition : durablePosition;
+    }
+
+    synchronized void onRead(boolean alreadyDone) {
+        readCount++;
+        if (alreadyDone) {
+            processedCount++;
+        }
+    }
+
+    synchronized void onProcessed() {
+        processedCount++;
+    }
+
+    synchronized void onReaderDone() {
+        readerDone = true;
+    }
+
+    /**
+     * 다 읽었고 읽은 레코드가 모두 처리되었으면 한 번만 true 를 반환한다.
+     */
+    synchronized boolean tryRecycle() {
+        if (recycled || !readerDone || processedCount < readCount) {
+            return false;
+        }
+        recycled = true;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    static class Record {
+        final int position;
+        final int next;
+        final byte[] body;
+        /** DONE 이거나 FAILED 인 레코드 */
+        final boolean done;
+
+        private Record(int position, int next, byte[] body, boolean done) {
+            this.position = position;
+            this.next = next;
+            this.body = body;
+            this.done = done;
+        }
+    }
+}
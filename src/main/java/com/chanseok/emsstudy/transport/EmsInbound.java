@@ -0,0 +1,107 @@
+package com.chanseok.emsstudy.transport;
+
+import com.chanseok.emsstudy.capture.EmsCapture;
+import com.chanseok.emsstudy.circuit.EmsCircuitBreakerRegistry;
+import com.chanseok.emsstudy.coalesce.EmsCoalescer;
+import com.chanseok.emsstudy.dedup.EmsDedupCache;
+import com.chanseok.emsstudy.dispatch.EmsAdmissionControl;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDispatchPipeline;
+import com.chanseok.emsstudy.ratelimit.EmsRateLimiter;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.spool.EmsSpool;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import java.util.function.Consumer;
+
+/**
+ * 모든 {@link EmsTransport} 가 받은 메시지를 넘기는 입구. transport 의 수신 스레드에서 호출된다.
+ * 중복 검사, 병합({@link EmsCoalescer}), 서킷 브레이커 보류 큐 대기({@link EmsCircuitBreakerRegistry}), 속도 제한({@link EmsRateLimiter})만 하고,
+ * 마감/과부하 확인({@link EmsAdmissionControl})을 거쳐 {@link EmsDispatchPipeline} 워커에 넘긴다.
+ * 병합은 가장 앞에서 해서, 다른 메시지에 밀려 버려질 메시지가 서킷 브레이커 대기나 토큰을 쓰지 않게 한다.
+ * 병합 window 가 끝난 메시지와 테넌트 토큰을 기다려야 하는 메시지는 수신 스레드를 막지 않고 미뤘다가 이어서 넘긴다.
+ * 스풀({@link EmsSpool})을 켜면 디스크에 기록하고 바로 ack 하며, 디스패치는 스풀 drain 스레드가 이어서 한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsInbound {
+    private final EmsDedupCache dedupCache;
+    private final EmsCoalescer coalescer;
+    private final EmsRateLimiter rateLimiter;
+    private final EmsCircuitBreakerRegistry circuitBreakers;
+    private final EmsAdmissionControl admissionControl;
+    private final EmsSpool spool;
+    private final EmsCapture capture;
+
+    /**
+     * @param factory 중복 제거 키를 받아 transport 의 메시지로 {@link EmsDelivery} 를 만든다
+     */
+    public void receive(EmsRoute route, String messageId, String payload, DeliveryFactory factory) throws JMSException {
+        EmsDelivery delivery = accept(route, messageId, payload, factory, this::admit);
+        if (delivery != null) {
+            admit(delivery);
+        }
+    }
+
+    /**
+     * 디스패치 직전까지(중복 검사, 캡처, 병합, 서킷 브레이커 대기, 속도 제한)만 하고 만든 {@link EmsDelivery} 를 돌려준다.
+     * 디스패치를 직접 하는 수신 경로(reactive 라우트)가 쓴다.
+     *
+     * @param deferred 병합 window 가 끝났거나 속도 제한으로 미룬 메시지를 나중에 이어서 처리할 곳
+     * @return 중복이라 ack 하고 건너뛰었거나, 병합하려고 맡겨 두었거나, 미뤘으면 null
+     */
+    public EmsDelivery accept(EmsRoute route, String messageId, String payload, DeliveryFactory factory,
+                              Consumer<EmsDelivery> deferred) throws JMSException {
+        String dedupKey = dedupCache.resolveKey(route, messageId, payload);
+        if (dedupKey != null && dedupCache.isDuplicate(dedupKey)) {
+            log.debug("EMS duplicate skipped: key={}", dedupKey);
+            factory.create(dedupKey).acknowledge();
+            return null;
+        }
+
+        EmsDelivery delivery = factory.create(dedupKey);
+        capture.record(delivery);
+        // window 가 끝나면 handoff 스레드에서 최신 메시지만 이어서 들어온다
+        if (coalescer.offer(delivery, latest -> {
+            if (throttle(latest, deferred)) {
+                deferred.accept(latest);
+            }
+        })) {
+            return null;
+        }
+        return throttle(delivery, deferred) ? delivery : null;
+    }
+
+    /**
+     * 서킷 브레이커 보류 큐에 자리가 날 때까지 기다리고 속도 제한 토큰을 받는다.
+     *
+     * @return 토큰을 기다려야 해서 미뤘으면 false
+     */
+    private boolean throttle(EmsDelivery delivery, Consumer<EmsDelivery> deferred) {
+        circuitBreakers.awaitCapacity(delivery.getRoute());
+        return rateLimiter.acquire(delivery, deferred);
+    }
+
+    private void admit(EmsDelivery delivery) {
+        if (spool.isEnabled()) {
+            // 디스크에 내려간 뒤에는 스풀이 책임지므로 transport 에는 바로 ack 한다
+            spool.append(delivery);
+            try {
+                delivery.acknowledge();
+            } catch (JMSException e) {
+                throw new RuntimeException("EMS Acknowledge Failed: " + delivery.getMessageId(), e);
+            }
+            return;
+        }
+        admissionControl.admit(delivery);
+    }
+
+    @FunctionalInterface
+    public interface DeliveryFactory {
+        EmsDelivery create(String dedupKey) throws JMSException;
+    }
+}
@@ -0,0 +1,29 @@
+package com.chanseok.emsstudy.transport;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+
+/**
+ * 메시지를 받아 {@link EmsInbound} 로 넘기는 수신 경로.
+ * 어떤 transport 로 받든 같은 라우트 설정과 같은 디스패치 파이프라인을 탄다.
+ * <ul>
+ *     <li>수신 : {@link #start()} 이후 받은 메시지를 {@link EmsInbound#receive} 로 넘긴다</li>
+ *     <li>ack : 메시지마다 {@link EmsDelivery.Acknowledgement} 를 달아 넘긴다</li>
+ *     <li>응답 : 브로커 transport 는 JMSReplyTo 를, 그 외는 {@link EmsDelivery.Reply} 를 달아 넘긴다</li>
+ *     <li>종료 : {@link #close()}</li>
+ * </ul>
+ */
+public interface EmsTransport {
+
+    /** 로그/메트릭에 쓰는 이름 */
+    String getName();
+
+    /** 설정으로 켜져 있는지 여부. 꺼져 있으면 시작하지 않는다 */
+    boolean isEnabled();
+
+    /**
+     * 수신을 시작한다. 연결에 실패해도 애플리케이션 기동을 막지 않아야 한다.
+     */
+    void start();
+
+    void close();
+}
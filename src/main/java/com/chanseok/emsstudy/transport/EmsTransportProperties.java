@@ -0,0 +1,42 @@
+package com.chanseok.emsstudy.transport;
+
+import com.chanseok.emsstudy.dispatch.WaitStrategy;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * {@link EmsTransport} 설정.
+ * application.yml 의 {@code ems.transport.*} 값을 바인딩한다.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ems.transport")
+public class EmsTransportProperties {
+
+    private ActiveMq activemq = new ActiveMq();
+
+    private Memory memory = new Memory();
+
+    @Getter
+    @Setter
+    public static class ActiveMq {
+
+        /** 브로커 큐에서 받을지 여부 */
+        private boolean enabled = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Memory {
+
+        /** 같은 JVM 의 생산자가 브로커 없이 보내는 in-memory transport 사용 여부 */
+        private boolean enabled = false;
+
+        /** 라우트당 대기열 크기(2의 거듭제곱으로 올림). 가득 차면 보내는 쪽이 기다린다 */
+        private int capacity = 1024;
+
+        /** 대기열이 비어 있을 때 수신 스레드가 기다리는 방법 */
+        private WaitStrategy.Type waitStrategy = WaitStrategy.Type.BLOCKING;
+    }
+}
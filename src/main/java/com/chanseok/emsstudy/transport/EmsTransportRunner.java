@@ -0,0 +1,39 @@
+package com.chanseok.emsstudy.transport;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 애플리케이션이 뜨면 켜져 있는 {@link EmsTransport} 를 모두 시작하고, 종료할 때 닫는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmsTransportRunner implements DisposableBean {
+    private final List<EmsTransport> transports;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (EmsTransport transport : transports) {
+            if (transport.isEnabled()) {
+                transport.start();
+                log.info("EMS transport started: {}", transport.getName());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (EmsTransport transport : transports) {
+            if (transport.isEnabled()) {
+                transport.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.chanseok.emsstudy.transport;
+
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.RingBuffer;
+import com.chanseok.emsstudy.dispatch.WaitStrategy;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.spool.EmsSpool;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.jms.JMSException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 같은 JVM 의 생산자가 브로커를 거치지 않고 라우트로 보내는 transport.
+ * 라우트(destination)마다 {@link RingBuffer} 하나와 consumers 수만큼의 수신 스레드를 두고,
+ * 받은 메시지는 브로커 메시지와 똑같이 {@link EmsInbound} 로 넘긴다.
+ * 응답은 {@link #send} 가 돌려준 future 로 Content-Type 과 함께 받는다. 응답 없이 끝나면(DLQ 등) null 로 완료되고,
+ * 처리하지 못한 채 돌려받으면(recover) 예외로 완료된다. 다시 보낼지는 보내는 쪽이 정한다.
+ * DLQ/EXPIRED 로 옮기는 메시지는 여전히 브로커로 보낸다.
+ * 스풀({@link EmsSpool})을 켜면 디스크에 기록하면서 바로 ack 하므로 응답을 돌려줄 수 없어 보내기를 거절한다.
+ */
+@Slf4j
+@Component
+public class InMemoryTransport implements EmsTransport {
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final EmsTransportProperties.Memory properties;
+    private final EmsInbound inbound;
+    private final EmsSpool spool;
+
+    /** destination → 대기열 */
+    private final Map<String, Channel> channels = new HashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Thread> receivers = new ArrayList<>();
+    private volatile boolean started = false;
+
+    public InMemoryTransport(EmsTransportProperties transportProperties, EmsRouteRegistry routeRegistry, EmsInbound inbound,
+                             EmsSpool spool, MeterRegistry meterRegistry) {
+        this.properties = transportProperties.getMemory();
+        this.inbound = inbound;
+        this.spool = spool;
+        if (properties.isEnabled()) {
+            for (EmsRoute route : routeRegistry.getRoutes()) {
+                Channel channel = new Channel(route, properties.getCapacity(), properties.getWaitStrategy().create());
+                channels.put(route.getDestination(), channel);
+                Gauge.builder("ems.transport.memory.depth", channel.ring, RingBuffer::size)
+                        .tag("route", route.getName())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public synchronized void start() {
+        started = true;
+        for (Channel channel : channels.values()) {
+            for (int i = 0; i < channel.route.getConsumers(); i++) {
+                Thread thread = new Thread(() -> receive(channel), "ems-memory-" + channel.route.getName() + "-" + i);
+                thread.setDaemon(true);
+                receivers.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        started = false;
+        receivers.forEach(Thread::interrupt);
+        receivers.clear();
+        // 대기열에 남은 메시지는 처리되지 않았음을 보내는 쪽에 알린다
+        for (Channel channel : channels.values()) {
+            for (InMemoryMessage message = channel.ring.poll(); message != null; message = channel.ring.poll()) {
+                message.future.completeExceptionally(new IllegalStateException("EMS memory transport closed"));
+            }
+        }
+    }
+
+    public CompletableFuture<Response> send(String destination, String payload) {
+        return send(destination, payload, Collections.emptyMap());
+    }
+
+    /**
+     * 라우트 대기열에 넣는다. 대기열이 가득 차 있으면 자리가 날 때까지 호출한 스레드가 기다린다.
+     *
+     * @param properties JMS 프로퍼티처럼 라우트 설정(우선순위, 마감, 테넌트 등)에서 쓰는 값
+     * @return 컨트롤러 응답. 응답 없이 처리가 끝나면 null
+     */
+    public CompletableFuture<Response> send(String destination, String payload, Map<String, Object> properties) {
+        return send(destination, new InMemoryMessage("mem:" + sequence.incrementAndGet(), payload, null, properties));
+    }
+
+    /**
+     * Smile/CBOR 같은 바이너리 body 를 보낸다. properties 에 {@link EmsContentType#PROPERTY} 를 함께 넘긴다.
+     */
+    public CompletableFuture<Response> send(String destination, byte[] body, Map<String, Object> properties) {
+        return send(destination, new InMemoryMessage("mem:" + sequence.incrementAndGet(), null, body, properties));
+    }
+
+    private CompletableFuture<Response> send(String destination, InMemoryMessage message) {
+        Channel channel = channels.get(destination);
+        if (channel == null) {
+            throw new IllegalArgumentException("No EMS route for destination: " + destination);
+        }
+        if (!started) {
+            throw new IllegalStateException("EMS memory transport is not running");
+        }
+        if (spool.isEnabled()) {
+            throw new IllegalStateException("EMS memory transport cannot reply while the spool is enabled: " + destination);
+        }
+
+        int spins = 0;
+        while (!channel.ring.offer(message)) {
+            if (spins++ < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("EMS Send Interrupted: " + destination);
+            }
+        }
+        channel.waitStrategy.signal();
+        return message.future;
+    }
+
+    private void receive(Channel channel) {
+        int idleCount = 0;
+        while (started) {
+            InMemoryMessage message = channel.ring.poll();
+            if (message == null) {
+                try {
+                    idleCount = channel.waitStrategy.idle(idleCount, channel.ready);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            idleCount = 0;
+            deliver(channel.route, message);
+        }
+    }
+
+    private void deliver(EmsRoute route, InMemoryMessage message) {
+        try {
+            inbound.receive(route, message.id, message.payload, dedupKey -> EmsDelivery.of(route, message.id, null, message.payload,
+                    message.body, message.properties, priorityOf(message), 0L, dedupKey, message, message));
+        } catch (JMSException | RuntimeException e) {
+            log.warn("EMS memory delivery failed: route={}, messageId={}", route.getName(), message.id, e);
+            message.future.completeExceptionally(e);
+        }
+    }
+
+    private static int priorityOf(InMemoryMessage message) {
+        Object value = message.properties.get("JMSPriority");
+        return value instanceof Number ? ((Number) value).intValue() : 4;
+    }
+
+    private static class Channel {
+        private final EmsRoute route;
+        private final RingBuffer<InMemoryMessage> ring;
+        private final WaitStrategy waitStrategy;
+        private final BooleanSupplier ready;
+
+        private Channel(EmsRoute route, int capacity, WaitStrategy waitStrategy) {
+            this.route = route;
+            this.ring = new RingBuffer<>(capacity);
+            this.waitStrategy = waitStrategy;
+            this.ready = () -> !ring.isEmpty();
+        }
+    }
+
+    /**
+     * 컨트롤러 응답. 텍스트 응답은 body, 바이너리(Smile/CBOR) 응답은 {@link #getBodyBytes} 로 읽는다
+     */
+    @Getter
+    public static class Response {
+        /** 텍스트 응답. 바이너리 응답이면 null */
+        private final String body;
+        @Getter(AccessLevel.NONE)
+        private final byte[] bytes;
+        private final String contentType;
+
+        private Response(String body, byte[] bytes, String contentType) {
+            this.body = body;
+            this.bytes = bytes;
+            this.contentType = contentType;
+        }
+
+        /**
+         * 응답 바이트. 텍스트 응답이면 UTF-8 로 인코딩한다
+         */
+        public byte[] getBodyBytes() {
+            return bytes != null ? bytes : body.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 대기열에 들어가는 메시지이자 그 메시지의 ack 와 응답 채널. ack 는 응답 없이 끝났다는 뜻이라 null 로 완료한다
+     */
+    private static class InMemoryMessage implements EmsDelivery.Acknowledgement, EmsDelivery.Reply {
+        private final String id;
+        private final String payload;
+        private final byte[] body;
+        private final Map<String, Object> properties;
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        private InMemoryMessage(String id, String payload, byte[] body, Map<String, Object> properties) {
+            this.id = id;
+            this.payload = payload;
+            this.body = body;
+            this.properties = properties;
+        }
+
+        @Override
+        public void send(String correlationId, String body, String contentType) {
+            future.complete(new Response(body, null, contentType));
+        }
+
+        @Override
+        public void send(String correlationId, byte[] body, String contentType) {
+            future.complete(new Response(null, body, contentType));
+        }
+
+        @Override
+        public void acknowledge() {
+            future.complete(null);
+        }
+
+        @Override
+        public void recover() {
+            future.completeExceptionally(new IllegalStateException("EMS memory message was not processed: " + id));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.chanseok.emsstudy.utility;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 크기(LRU)와 만료 시간(TTL)으로 항목을 밀어내는 동시성 캐시.
+ * 키 해시로 고른 세그먼트(access-order LinkedHashMap)에만 락을 걸기 때문에 조회/기록이 O(1)이고 경합이 적다.
+ */
+public class LruTtlCache<K, V> {
+    private final Segment<K, V>[] segments;
+    private final long ttlMillis;
+
+    @SuppressWarnings("unchecked")
+    public LruTtlCache(int maxEntries, int segmentCount, long ttlMillis) {
+        int count = Math.max(1, segmentCount);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(Math.max(1, maxEntries / count));
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return 값이 없거나 만료되었으면 null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                segment.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    /**
+     * 값이 없거나 만료됐으면 factory 로 만들어 넣는다. 꺼낼 때마다 만료 시각을 ttl 뒤로 미루므로 마지막 사용 기준으로 만료된다.
+     */
+    public V getOrCreate(K key, Function<? super K, ? extends V> factory) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            V value = entry != null && entry.expiresAt > now ? entry.value : factory.apply(key);
+            segment.put(key, new Entry<>(value, now + ttlMillis));
+            return value;
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * @param expiresAt 만료 시각 (epoch millis)
+     */
+    public void put(K key, V value, long expiresAt) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new Entry<>(value, expiresAt));
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 크기 제한이 있는 access-order LinkedHashMap. 가장 오래 쓰이지 않은 항목부터 밀려난다.
+     */
+    private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private final int maxEntries;
+
+        private Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
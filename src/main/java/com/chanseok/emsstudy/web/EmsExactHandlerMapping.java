@@ -0,0 +1,98 @@
+package com.chanseok.emsstudy.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.AbstractHandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EMS 라우트 URI 를 HashMap 한 번으로 찾는 HandlerMapping.
+ * {@link RequestMappingHandlerMapping} 은 요청마다 등록된 매핑의 조건(패턴, 메서드, 헤더, consumes/produces)을 비교해 최선을 고르지만,
+ * EMS 는 고정된 URI 에 POST 만 보내므로 경로와 POST 만 보는 매핑은 미리 찾아 둔다.
+ * 패턴 변수나 그 밖의 조건이 있는 매핑, 같은 URI 에 매핑이 여럿인 경우는 등록하지 않고 다음 HandlerMapping 에 맡긴다.
+ */
+@Slf4j
+public class EmsExactHandlerMapping extends AbstractHandlerMapping implements InitializingBean {
+    private final RequestMappingHandlerMapping requestMappingHandlerMapping;
+    private final Collection<String> uris;
+
+    /** uri → 빈을 찾아 둔 핸들러 메서드 */
+    private Map<String, HandlerMethod> handlerMethods = Collections.emptyMap();
+
+    /**
+     * @param uris 미리 찾아 둘 URI (라우트의 uri, batch.uri, fan-out uris)
+     */
+    public EmsExactHandlerMapping(RequestMappingHandlerMapping requestMappingHandlerMapping, Collection<String> uris) {
+        this.requestMappingHandlerMapping = requestMappingHandlerMapping;
+        this.uris = uris;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Map<String, HandlerMethod> candidates = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        requestMappingHandlerMapping.getHandlerMethods().forEach((info, handlerMethod) -> {
+            if (!isPlainPost(info)) {
+                return;
+            }
+            for (String pattern : info.getPatternValues()) {
+                if (uris.contains(pattern) && candidates.putIfAbsent(pattern, handlerMethod) != null) {
+                    ambiguous.add(pattern);
+                }
+            }
+        });
+        ambiguous.forEach(candidates::remove);
+
+        Map<String, HandlerMethod> resolved = new HashMap<>();
+        candidates.forEach((uri, handlerMethod) -> resolved.put(uri, handlerMethod.createWithResolvedBean()));
+        this.handlerMethods = resolved;
+        log.info("EMS exact handler mappings: {}", resolved.keySet());
+    }
+
+    @Override
+    protected Object getHandlerInternal(HttpServletRequest request) {
+        if (!RequestMethod.POST.name().equals(request.getMethod())) {
+            return null;
+        }
+        String lookupPath = initLookupPath(request);
+        HandlerMethod handlerMethod = handlerMethods.get(lookupPath);
+        if (handlerMethod == null) {
+            return null;
+        }
+        // RequestMappingInfoHandlerMapping#handleMatch 가 남기는 속성 중 경로 변수 없는 매핑에 필요한 것만
+        request.setAttribute(BEST_MATCHING_HANDLER_ATTRIBUTE, handlerMethod);
+        request.setAttribute(BEST_MATCHING_PATTERN_ATTRIBUTE, lookupPath);
+        request.setAttribute(PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, lookupPath);
+        request.setAttribute(URI_TEMPLATE_VARIABLES_ATTRIBUTE, Collections.emptyMap());
+        return handlerMethod;
+    }
+
+    /**
+     * 경로 외에는 POST 여부만 보는 매핑인지
+     */
+    private static boolean isPlainPost(RequestMappingInfo info) {
+        Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+        return (methods.isEmpty() || methods.contains(RequestMethod.POST))
+                && info.getParamsCondition().isEmpty()
+                && info.getHeadersCondition().isEmpty()
+                && info.getConsumesCondition().isEmpty()
+                && info.getProducesCondition().isEmpty()
+                && info.getCustomCondition() == null
+                && info.getPatternValues().stream().noneMatch(EmsExactHandlerMapping::isPattern);
+    }
+
+    private static boolean isPattern(String path) {
+        return path.indexOf('{') >= 0 || path.indexOf('*') >= 0 || path.indexOf('?') >= 0;
+    }
+}
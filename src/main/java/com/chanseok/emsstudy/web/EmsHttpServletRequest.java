@@ -159,6 +159,9 @@ public class EmsHttpServletRequest implements HttpServletRequest {
     /** 요청 바디 */
     private byte[] content;
 
+    /** 길이를 미리 알 수 없는 요청 바디 (압축을 풀면서 읽는 스트림 등). 설정하면 content 대신 읽는다 */
+    private InputStream contentStream;
+
     /** InputStream/Reader 캐시 */
     private ServletInputStream inputStream;
 
@@ -225,6 +228,17 @@ public class EmsHttpServletRequest implements HttpServletRequest {
      */
     public void setContent(byte[] content) {
         this.content = content;
+        this.contentStream = null;
+        this.inputStream = null;
+        this.reader = null;
+    }
+
+    /**
+     * 요청 바디를 스트림으로 설정합니다. Content-Length 는 -1 이 되고, 스트림은 설정한 쪽이 닫습니다.
+     */
+    public void setContent(InputStream contentStream) {
+        this.content = null;
+        this.contentStream = contentStream;
         this.inputStream = null;
         this.reader = null;
     }
@@ -815,8 +829,7 @@ public class EmsHttpServletRequest implements HttpServletRequest {
     public ServletInputStream getInputStream() throws IOException {
         if (inputStream != null) return inputStream;
         if (reader != null) throw new IllegalStateException("getReader() already called");
-        InputStream src = (content == null) ? new ByteArrayInputStream(new byte[0])
-                : new ByteArrayInputStream(content);
+        InputStream src = openContent();
 
         // TODO: 프로젝트 내에 SimpleServletInputStream 구현이 있어야 합니다.
         //  - javax.servlet.ServletInputStream을 상속하고, read/isFinished/isReady/setReadListener 구현
@@ -938,8 +951,7 @@ public class EmsHttpServletRequest implements HttpServletRequest {
         if (reader != null) return reader;
         if (inputStream != null) throw new IllegalStateException("getInputStream() already called");
         Charset cs = (characterEncoding != null) ? Charset.forName(characterEncoding) : StandardCharsets.ISO_8859_1;
-        InputStream src = (content == null) ? new ByteArrayInputStream(new byte[0])
-                : new ByteArrayInputStream(content);
+        InputStream src = openContent();
         this.reader = new BufferedReader(new InputStreamReader(src, cs));
         return reader;
     }
@@ -1189,6 +1201,16 @@ public class EmsHttpServletRequest implements HttpServletRequest {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * getInputStream/getReader 가 읽을 바디. 스트림이 설정되어 있으면 그것을, 아니면 content 를 읽는다.
+     */
+    private InputStream openContent() {
+        if (contentStream != null) {
+            return contentStream;
+        }
+        return (content == null) ? new ByteArrayInputStream(new byte[0]) : new ByteArrayInputStream(content);
+    }
+
     /**
      * 요청 바디를 바이트 배열로 반환합니다(없으면 null).
      * @return 요청 바디(없으면 null)
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
@@ -49,7 +50,7 @@ public class EmsHttpServletResponse implements HttpServletResponse {
     /**
      * 응답 바디 버퍼
      */
-    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+    private final ContentBuffer body = new ContentBuffer(1024);
 
     /**
      * Writer/OutputStream 상호배타 보장용
@@ -86,6 +87,23 @@ public class EmsHttpServletResponse implements HttpServletResponse {
         return body.toByteArray();
     }
 
+    /**
+     * 응답 바디를 복사하지 않는 읽기 전용 ByteBuffer 로 반환
+     */
+    public ByteBuffer getContentView() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.view();
+    }
+
+    /**
+     * 헤더 전체를 읽기 전용 맵으로 반환 (대소문자 무시)
+     */
+    public Map<String, List<String>> getHeaderMap() {
+        return Collections.unmodifiableMap(headers);
+    }
+
     /**
      * 응답 바디를 문자열로 반환 (응답 charset 우선, 없으면 UTF-8)
      */
@@ -554,6 +572,20 @@ public class EmsHttpServletResponse implements HttpServletResponse {
         if (committed) throw new IOException("Response already committed");
     }
 
+    /**
+     * 내부 배열을 복사 없이 보여줄 수 있는 바디 버퍼
+     */
+    private static class ContentBuffer extends ByteArrayOutputStream {
+
+        ContentBuffer(int size) {
+            super(size);
+        }
+
+        synchronized ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+        }
+    }
+
     /**
      * ServletOutputStream 구현체: 내부적으로 OutputStream을 감싼다.
      */
@@ -0,0 +1,72 @@
+package com.chanseok.emsstudy.web;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.AbstractServerHttpRequest;
+import org.springframework.http.server.reactive.SslInfo;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/**
+ * WebFlux {@code HttpHandler} 로 넘기는 최소한의 ServerHttpRequest 구현체.
+ * body 는 받은 byte[] 를 복사하지 않고 구독할 때마다 같은 배열을 감싼 DataBuffer 하나로 내보낸다.
+ * 압축된 body 처럼 스트림으로 읽어야 하는 body 는 DataBuffer Flux 로 받는다.
+ */
+public class EmsServerHttpRequest extends AbstractServerHttpRequest {
+    private static final InetSocketAddress LOCAL_ADDRESS =
+            InetSocketAddress.createUnresolved(EmsHttpServletRequest.DEFAULT_SERVER, EmsHttpServletRequest.DEFAULT_PORT);
+
+    private final String method;
+    private final Flux<DataBuffer> body;
+
+    public EmsServerHttpRequest(String method, String uri, HttpHeaders headers, byte[] content, DataBufferFactory bufferFactory) {
+        this(method, uri, headers, Flux.defer(() -> Flux.just(bufferFactory.wrap(content))));
+    }
+
+    public EmsServerHttpRequest(String method, String uri, HttpHeaders headers, Flux<DataBuffer> body) {
+        super(URI.create(EmsHttpServletRequest.DEFAULT_SCHEME + "://" + EmsHttpServletRequest.DEFAULT_SERVER + uri), "", headers);
+        this.method = method;
+        this.body = body;
+    }
+
+    @Override
+    public String getMethodValue() {
+        return method;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return body;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return LOCAL_ADDRESS;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return LOCAL_ADDRESS;
+    }
+
+    @Override
+    protected MultiValueMap<String, HttpCookie> initCookies() {
+        return new LinkedMultiValueMap<>();
+    }
+
+    @Override
+    protected SslInfo initSslInfo() {
+        return null;
+    }
+
+    @Override
+    public <T> T getNativeRequest() {
+        throw new IllegalStateException("EmsServerHttpRequest has no native request");
+    }
+}
@@ -0,0 +1,79 @@
+package com.chanseok.emsstudy.web;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * WebFlux {@code HttpHandler} 의 응답을 메모리에 모으는 최소한의 ServerHttpResponse 구현체.
+ * 쓰인 DataBuffer 는 바로 복사하고 release 한다.
+ */
+public class EmsServerHttpResponse extends AbstractServerHttpResponse {
+    private final ContentBuffer body = new ContentBuffer(1024);
+
+    public EmsServerHttpResponse(DataBufferFactory bufferFactory) {
+        super(bufferFactory);
+    }
+
+    /**
+     * 응답 바디 (복사하지 않은 읽기 전용 view)
+     */
+    public ByteBuffer getContentView() {
+        return body.view();
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> publisher) {
+        return Flux.from(publisher)
+                .doOnNext(buffer -> {
+                    try {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        body.write(bytes, 0, bytes.length);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> publisher) {
+        return Flux.from(publisher).concatMap(this::writeWithInternal).then();
+    }
+
+    @Override
+    protected void applyStatusCode() {
+    }
+
+    @Override
+    protected void applyHeaders() {
+    }
+
+    @Override
+    protected void applyCookies() {
+    }
+
+    @Override
+    public <T> T getNativeResponse() {
+        throw new IllegalStateException("EmsServerHttpResponse has no native response");
+    }
+
+    private static class ContentBuffer extends ByteArrayOutputStream {
+
+        ContentBuffer(int size) {
+            super(size);
+        }
+
+        synchronized ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+        }
+    }
+}
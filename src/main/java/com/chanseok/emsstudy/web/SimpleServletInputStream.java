@@ -35,6 +35,26 @@ public class SimpleServletInputStream extends ServletInputStream {
         return r;
     }
 
+    /**
+     * 여러 바이트를 한 번에 읽는다. 압축을 풀면서 읽는 스트림처럼 바이트 단위 read 가 비싼 대상을 위해 그대로 위임한다.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int r = delegate.read(b, off, len);
+        if (r == -1) {
+            finished = true;
+        }
+        return r;
+    }
+
+    /**
+     * 대상 스트림을 닫는다.
+     */
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
     /**
      * 스트림이 모두 소진되었는지 여부.
      * - {@link #read()}가 한 번이라도 -1을 반환하면 true.
@@ -1,19 +1,34 @@
 package com.chanseok.emsstudy;
 
+import com.chanseok.emsstudy.publisher.EmsPublisher;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
 import javax.jms.Destination;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
 import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 public class EmsIntegrationTest {
 
+    @Autowired
+    private EmsPublisher publisher;
+
     @Test
     public void testSendMessageToActiveMQ() throws Exception {
         Thread.sleep(1000);
@@ -37,4 +52,64 @@ public class EmsIntegrationTest {
         Thread.sleep(1000); // Wait for the message to be processed
     }
 
+    @Test
+    public void testPublishWithEmsPublisher() throws Exception {
+        // 라우트가 구독하지 않는 큐로 보내고 직접 받아서 확인한다
+        String queue = "ems.test.publisher";
+
+        ConnectionFactory factory = new ActiveMQConnectionFactory("tcp://localhost:61616");
+        Connection connection = factory.createConnection("admin", "admin");
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(queue));
+            drain(consumer);
+
+            publisher.send(queue, "{\"msg\":\"Hello from EmsPublisher\"}", Map.of("tenant", "t-1", "seq", 7));
+            Message message = consumer.receive(5_000);
+            assertThat(message).isInstanceOf(TextMessage.class);
+            assertThat(((TextMessage) message).getText()).isEqualTo("{\"msg\":\"Hello from EmsPublisher\"}");
+            assertThat(message.getStringProperty("tenant")).isEqualTo("t-1");
+            assertThat(message.getIntProperty("seq")).isEqualTo(7);
+            assertThat(message.getJMSDeliveryMode()).isEqualTo(DeliveryMode.PERSISTENT);
+            assertThat(message.getJMSPriority()).isEqualTo(4);
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(publisher.sendAsync(queue, "{\"msg\":\"async " + i + "\"}"));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            assertThat(receiveAll(consumer, 100)).hasSize(100)
+                    .allMatch(text -> text.startsWith("{\"msg\":\"async "));
+
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                batch.add("{\"msg\":\"batch " + i + "\"}");
+            }
+            publisher.sendBatch(queue, batch);
+            // 배치는 한 세션에서 순서대로 커밋되므로 보낸 순서 그대로 받는다
+            assertThat(receiveAll(consumer, 10)).containsExactlyElementsOf(batch);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static List<String> receiveAll(MessageConsumer consumer, int count) throws Exception {
+        List<String> texts = new ArrayList<>();
+        while (texts.size() < count) {
+            Message message = consumer.receive(5_000);
+            if (message == null) {
+                break;
+            }
+            texts.add(((TextMessage) message).getText());
+        }
+        return texts;
+    }
+
+    private static void drain(MessageConsumer consumer) throws Exception {
+        while (consumer.receive(200) != null) {
+            // 이전 실행에서 남은 메시지는 버린다
+        }
+    }
+
 }
@@ -0,0 +1,47 @@
+package com.chanseok.emsstudy.capture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CaptureFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsSurviveReopenUntilFull() throws Exception {
+        Path path = directory.resolve("capture.bin");
+        int capacity = CaptureFile.HEADER_BYTES + 3 * (CaptureFile.RECORD_HEADER_BYTES + 5);
+        try (CaptureFile capture = CaptureFile.create(path, capacity, 1_000L)) {
+            for (int i = 0; i < 3; i++) {
+                assertThat(capture.append(i * 10L, ("body" + i).getBytes(StandardCharsets.UTF_8))).isTrue();
+            }
+            // 자리가 모자라면 쓰지 않고 false
+            assertThat(capture.append(30L, new byte[1])).isFalse();
+        }
+
+        List<String> records = new ArrayList<>();
+        try (CaptureFile capture = CaptureFile.open(path)) {
+            assertThat(capture.getStartedAt()).isEqualTo(1_000L);
+            assertThat(capture.getCount()).isEqualTo(3);
+            capture.forEach((offsetNanos, body) -> records.add(offsetNanos + ":" + new String(body, StandardCharsets.UTF_8)));
+        }
+        assertThat(records).containsExactly("0:body0", "10:body1", "20:body2");
+    }
+
+    @Test
+    public void testRejectsCapacityThatCannotBeMapped() {
+        assertThatThrownBy(() -> CaptureFile.create(directory.resolve("huge.bin"), CaptureFile.MAX_CAPACITY + 1, 0L))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CaptureFile.create(directory.resolve("tiny.bin"), CaptureFile.HEADER_BYTES, 0L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,65 @@
+package com.chanseok.emsstudy.capture;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDeliveryCodec;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.servlet.DispatchResult;
+import com.chanseok.emsstudy.servlet.EmsDispatcherServletAdapter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EmsReplayEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCountsFailuresAndExceptionsOncePerRecord() throws Exception {
+        EmsRoute route = new EmsRoute();
+        route.setDestination("ems.queue");
+        route.setUri("/ems/test");
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+        EmsRouteRegistry routeRegistry = new EmsRouteRegistry(routeProperties);
+
+        Path path = directory.resolve("capture.bin");
+        try (CaptureFile capture = CaptureFile.create(path, 64 * 1024, System.currentTimeMillis())) {
+            for (String payload : new String[]{"ok", "ok", "fail", "throw"}) {
+                EmsDelivery delivery = EmsDelivery.of(route, payload, null, null, payload, Map.of(), 4, 0L, null, () -> {
+                });
+                capture.append(0L, EmsDeliveryCodec.encode(delivery));
+            }
+        }
+
+        DispatchResult success = mock(DispatchResult.class);
+        when(success.isSuccess()).thenReturn(true);
+        DispatchResult failure = mock(DispatchResult.class);
+        EmsDispatcherServletAdapter adapter = mock(EmsDispatcherServletAdapter.class);
+        when(adapter.dispatch(eq("/ems/test"), eq(bytes("ok")), any(), any())).thenReturn(success);
+        when(adapter.dispatch(eq("/ems/test"), eq(bytes("fail")), any(), any())).thenReturn(failure);
+        when(adapter.dispatch(eq("/ems/test"), eq(bytes("throw")), any(), any())).thenThrow(new IllegalStateException("boom"));
+
+        ReplayReport report = new EmsReplayEngine(new EmsCaptureProperties(), routeRegistry).replay(path, 0, 2, adapter);
+
+        assertThat(report.getCount()).isEqualTo(4);
+        assertThat(report.getFailures()).isEqualTo(2);
+        // 예외가 난 레코드도 지연 시간이 기록되어 0 으로 남은 슬롯이 없다
+        assertThat(report.getSortedLatencies()[0]).isPositive();
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package com.chanseok.emsstudy.circuit;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.route.EmsRoute;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofMillis(600).toNanos();
+
+    private final EmsRoute route = new EmsRoute();
+    private EmsRoute.CircuitBreaker config;
+
+    @BeforeEach
+    public void setUp() {
+        route.setName("test");
+        route.setDestination("ems.queue");
+        config = route.getCircuitBreaker();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallThreshold(Duration.ofMillis(500));
+        config.setSlowCallRateThreshold(75);
+        config.setOpenDuration(Duration.ofSeconds(10));
+        config.setHalfOpenCalls(2);
+    }
+
+    @Test
+    public void testOpensOnFailureRateOnceMinimumCallsAreRecorded() {
+        CircuitBreaker breaker = new CircuitBreaker(config);
+        breaker.onResult(false, FAST, 0L);
+        breaker.onResult(false, FAST, 0L);
+        breaker.onResult(true, FAST, 0L);
+        // 실패율은 이미 50% 이상이지만 minimumCalls 전에는 열지 않는다
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onResult(true, FAST, 0L);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.getOpenCount()).isEqualTo(1);
+        assertThat(breaker.tryAcquire(0L)).isFalse();
+    }
+
+    @Test
+    public void testOldResultsSlideOutOfTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(config);
+        breaker.onResult(false, FAST, 0L);
+        breaker.onResult(true, FAST, 0L);
+        breaker.onResult(true, FAST, 0L);
+        breaker.onResult(true, FAST, 0L);
+        // 처음 실패가 창에서 밀려나므로 실패 한 건을 더해도 25% 다
+        breaker.onResult(false, FAST, 0L);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onResult(false, FAST, 0L);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = new CircuitBreaker(config);
+        breaker.onResult(true, SLOW, 0L);
+        breaker.onResult(true, SLOW, 0L);
+        breaker.onResult(true, FAST, 0L);
+        breaker.onResult(true, SLOW, 0L);
+        // 모두 성공했어도 느린 호출이 75% 면 연다
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testHalfOpensAfterOpenDurationAndLimitsTrials() {
+        CircuitBreaker breaker = opened(0L);
+
+        assertThat(breaker.tryAcquire(9 * SECOND)).isFalse();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // openDuration 이 지나면 halfOpenCalls 건만 허락한다
+        assertThat(breaker.tryAcquire(10 * SECOND)).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire(10 * SECOND)).isTrue();
+        assertThat(breaker.tryAcquire(10 * SECOND)).isFalse();
+    }
+
+    @Test
+    public void testHeldMessagesAreReleasedOnlyForTrialsWhileHalfOpen() {
+        CircuitBreaker breaker = opened(0L);
+        breaker.hold(delivery("id-1"));
+        breaker.hold(delivery("id-2"));
+        breaker.hold(delivery("id-3"));
+
+        // OPEN 이면 꺼내지 않는다
+        assertThat(breaker.pollHeld(SECOND)).isNull();
+
+        // HALF_OPEN 이면 시험 호출 수만큼만 오래된 순서로 꺼낸다
+        assertThat(breaker.pollHeld(10 * SECOND).getMessageId()).isEqualTo("id-1");
+        assertThat(breaker.pollHeld(10 * SECOND).getMessageId()).isEqualTo("id-2");
+        assertThat(breaker.pollHeld(10 * SECOND)).isNull();
+        assertThat(breaker.heldCount()).isEqualTo(1);
+
+        // 꺼낸 메시지가 시험 호출을 하고 성공하면 닫히고, 남은 메시지는 제한 없이 꺼낸다
+        assertThat(breaker.tryAcquire(10 * SECOND)).isTrue();
+        breaker.onResult(true, FAST, 10 * SECOND);
+        assertThat(breaker.tryAcquire(10 * SECOND)).isTrue();
+        breaker.onResult(true, FAST, 10 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.pollHeld(10 * SECOND).getMessageId()).isEqualTo("id-3");
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulTrialsWithAFreshWindow() {
+        CircuitBreaker breaker = opened(0L);
+        breaker.tryAcquire(10 * SECOND);
+        breaker.onResult(true, FAST, 10 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.tryAcquire(10 * SECOND);
+        breaker.onResult(true, FAST, 10 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // 열리기 전의 실패는 잊었으므로 다시 minimumCalls 를 채워야 연다
+        breaker.onResult(false, FAST, 11 * SECOND);
+        breaker.onResult(false, FAST, 11 * SECOND);
+        breaker.onResult(false, FAST, 11 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        breaker.onResult(false, FAST, 11 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.getOpenCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedOrSlowTrialReopens() {
+        CircuitBreaker breaker = opened(0L);
+        breaker.tryAcquire(10 * SECOND);
+        breaker.onResult(false, FAST, 10 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        // 다시 연 시각부터 openDuration 을 센다
+        assertThat(breaker.tryAcquire(15 * SECOND)).isFalse();
+
+        assertThat(breaker.tryAcquire(20 * SECOND)).isTrue();
+        breaker.onResult(true, SLOW, 20 * SECOND);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.getOpenCount()).isEqualTo(3);
+    }
+
+    private CircuitBreaker opened(long now) {
+        CircuitBreaker breaker = new CircuitBreaker(config);
+        for (int i = 0; i < config.getMinimumCalls(); i++) {
+            breaker.onResult(false, FAST, now);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+
+    private EmsDelivery delivery(String messageId) {
+        return EmsDelivery.of(route, messageId, null, null, "{}", Map.of(), 4, 0L, null, () -> {
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.chanseok.emsstudy.circuit;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDispatchPipeline;
+import com.chanseok.emsstudy.provider.ApplicationContextProvider;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class EmsCircuitBreakerRegistryTest {
+
+    @Test
+    public void testRejectsMinimumCallsLargerThanWindow() {
+        EmsRoute.CircuitBreaker config = new EmsRoute.CircuitBreaker();
+        config.setWindowSize(10);
+        config.setMinimumCalls(10);
+        assertThatCode(() -> EmsCircuitBreakerRegistry.validate("test", config)).doesNotThrowAnyException();
+
+        config.setMinimumCalls(11);
+        assertThatThrownBy(() -> EmsCircuitBreakerRegistry.validate("test", config))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ems.routes.test.circuit-breaker.minimum-calls");
+    }
+
+    @Test
+    public void testListenerWaitsWhileHeldQueueIsFull() throws Exception {
+        EmsDispatchPipeline dispatchPipeline = mock(EmsDispatchPipeline.class);
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("dispatchPipeline", dispatchPipeline);
+        ApplicationContext previousContext = ApplicationContextProvider.getApplicationContext();
+        new ApplicationContextProvider().setApplicationContext(context);
+
+        EmsRoute route = new EmsRoute();
+        route.setDestination("ems.queue");
+        EmsRoute.CircuitBreaker config = route.getCircuitBreaker();
+        config.setEnabled(true);
+        config.setWindowSize(1);
+        config.setMinimumCalls(1);
+        config.setOpenDuration(Duration.ofMillis(500));
+        config.setHalfOpenCalls(1);
+        config.setMaxHeld(2);
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+
+        EmsCircuitBreakerRegistry registry = new EmsCircuitBreakerRegistry(new EmsRouteRegistry(routeProperties), new SimpleMeterRegistry());
+        registry.afterPropertiesSet();
+        try {
+            CircuitBreaker breaker = registry.get(route);
+            breaker.onResult(false, 0L, System.nanoTime());
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+            // 자리가 있으면 바로 돌아온다
+            registry.awaitCapacity(route);
+            breaker.hold(delivery(route, "id-1"));
+            breaker.hold(delivery(route, "id-2"));
+
+            // 보류 큐가 maxHeld 에 차면 리스너 스레드를 멈춘다
+            CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> registry.awaitCapacity(route));
+            Thread.sleep(200);
+            assertThat(waiting).isNotDone();
+
+            // HALF_OPEN 이 되어 시험 호출로 한 건이 빠지면 다시 받는다
+            waiting.get(2, TimeUnit.SECONDS);
+            verify(dispatchPipeline, timeout(1_000)).submit(any());
+            assertThat(breaker.heldCount()).isEqualTo(1);
+        } finally {
+            registry.destroy();
+            new ApplicationContextProvider().setApplicationContext(previousContext);
+        }
+    }
+
+    private static EmsDelivery delivery(EmsRoute route, String messageId) {
+        return EmsDelivery.of(route, messageId, null, null, "{}", Map.of(), 4, 0L, null, () -> {
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.chanseok.emsstudy.coalesce;
+
+import com.chanseok.emsstudy.dedup.EmsDedupCache;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.retry.EmsRetryProperties;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class EmsCoalescerTest {
+
+    @Test
+    public void testLatestIsFlushedOffTheWheelAndSupersededAreSettled() throws Exception {
+        EmsRoute route = new EmsRoute();
+        route.setDestination("ems.queue");
+        route.getCoalesce().setEnabled(true);
+        route.getCoalesce().setKeyProperty("entity");
+        route.getCoalesce().setWindow(Duration.ofMillis(500));
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+
+        EmsRetryScheduler scheduler = new EmsRetryScheduler(new EmsRetryProperties(), new SimpleMeterRegistry());
+        scheduler.afterPropertiesSet();
+        try {
+            EmsDedupCache dedupCache = mock(EmsDedupCache.class);
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            EmsCoalescer coalescer = new EmsCoalescer(new ObjectMapper(), scheduler, dedupCache,
+                    new EmsRouteRegistry(routeProperties), meterRegistry);
+
+            List<String> acked = new CopyOnWriteArrayList<>();
+            CompletableFuture<EmsDelivery> flushed = new CompletableFuture<>();
+            CompletableFuture<String> flushThread = new CompletableFuture<>();
+            for (int i = 1; i <= 3; i++) {
+                String id = "id-" + i;
+                EmsDelivery delivery = EmsDelivery.of(route, id, null, null, "{}", Map.of("entity", "a"), 4, 0L, "key-" + i,
+                        () -> acked.add(id));
+                assertThat(coalescer.offer(delivery, latest -> {
+                    flushThread.complete(Thread.currentThread().getName());
+                    flushed.complete(latest);
+                })).isTrue();
+            }
+
+            assertThat(flushed.get(2, TimeUnit.SECONDS).getMessageId()).isEqualTo("id-3");
+            assertThat(flushThread.get()).startsWith("ems-retry-handoff");
+            assertThat(acked).containsExactly("id-1", "id-2");
+            verify(dedupCache).markProcessed("key-1");
+            verify(dedupCache).markProcessed("key-2");
+            assertThat(meterRegistry.get("ems.coalesce.superseded").functionCounter().count()).isEqualTo(2.0);
+
+            // 키가 없는 메시지는 병합하지 않는다
+            assertThat(coalescer.offer(EmsDelivery.of(route, "id-4", null, null, "{}", Map.of(), 4, 0L, null, () -> {
+            }), latest -> {
+            })).isFalse();
+        } finally {
+            scheduler.destroy();
+        }
+    }
+}
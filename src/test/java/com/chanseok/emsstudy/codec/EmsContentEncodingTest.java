@@ -0,0 +1,70 @@
+package com.chanseok.emsstudy.codec;
+
+import com.chanseok.emsstudy.web.SimpleServletInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EmsContentEncodingTest {
+
+    @Test
+    public void testRoundTripThroughServletInputStream() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 5_000; i++) {
+            json.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"name\":\"상품-").append(i).append("\"}");
+        }
+        byte[] content = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+
+        for (EmsContentEncoding encoding : EmsContentEncoding.values()) {
+            byte[] compressed = encoding.compress(content, Deflater.DEFAULT_COMPRESSION);
+            assertThat(compressed.length).isLessThan(content.length / 3);
+
+            try (InputStream in = new SimpleServletInputStream(encoding.decompress(new ByteArrayInputStream(compressed)))) {
+                assertThat(readAll(in)).isEqualTo(content);
+            }
+        }
+    }
+
+    @Test
+    public void testDecompressStopsAtInflatedSizeLimit() throws IOException {
+        byte[] content = new byte[64 * 1024];
+        for (EmsContentEncoding encoding : EmsContentEncoding.values()) {
+            byte[] compressed = encoding.compress(content, Deflater.BEST_COMPRESSION);
+
+            try (InflateLimitInputStream in = encoding.decompress(new ByteArrayInputStream(compressed), content.length)) {
+                assertThat(readAll(in)).isEqualTo(content);
+                assertThat(in.isExceeded()).isFalse();
+            }
+            // 0 으로 채운 body 는 압축률이 높아 한도를 넘는 순간 읽기를 멈춰야 한다
+            try (InflateLimitInputStream in = encoding.decompress(new ByteArrayInputStream(compressed), content.length - 1)) {
+                assertThatThrownBy(() -> readAll(in)).isInstanceOf(IOException.class);
+                assertThat(in.isExceeded()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void testLookupByPropertyValue() {
+        assertThat(EmsContentEncoding.of("deflate")).isEqualTo(EmsContentEncoding.DEFLATE);
+        assertThat(EmsContentEncoding.of("LZ4")).isEqualTo(EmsContentEncoding.LZ4);
+        assertThat(EmsContentEncoding.of("gzip")).isNull();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package com.chanseok.emsstudy.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 메시지를 JSON, Smile, CBOR 로 읽고 쓰는 비용과 body 크기를 비교한다.
+ * 시간을 재는 테스트라 기본 빌드에서는 빼고, {@code mvn test -Pbenchmark} 로 돌린다.
+ */
+@Tag("benchmark")
+public class EmsContentTypeBenchmarkTest {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    public void compareFormats() throws Exception {
+        Order order = order();
+        Result json = run(new ObjectMapper(), order);
+        Result smile = run(new ObjectMapper(new SmileFactory()), order);
+        Result cbor = run(new ObjectMapper(new CBORFactory()), order);
+
+        print("json ", json);
+        print("smile", smile);
+        print("cbor ", cbor);
+    }
+
+    private static Result run(ObjectMapper mapper, Order order) throws Exception {
+        ObjectReader reader = mapper.readerFor(Order.class);
+        ObjectWriter writer = mapper.writerFor(Order.class);
+        byte[] content = writer.writeValueAsBytes(order);
+
+        for (int i = 0; i < WARMUP; i++) {
+            Order read = reader.readValue(content);
+            writer.writeValueAsBytes(read);
+        }
+
+        long startedAt = System.nanoTime();
+        Order read = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            read = reader.readValue(content);
+        }
+        double readNanos = (System.nanoTime() - startedAt) / (double) ITERATIONS;
+
+        startedAt = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            writer.writeValueAsBytes(read);
+        }
+        double writeNanos = (System.nanoTime() - startedAt) / (double) ITERATIONS;
+
+        assertThat(read.items).hasSize(order.items.size());
+        assertThat(read.customer).isEqualTo(order.customer);
+        return new Result(content.length, readNanos, writeNanos);
+    }
+
+    private static void print(String name, Result result) {
+        System.out.printf("[benchmark] %s : %5d bytes, read %7.0f ns, write %7.0f ns%n",
+                name, result.bytes, result.readNanos, result.writeNanos);
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.orderId = 9_876_543_210L;
+        order.customer = "customer-00042";
+        order.status = "ACCEPTED";
+        for (int i = 0; i < 20; i++) {
+            Item item = new Item();
+            item.sku = "SKU-" + (100_000 + i);
+            item.quantity = i + 1;
+            item.price = 1_250.5 * (i + 1);
+            item.tags = List.of("fresh", "priority", "warehouse-" + (i % 3));
+            order.items.add(item);
+        }
+        return order;
+    }
+
+    public static class Order {
+        public long orderId;
+        public String customer;
+        public String status;
+        public List<Item> items = new ArrayList<>();
+    }
+
+    public static class Item {
+        public String sku;
+        public int quantity;
+        public double price;
+        public List<String> tags;
+    }
+
+    private static class Result {
+        private final int bytes;
+        private final double readNanos;
+        private final double writeNanos;
+
+        private Result(int bytes, double readNanos, double writeNanos) {
+            this.bytes = bytes;
+            this.readNanos = readNanos;
+            this.writeNanos = writeNanos;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.chanseok.emsstudy.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmsBrokerPropertiesTest {
+
+    @Test
+    public void testReconnectDelayGrowsByMultiplierUpToMaxDelay() {
+        EmsBrokerProperties.Reconnect reconnect = new EmsBrokerProperties.Reconnect();
+        reconnect.setInitialDelay(Duration.ofMillis(100));
+        reconnect.setMaxDelay(Duration.ofSeconds(10));
+        reconnect.setMultiplier(2.0);
+
+        assertThat(reconnect.delayMillis(0)).isEqualTo(100L);
+        assertThat(reconnect.delayMillis(1)).isEqualTo(200L);
+        assertThat(reconnect.delayMillis(3)).isEqualTo(800L);
+        assertThat(reconnect.delayMillis(6)).isEqualTo(6_400L);
+        assertThat(reconnect.delayMillis(7)).isEqualTo(10_000L);
+        // 무제한 재시도(maxAttempts -1)로 시도 횟수가 커져도 넘치지 않고 최대값에 머문다
+        assertThat(reconnect.delayMillis(5_000)).isEqualTo(10_000L);
+        assertThat(reconnect.delayMillis(Integer.MAX_VALUE)).isEqualTo(10_000L);
+    }
+
+    @Test
+    public void testReconnectDelayWithFractionalAndUnitMultiplier() {
+        EmsBrokerProperties.Reconnect reconnect = new EmsBrokerProperties.Reconnect();
+        reconnect.setInitialDelay(Duration.ofMillis(1_000));
+        reconnect.setMaxDelay(Duration.ofSeconds(3));
+
+        reconnect.setMultiplier(1.5);
+        assertThat(reconnect.delayMillis(1)).isEqualTo(1_500L);
+        assertThat(reconnect.delayMillis(2)).isEqualTo(2_250L);
+        assertThat(reconnect.delayMillis(3)).isEqualTo(3_000L);
+
+        reconnect.setMultiplier(1.0);
+        assertThat(reconnect.delayMillis(10)).isEqualTo(1_000L);
+    }
+}
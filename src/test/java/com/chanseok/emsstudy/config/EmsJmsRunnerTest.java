@@ -0,0 +1,142 @@
+package com.chanseok.emsstudy.config;
+
+import com.chanseok.emsstudy.connection.EmsConnectionPool;
+import com.chanseok.emsstudy.listener.EmsMessageListener;
+import com.chanseok.emsstudy.listener.EmsReactiveConsumer;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.transport.EmsTransportProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmsJmsRunnerTest {
+    private final EmsMessageListener messageListener = mock(EmsMessageListener.class);
+    private final EmsConnectionPool connectionPool = mock(EmsConnectionPool.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /** 만든 컨슈머 세션 (만든 순서대로) */
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    /** true 면 다음 세션 생성 한 번을 실패시킨다 */
+    private final AtomicBoolean failNextSession = new AtomicBoolean();
+
+    private EmsJmsRunner runner;
+    private EmsRoute route;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        route = new EmsRoute();
+        route.setDestination("ems.queue");
+        route.setUri("/ems/test");
+        route.setConsumers(2);
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+
+        EmsBrokerProperties brokerProperties = new EmsBrokerProperties();
+        brokerProperties.getReconnect().setInitialDelay(Duration.ofMillis(10));
+        brokerProperties.getReconnect().setMaxDelay(Duration.ofMillis(50));
+
+        when(connectionPool.createConsumerSession(anyInt())).thenAnswer(invocation -> {
+            if (failNextSession.compareAndSet(true, false)) {
+                throw new JMSException("broker down");
+            }
+            Session session = mock(Session.class);
+            when(session.createQueue(anyString())).thenReturn(mock(Queue.class));
+            when(session.createConsumer(any())).thenReturn(mock(MessageConsumer.class));
+            sessions.add(session);
+            return session;
+        });
+
+        runner = new EmsJmsRunner(messageListener, mock(EmsReactiveConsumer.class), connectionPool, new EmsRouteRegistry(routeProperties),
+                brokerProperties, new EmsTransportProperties(), meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        runner.close();
+    }
+
+    @Test
+    public void testConsumersAreRecreatedAfterConnectionFailure() throws Exception {
+        runner.start();
+        verify(messageListener, timeout(5_000).times(2)).listen(eq(route), any(), any());
+        List<Session> initial = List.copyOf(sessions);
+
+        // 연결이 끊기고, 첫 재시도는 브로커가 아직 내려가 있어 실패한다
+        failNextSession.set(true);
+        failureListener().accept(new JMSException("connection lost"));
+
+        verify(messageListener, timeout(5_000).times(4)).listen(eq(route), any(), any());
+        for (Session session : initial) {
+            verify(connectionPool).closeConsumerSession(session);
+        }
+        assertThat(sessions).hasSize(4);
+        assertThat(meterRegistry.get("ems.consumer.reconnect.attempts").counter().count()).isEqualTo(1.0);
+        verifyTimerRecorded();
+    }
+
+    @Test
+    public void testFailureDuringReconnectRestartsOnceMore() throws Exception {
+        // 재연결이 첫 컨슈머를 띄우는 도중에 알림이 두 번 더 온다
+        AtomicInteger listens = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (listens.incrementAndGet() == 3) {
+                failureListener().accept(new JMSException("connection lost again"));
+                failureListener().accept(new JMSException("connection lost once more"));
+            }
+            return null;
+        }).when(messageListener).listen(eq(route), any(), any());
+
+        runner.start();
+        verify(messageListener, timeout(5_000).times(2)).listen(eq(route), any(), any());
+        failureListener().accept(new JMSException("connection lost"));
+
+        // 재연결 중에 온 알림들은 하나로 합쳐져 재연결을 한 번 더 할 뿐, 체인이 늘어나지 않는다
+        verify(messageListener, timeout(5_000).times(6)).listen(eq(route), any(), any());
+        Thread.sleep(200);
+        assertThat(sessions).hasSize(6);
+        verify(connectionPool, times(4)).closeConsumerSession(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<JMSException> failureListener() {
+        ArgumentCaptor<Consumer<JMSException>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(connectionPool).addFailureListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private void verifyTimerRecorded() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.get("ems.consumer.reconnect").timer().count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.get("ems.consumer.reconnect").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,146 @@
+package com.chanseok.emsstudy.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.chanseok.emsstudy.codec.EmsCodecProperties;
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
+import com.chanseok.emsstudy.interceptor.LoggingInterceptor;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@code @EnableWebMvc} 기본 설정(WebConfig)과 EMS 전용 설정(EmsWebMvcConfig)의 기동 시간과 요청당 처리 시간을 비교한다.
+ * 시간을 재는 테스트라 기본 빌드에서는 빼고, {@code mvn test -Pbenchmark} 로 돌린다.
+ */
+@Tag("benchmark")
+public class EmsWebMvcConfigBenchmarkTest {
+    private static final int WARMUP = 10_000;
+    private static final int ITERATIONS = 50_000;
+    private static final byte[] BODY = "{\"a\":1,\"b\":\"text\"}".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeAll
+    public static void quietInterceptor() {
+        ((Logger) LoggerFactory.getLogger(LoggingInterceptor.class)).setLevel(Level.WARN);
+    }
+
+    @Test
+    public void compareFullAndTrimmed() throws Exception {
+        // 첫 번째는 클래스 로딩이 기동 시간에 섞이므로 버린다
+        run(false);
+        run(true);
+
+        Result full = run(false);
+        Result trimmed = run(true);
+
+        System.out.printf("[benchmark] full    : startup %6.1f ms, %7.0f ns/request%n", full.startupMillis, full.nanosPerRequest);
+        System.out.printf("[benchmark] trimmed : startup %6.1f ms, %7.0f ns/request%n", trimmed.startupMillis, trimmed.nanosPerRequest);
+    }
+
+    private static Result run(boolean trimmed) throws Exception {
+        long startedAt = System.nanoTime();
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        MockServletContext servletContext = new MockServletContext();
+        context.setServletContext(servletContext);
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("benchmark", Map.of("ems.dispatch.trimmed-mvc", String.valueOf(trimmed))));
+        context.register(BenchmarkBeans.class, WebConfig.class, EmsWebMvcConfig.class, BenchmarkController.class);
+
+        DispatcherServlet servlet = new DispatcherServlet(context);
+        servlet.init(new MockServletConfig(servletContext));
+        double startupMillis = (System.nanoTime() - startedAt) / 1_000_000.0;
+
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                assertThat(post(servlet).getStatus()).isEqualTo(200);
+            }
+            long measuredAt = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                post(servlet);
+            }
+            double nanosPerRequest = (System.nanoTime() - measuredAt) / (double) ITERATIONS;
+
+            MockHttpServletResponse response = post(servlet);
+            assertThat(response.getContentAsString()).isEqualTo("{\"a\":1,\"b\":\"text\"}");
+            return new Result(startupMillis, nanosPerRequest);
+        } finally {
+            servlet.destroy();
+            context.close();
+        }
+    }
+
+    private static MockHttpServletResponse post(DispatcherServlet servlet) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ems/bench");
+        request.setContentType("application/json");
+        request.setContent(BODY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.service(request, response);
+        return response;
+    }
+
+    @Configuration
+    public static class BenchmarkBeans {
+
+        @Bean
+        public ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        public EmsCodecRegistry emsCodecRegistry(ObjectMapper objectMapper, EmsRouteRegistry routeRegistry) {
+            return new EmsCodecRegistry(objectMapper, new SimpleMeterRegistry(), routeRegistry, new EmsCodecProperties());
+        }
+
+        @Bean
+        public EmsRouteRegistry emsRouteRegistry() {
+            EmsRoute route = new EmsRoute();
+            route.setDestination("ems.bench");
+            route.setUri("/ems/bench");
+            EmsRouteProperties properties = new EmsRouteProperties();
+            properties.getRoutes().put("bench", route);
+            return new EmsRouteRegistry(properties);
+        }
+    }
+
+    @RestController
+    public static class BenchmarkController {
+
+        @PostMapping("/ems/bench")
+        public Map<String, Object> echo(@RequestBody Map<String, Object> message) {
+            return message;
+        }
+    }
+
+    private static class Result {
+        private final double startupMillis;
+        private final double nanosPerRequest;
+
+        private Result(double startupMillis, double nanosPerRequest) {
+            this.startupMillis = startupMillis;
+            this.nanosPerRequest = nanosPerRequest;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.chanseok.emsstudy.connection;
+
+import com.chanseok.emsstudy.config.EmsBrokerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.transport.TransportListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmsConnectionPoolTest {
+    private final EmsBrokerProperties properties = new EmsBrokerProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActiveMQConnectionFactory factory = mock(ActiveMQConnectionFactory.class);
+
+    /** 팩토리가 만든 커넥션 (만든 순서대로) */
+    private final List<ActiveMQConnection> opened = new CopyOnWriteArrayList<>();
+
+    private EmsConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        properties.setMaxConnections(1);
+        properties.setSessionsPerConnection(2);
+        properties.setBorrowTimeout(Duration.ofMillis(200));
+        when(factory.createConnection()).thenAnswer(invocation -> connection());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void testConcurrentOpenKeepsOneConnectionPerSlot() throws Exception {
+        int threads = 4;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        doAnswer(invocation -> {
+            ActiveMQConnection connection = connection();
+            // 모든 스레드가 빈 슬롯을 보고 동시에 연결을 맺게 한다
+            if (opened.size() <= threads) {
+                barrier.await(5, TimeUnit.SECONDS);
+            }
+            return connection;
+        }).when(factory).createConnection();
+        start();
+
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    pool.createConsumerSession(Session.CLIENT_ACKNOWLEDGE);
+                } catch (Throwable e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // CAS 에 진 커넥션은 닫히고, 슬롯에는 하나만 남는다
+        assertThat(failures).isEmpty();
+        assertThat(opened).hasSize(threads);
+        assertThat(opened.stream().filter(EmsConnectionPoolTest::isClosed).count()).isEqualTo(threads - 1);
+        assertThat(pool.getStatus().getOpenConnections()).isEqualTo(1);
+        assertThat(pool.getStatus().getConsumerSessions()).isEqualTo(threads);
+    }
+
+    @Test
+    public void testSessionPermitsLimitBorrowedSessions() {
+        start();
+        EmsPooledSession first = pool.borrowSession(false);
+        EmsPooledSession second = pool.borrowSession(false);
+
+        assertThatThrownBy(() -> pool.borrowSession(false)).isInstanceOf(IllegalStateException.class);
+
+        // 반납하면 같은 세션을 다시 빌려준다
+        pool.release(first);
+        assertThat(pool.borrowSession(false)).isSameAs(first);
+
+        // 놀고 있는 반대 종류 세션이 있으면 닫고 그 자리로 트랜잭션 세션을 만든다
+        pool.release(second);
+        EmsPooledSession transacted = pool.borrowSession(true);
+        assertThat(transacted.isTransacted()).isTrue();
+        assertThat(pool.getStatus().getBorrowedSessions()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidateReleasesPermit() {
+        start();
+        EmsPooledSession first = pool.borrowSession(false);
+        pool.borrowSession(false);
+
+        pool.invalidate(first);
+
+        assertThat(pool.borrowSession(false)).isNotSameAs(first);
+    }
+
+    @Test
+    public void testHealthCheckReplacesFailedConnection() throws Exception {
+        properties.setHealthCheckInterval(Duration.ofMillis(50));
+        start();
+        pool.createConsumerSession(Session.CLIENT_ACKNOWLEDGE);
+        ActiveMQConnection dead = opened.get(0);
+
+        when(dead.isTransportFailed()).thenReturn(true);
+
+        verify(dead, timeout(5_000)).close();
+        verify(factory, timeout(5_000).times(2)).createConnection();
+        EmsConnectionPoolStatus status = pool.getStatus();
+        assertThat(status.getOpenConnections()).isEqualTo(1);
+        assertThat(status.getFailedConnections()).isZero();
+    }
+
+    @Test
+    public void testOutageRecorderMetrics() throws Exception {
+        start();
+        pool.createConsumerSession(Session.CLIENT_ACKNOWLEDGE);
+        ArgumentCaptor<TransportListener> listener = ArgumentCaptor.forClass(TransportListener.class);
+        verify(opened.get(0)).addTransportListener(listener.capture());
+
+        // 끊기지 않은 채 resumed 만 오면 기록하지 않는다
+        listener.getValue().transportResumed();
+        assertThat(meterRegistry.get("ems.broker.outage").timer().count()).isZero();
+
+        listener.getValue().transportInterupted();
+        Thread.sleep(20);
+        listener.getValue().transportResumed();
+
+        assertThat(meterRegistry.get("ems.broker.interruptions").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("ems.broker.outage").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ems.broker.outage").timer().totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20.0);
+    }
+
+    @Test
+    public void testConnectionFailureNotifiesListeners() throws Exception {
+        start();
+        List<JMSException> failures = new CopyOnWriteArrayList<>();
+        pool.addFailureListener(failures::add);
+        pool.createConsumerSession(Session.CLIENT_ACKNOWLEDGE);
+        ArgumentCaptor<ExceptionListener> listener = ArgumentCaptor.forClass(ExceptionListener.class);
+        verify(opened.get(0)).setExceptionListener(listener.capture());
+
+        listener.getValue().onException(new JMSException("lost"));
+
+        assertThat(failures).hasSize(1);
+    }
+
+    private void start() {
+        pool = new EmsConnectionPool(properties, meterRegistry) {
+            @Override
+            ActiveMQConnectionFactory createConnectionFactory() {
+                return factory;
+            }
+        };
+        pool.afterPropertiesSet();
+    }
+
+    private ActiveMQConnection connection() throws Exception {
+        ActiveMQConnection connection = mock(ActiveMQConnection.class);
+        when(connection.createSession(anyBoolean(), anyInt())).thenAnswer(invocation -> mock(Session.class));
+        opened.add(connection);
+        return connection;
+    }
+
+    private static boolean isClosed(ActiveMQConnection connection) {
+        return mockingDetails(connection).getInvocations().stream()
+                .anyMatch(invocation -> invocation.getMethod().getName().equals("close"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.chanseok.emsstudy.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DedupJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testKeepsLatestKeysAcrossReopen() throws Exception {
+        Path file = directory.resolve("dedup.journal");
+        try (DedupJournal journal = new DedupJournal(file, 4)) {
+            for (int i = 0; i < 6; i++) {
+                journal.append("key-" + i, 1_000L + i);
+            }
+        }
+
+        // 링이 한 바퀴 넘게 돌았으므로 마지막 4개만 남고, 이미 만료된 key-2 는 빠진다
+        List<String> keys = new ArrayList<>();
+        try (DedupJournal journal = new DedupJournal(file, 4)) {
+            journal.forEachLive(1_002L, (key, expiresAt) -> keys.add(key));
+        }
+        assertThat(keys).containsExactly("key-3", "key-4", "key-5");
+    }
+
+    @Test
+    public void testRejectsCapacityOverSingleMapping() {
+        Path file = directory.resolve("too-large.journal");
+        assertThatThrownBy(() -> new DedupJournal(file, DedupJournal.MAX_CAPACITY + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(file).doesNotExist();
+    }
+}
@@ -0,0 +1,173 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.jms.JMSException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmsAdmissionControlTest {
+    private final EmsDispatchPipeline dispatchPipeline = mock(EmsDispatchPipeline.class);
+    private final EmsDeadLetterSender deadLetterSender = mock(EmsDeadLetterSender.class);
+    private final EmsRetryScheduler retryScheduler = mock(EmsRetryScheduler.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> settled = new CopyOnWriteArrayList<>();
+
+    private EmsAdmissionControl admissionControl;
+    private EmsRoute route;
+
+    @BeforeEach
+    public void setUp() {
+        admissionControl = new EmsAdmissionControl(dispatchPipeline, deadLetterSender, retryScheduler,
+                mock(EmsBatcher.class), meterRegistry);
+
+        route = new EmsRoute();
+        route.setName("test");
+        route.setDestination("ems.queue");
+        route.setUri("/ems/test");
+        route.getOverload().setMaxQueueDelay(Duration.ofMillis(100));
+        route.getOverload().setDeferDelay(Duration.ofMillis(250));
+    }
+
+    @Test
+    public void testExpiredMessageGoesToExpiredDestination() {
+        EmsDelivery delivery = delivery("id-1", System.currentTimeMillis() - 1_000L);
+        when(deadLetterSender.sendExpired(delivery)).thenReturn(true);
+
+        admissionControl.admit(delivery);
+
+        verify(deadLetterSender).sendExpired(delivery);
+        verify(dispatchPipeline, never()).submit(any());
+        assertThat(settled).containsExactly("ack:id-1");
+        assertThat(expiredCount()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testExpiredMessageIsRecoveredWhenExpiredSendFails() {
+        EmsDelivery delivery = delivery("id-1", System.currentTimeMillis() - 1_000L);
+        when(deadLetterSender.sendExpired(delivery)).thenReturn(false);
+
+        admissionControl.admit(delivery);
+
+        // expired 큐로 옮기지 못했으면 ack 하지 않고 transport 에 돌려준다
+        verify(dispatchPipeline, never()).submit(any());
+        assertThat(settled).containsExactly("recover:id-1");
+        assertThat(expiredCount()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testShedAcksAndDropsWhenLaneIsOverloaded() {
+        route.getOverload().setPolicy(EmsRoute.Overload.Policy.SHED);
+        EmsDelivery delivery = delivery("id-1", 0L);
+        when(dispatchPipeline.queueDelayNanos(delivery)).thenReturn(TimeUnit.MILLISECONDS.toNanos(200));
+
+        admissionControl.admit(delivery);
+
+        verify(dispatchPipeline, never()).submit(any());
+        verify(retryScheduler, never()).scheduleBlocking(any(), anyLong(), any());
+        assertThat(settled).containsExactly("ack:id-1");
+        assertThat(meterRegistry.get("ems.dispatch.shed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testNoOverloadPolicySubmitsEvenWhenLaneIsSlow() {
+        EmsDelivery delivery = delivery("id-1", 0L);
+        when(dispatchPipeline.queueDelayNanos(delivery)).thenReturn(TimeUnit.MILLISECONDS.toNanos(200));
+
+        admissionControl.admit(delivery);
+
+        verify(dispatchPipeline).submit(delivery);
+        assertThat(settled).isEmpty();
+    }
+
+    @Test
+    public void testDeferReadmitsAndDefersAgainWhileLaneIsFull() {
+        route.getOverload().setPolicy(EmsRoute.Overload.Policy.DEFER);
+        EmsDelivery delivery = delivery("id-1", 0L);
+        when(dispatchPipeline.queueDelayNanos(delivery)).thenReturn(TimeUnit.MILLISECONDS.toNanos(200), 0L, 0L);
+        when(dispatchPipeline.offer(delivery)).thenReturn(false, true);
+
+        admissionControl.admit(delivery);
+        // ack 하지 않고 deferDelay 뒤에 handoff 스레드에서 다시 넣어 본다
+        Runnable readmit = deferredTask(1);
+        verify(dispatchPipeline, never()).submit(any());
+        assertThat(settled).isEmpty();
+
+        // 과부하는 풀렸지만 레인이 차 있으면 기다리지 않고 다시 미룬다
+        readmit.run();
+        verify(dispatchPipeline, times(1)).offer(delivery);
+        Runnable again = deferredTask(2);
+
+        again.run();
+        verify(dispatchPipeline, times(2)).offer(delivery);
+        verify(retryScheduler, times(2)).scheduleBlocking(any(), anyLong(), any());
+        verify(dispatchPipeline, never()).submit(any());
+        assertThat(settled).isEmpty();
+        assertThat(meterRegistry.get("ems.dispatch.deferred").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void testDeferredMessageThatExpiredGoesToExpiredDestination() {
+        route.getOverload().setPolicy(EmsRoute.Overload.Policy.DEFER);
+        long expiration = System.currentTimeMillis() + 200L;
+        EmsDelivery delivery = delivery("id-1", expiration);
+        when(dispatchPipeline.queueDelayNanos(delivery)).thenReturn(TimeUnit.MILLISECONDS.toNanos(200));
+        when(deadLetterSender.sendExpired(delivery)).thenReturn(true);
+
+        admissionControl.admit(delivery);
+        Runnable readmit = deferredTask(1);
+
+        // 미뤄 둔 사이 마감이 지나면 다시 들어올 때 expired 큐로 옮긴다
+        while (!delivery.isExpired(System.currentTimeMillis())) {
+            Thread.onSpinWait();
+        }
+        readmit.run();
+
+        verify(deadLetterSender).sendExpired(delivery);
+        verify(dispatchPipeline, never()).offer(any());
+        assertThat(settled).containsExactly("ack:id-1");
+    }
+
+    private Runnable deferredTask(int times) {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryScheduler, times(times)).scheduleBlocking(captor.capture(), eq(250L), eq(TimeUnit.MILLISECONDS));
+        return captor.getValue();
+    }
+
+    private double expiredCount() {
+        return meterRegistry.get("ems.dispatch.expired").tag("stage", "admission").counter().count();
+    }
+
+    private EmsDelivery delivery(String messageId, long expiration) {
+        EmsDelivery.Acknowledgement acknowledgement = new EmsDelivery.Acknowledgement() {
+            @Override
+            public void acknowledge() {
+                settled.add("ack:" + messageId);
+            }
+
+            @Override
+            public void recover() throws JMSException {
+                settled.add("recover:" + messageId);
+            }
+        };
+        return EmsDelivery.of(route, messageId, null, null, "{}", Map.of(), 4, expiration, null, acknowledgement);
+    }
+}
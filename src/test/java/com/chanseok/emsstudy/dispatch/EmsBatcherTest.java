@@ -0,0 +1,68 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.retry.EmsRetryProperties;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmsBatcherTest {
+
+    @Test
+    public void testFlushesOnMaxSizeAndOnMaxDelay() throws Exception {
+        EmsRoute route = new EmsRoute();
+        route.setDestination("ems.queue");
+        route.getBatch().setEnabled(true);
+        route.getBatch().setMaxSize(3);
+        route.getBatch().setMaxDelay(Duration.ofMillis(300));
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+
+        EmsRetryScheduler scheduler = new EmsRetryScheduler(new EmsRetryProperties(), new SimpleMeterRegistry());
+        scheduler.afterPropertiesSet();
+        try {
+            EmsBatcher batcher = new EmsBatcher(scheduler, new EmsRouteRegistry(routeProperties), new SimpleMeterRegistry());
+            List<EmsDelivery> batches = new CopyOnWriteArrayList<>();
+            List<Boolean> fromTimer = new CopyOnWriteArrayList<>();
+            EmsBatcher.Flush flush = (batch, timer) -> {
+                batches.add(batch);
+                fromTimer.add(timer);
+            };
+
+            // maxSize 가 차면 넣은 스레드에서 바로 내보낸다
+            for (int i = 0; i < 3; i++) {
+                assertThat(batcher.add(delivery(route, "full-" + i), flush)).isTrue();
+            }
+            assertThat(batches).hasSize(1);
+            assertThat(batches.get(0).getMembers()).extracting(EmsDelivery::getMessageId).containsExactly("full-0", "full-1", "full-2");
+            assertThat(fromTimer.get(0)).isFalse();
+
+            // 덜 찬 묶음은 maxDelay 뒤에 타이밍 휠에서 내보낸다
+            assertThat(batcher.add(delivery(route, "late-0"), flush)).isTrue();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (batches.size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(batches).hasSize(2);
+            assertThat(batches.get(1).getMembers()).extracting(EmsDelivery::getMessageId).containsExactly("late-0");
+            assertThat(fromTimer.get(1)).isTrue();
+        } finally {
+            scheduler.destroy();
+        }
+    }
+
+    private static EmsDelivery delivery(EmsRoute route, String messageId) {
+        return EmsDelivery.of(route, messageId, null, null, "{}", Map.of(), 4, 0L, null, () -> {
+        });
+    }
+}
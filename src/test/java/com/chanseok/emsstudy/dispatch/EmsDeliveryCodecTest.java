@@ -0,0 +1,121 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmsDeliveryCodecTest {
+    /** 0x80 이상 바이트가 섞인 CBOR body */
+    private static final byte[] CBOR = {(byte) 0xa1, 0x64, 0x6e, 0x61, 0x6d, 0x65, (byte) 0xff, (byte) 0x80, (byte) 0xf5};
+
+    private EmsRoute route;
+    private EmsRouteRegistry routeRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        route = new EmsRoute();
+        route.setDestination("ems.queue");
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+        routeRegistry = new EmsRouteRegistry(routeProperties);
+    }
+
+    @Test
+    public void testTextPayloadRoundTrip() {
+        EmsDelivery delivery = EmsDelivery.of(route, "id-1", null, null, "{\"name\":\"상품\"}", Map.of("tenant", "a"), 4, 0L, null, () -> {
+        });
+
+        EmsDelivery decoded = EmsDeliveryCodec.decode(EmsDeliveryCodec.encode(delivery), routeRegistry, () -> {
+        });
+
+        assertThat(decoded.getPayload()).isEqualTo("{\"name\":\"상품\"}");
+        assertThat(decoded.getProperty("tenant")).isEqualTo("a");
+    }
+
+    @Test
+    public void testBinaryBodyIsWrittenAsIs() {
+        EmsDelivery delivery = EmsDelivery.of(route, "id-1", null, null, null, CBOR, Map.of(EmsContentType.PROPERTY, EmsContentType.CBOR),
+                4, 0L, null, () -> {
+                });
+        EmsDelivery empty = EmsDelivery.of(route, "id-1", null, null, null, new byte[0], Map.of(EmsContentType.PROPERTY, EmsContentType.CBOR),
+                4, 0L, null, () -> {
+                });
+
+        byte[] encoded = EmsDeliveryCodec.encode(delivery);
+        EmsDelivery decoded = EmsDeliveryCodec.decode(encoded, routeRegistry, () -> {
+        });
+
+        // UTF-8 문자열로 옮기면 0x80 이상 바이트가 두 배가 된다
+        assertThat(encoded.length - EmsDeliveryCodec.encode(empty).length).isEqualTo(CBOR.length);
+        assertThat(decoded.getPayload()).isNull();
+        assertThat(decoded.getPayloadBytes()).isEqualTo(CBOR);
+        assertThat(decoded.isBinary()).isTrue();
+    }
+
+    @Test
+    public void testCompressedBodyIsPassedThroughUnchanged() {
+        byte[] compressed = EmsContentEncoding.DEFLATE.compress("{\"name\":\"상품\"}".getBytes(StandardCharsets.UTF_8), Deflater.DEFAULT_COMPRESSION);
+        EmsDelivery delivery = EmsDelivery.of(route, "id-1", null, null, null, compressed,
+                Map.of(EmsContentEncoding.PROPERTY, EmsContentEncoding.DEFLATE.getName()), 4, 0L, null, () -> {
+                });
+
+        // 디스패치, fan-out, 재생이 다시 인코딩하지 않고 같은 배열을 쓴다
+        assertThat(delivery.getPayloadBytes()).isSameAs(compressed);
+        assertThat(delivery.getPayloadBytes()).isSameAs(delivery.getPayloadBytes());
+        assertThat(delivery.isBinary()).isTrue();
+
+        EmsDelivery decoded = EmsDeliveryCodec.decode(EmsDeliveryCodec.encode(delivery), routeRegistry, () -> {
+        });
+        assertThat(decoded.getPayload()).isNull();
+        assertThat(decoded.getPayloadBytes()).isEqualTo(compressed);
+    }
+
+    @Test
+    public void testVersion1BinaryPayloadIsReadAsBytes() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(1);
+            writeString(out, "test");
+            writeString(out, "id-1");
+            writeString(out, "id-1");
+            writeString(out, null);
+            out.writeByte(4);
+            out.writeLong(0L);
+            writeString(out, null);
+            out.writeInt(1);
+            writeString(out, EmsContentType.PROPERTY);
+            out.writeByte(1);
+            writeString(out, EmsContentType.CBOR);
+            // version 1 은 바이너리 body 를 ISO-8859-1 로 옮긴 문자열로 썼다
+            writeString(out, new String(CBOR, StandardCharsets.ISO_8859_1));
+        }
+
+        EmsDelivery decoded = EmsDeliveryCodec.decode(bytes.toByteArray(), routeRegistry, () -> {
+        });
+
+        assertThat(decoded.getPayload()).isNull();
+        assertThat(decoded.getPayloadBytes()).isEqualTo(CBOR);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws Exception {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
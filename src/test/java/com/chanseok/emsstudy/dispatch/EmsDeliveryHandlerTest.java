@@ -0,0 +1,199 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.cache.EmsResponseCache;
+import com.chanseok.emsstudy.circuit.EmsCircuitBreakerRegistry;
+import com.chanseok.emsstudy.dedup.EmsDedupCache;
+import com.chanseok.emsstudy.listener.EmsSessionAcks;
+import com.chanseok.emsstudy.provider.ApplicationContextProvider;
+import com.chanseok.emsstudy.publisher.EmsPublisher;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.servlet.DispatchResult;
+import com.chanseok.emsstudy.servlet.EmsDirectDispatchAdapter;
+import com.chanseok.emsstudy.servlet.EmsDispatcherServletAdapter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmsDeliveryHandlerTest {
+    private final EmsDispatcherServletAdapter dispatcherServletAdapter = mock(EmsDispatcherServletAdapter.class);
+    private final EmsDispatchPipeline dispatchPipeline = mock(EmsDispatchPipeline.class);
+    private final EmsDeadLetterSender deadLetterSender = mock(EmsDeadLetterSender.class);
+    private final EmsRetryScheduler retryScheduler = mock(EmsRetryScheduler.class);
+    private final List<String> acked = new CopyOnWriteArrayList<>();
+
+    private ApplicationContext previousContext;
+    private EmsDeliveryHandler handler;
+    private EmsRoute route;
+
+    @BeforeEach
+    public void setUp() {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("dispatcherServletAdapter", dispatcherServletAdapter);
+        context.getBeanFactory().registerSingleton("directDispatchAdapter", mock(EmsDirectDispatchAdapter.class));
+        context.getBeanFactory().registerSingleton("dispatchPipeline", dispatchPipeline);
+        previousContext = ApplicationContextProvider.getApplicationContext();
+        new ApplicationContextProvider().setApplicationContext(context);
+
+        when(deadLetterSender.send(any(), anyString())).thenReturn(true);
+        handler = new EmsDeliveryHandler(mock(EmsPublisher.class), mock(EmsDedupCache.class), mock(EmsResponseCache.class),
+                deadLetterSender, mock(EmsCircuitBreakerRegistry.class), retryScheduler, new ObjectMapper(),
+                new SimpleMeterRegistry());
+
+        route = new EmsRoute();
+        route.setName("test");
+        route.setDestination("ems.queue");
+        route.setUri("/ems/test");
+        route.getBatch().setEnabled(true);
+        route.getBatch().setUri("/ems/test/batch");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        new ApplicationContextProvider().setApplicationContext(previousContext);
+    }
+
+    @Test
+    public void testBatchItemsAreSettledOneByOne() {
+        EmsDelivery first = delivery("id-1");
+        EmsDelivery second = delivery("id-2");
+        EmsDelivery third = delivery("id-3");
+        respond("/ems/test/batch", "[{\"id\":1},{\"error\":\"bad item\"},{\"id\":3}]");
+
+        handler.handle(EmsDelivery.batch(route, List.of(first, second, third)));
+
+        // 오류 항목만 DLQ 로 가고, 나머지는 그대로 처리된다. DLQ 로 보낸 메시지도 ack 한다
+        verify(deadLetterSender).send(second, "bad item");
+        verify(deadLetterSender, never()).send(eq(first), anyString());
+        verify(deadLetterSender, never()).send(eq(third), anyString());
+        assertThat(acked).containsExactlyInAnyOrder("id-1", "id-2", "id-3");
+        verify(dispatchPipeline, never()).offer(any());
+    }
+
+    @Test
+    public void testSizeMismatchResubmitsMembersToTheLanes() {
+        EmsDelivery first = delivery("id-1");
+        EmsDelivery second = delivery("id-2");
+        respond("/ems/test/batch", "[{\"id\":1}]");
+        respond("/ems/test", "{\"id\":2}");
+        when(dispatchPipeline.offer(first)).thenReturn(true);
+        when(dispatchPipeline.offer(second)).thenReturn(false);
+
+        handler.handle(EmsDelivery.batch(route, List.of(first, second)));
+
+        // 레인에 들어간 멤버는 다른 워커가 처리하고, 레인이 차서 못 넣은 멤버만 이 워커가 처리한다
+        verify(dispatchPipeline).offer(first);
+        verify(dispatchPipeline).offer(second);
+        verify(dispatcherServletAdapter).dispatch(eq("/ems/test"), any(), any(), any());
+        assertThat(acked).containsExactly("id-2");
+    }
+
+    @Test
+    public void testFanOutRetrySkipsBranchesThatSucceeded() {
+        route.getBatch().setEnabled(false);
+        route.getFanOut().setUris(List.of("/ems/audit"));
+        DispatchResult primary = success("{\"id\":1}");
+        DispatchResult audited = success("{}");
+        DispatchResult failed = mock(DispatchResult.class);
+        when(failed.getErrorKind()).thenReturn(DispatchResult.ErrorKind.SERVER);
+        when(dispatcherServletAdapter.dispatchAll(eq(List.of("/ems/test", "/ems/audit")), any(), any(), any()))
+                .thenReturn(List.of(primary, failed));
+        when(dispatcherServletAdapter.dispatchAll(eq(List.of("/ems/audit")), any(), any(), any()))
+                .thenReturn(List.of(audited));
+        when(retryScheduler.retry(any())).thenReturn(true);
+
+        EmsDelivery delivery = delivery("id-1");
+        handler.handle(delivery);
+        verify(retryScheduler).retry(delivery);
+        assertThat(acked).isEmpty();
+
+        // 재시도에서는 실패했던 대상에만 보낸다
+        handler.handle(delivery);
+        verify(dispatcherServletAdapter).dispatchAll(eq(List.of("/ems/audit")), any(), any(), any());
+        assertThat(acked).containsExactly("id-1");
+    }
+
+    @Test
+    public void testInflatedTooLargeGoesToDeadLetterWithoutRetry() {
+        route.getBatch().setEnabled(false);
+        DispatchResult tooLarge = mock(DispatchResult.class);
+        when(tooLarge.getErrorKind()).thenReturn(DispatchResult.ErrorKind.CLIENT);
+        when(tooLarge.describe()).thenReturn("CLIENT 413 - Inflated body exceeds 16 bytes");
+        when(dispatcherServletAdapter.dispatch(eq("/ems/test"), any(), any(), any())).thenReturn(tooLarge);
+
+        EmsDelivery delivery = delivery("id-1");
+        handler.handle(delivery);
+
+        verify(retryScheduler, never()).retry(any());
+        verify(deadLetterSender).send(delivery, "CLIENT 413 - Inflated body exceeds 16 bytes");
+        assertThat(acked).containsExactly("id-1");
+    }
+
+    @Test
+    public void testDeadLetterFailureDoesNotRedeliverOtherInFlightMessages() throws Exception {
+        Session session = mock(Session.class);
+        EmsSessionAcks acks = new EmsSessionAcks(session);
+        Message firstMessage = mock(Message.class);
+        Message secondMessage = mock(Message.class);
+        Message otherLaneMessage = mock(Message.class);
+        EmsDelivery first = delivery("id-1", acks.forMessage(firstMessage));
+        EmsDelivery second = delivery("id-2", acks.forMessage(secondMessage));
+        // 같은 세션에서 받아 다른 레인에서 아직 처리 중인 메시지
+        EmsDelivery.Acknowledgement otherLane = acks.forMessage(otherLaneMessage);
+        respond("/ems/test/batch", "[{\"id\":1},{\"error\":\"bad item\"}]");
+        when(deadLetterSender.send(second, "bad item")).thenReturn(false);
+
+        handler.handle(EmsDelivery.batch(route, List.of(first, second)));
+        acks.drain();
+
+        // DLQ 로 못 보낸 메시지만 ack 하지 않고, 처리 중인 메시지가 있으니 세션 recover 는 하지 않는다
+        verify(firstMessage).acknowledge();
+        verify(secondMessage, never()).acknowledge();
+        verify(session, never()).recover();
+
+        // 처리 중인 메시지가 모두 끝나면 그때 세워 둔 메시지만 다시 받는다
+        otherLane.acknowledge();
+        acks.drain();
+        verify(otherLaneMessage).acknowledge();
+        verify(session).recover();
+    }
+
+    private void respond(String uri, String body) {
+        DispatchResult result = success(body);
+        when(dispatcherServletAdapter.dispatch(eq(uri), any(), any(), any())).thenReturn(result);
+    }
+
+    private static DispatchResult success(String body) {
+        DispatchResult result = mock(DispatchResult.class);
+        when(result.isSuccess()).thenReturn(true);
+        when(result.getBodyAsString()).thenReturn(body);
+        return result;
+    }
+
+    private EmsDelivery delivery(String messageId) {
+        return delivery(messageId, () -> acked.add(messageId));
+    }
+
+    private EmsDelivery delivery(String messageId, EmsDelivery.Acknowledgement acknowledgement) {
+        return EmsDelivery.of(route, messageId, null, null, "{}", Map.of(), 4, 0L, null, acknowledgement);
+    }
+}
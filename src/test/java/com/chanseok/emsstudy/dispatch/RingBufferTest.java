@@ -0,0 +1,91 @@
+package com.chanseok.emsstudy.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingBufferTest {
+
+    @Test
+    public void testCapacityRoundsUpAndRejectsWhenFull() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+        assertThat(ring.capacity()).isEqualTo(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+        assertThat(ring.peek()).isEqualTo(0);
+
+        // 여러 바퀴를 돌아도 FIFO 순서가 유지된다
+        for (int i = 0; i < 10; i++) {
+            assertThat(ring.poll()).isEqualTo(i);
+            assertThat(ring.offer(i + 4)).isTrue();
+        }
+        assertThat(ring.poll()).isEqualTo(10);
+        assertThat(ring.poll()).isEqualTo(11);
+        assertThat(ring.poll()).isEqualTo(12);
+        assertThat(ring.poll()).isEqualTo(13);
+        assertThat(ring.poll()).isNull();
+        assertThat(ring.peek()).isNull();
+        assertThat(ring.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testEveryElementIsConsumedExactlyOnceAcrossProducersAndConsumers() throws Exception {
+        int producers = 2;
+        int consumers = 2;
+        int perProducer = 20_000;
+        int total = producers * perProducer;
+        RingBuffer<Integer> ring = new RingBuffer<>(64);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        AtomicLong consumed = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(consumers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    // 코어가 적은 환경에서도 상대 스레드가 돌 수 있게 spin 대신 yield 한다
+                    while (!ring.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                while (consumed.get() < total) {
+                    Integer value = ring.poll();
+                    if (value == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    seen.incrementAndGet(value);
+                    consumed.incrementAndGet();
+                }
+                done.countDown();
+            }));
+        }
+        threads.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        // 스레드마다 따로 기다리지 않고 전체에 한 번의 마감만 둔다
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < total; i++) {
+            assertThat(seen.get(i)).isEqualTo(1);
+        }
+        assertThat(ring.isEmpty()).isTrue();
+    }
+}
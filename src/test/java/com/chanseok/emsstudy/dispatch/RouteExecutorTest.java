@@ -0,0 +1,78 @@
+package com.chanseok.emsstudy.dispatch;
+
+import com.chanseok.emsstudy.route.EmsRoute;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class RouteExecutorTest {
+
+    @Test
+    public void testQueueDelayReportsTheOldestWaitingMessage() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch handled = new CountDownLatch(2);
+        EmsDeliveryHandler handler = mock(EmsDeliveryHandler.class);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            handled.countDown();
+            return null;
+        }).when(handler).handle(any());
+
+        RouteExecutor executor = RouteExecutor.create(route(EmsRoute.Executor.Mode.FIXED), handler, new SimpleMeterRegistry());
+        try {
+            assertThat(executor.queueDelayNanos()).isZero();
+            executor.submit(delivery("id-1"));
+            executor.submit(delivery("id-2"));
+
+            // 스레드 하나가 첫 메시지에 묶여 있는 동안 두 번째 메시지의 대기 시간이 늘어난다
+            Thread.sleep(30);
+            assertThat(executor.queueDelayNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+
+            release.countDown();
+            assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(executor.queueDelayNanos()).isZero();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedMessageReleasesItsSlot() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RouteExecutor executor = RouteExecutor.create(route(EmsRoute.Executor.Mode.FIXED), mock(EmsDeliveryHandler.class), meterRegistry);
+        executor.shutdown();
+
+        assertThat(executor.offer(delivery("id-1"))).isFalse();
+        assertThatThrownBy(() -> executor.submit(delivery("id-2"))).isInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.get("ems.executor.in.flight").gauge().value()).isZero();
+        assertThat(executor.queueDelayNanos()).isZero();
+    }
+
+    private static EmsRoute route(EmsRoute.Executor.Mode mode) {
+        EmsRoute route = new EmsRoute();
+        route.setName("test");
+        route.setDestination("ems.queue");
+        route.getExecutor().setMode(mode);
+        route.getExecutor().setParallelism(1);
+        route.getExecutor().setCapacity(4);
+        return route;
+    }
+
+    private static EmsDelivery delivery(String messageId) {
+        EmsDelivery delivery = EmsDelivery.of(route(EmsRoute.Executor.Mode.FIXED), messageId, null, null, "{}", Map.of(), 4, 0L, null, () -> {
+        });
+        delivery.markEnqueued();
+        return delivery;
+    }
+}
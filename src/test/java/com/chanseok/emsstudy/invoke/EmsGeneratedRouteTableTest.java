@@ -0,0 +1,56 @@
+package com.chanseok.emsstudy.invoke;
+
+import com.chanseok.emsstudy.codec.EmsCodecProperties;
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
+import com.chanseok.emsstudy.controller.EmsTestController;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EmsGeneratedRouteTableTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EmsRouteTable table = new EmsGeneratedRouteTable(type -> new EmsTestController(),
+            new EmsCodecRegistry(objectMapper, meterRegistry, new EmsRouteRegistry(new EmsRouteProperties()), new EmsCodecProperties()));
+
+    @Test
+    public void testRoutesFromMappings() {
+        assertThat(table.getUris()).containsExactly("/ems/test", "/ems/test/batch");
+        assertThat(table.contains("/ems/test")).isTrue();
+        assertThat(table.contains("/ems/test/")).isFalse();
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        byte[] response = table.invoke("/ems/test", "{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(objectMapper.readValue(response, new TypeReference<Map<String, Object>>() {}))
+                .containsEntry("status", "success")
+                .containsEntry("received", Map.of("a", 1));
+        assertThat(meterRegistry.get("ems.codec.read").tag("uri", "/ems/test").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ems.codec.write").tag("uri", "/ems/test").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvokeBatch() throws Exception {
+        byte[] response = table.invoke("/ems/test/batch", "[{\"a\":1},{\"a\":2}]".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(objectMapper.readTree(response).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnreadableBody() {
+        assertThatThrownBy(() -> table.invoke("/ems/test", "not json".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(EmsUnreadableBodyException.class);
+    }
+}
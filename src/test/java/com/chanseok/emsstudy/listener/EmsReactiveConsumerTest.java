@@ -0,0 +1,128 @@
+package com.chanseok.emsstudy.listener;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.dispatch.EmsDeliveryHandler;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.servlet.EmsWebFluxAdapter;
+import com.chanseok.emsstudy.transport.EmsInbound;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EmsReactiveConsumerTest {
+    private final EmsInbound inbound = mock(EmsInbound.class);
+    private final EmsDeliveryHandler deliveryHandler = mock(EmsDeliveryHandler.class);
+    private final Session session = mock(Session.class);
+    private final MessageConsumer consumer = mock(MessageConsumer.class);
+
+    private EmsReactiveConsumer reactiveConsumer;
+    private EmsRoute route;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        reactiveConsumer = new EmsReactiveConsumer(inbound, deliveryHandler, mock(EmsWebFluxAdapter.class), new EmsDispatchProperties(),
+                new SimpleMeterRegistry());
+        route = new EmsRoute();
+        route.setName("test");
+        route.setDestination("ems.test");
+        when(inbound.accept(eq(route), anyString(), anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<EmsInbound.DeliveryFactory>getArgument(3).create("key"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reactiveConsumer.destroy();
+    }
+
+    @Test
+    public void testAckRunsOnReceivingThread() throws Exception {
+        TextMessage message = message();
+        when(consumer.receive(anyLong())).thenReturn(message, (TextMessage) null);
+        AtomicReference<String> ackThread = new AtomicReference<>();
+        CountDownLatch acked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            ackThread.set(Thread.currentThread().getName());
+            acked.countDown();
+            return null;
+        }).when(message).acknowledge();
+        // 핸들러는 WebFlux 처럼 다른 스레드에서 처리를 마치고 ack 한다
+        when(deliveryHandler.handleReactive(any())).thenAnswer(invocation -> {
+            EmsDelivery delivery = invocation.getArgument(0);
+            return Mono.fromRunnable(() -> acknowledge(delivery)).subscribeOn(Schedulers.boundedElastic()).then();
+        });
+
+        reactiveConsumer.subscribe(route, session, consumer);
+
+        assertThat(acked.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ackThread.get()).startsWith("ems-reactive-test");
+    }
+
+    @Test
+    public void testRecoverRunsOnReceivingThread() throws Exception {
+        TextMessage message = message();
+        when(consumer.receive(anyLong())).thenReturn(message, (TextMessage) null);
+        AtomicReference<String> recoverThread = new AtomicReference<>();
+        CountDownLatch recovered = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            recoverThread.set(Thread.currentThread().getName());
+            recovered.countDown();
+            return null;
+        }).when(session).recover();
+        when(deliveryHandler.handleReactive(any())).thenAnswer(invocation -> {
+            EmsDelivery delivery = invocation.getArgument(0);
+            return Mono.fromRunnable(() -> recover(delivery)).subscribeOn(Schedulers.boundedElastic()).then();
+        });
+
+        reactiveConsumer.subscribe(route, session, consumer);
+
+        assertThat(recovered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(recoverThread.get()).startsWith("ems-reactive-test");
+    }
+
+    private TextMessage message() throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getText()).thenReturn("{}");
+        when(message.getJMSMessageID()).thenReturn("ID:1");
+        when(message.getJMSDestination()).thenReturn(new ActiveMQQueue("ems.test"));
+        when(message.getPropertyNames()).thenReturn(Collections.emptyEnumeration());
+        return message;
+    }
+
+    private static void acknowledge(EmsDelivery delivery) {
+        try {
+            delivery.acknowledge();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void recover(EmsDelivery delivery) {
+        try {
+            delivery.recover();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
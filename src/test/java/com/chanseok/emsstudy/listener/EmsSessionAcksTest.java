@@ -0,0 +1,75 @@
+package com.chanseok.emsstudy.listener;
+
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Message;
+import javax.jms.Session;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EmsSessionAcksTest {
+
+    @Test
+    public void testAcksAndRecoverRunOnlyWhenDrained() throws Exception {
+        Session session = mock(Session.class);
+        Message first = mock(Message.class);
+        Message second = mock(Message.class);
+        EmsSessionAcks acks = new EmsSessionAcks(session);
+
+        // 워커 스레드 쪽 호출은 큐에 쌓기만 한다
+        Thread worker = new Thread(() -> {
+            try {
+                acks.forMessage(first).acknowledge();
+                EmsDelivery.Acknowledgement failed = acks.forMessage(second);
+                failed.recover();
+                failed.recover();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        worker.start();
+        worker.join();
+        verify(first, never()).acknowledge();
+        verify(session, never()).recover();
+
+        acks.drain();
+        // ack 를 먼저 보낸 뒤 recover 하고, 여러 번 요청된 recover 는 한 번만 한다
+        inOrder(first, session).verify(first).acknowledge();
+        verify(session, times(1)).recover();
+        verify(second, never()).acknowledge();
+
+        acks.drain();
+        verify(session, times(1)).recover();
+    }
+
+    @Test
+    public void testRecoverWaitsUntilNothingElseIsInFlight() throws Exception {
+        Session session = mock(Session.class);
+        Message failed = mock(Message.class);
+        Message busy = mock(Message.class);
+        EmsSessionAcks acks = new EmsSessionAcks(session);
+        EmsDelivery.Acknowledgement failedAck = acks.forMessage(failed);
+        EmsDelivery.Acknowledgement busyAck = acks.forMessage(busy);
+
+        failedAck.recover();
+        acks.drain();
+        // 다른 메시지가 처리 중이면 세션 recover 로 함께 재전달하지 않는다
+        verify(session, never()).recover();
+
+        busyAck.acknowledge();
+        acks.drain();
+        inOrder(busy, session).verify(busy).acknowledge();
+        verify(session, times(1)).recover();
+        verify(failed, never()).acknowledge();
+
+        // 새로 받은 메시지만 있을 때는 다시 recover 하지 않는다
+        acks.forMessage(mock(Message.class));
+        acks.drain();
+        verify(session, times(1)).recover();
+    }
+}
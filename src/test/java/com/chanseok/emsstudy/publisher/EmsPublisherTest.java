@@ -0,0 +1,152 @@
+package com.chanseok.emsstudy.publisher;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.connection.EmsConnectionPool;
+import com.chanseok.emsstudy.connection.EmsPooledSession;
+import org.apache.activemq.ActiveMQMessageProducer;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmsPublisherTest {
+    private static final int THRESHOLD = 1024;
+
+    private final EmsConnectionPool connectionPool = mock(EmsConnectionPool.class);
+    private final EmsPooledSession pooledSession = mock(EmsPooledSession.class);
+    private final ActiveMQMessageProducer producer = mock(ActiveMQMessageProducer.class);
+    private final ActiveMQQueue queue = new ActiveMQQueue("ems.queue");
+    private EmsPublisher publisher;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Session session = mock(Session.class);
+        when(session.createTextMessage(anyString())).thenAnswer(invocation -> {
+            ActiveMQTextMessage message = new ActiveMQTextMessage();
+            message.setText(invocation.getArgument(0));
+            return message;
+        });
+        when(session.createBytesMessage()).thenAnswer(invocation -> new ActiveMQBytesMessage());
+        when(connectionPool.borrowSession(false)).thenReturn(pooledSession);
+        when(pooledSession.getSession()).thenReturn(session);
+        when(pooledSession.getProducer()).thenReturn(producer);
+        when(pooledSession.getQueue("ems.queue")).thenReturn(queue);
+
+        EmsPublisherProperties properties = new EmsPublisherProperties();
+        properties.getCompression().setEnabled(true);
+        properties.getCompression().setThreshold(DataSize.ofBytes(THRESHOLD));
+        publisher = new EmsPublisher(connectionPool, properties);
+    }
+
+    @Test
+    public void testBodyUnderThresholdIsSentAsText() throws Exception {
+        String payload = json(THRESHOLD - 1);
+
+        publisher.send("ems.queue", payload);
+
+        Message message = sent();
+        assertThat(message).isInstanceOf(ActiveMQTextMessage.class);
+        assertThat(((ActiveMQTextMessage) message).getText()).isEqualTo(payload);
+        assertThat(message.getStringProperty(EmsContentEncoding.PROPERTY)).isNull();
+    }
+
+    @Test
+    public void testBodyAtThresholdIsCompressed() throws Exception {
+        assertCompressed(json(THRESHOLD));
+    }
+
+    @Test
+    public void testBodyOverThresholdIsCompressed() throws Exception {
+        assertCompressed(json(THRESHOLD * 8));
+    }
+
+    @Test
+    public void testBinaryBodyIsSentAsBytes() throws Exception {
+        byte[] cbor = {(byte) 0xa1, 0x62, 0x6f, 0x6b, (byte) 0xf5};
+
+        publisher.send("ems.queue", cbor, Map.of(EmsContentType.PROPERTY, EmsContentType.CBOR));
+
+        Message message = sent();
+        assertThat(message).isInstanceOf(ActiveMQBytesMessage.class);
+        assertThat(message.getStringProperty(EmsContentType.PROPERTY)).isEqualTo(EmsContentType.CBOR);
+        assertThat(message.getStringProperty(EmsContentEncoding.PROPERTY)).isNull();
+        assertThat(body((ActiveMQBytesMessage) message)).isEqualTo(cbor);
+    }
+
+    @Test
+    public void testCompressedBodyIsSentUnchanged() throws Exception {
+        byte[] random = new byte[THRESHOLD * 2];
+        new Random(42).nextBytes(random);
+        byte[] body = EmsContentEncoding.DEFLATE.compress(random, Deflater.DEFAULT_COMPRESSION);
+        assertThat(body.length).isGreaterThanOrEqualTo(THRESHOLD);
+
+        // threshold 를 넘어도 이미 압축된 body 는 다시 압축하지 않는다
+        publisher.send("ems.queue", body, Map.of(EmsContentEncoding.PROPERTY, EmsContentEncoding.DEFLATE.getName()));
+
+        Message message = sent();
+        assertThat(message).isInstanceOf(ActiveMQBytesMessage.class);
+        assertThat(message.getStringProperty(EmsContentEncoding.PROPERTY)).isEqualTo(EmsContentEncoding.DEFLATE.getName());
+        assertThat(body((ActiveMQBytesMessage) message)).isEqualTo(body);
+    }
+
+    private void assertCompressed(String payload) throws Exception {
+        publisher.send("ems.queue", payload);
+
+        Message message = sent();
+        assertThat(message).isInstanceOf(ActiveMQBytesMessage.class);
+        assertThat(message.getStringProperty(EmsContentEncoding.PROPERTY)).isEqualTo(EmsContentEncoding.DEFLATE.getName());
+
+        byte[] compressed = body((ActiveMQBytesMessage) message);
+        assertThat(compressed.length).isLessThan(payload.length());
+        try (InputStream in = EmsContentEncoding.DEFLATE.decompress(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(payload);
+        }
+    }
+
+    private static byte[] body(ActiveMQBytesMessage message) throws Exception {
+        message.reset();
+        byte[] body = new byte[(int) message.getBodyLength()];
+        message.readBytes(body);
+        return body;
+    }
+
+    private Message sent() throws Exception {
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(producer).send(eq(queue), captor.capture(), anyInt(), anyInt(), anyLong(), any());
+        return captor.getValue();
+    }
+
+    /**
+     * UTF-8 로 정확히 size 바이트인 JSON
+     */
+    private static String json(int size) {
+        String prefix = "{\"data\":\"";
+        String suffix = "\"}";
+        String json = prefix + "a".repeat(size - prefix.length() - suffix.length()) + suffix;
+        assertThat(json.getBytes(StandardCharsets.UTF_8)).hasSize(size);
+        return json;
+    }
+}
@@ -0,0 +1,137 @@
+package com.chanseok.emsstudy.ratelimit;
+
+import com.chanseok.emsstudy.dispatch.EmsDeadLetterSender;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.retry.EmsRetryProperties;
+import com.chanseok.emsstudy.retry.EmsRetryScheduler;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EmsRateLimiterTest {
+    private final EmsDeadLetterSender deadLetterSender = mock(EmsDeadLetterSender.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> acked = new CopyOnWriteArrayList<>();
+
+    private EmsRetryScheduler scheduler;
+    private EmsRoute route;
+
+    @BeforeEach
+    public void setUp() {
+        route = new EmsRoute();
+        route.setDestination("ems.queue");
+        route.getRateLimit().setTenantProperty("tenant");
+        route.getRateLimit().setTenantPermitsPerSecond(10);
+
+        scheduler = new EmsRetryScheduler(new EmsRetryProperties(), new SimpleMeterRegistry());
+        scheduler.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        scheduler.destroy();
+    }
+
+    @Test
+    public void testBusyTenantIsDeferredWithoutBlockingOthers() throws Exception {
+        EmsRateLimiter rateLimiter = rateLimiter();
+        CompletableFuture<EmsDelivery> deferred = new CompletableFuture<>();
+
+        assertThat(rateLimiter.acquire(delivery("a-1", "a"), deferred::complete)).isTrue();
+
+        // 같은 테넌트의 두 번째 메시지는 기다리지 않고 미뤄진다
+        long startedAt = System.nanoTime();
+        EmsDelivery second = delivery("a-2", "a");
+        assertThat(rateLimiter.acquire(second, deferred::complete)).isFalse();
+        assertThat(System.nanoTime() - startedAt).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+
+        // 다른 테넌트는 바로 통과한다
+        assertThat(rateLimiter.acquire(delivery("b-1", "b"), d -> {
+            throw new AssertionError("tenant b must not be deferred");
+        })).isTrue();
+
+        assertThat(deferred.get(1, TimeUnit.SECONDS)).isSameAs(second);
+        assertThat(System.nanoTime() - startedAt).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void testSaturatedTenantOverflowsToDeadLetterWhileOtherTenantPasses() throws Exception {
+        route.getRateLimit().setTenantPermitsPerSecond(2);
+        route.getRateLimit().setTenantMaxDeferred(2);
+        when(deadLetterSender.send(any(), anyString())).thenReturn(true);
+        EmsRateLimiter rateLimiter = rateLimiter();
+        List<EmsDelivery> deferred = new CopyOnWriteArrayList<>();
+
+        assertThat(rateLimiter.acquire(delivery("a-1", "a"), deferred::add)).isTrue();
+        assertThat(rateLimiter.acquire(delivery("a-2", "a"), deferred::add)).isFalse();
+        assertThat(rateLimiter.acquire(delivery("a-3", "a"), deferred::add)).isFalse();
+
+        // 미뤄 둔 메시지가 한도에 이르면 더 쌓지 않고(prefetch 를 잡아 두지 않고) dead letter 로 옮긴다
+        EmsDelivery overflow = delivery("a-4", "a");
+        assertThat(rateLimiter.acquire(overflow, deferred::add)).isFalse();
+        verify(deadLetterSender).send(overflow, "Tenant rate limit backlog exceeded: a");
+        assertThat(acked).containsExactly("a-4");
+        assertThat(meterRegistry.get("ems.ratelimit.overflowed").counter().count()).isEqualTo(1.0);
+
+        // 한 테넌트가 한도에 걸려 있어도 다른 테넌트는 그대로 통과한다
+        assertThat(rateLimiter.acquire(delivery("b-1", "b"), deferred::add)).isTrue();
+        assertThat(rateLimiter.acquire(delivery("b-2", "b"), deferred::add)).isFalse();
+
+        // 미뤄 둔 메시지가 토큰 시각에 빠져나가면 다시 미룰 자리가 생긴다
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        while (deferred.stream().noneMatch(d -> d.getMessageId().startsWith("a-")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        EmsDelivery fifth = delivery("a-5", "a");
+        assertThat(rateLimiter.acquire(fifth, deferred::add)).isFalse();
+        verify(deadLetterSender, never()).send(fifth, "Tenant rate limit backlog exceeded: a");
+        assertThat(acked).containsExactly("a-4");
+    }
+
+    @Test
+    public void testSaturatedTenantOverflowCanBeShed() {
+        route.getRateLimit().setTenantPermitsPerSecond(1);
+        route.getRateLimit().setTenantMaxDeferred(1);
+        route.getRateLimit().setTenantOverflow(EmsRoute.RateLimit.TenantOverflow.SHED);
+        EmsRateLimiter rateLimiter = rateLimiter();
+
+        assertThat(rateLimiter.acquire(delivery("a-1", "a"), d -> {
+        })).isTrue();
+        assertThat(rateLimiter.acquire(delivery("a-2", "a"), d -> {
+        })).isFalse();
+        assertThat(rateLimiter.acquire(delivery("a-3", "a"), d -> {
+        })).isFalse();
+
+        // 버리는 정책이면 dead letter 없이 ack 만 한다
+        verify(deadLetterSender, never()).send(any(), anyString());
+        assertThat(acked).containsExactly("a-3");
+    }
+
+    private EmsRateLimiter rateLimiter() {
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+        return new EmsRateLimiter(new EmsRouteRegistry(routeProperties), scheduler, deadLetterSender, meterRegistry);
+    }
+
+    private EmsDelivery delivery(String messageId, String tenant) {
+        return EmsDelivery.of(route, messageId, null, null, "{}", Map.of("tenant", tenant), 4, 0L, null, () -> acked.add(messageId));
+    }
+}
@@ -0,0 +1,49 @@
+package com.chanseok.emsstudy.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstThenWait() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = System.nanoTime();
+
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isZero();
+
+        long wait = bucket.tryAcquire(now);
+        assertThat(wait).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        // 기다려야 한다는 응답에는 토큰을 쓰지 않는다
+        assertThat(bucket.tryAcquire(now)).isEqualTo(wait);
+        assertThat(bucket.tryAcquire(now + wait)).isZero();
+    }
+
+    @Test
+    public void testIdleDoesNotAccumulateMoreThanBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long later = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+
+    @Test
+    public void testReserveQueuesTokensInOrder() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        long now = System.nanoTime();
+
+        assertThat(bucket.reserve(now)).isZero();
+        // 비어 있어도 다음 자리를 차례로 차지한다
+        assertThat(bucket.reserve(now)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(bucket.reserve(now)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(200))).isPositive();
+    }
+}
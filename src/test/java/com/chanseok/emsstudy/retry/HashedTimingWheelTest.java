@@ -0,0 +1,52 @@
+package com.chanseok.emsstudy.retry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedTimingWheelTest {
+
+    @Test
+    public void testExpiresInDeadlineOrderAcrossRounds() throws Exception {
+        List<Long> expired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        long startedAt = System.nanoTime();
+        // 8 슬롯 x 5ms = 한 바퀴 40ms 이므로 100ms 는 두 바퀴를 돌아야 만료된다
+        HashedTimingWheel<Long> wheel = new HashedTimingWheel<>("test-wheel", 5, TimeUnit.MILLISECONDS, 8, delay -> {
+            assertThat(System.nanoTime() - startedAt).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(delay));
+            expired.add(delay);
+            latch.countDown();
+        });
+        wheel.start();
+        try {
+            wheel.schedule(100L, 100, TimeUnit.MILLISECONDS);
+            wheel.schedule(10L, 10, TimeUnit.MILLISECONDS);
+            wheel.schedule(45L, 45, TimeUnit.MILLISECONDS);
+            assertThat(wheel.pending()).isEqualTo(3);
+
+            assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+            assertThat(expired).containsExactly(10L, 45L, 100L);
+            assertThat(wheel.pending()).isZero();
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testPastDeadlineExpiresOnNextTick() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>("test-wheel", 5, TimeUnit.MILLISECONDS, 8, item -> latch.countDown());
+        wheel.start();
+        try {
+            wheel.schedule("now", 0, TimeUnit.MILLISECONDS);
+            assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            wheel.stop();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.chanseok.emsstudy.servlet;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DispatchResultTest {
+
+    @Test
+    public void testStatusMapsToErrorKind() {
+        assertThat(kindOf(200)).isEqualTo(DispatchResult.ErrorKind.NONE);
+        assertThat(kindOf(204)).isEqualTo(DispatchResult.ErrorKind.NONE);
+        assertThat(kindOf(400)).isEqualTo(DispatchResult.ErrorKind.CLIENT);
+        assertThat(kindOf(413)).isEqualTo(DispatchResult.ErrorKind.CLIENT);
+        assertThat(kindOf(499)).isEqualTo(DispatchResult.ErrorKind.CLIENT);
+        assertThat(kindOf(500)).isEqualTo(DispatchResult.ErrorKind.SERVER);
+        assertThat(kindOf(503)).isEqualTo(DispatchResult.ErrorKind.SERVER);
+        // 1xx/3xx 는 일시적인 실패가 아니므로 재시도할 SERVER 로 보지 않는다
+        assertThat(kindOf(100)).isEqualTo(DispatchResult.ErrorKind.UNEXPECTED);
+        assertThat(kindOf(302)).isEqualTo(DispatchResult.ErrorKind.UNEXPECTED);
+        assertThat(kindOf(304)).isEqualTo(DispatchResult.ErrorKind.UNEXPECTED);
+    }
+
+    @Test
+    public void testOnlyServerErrorsAndExceptionsAreRetryable() {
+        assertThat(DispatchResult.ErrorKind.NONE.isRetryable()).isFalse();
+        assertThat(DispatchResult.ErrorKind.CLIENT.isRetryable()).isFalse();
+        assertThat(DispatchResult.ErrorKind.UNEXPECTED.isRetryable()).isFalse();
+        assertThat(DispatchResult.ErrorKind.SERVER.isRetryable()).isTrue();
+        assertThat(DispatchResult.ErrorKind.EXCEPTION.isRetryable()).isTrue();
+
+        DispatchResult redirect = result(302);
+        assertThat(redirect.isSuccess()).isFalse();
+        assertThat(redirect.describe()).isEqualTo("UNEXPECTED 302");
+    }
+
+    @Test
+    public void testExceptionAndInflatedTooLarge() {
+        IllegalStateException cause = new IllegalStateException("boom");
+        DispatchResult failed = DispatchResult.failed(cause, 10L);
+        assertThat(failed.getErrorKind()).isEqualTo(DispatchResult.ErrorKind.EXCEPTION);
+        assertThat(failed.getStatus()).isEqualTo(500);
+        assertThat(failed.getCause()).isSameAs(cause);
+        assertThat(failed.getErrorKind().isRetryable()).isTrue();
+
+        DispatchResult tooLarge = DispatchResult.inflatedTooLarge(16L, 10L);
+        assertThat(tooLarge.getStatus()).isEqualTo(413);
+        assertThat(tooLarge.getErrorKind()).isEqualTo(DispatchResult.ErrorKind.CLIENT);
+        assertThat(tooLarge.describe()).isEqualTo("CLIENT 413 - Inflated body exceeds 16 bytes");
+    }
+
+    private static DispatchResult.ErrorKind kindOf(int status) {
+        return result(status).getErrorKind();
+    }
+
+    private static DispatchResult result(int status) {
+        return DispatchResult.of(status, Collections.emptyMap(), ByteBuffer.allocate(0), StandardCharsets.UTF_8, 0L, null);
+    }
+}
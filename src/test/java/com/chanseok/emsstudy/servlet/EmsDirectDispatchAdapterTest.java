@@ -0,0 +1,129 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.chanseok.emsstudy.codec.EmsCodecProperties;
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
+import com.chanseok.emsstudy.controller.EmsTestController;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmsDirectDispatchAdapterTest {
+    private AnnotationConfigWebApplicationContext applicationContext;
+    private EmsDirectDispatchAdapter adapter;
+
+    @BeforeEach
+    public void setUp() {
+        MockServletContext servletContext = new MockServletContext();
+        applicationContext = new AnnotationConfigWebApplicationContext();
+        applicationContext.setServletContext(servletContext);
+        applicationContext.register(MvcConfig.class, FailingController.class);
+        applicationContext.refresh();
+
+        EmsDispatchProperties dispatchProperties = new EmsDispatchProperties();
+        dispatchProperties.setDirectInvoke(true);
+        adapter = new EmsDirectDispatchAdapter(applicationContext, servletContext, new EmsCodecRegistry(new ObjectMapper(),
+                new SimpleMeterRegistry(), new EmsRouteRegistry(new EmsRouteProperties()), new EmsCodecProperties()), dispatchProperties);
+        adapter.afterSingletonsInstantiated();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Test
+    public void testSuccess() {
+        DispatchResult result = adapter.dispatch("/ems/test", "{\"a\":1}");
+
+        assertThat(result.getStatus()).isEqualTo(200);
+        assertThat(result.getBodyAsString()).contains("\"status\":\"success\"");
+    }
+
+    @Test
+    public void testExceptionHandlerStatus() {
+        DispatchResult result = adapter.dispatch("/ems/test", "{\"fail\":\"handler\"}");
+
+        assertThat(result.getStatus()).isEqualTo(422);
+        assertThat(result.getErrorKind().isRetryable()).isFalse();
+        assertThat(result.getBodyAsString()).isEqualTo("handled");
+    }
+
+    @Test
+    public void testResponseStatusAnnotation() {
+        DispatchResult result = adapter.dispatch("/ems/test", "{\"fail\":\"annotated\"}");
+
+        assertThat(result.getStatus()).isEqualTo(404);
+        assertThat(result.getErrorKind()).isEqualTo(DispatchResult.ErrorKind.CLIENT);
+    }
+
+    @Test
+    public void testResponseStatusException() {
+        DispatchResult result = adapter.dispatch("/ems/test", "{\"fail\":\"status\"}");
+
+        assertThat(result.getStatus()).isEqualTo(409);
+        assertThat(result.getErrorKind().isRetryable()).isFalse();
+    }
+
+    @Test
+    public void testUnhandledExceptionIsRetryable() {
+        DispatchResult result = adapter.dispatch("/ems/test", "{\"fail\":\"other\"}");
+
+        assertThat(result.getErrorKind()).isEqualTo(DispatchResult.ErrorKind.EXCEPTION);
+        assertThat(result.getErrorKind().isRetryable()).isTrue();
+        assertThat(result.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @EnableWebMvc
+    static class MvcConfig {
+    }
+
+    public static class FailingController extends EmsTestController {
+
+        @Override
+        public Map<String, Object> test(Map<String, Object> message) {
+            Object fail = message.get("fail");
+            if ("handler".equals(fail)) {
+                throw new HandledException();
+            }
+            if ("annotated".equals(fail)) {
+                throw new NotFoundException();
+            }
+            if ("status".equals(fail)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "conflict");
+            }
+            if (fail != null) {
+                throw new IllegalStateException("unhandled");
+            }
+            return super.test(message);
+        }
+
+        @ExceptionHandler(HandledException.class)
+        public ResponseEntity<String> handle(HandledException e) {
+            return ResponseEntity.unprocessableEntity().body("handled");
+        }
+    }
+
+    static class HandledException extends RuntimeException {
+    }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    static class NotFoundException extends RuntimeException {
+    }
+}
@@ -0,0 +1,148 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.chanseok.emsstudy.codec.EmsCodecProperties;
+import com.chanseok.emsstudy.codec.EmsCodecRegistry;
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.config.EmsWebMvcConfig;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import javax.servlet.ServletContext;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class EmsDispatcherServletAdapterTest {
+
+    @Test
+    public void testSmileRoundTrip() throws Exception {
+        assertBinaryRoundTrip(new ObjectMapper(new SmileFactory()), EmsContentType.SMILE);
+    }
+
+    @Test
+    public void testCborRoundTrip() throws Exception {
+        assertBinaryRoundTrip(new ObjectMapper(new CBORFactory()), EmsContentType.CBOR);
+    }
+
+    @Test
+    public void testInflatedSizeOverLimitIsPayloadTooLarge() throws Exception {
+        byte[] content = ("{\"name\":\"" + "a".repeat(32 * 1024) + "\"}").getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = EmsContentEncoding.DEFLATE.compress(content, Deflater.DEFAULT_COMPRESSION);
+        EmsDispatchProperties dispatchProperties = new EmsDispatchProperties();
+        dispatchProperties.setMaxInflatedSize(DataSize.ofKilobytes(16));
+
+        DispatchResult result = dispatchWithMvc(dispatchProperties, adapter -> adapter.dispatch("/echo", compressed, EmsContentType.JSON, "deflate"));
+
+        // 컨버터가 읽기 실패를 400 으로 바꿔도 한도 초과는 413 이고 재시도하지 않는다
+        assertThat(result.getStatus()).isEqualTo(413);
+        assertThat(result.getErrorKind().isRetryable()).isFalse();
+    }
+
+    /**
+     * 바이너리 body 가 컨트롤러까지 가고, 응답도 같은 인코딩으로 돌아온다
+     */
+    private void assertBinaryRoundTrip(ObjectMapper binaryMapper, String contentType) throws Exception {
+        byte[] content = binaryMapper.writeValueAsBytes(Map.of("name", "상품"));
+
+        DispatchResult result = dispatchWithMvc(new EmsDispatchProperties(), adapter -> adapter.dispatch("/echo", content, contentType));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getContentType()).startsWith(contentType);
+        byte[] body = result.getBodyBytes();
+        assertThat(binaryMapper.readValue(body, new TypeReference<Map<String, Object>>() {})).containsEntry("echo", "상품");
+    }
+
+    /**
+     * 줄인 MVC 설정(EmsWebMvcConfig)과 {@link EchoController} 로 띄운 DispatcherServlet 으로 요청한다
+     */
+    private DispatchResult dispatchWithMvc(EmsDispatchProperties dispatchProperties,
+                                           Function<EmsDispatcherServletAdapter, DispatchResult> request) throws Exception {
+        MockServletContext servletContext = new MockServletContext();
+        try (AnnotationConfigWebApplicationContext applicationContext = new AnnotationConfigWebApplicationContext()) {
+            applicationContext.setServletContext(servletContext);
+            applicationContext.register(MvcConfig.class, EmsWebMvcConfig.class, EchoController.class);
+            applicationContext.refresh();
+            DispatcherServlet servlet = new DispatcherServlet(applicationContext);
+            servlet.init(new MockServletConfig(servletContext));
+            EmsDispatcherServletAdapter adapter = new EmsDispatcherServletAdapter(servlet, servletContext, dispatchProperties);
+            try {
+                return request.apply(adapter);
+            } finally {
+                adapter.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void testFanOutAfterShutdownReturnsRetryableFailure() {
+        EmsDispatcherServletAdapter adapter = new EmsDispatcherServletAdapter(mock(DispatcherServlet.class), mock(ServletContext.class),
+                new EmsDispatchProperties());
+        adapter.destroy();
+
+        List<DispatchResult> results = adapter.dispatchAll(List.of("/ems/test", "/ems/audit"),
+                "{}".getBytes(StandardCharsets.UTF_8), "application/json", null);
+
+        // 첫 대상은 호출한 스레드에서 처리하고, fan-out 스레드가 받지 못한 대상은 예외 대신 재시도할 결과로 돌아온다
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(1).getErrorKind()).isEqualTo(DispatchResult.ErrorKind.EXCEPTION);
+        assertThat(results.get(1).getErrorKind().isRetryable()).isTrue();
+        assertThat(results.get(1).getCause()).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    static class MvcConfig {
+
+        @Bean
+        public ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public EmsRouteRegistry routeRegistry() {
+            return new EmsRouteRegistry(new EmsRouteProperties());
+        }
+
+        @Bean
+        public EmsCodecRegistry codecRegistry(ObjectMapper objectMapper, MeterRegistry meterRegistry, EmsRouteRegistry routeRegistry) {
+            return new EmsCodecRegistry(objectMapper, meterRegistry, routeRegistry, new EmsCodecProperties());
+        }
+    }
+
+    @RestController
+    public static class EchoController {
+
+        @PostMapping("/echo")
+        public Map<String, Object> echo(@RequestBody Map<String, Object> body) {
+            return Map.of("echo", body.get("name"));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.chanseok.emsstudy.codec.EmsContentEncoding;
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.dispatch.EmsDispatchProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmsWebFluxAdapterTest {
+    private StaticApplicationContext applicationContext;
+    private EmsWebFluxAdapter adapter;
+
+    @BeforeEach
+    public void setUp() {
+        applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("echoController", new EchoController());
+        applicationContext.getBeanFactory().registerSingleton("objectMapper", new ObjectMapper());
+        applicationContext.refresh();
+        EmsDispatchProperties dispatchProperties = new EmsDispatchProperties();
+        dispatchProperties.setMaxInflatedSize(DataSize.ofKilobytes(16));
+        adapter = new EmsWebFluxAdapter(applicationContext, dispatchProperties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        adapter.close();
+        applicationContext.close();
+    }
+
+    @Test
+    public void testDispatchJson() {
+        DispatchResult result = adapter.dispatch("/echo", "{\"name\":\"상품\"}").block(Duration.ofSeconds(10));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBodyAsString()).isEqualTo("{\"echo\":\"상품\"}");
+    }
+
+    @Test
+    public void testDispatchCompressedBody() {
+        byte[] content = "{\"name\":\"압축\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = EmsContentEncoding.DEFLATE.compress(content, Deflater.DEFAULT_COMPRESSION);
+
+        DispatchResult result = adapter.dispatch("/echo", compressed, EmsContentType.JSON, "deflate").block(Duration.ofSeconds(10));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBodyAsString()).isEqualTo("{\"echo\":\"압축\"}");
+    }
+
+    @Test
+    public void testInflatedSizeOverLimitIsPayloadTooLarge() {
+        byte[] content = ("{\"name\":\"" + "a".repeat(32 * 1024) + "\"}").getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = EmsContentEncoding.DEFLATE.compress(content, Deflater.DEFAULT_COMPRESSION);
+
+        DispatchResult result = adapter.dispatch("/echo", compressed, EmsContentType.JSON, "deflate").block(Duration.ofSeconds(10));
+
+        assertThat(result.getStatus()).isEqualTo(413);
+        assertThat(result.getErrorKind().isRetryable()).isFalse();
+    }
+
+    @Test
+    public void testUnknownEncodingIsUnsupportedMediaType() {
+        DispatchResult result = adapter.dispatch("/echo", new byte[]{1, 2, 3}, EmsContentType.JSON, "gzip").block(Duration.ofSeconds(10));
+
+        assertThat(result.getStatus()).isEqualTo(415);
+        assertThat(result.getErrorKind().isRetryable()).isFalse();
+    }
+
+    @Test
+    public void testControllerErrorIsFailedResult() {
+        DispatchResult result = adapter.dispatch("/fail", "{}").block(Duration.ofSeconds(10));
+
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getErrorKind().isRetryable()).isTrue();
+    }
+
+    @Test
+    public void testSmileRoundTrip() throws Exception {
+        assertBinaryRoundTrip(new ObjectMapper(new SmileFactory()), EmsContentType.SMILE);
+    }
+
+    @Test
+    public void testCborRoundTrip() throws Exception {
+        assertBinaryRoundTrip(new ObjectMapper(new CBORFactory()), EmsContentType.CBOR);
+    }
+
+    private void assertBinaryRoundTrip(ObjectMapper binaryMapper, String contentType) throws Exception {
+        DispatchResult result = adapter.dispatch("/echo", binaryMapper.writeValueAsBytes(Map.of("name", "상품")), contentType)
+                .block(Duration.ofSeconds(10));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getContentType()).startsWith(contentType);
+        byte[] body = result.getBodyBytes();
+        assertThat(binaryMapper.readValue(body, new TypeReference<Map<String, Object>>() {})).containsEntry("echo", "상품");
+    }
+
+    @RestController
+    public static class EchoController {
+
+        @PostMapping("/echo")
+        public Mono<Map<String, Object>> echo(@RequestBody Map<String, Object> body) {
+            return Mono.just(Map.of("echo", body.get("name")));
+        }
+
+        @PostMapping("/fail")
+        public Mono<Map<String, Object>> fail(@RequestBody Map<String, Object> body) {
+            return Mono.error(new IllegalStateException("fail"));
+        }
+    }
+}
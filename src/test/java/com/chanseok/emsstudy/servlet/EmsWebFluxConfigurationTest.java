@@ -0,0 +1,48 @@
+package com.chanseok.emsstudy.servlet;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmsWebFluxConfigurationTest {
+
+    @Test
+    public void testCborEncoderEncodesEachValueOfFlux() {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        EmsWebFluxConfiguration.EmsCborEncoder encoder = new EmsWebFluxConfiguration.EmsCborEncoder();
+
+        List<DataBuffer> buffers = encoder.encode(Flux.just(Map.of("id", 1), Map.of("id", 2)), DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(Map.class), MediaType.APPLICATION_CBOR, Collections.emptyMap())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        // Flux 의 값마다 CBOR 문서 하나씩 나온다
+        assertThat(buffers).hasSize(2);
+        List<Map<String, Object>> values = buffers.stream().map(buffer -> {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            try {
+                return cborMapper.readValue(bytes, new TypeReference<Map<String, Object>>() {});
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.toList());
+        assertThat(values).containsExactly(Map.of("id", 1), Map.of("id", 2));
+    }
+}
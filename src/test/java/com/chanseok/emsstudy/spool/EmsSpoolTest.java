@@ -0,0 +1,95 @@
+package com.chanseok.emsstudy.spool;
+
+import com.chanseok.emsstudy.dispatch.EmsAdmissionControl;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class EmsSpoolTest {
+    private static final int MESSAGES = 40;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testDeadLetterFailureRecyclesSegments() throws Exception {
+        // dead letter 전송에 실패하면 EmsDeliveryHandler 가 recover 한다
+        assertRecycled(invocation -> {
+            ((EmsDelivery) invocation.getArgument(0)).recover();
+            return null;
+        });
+    }
+
+    @Test
+    public void testAdmitFailureRecyclesSegments() throws Exception {
+        assertRecycled(invocation -> {
+            throw new IllegalStateException("admit failed");
+        });
+    }
+
+    private void assertRecycled(Answer<Void> admit) throws Exception {
+        EmsRoute route = new EmsRoute();
+        route.setDestination("ems.queue");
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+        EmsRouteRegistry routeRegistry = new EmsRouteRegistry(routeProperties);
+
+        EmsAdmissionControl admissionControl = mock(EmsAdmissionControl.class);
+        doAnswer(admit).when(admissionControl).admit(any());
+
+        EmsSpoolProperties properties = new EmsSpoolProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSize(DataSize.ofBytes(1024));
+        properties.setMaxSegments(2);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        EmsSpool spool = new EmsSpool(properties, routeRegistry, admissionControl, meterRegistry);
+        spool.afterPropertiesSet();
+        spool.startDrain();
+        try {
+            // 세그먼트 하나에 몇 개밖에 들어가지 않으므로, 재사용되지 않으면 maxSegments 에서 append 가 멈춘다
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (int i = 0; i < MESSAGES; i++) {
+                    spool.append(EmsDelivery.of(route, "id-" + i, null, null, "{\"seq\":" + i + ",\"padding\":\"" + "x".repeat(150) + "\"}",
+                            Map.of(), 4, 0L, null, () -> {
+                            }));
+                }
+                while (meterRegistry.get("ems.spool.failed").counter().count() < MESSAGES) {
+                    Thread.sleep(10);
+                }
+            });
+            assertThat(meterRegistry.get("ems.spool.inflight").gauge().value()).isZero();
+            assertThat(countFiles("failed-")).isEqualTo(MESSAGES);
+            assertThat(countFiles("segment-")).isLessThanOrEqualTo(2);
+        } finally {
+            spool.destroy();
+        }
+    }
+
+    private long countFiles(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
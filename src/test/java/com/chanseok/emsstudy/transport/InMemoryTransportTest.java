@@ -0,0 +1,106 @@
+package com.chanseok.emsstudy.transport;
+
+import com.chanseok.emsstudy.codec.EmsContentType;
+import com.chanseok.emsstudy.dispatch.EmsDelivery;
+import com.chanseok.emsstudy.route.EmsRoute;
+import com.chanseok.emsstudy.route.EmsRouteProperties;
+import com.chanseok.emsstudy.route.EmsRouteRegistry;
+import com.chanseok.emsstudy.spool.EmsSpool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InMemoryTransportTest {
+    private final EmsInbound inbound = mock(EmsInbound.class);
+    private final EmsSpool spool = mock(EmsSpool.class);
+    private InMemoryTransport transport;
+
+    @BeforeEach
+    public void setUp() {
+        EmsRoute route = new EmsRoute();
+        route.setDestination("ems.queue");
+        EmsRouteProperties routeProperties = new EmsRouteProperties();
+        routeProperties.getRoutes().put("test", route);
+        EmsTransportProperties transportProperties = new EmsTransportProperties();
+        transportProperties.getMemory().setEnabled(true);
+
+        transport = new InMemoryTransport(transportProperties, new EmsRouteRegistry(routeProperties), inbound, spool,
+                new SimpleMeterRegistry());
+        transport.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transport.close();
+    }
+
+    @Test
+    public void testReplyCompletesTheFuture() throws Exception {
+        handleWith(delivery -> delivery.reply("{\"ok\":true}", EmsContentType.JSON));
+
+        InMemoryTransport.Response response = transport.send("ems.queue", "{}").get(5, TimeUnit.SECONDS);
+        assertThat(response.getBody()).isEqualTo("{\"ok\":true}");
+        assertThat(response.getContentType()).isEqualTo(EmsContentType.JSON);
+    }
+
+    @Test
+    public void testBinaryBodyAndReplyKeepBytes() throws Exception {
+        byte[] cbor = {(byte) 0xa1, 0x62, 0x6f, 0x6b, (byte) 0xf5};
+        handleWith(delivery -> {
+            assertThat(delivery.getPayload()).isNull();
+            delivery.reply(delivery.getPayloadBytes(), EmsContentType.CBOR);
+        });
+
+        InMemoryTransport.Response response = transport.send("ems.queue", cbor, Map.of(EmsContentType.PROPERTY, EmsContentType.CBOR))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(response.getContentType()).isEqualTo(EmsContentType.CBOR);
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getBodyBytes()).isEqualTo(cbor);
+    }
+
+    @Test
+    public void testRecoverCompletesTheFutureExceptionally() throws Exception {
+        handleWith(EmsDelivery::recover);
+
+        CompletableFuture<InMemoryTransport.Response> future = transport.send("ems.queue", "{}");
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testSendIsRejectedWhileSpoolIsEnabled() {
+        when(spool.isEnabled()).thenReturn(true);
+
+        assertThatThrownBy(() -> transport.send("ems.queue", "{}")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void handleWith(DeliveryAction action) throws Exception {
+        Answer<Void> answer = invocation -> {
+            EmsInbound.DeliveryFactory factory = invocation.getArgument(3);
+            action.accept(factory.create(null));
+            return null;
+        };
+        doAnswer(answer).when(inbound).receive(any(), anyString(), any(), any());
+    }
+
+    @FunctionalInterface
+    private interface DeliveryAction {
+        void accept(EmsDelivery delivery) throws Exception;
+    }
+}